@@ -0,0 +1,147 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.BandwidthBudget;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+@SuppressWarnings("javadoc")
+public class BandwidthBudgetTest extends InstrumentationTestCase {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final long HOURLY_LIMIT = 1000;
+    private static final long DAILY_LIMIT = 3000;
+
+    private TestBudget budget;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        budget = new TestBudget(HOURLY_LIMIT, DAILY_LIMIT);
+    }
+
+    public final void testReserve() {
+        assertEquals(HOURLY_LIMIT, budget.getRemaining());
+        assertEquals(budget.time, budget.getReplenishedAt());
+
+        assertTrue(budget.tryReserve(600));
+        assertFalse(budget.tryReserve(600));
+        assertTrue(budget.tryReserve(400));
+        assertEquals(0, budget.getRemaining());
+        assertFalse(budget.tryReserve(1));
+
+        // The loads were smaller than expected
+        budget.settle(600, 100);
+        assertEquals(500, budget.getRemaining());
+        // Traffic not reserved counts, too
+        budget.settle(0, 300);
+        assertEquals(200, budget.getRemaining());
+        // Never below zero spent
+        budget.settle(5000, 0);
+        assertEquals(HOURLY_LIMIT, budget.getRemaining());
+    }
+
+    public final void testWindows() {
+        final long start = budget.time;
+        assertTrue(budget.tryReserve(HOURLY_LIMIT));
+        assertEquals(start + HOUR, budget.getReplenishedAt());
+
+        budget.time = start + HOUR - 1;
+        assertEquals(0, budget.getRemaining());
+        budget.time = start + HOUR;
+        assertEquals(HOURLY_LIMIT, budget.getRemaining());
+
+        // Use up the day, the hourly window now starts with the first byte spent
+        assertTrue(budget.tryReserve(HOURLY_LIMIT));
+        budget.time += 2 * HOUR;
+        assertTrue(budget.tryReserve(HOURLY_LIMIT));
+        budget.time += 2 * HOUR;
+        assertEquals(0, budget.getRemaining());
+        assertEquals(start + DAY, budget.getReplenishedAt());
+
+        budget.time = start + DAY;
+        assertEquals(HOURLY_LIMIT, budget.getRemaining());
+    }
+
+    public final void testOversized() {
+        final long start = budget.time;
+
+        // Bigger than the hourly limit, let through once per hour
+        assertTrue(budget.tryReserve(2 * HOURLY_LIMIT));
+        assertFalse(budget.tryReserve(2 * HOURLY_LIMIT));
+        assertFalse(budget.tryReserve(1));
+        assertEquals(start + HOUR, budget.getReplenishedAt());
+
+        // Even if smaller refreshes ran before in the window
+        budget.time += HOUR;
+        assertTrue(budget.tryReserve(500));
+        assertTrue(budget.tryReserve(2 * HOURLY_LIMIT));
+        assertFalse(budget.tryReserve(2 * HOURLY_LIMIT));
+
+        // The day is used up now
+        budget.time += HOUR;
+        assertEquals(0, budget.getRemaining());
+        assertFalse(budget.tryReserve(2 * HOURLY_LIMIT));
+        assertEquals(start + DAY, budget.getReplenishedAt());
+
+        budget.time = start + DAY;
+        assertTrue(budget.tryReserve(2 * DAILY_LIMIT));
+        assertFalse(budget.tryReserve(2 * DAILY_LIMIT));
+    }
+
+    public final void testOversizedDailyLimit() {
+        budget.setLimits(HOURLY_LIMIT, HOURLY_LIMIT / 2);
+
+        // Fits the hour, but never the day
+        assertTrue(budget.tryReserve(HOURLY_LIMIT));
+        budget.time += HOUR;
+        assertFalse(budget.tryReserve(HOURLY_LIMIT));
+    }
+
+    public final void testZeroLimit() {
+        budget.setLimits(0, DAILY_LIMIT);
+        assertEquals(0, budget.getRemaining());
+        assertFalse(budget.tryReserve(1));
+        assertFalse(budget.tryReserve(2 * DAILY_LIMIT));
+
+        budget.setLimits(-HOURLY_LIMIT, -DAILY_LIMIT);
+        assertEquals(0, budget.getRemaining());
+        assertFalse(budget.tryReserve(1));
+    }
+
+    private static class TestBudget extends BandwidthBudget {
+
+        private long time = 1000000;
+
+        private TestBudget(long hourlyLimit, long dailyLimit) {
+            super(hourlyLimit, dailyLimit);
+        }
+
+        @Override
+        protected long now() {
+            return time;
+        }
+    }
+}
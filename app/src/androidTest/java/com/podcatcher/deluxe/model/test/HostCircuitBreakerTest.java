@@ -0,0 +1,156 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.HostCircuitBreaker;
+
+import android.test.InstrumentationTestCase;
+
+import static com.podcatcher.deluxe.model.HostCircuitBreaker.FAILURE_THRESHOLD;
+import static com.podcatcher.deluxe.model.HostCircuitBreaker.FAILURE_WINDOW;
+import static com.podcatcher.deluxe.model.HostCircuitBreaker.MAX_OPEN_TIME;
+import static com.podcatcher.deluxe.model.HostCircuitBreaker.MIN_OPEN_TIME;
+
+@SuppressWarnings("javadoc")
+public class HostCircuitBreakerTest extends InstrumentationTestCase {
+
+    private static final String HOST = "www.example.com";
+    private static final String OTHER_HOST = "www.example.org";
+
+    private TestBreaker breaker;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        breaker = new TestBreaker();
+    }
+
+    public final void testThreshold() {
+        for (int failure = 1; failure < FAILURE_THRESHOLD; failure++) {
+            breaker.onFailure(HOST);
+            assertTrue(breaker.allowRequest(HOST));
+        }
+
+        breaker.onFailure(HOST);
+        assertFalse(breaker.allowRequest(HOST));
+        assertEquals(breaker.time + MIN_OPEN_TIME, breaker.getOpenUntil(HOST));
+        assertEquals(1, breaker.getOpenCount());
+
+        // Other hosts are not affected
+        assertTrue(breaker.allowRequest(OTHER_HOST));
+        assertEquals(0, breaker.getOpenUntil(OTHER_HOST));
+    }
+
+    public final void testNullHost() {
+        for (int failure = 0; failure < FAILURE_THRESHOLD; failure++)
+            breaker.onFailure(null);
+
+        assertTrue(breaker.allowRequest(null));
+        assertEquals(0, breaker.getOpenUntil(null));
+        assertEquals(0, breaker.getOpenCount());
+        breaker.onSuccess(null);
+    }
+
+    public final void testFailureWindow() {
+        for (int failure = 1; failure < FAILURE_THRESHOLD; failure++)
+            breaker.onFailure(HOST);
+
+        // Failures spread out too far do not open the circuit
+        breaker.time += FAILURE_WINDOW + 1;
+        breaker.onFailure(HOST);
+        assertTrue(breaker.allowRequest(HOST));
+
+        for (int failure = 1; failure < FAILURE_THRESHOLD; failure++)
+            breaker.onFailure(HOST);
+        assertFalse(breaker.allowRequest(HOST));
+    }
+
+    public final void testSuccessCloses() {
+        trip();
+        breaker.onSuccess(HOST);
+
+        assertTrue(breaker.allowRequest(HOST));
+        assertEquals(0, breaker.getOpenCount());
+
+        // Failure count starts over
+        breaker.onFailure(HOST);
+        assertTrue(breaker.allowRequest(HOST));
+    }
+
+    public final void testHalfOpen() {
+        trip();
+
+        // Failures while open do not count
+        breaker.onFailure(HOST);
+        assertEquals(breaker.time + MIN_OPEN_TIME, breaker.getOpenUntil(HOST));
+
+        // Exactly one trial request once the open time is up
+        breaker.time += MIN_OPEN_TIME - 1;
+        assertFalse(breaker.allowRequest(HOST));
+        breaker.time += 1;
+        assertTrue(breaker.allowRequest(HOST));
+        assertFalse(breaker.allowRequest(HOST));
+        assertEquals(1, breaker.getOpenCount());
+
+        // The trial never reported back, allow another one
+        breaker.time += MIN_OPEN_TIME;
+        assertTrue(breaker.allowRequest(HOST));
+        assertFalse(breaker.allowRequest(HOST));
+
+        breaker.onSuccess(HOST);
+        assertTrue(breaker.allowRequest(HOST));
+        assertEquals(0, breaker.getOpenCount());
+    }
+
+    public final void testBackOff() {
+        trip();
+
+        long openTime = MIN_OPEN_TIME;
+        for (int trip = 0; trip < 20; trip++) {
+            breaker.time = breaker.getOpenUntil(HOST);
+            assertTrue(breaker.allowRequest(HOST));
+
+            // The trial fails, open for twice as long, but not longer than the maximum
+            breaker.onFailure(HOST);
+            openTime = Math.min(MAX_OPEN_TIME, 2 * openTime);
+            assertEquals(breaker.time + openTime, breaker.getOpenUntil(HOST));
+            assertFalse(breaker.allowRequest(HOST));
+        }
+
+        assertEquals(MAX_OPEN_TIME, openTime);
+    }
+
+    private void trip() {
+        for (int failure = 0; failure < FAILURE_THRESHOLD; failure++)
+            breaker.onFailure(HOST);
+
+        assertFalse(breaker.allowRequest(HOST));
+    }
+
+    private static class TestBreaker extends HostCircuitBreaker {
+
+        private long time = 1000000;
+
+        @Override
+        protected long now() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.HtmlDecoder;
+
+import android.test.InstrumentationTestCase;
+import android.text.Html;
+
+@SuppressWarnings("javadoc")
+public class HtmlDecoderTest extends InstrumentationTestCase {
+
+    /**
+     * Titles as found in real feeds
+     */
+    private static final String[] TITLE_CORPUS = {
+            "#14: Accidental Documentaries",
+            "Linux Outlaws 332 – International Football is a Bit Like War",
+            "SN 537: Security Now! &amp; the Internet of Things",
+            "Tom &amp; Jerry&#39;s &quot;Best&quot; Episode",
+            "Caf&eacute; Society &ndash; Part 2",
+            "Caf&#233; Society &#8211; Part 2",
+            "Caf&#xE9; Society &#x2013; Part 2",
+            "It&#146;s a Wonderful Life",
+            "AT&T and the Net",
+            "Q&amp;A: Your Questions",
+            "Fear &amp Loathing",
+            "&lt;script&gt; is not a tag",
+            "1 &lt; 2 &gt; 0",
+            "Ep. 12 &#8212; The &#8220;Big&#8221; One",
+            "&copy; 2016 &reg; &trade;",
+            "Steve Austin Show - Ep 290 - w/ &quot;Stone Cold&quot;",
+            "99% Invisible",
+            "Radiolab Presents: More Perfect",
+            "This American Life"
+    };
+
+    /**
+     * The number of decodes per title in each timed run
+     */
+    private static final int TIMED_ROUNDS = 200;
+    /**
+     * The number of timed runs, the fastest counts
+     */
+    private static final int TIMED_RUNS = 5;
+
+    public final void testFastPath() {
+        for (String title : new String[]{"", "Plain title", "99% Invisible", "#14: Accidental"})
+            assertSame(title, HtmlDecoder.decode(title));
+
+        assertFalse(HtmlDecoder.needsDecoding("Plain title"));
+        assertTrue(HtmlDecoder.needsDecoding("Tom &amp; Jerry"));
+        assertTrue(HtmlDecoder.needsDecoding("<b>Bold</b>"));
+        assertTrue(HtmlDecoder.needsDecoding("Two  blanks"));
+        assertTrue(HtmlDecoder.needsDecoding(" Leading"));
+        assertTrue(HtmlDecoder.needsDecoding("Line\nbreak"));
+    }
+
+    public final void testReferences() {
+        assertEquals("Tom & Jerry's \"Best\" Episode",
+                HtmlDecoder.decode("Tom &amp; Jerry&#39;s &quot;Best&quot; Episode"));
+        assertEquals("Café – Part 2", HtmlDecoder.decode("Caf&eacute; &ndash; Part 2"));
+        assertEquals("Café – Part 2", HtmlDecoder.decode("Caf&#233; &#8211; Part 2"));
+        assertEquals("Café – Part 2", HtmlDecoder.decode("Caf&#xE9; &#X2013; Part 2"));
+        assertEquals("It’s", HtmlDecoder.decode("It&#146;s"));
+        assertEquals("🎧", HtmlDecoder.decode("&#x1F3A7;"));
+        assertEquals("� � �", HtmlDecoder.decode("&#0; &#xD800; &#x110000;"));
+        assertEquals("Fear & Loathing", HtmlDecoder.decode("Fear &amp Loathing"));
+        assertEquals("AT&T", HtmlDecoder.decode("AT&T"));
+        assertEquals("&ampx &unknown; & &#; &#x;", HtmlDecoder.decode("&ampx &unknown; & &#; &#x;"));
+        assertEquals(" ♠ϑ", HtmlDecoder.decode("&nbsp;&spades;&thetasym;"));
+        assertEquals("ÆÀ", HtmlDecoder.decode("&AElig;&Agrave;"));
+    }
+
+    public final void testMarkup() {
+        assertEquals("Bold and italic", HtmlDecoder.decode("<b>Bold</b> and <i class=\"x>y\">italic</i>"));
+        assertEquals("Line one Line two", HtmlDecoder.decode("Line one<br/>Line two"));
+        assertEquals("First Second", HtmlDecoder.decode("<p>First</p><p>Second</p>"));
+        assertEquals("Visible", HtmlDecoder.decode("<script>alert('x');</script>Visible<style>b {}</style>"));
+        assertEquals("No comment", HtmlDecoder.decode("No<!-- hidden --> comment"));
+        assertEquals("1 < 2 and 3 <4", HtmlDecoder.decode("1 < 2 and 3 <4"));
+        assertEquals("I <3 podcasts", HtmlDecoder.decode("I <3 podcasts"));
+        assertEquals("Open <tag", HtmlDecoder.decode("Open <tag"));
+        assertEquals("Spaced out title", HtmlDecoder.decode("  Spaced \n\t out   title \r\n"));
+        assertEquals("<b>", HtmlDecoder.decode("&lt;b&gt;"));
+    }
+
+    public final void testSameAsFramework() {
+        for (String title : TITLE_CORPUS)
+            assertEquals(title, Html.fromHtml(title.trim()).toString(), HtmlDecoder.decode(title));
+    }
+
+    public final void testFasterThanFramework() {
+        long framework = Long.MAX_VALUE;
+        long decoder = Long.MAX_VALUE;
+
+        // The first runs also warm up both paths
+        for (int run = 0; run < TIMED_RUNS; run++) {
+            framework = Math.min(framework, timeFramework());
+            decoder = Math.min(decoder, timeDecoder());
+        }
+
+        assertTrue("HtmlDecoder took " + decoder + "ns, Html.fromHtml " + framework + "ns",
+                decoder < framework);
+    }
+
+    private long timeFramework() {
+        final long start = System.nanoTime();
+        for (int round = 0; round < TIMED_ROUNDS; round++)
+            for (String title : TITLE_CORPUS)
+                assertNotNull(Html.fromHtml(title.trim()).toString());
+
+        return System.nanoTime() - start;
+    }
+
+    private long timeDecoder() {
+        final long start = System.nanoTime();
+        for (int round = 0; round < TIMED_ROUNDS; round++)
+            for (String title : TITLE_CORPUS)
+                assertNotNull(HtmlDecoder.decode(title));
+
+        return System.nanoTime() - start;
+    }
+}
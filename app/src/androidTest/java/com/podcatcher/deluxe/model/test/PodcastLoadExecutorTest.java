@@ -0,0 +1,164 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.PodcastLoadExecutor;
+import com.podcatcher.deluxe.model.PodcastLoadExecutor.Priority;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@SuppressWarnings("javadoc")
+public class PodcastLoadExecutorTest extends InstrumentationTestCase {
+
+    private PodcastLoadExecutor executor;
+    private CountDownLatch blocker;
+    private List<String> started;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        // One thread, kept busy until the test has queued all its loads
+        executor = new PodcastLoadExecutor(1, Executors.defaultThreadFactory());
+        blocker = new CountDownLatch(1);
+        started = Collections.synchronizedList(new ArrayList<String>());
+
+        final CountDownLatch running = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                running.countDown();
+
+                try {
+                    blocker.await();
+                } catch (InterruptedException ie) {
+                    // pass
+                }
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        blocker.countDown();
+        executor.shutdownNow();
+
+        super.tearDown();
+    }
+
+    public final void testLaneOrder() throws InterruptedException {
+        queue("b1", Priority.BACKGROUND);
+        queue("u1", Priority.USER_REFRESH);
+        queue("b2", Priority.BACKGROUND);
+        queue("v1", Priority.VISIBLE);
+        queue("u2", Priority.USER_REFRESH);
+        queue("v2", Priority.VISIBLE);
+
+        assertEquals(2, executor.getQueuedCount(Priority.VISIBLE));
+        assertEquals(2, executor.getQueuedCount(Priority.USER_REFRESH));
+        assertEquals(2, executor.getQueuedCount(Priority.BACKGROUND));
+
+        // Highest lane first, within a lane in the order queued
+        assertOrder("v1", "v2", "u1", "u2", "b1", "b2");
+        assertEquals(0, executor.getQueuedCount(Priority.VISIBLE));
+        assertEquals(0, executor.getQueuedCount(Priority.BACKGROUND));
+    }
+
+    public final void testPlainWork() throws InterruptedException {
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                started.add("plain");
+            }
+        });
+        queue("b1", Priority.BACKGROUND);
+        queue("u1", Priority.USER_REFRESH);
+
+        // Work not given to a lane runs with the background loads
+        assertOrder("u1", "plain", "b1");
+    }
+
+    public final void testPromote() throws InterruptedException {
+        final Podcast first = queue("b1", Priority.BACKGROUND);
+        final Podcast second = queue("b2", Priority.BACKGROUND);
+        queue("u1", Priority.USER_REFRESH);
+        final Podcast visible = queue("v1", Priority.VISIBLE);
+
+        assertTrue(executor.promote(second, Priority.USER_REFRESH));
+        assertTrue(executor.isQueued(second, Priority.USER_REFRESH));
+        assertFalse(executor.isQueued(second, Priority.BACKGROUND));
+        // Never demoted, and promoting to the same lane does nothing
+        assertFalse(executor.promote(visible, Priority.BACKGROUND));
+        assertFalse(executor.promote(first, Priority.BACKGROUND));
+        assertTrue(executor.isQueued(visible, Priority.VISIBLE));
+
+        // A promoted load goes to the end of its new lane
+        assertOrder("v1", "u1", "b2", "b1");
+        assertFalse(executor.promote(first, Priority.VISIBLE));
+    }
+
+    public final void testRemove() throws InterruptedException {
+        queue("b1", Priority.BACKGROUND);
+        final Podcast removed = queue("v1", Priority.VISIBLE);
+        queue("v2", Priority.VISIBLE);
+
+        assertTrue(executor.remove(removed));
+        assertFalse(executor.remove(removed));
+        assertFalse(executor.isQueued(removed, Priority.VISIBLE));
+        assertEquals(1, executor.getQueuedCount(Priority.VISIBLE));
+
+        assertOrder("v2", "b1");
+        assertFalse(executor.remove(removed));
+    }
+
+    private Podcast queue(final String name, Priority priority) {
+        final Podcast podcast = new Podcast(name, "http://www.example.com/" + name);
+
+        executor.lane(podcast, priority).execute(new Runnable() {
+
+            @Override
+            public void run() {
+                started.add(name);
+            }
+        });
+
+        return podcast;
+    }
+
+    private void assertOrder(String... expected) throws InterruptedException {
+        blocker.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(expected.length, started.size());
+        for (int index = 0; index < expected.length; index++)
+            assertEquals(expected[index], started.get(index));
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.DateCodec;
+import com.podcatcher.deluxe.model.PodcastUpdateScheduler;
+import com.podcatcher.deluxe.model.PodcastUpdateScheduler.OnPodcastDueListener;
+import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.test.InstrumentationTestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.podcatcher.deluxe.model.PodcastUpdateScheduler.MAX_REFRESH_INTERVAL;
+import static com.podcatcher.deluxe.model.PodcastUpdateScheduler.MIN_REFRESH_INTERVAL;
+import static com.podcatcher.deluxe.model.PodcastUpdateScheduler.RETRY_DELAY_NOT_PARSABLE;
+import static com.podcatcher.deluxe.model.PodcastUpdateScheduler.RETRY_DELAY_NOT_REACHABLE;
+
+@SuppressWarnings("javadoc")
+public class PodcastUpdateSchedulerTest extends InstrumentationTestCase {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    public final void testEstimatePublishingInterval() throws XmlPullParserException, IOException {
+        final long now = System.currentTimeMillis() / 1000 * 1000;
+
+        assertEquals(-1, PodcastUpdateScheduler.estimatePublishingInterval(createPodcast()));
+        assertEquals(-1, PodcastUpdateScheduler.estimatePublishingInterval(createPodcast(now - DAY)));
+        // All published at once, no interval to go by
+        assertEquals(-1, PodcastUpdateScheduler.estimatePublishingInterval(
+                createPodcast(now - DAY, now - DAY, now - DAY)));
+
+        assertEquals(DAY, PodcastUpdateScheduler.estimatePublishingInterval(
+                createPodcast(now - DAY, now - 2 * DAY, now - 3 * DAY, now - 4 * DAY)));
+        // The median ignores the odd long break, feed order does not matter
+        assertEquals(DAY, PodcastUpdateScheduler.estimatePublishingInterval(
+                createPodcast(now - 3 * DAY, now - DAY, now - 30 * DAY, now - 2 * DAY, now - 4 * DAY)));
+    }
+
+    public final void testGetDueDate() throws XmlPullParserException, IOException {
+        final long now = System.currentTimeMillis() / 1000 * 1000;
+
+        // Never loaded, due right away
+        final Podcast unknown = new Podcast(null, "http://www.example.com/unknown");
+        assertEquals(now, PodcastUpdateScheduler.getDueDate(unknown, DAY, now));
+
+        final Podcast daily = createPodcast(now - 3 * HOUR, now - DAY - 3 * HOUR);
+        final long loaded = daily.getLastLoaded().getTime();
+        // Interval not known, use the minimum
+        assertEquals(loaded + MIN_REFRESH_INTERVAL, PodcastUpdateScheduler.getDueDate(daily, -1, now));
+        // Next episode predicted in about 21 hours
+        assertEquals(now - 3 * HOUR + DAY, PodcastUpdateScheduler.getDueDate(daily, DAY, now));
+        // ... but never earlier than the minimum
+        assertEquals(loaded + MIN_REFRESH_INTERVAL, PodcastUpdateScheduler.getDueDate(daily, HOUR, now));
+        // ... and never later than the maximum
+        assertEquals(loaded + MAX_REFRESH_INTERVAL, PodcastUpdateScheduler.getDueDate(daily, 7 * DAY, now));
+
+        // The next episode is overdue, check a few times per interval
+        final Podcast overdue = createPodcast(now - 10 * DAY, now - 14 * DAY);
+        assertEquals(overdue.getLastLoaded().getTime() + DAY / 2,
+                PodcastUpdateScheduler.getDueDate(overdue, 2 * DAY, now));
+    }
+
+    public final void testGetRetryDelay() {
+        assertEquals(RETRY_DELAY_NOT_REACHABLE, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.NOT_REACHABLE, 0));
+        assertEquals(RETRY_DELAY_NOT_REACHABLE, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.NOT_REACHABLE, 1));
+        assertEquals(2 * RETRY_DELAY_NOT_REACHABLE, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.UNKNOWN, 2));
+        assertEquals(RETRY_DELAY_NOT_PARSABLE, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.NOT_PARSABLE, 1));
+        assertEquals(4 * RETRY_DELAY_NOT_PARSABLE, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.NOT_PARSABLE, 3));
+
+        // Capped, even for very many failures
+        assertEquals(MAX_REFRESH_INTERVAL, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.NOT_REACHABLE, 10));
+        assertEquals(MAX_REFRESH_INTERVAL, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.NOT_PARSABLE, 1000));
+        // Only the user can fix these
+        assertEquals(MAX_REFRESH_INTERVAL, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.AUTH_REQUIRED, 1));
+        assertEquals(MAX_REFRESH_INTERVAL, PodcastUpdateScheduler.getRetryDelay(PodcastLoadError.ACCESS_DENIED, 1));
+    }
+
+    public final void testGetNewEpisodeLikelihood() throws XmlPullParserException, IOException {
+        final long now = System.currentTimeMillis();
+        assertEquals(1d, PodcastUpdateScheduler.getNewEpisodeLikelihood(
+                new Podcast(null, "http://www.example.com/unknown"), DAY, now));
+
+        final Podcast podcast = createPodcast(now - DAY);
+        final long loaded = podcast.getLastLoaded().getTime();
+        assertEquals(0d, PodcastUpdateScheduler.getNewEpisodeLikelihood(podcast, DAY, loaded));
+        assertEquals(0d, PodcastUpdateScheduler.getNewEpisodeLikelihood(podcast, DAY, loaded - DAY));
+        assertEquals(1 - Math.exp(-1), PodcastUpdateScheduler.getNewEpisodeLikelihood(podcast, DAY, loaded + DAY), 1e-9);
+        // Unknown interval, assume the maximum
+        assertEquals(PodcastUpdateScheduler.getNewEpisodeLikelihood(podcast, MAX_REFRESH_INTERVAL, loaded + HOUR),
+                PodcastUpdateScheduler.getNewEpisodeLikelihood(podcast, -1, loaded + HOUR));
+    }
+
+    public final void testDispatch() throws InterruptedException {
+        final DueListener listener = new DueListener(1);
+        final PodcastUpdateScheduler scheduler = new PodcastUpdateScheduler(listener);
+        final long now = System.currentTimeMillis();
+
+        final Podcast first = new Podcast(null, "http://www.example.com/first");
+        final Podcast second = new Podcast(null, "http://www.example.com/second");
+        final Podcast later = new Podcast(null, "http://www.example.com/later");
+        scheduler.schedule(later, now - 2000);
+        scheduler.schedule(second, now - 1000);
+        scheduler.schedule(first, now - 2000);
+        // Re-scheduling replaces the entry
+        scheduler.schedule(later, now + DAY);
+        assertEquals(3, scheduler.getSchedule().size());
+
+        // Nothing happens before the scheduler is started
+        Thread.sleep(100);
+        assertTrue(listener.due.isEmpty());
+
+        scheduler.start(0);
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2, listener.due.size());
+        assertSame(first, listener.due.get(0));
+        assertSame(second, listener.due.get(1));
+        assertEquals(1, scheduler.getSchedule().size());
+        assertSame(later, scheduler.getSchedule().get(0).getPodcast());
+
+        scheduler.remove(later);
+        scheduler.remove(later);
+        assertTrue(scheduler.getSchedule().isEmpty());
+    }
+
+    public final void testInitialDelay() throws InterruptedException {
+        final DueListener listener = new DueListener(1);
+        final PodcastUpdateScheduler scheduler = new PodcastUpdateScheduler(listener);
+
+        scheduler.schedule(new Podcast(null, "http://www.example.com/due"), System.currentTimeMillis());
+        scheduler.start(500);
+
+        assertFalse(listener.latch.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.due.size());
+
+        scheduler.clear();
+        assertTrue(scheduler.getSchedule().isEmpty());
+    }
+
+    private Podcast createPodcast(long... pubTimes) throws XmlPullParserException, IOException {
+        final StringBuilder feed = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<rss version=\"2.0\">\n<channel>\n<title>Scheduled</title>\n");
+
+        for (int index = 0; index < pubTimes.length; index++)
+            feed.append("<item>\n<title>Episode ").append(index).append("</title>\n")
+                    .append("<pubDate>").append(DateCodec.formatHttpDate(pubTimes[index])).append("</pubDate>\n")
+                    .append("<enclosure url=\"http://media.example.com/episode").append(index)
+                    .append(".mp3\" length=\"1000\" type=\"audio/mpeg\"/>\n</item>\n");
+
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(feed.append("</channel>\n</rss>\n").toString()));
+
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        podcast.parse(parser);
+
+        assertEquals(pubTimes.length, podcast.getEpisodeCount());
+        return podcast;
+    }
+
+    private static class DueListener implements OnPodcastDueListener {
+
+        private final List<Podcast> due = new ArrayList<>();
+        private final CountDownLatch latch;
+
+        private DueListener(int calls) {
+            this.latch = new CountDownLatch(calls);
+        }
+
+        @Override
+        public void onPodcastsDue(List<Podcast> podcasts) {
+            due.addAll(podcasts);
+            latch.countDown();
+        }
+    }
+}
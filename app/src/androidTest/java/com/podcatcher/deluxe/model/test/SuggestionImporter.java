@@ -96,7 +96,7 @@ public class SuggestionImporter extends InstrumentationTestCase {
             } else Utils.loadAndWait(si);
 
             if (si.getEpisodeCount() > 0) {
-                final List<Episode> episodes = si.getEpisodes();
+                final List<Episode> episodes = new ArrayList<>(si.getEpisodes());
                 Collections.sort(episodes);
 
                 long ageInDays = 0;
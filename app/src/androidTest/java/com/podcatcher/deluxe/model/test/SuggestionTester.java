@@ -30,6 +30,7 @@ import android.support.annotation.NonNull;
 import android.test.InstrumentationTestCase;
 import android.util.Log;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -125,7 +126,7 @@ public class SuggestionTester extends InstrumentationTestCase implements OnLoadP
         Suggestion suggestion = (Suggestion) podcast;
 
         if (suggestion.getEpisodeCount() > 0) {
-            final List<Episode> episodes = suggestion.getEpisodes();
+            final List<Episode> episodes = new ArrayList<>(suggestion.getEpisodes());
             Collections.sort(episodes);
 
             // 1. Check episode age
@@ -18,6 +18,7 @@
 
 package com.podcatcher.deluxe.model.types.test;
 
+import com.podcatcher.deluxe.model.DateCodec;
 import com.podcatcher.deluxe.model.ParserUtils;
 import com.podcatcher.deluxe.model.test.Utils;
 import com.podcatcher.deluxe.model.types.Episode;
@@ -154,7 +155,7 @@ public class EpisodeTest extends InstrumentationTestCase {
         }
 
         public void setPubDate(Date date) {
-            this.pubDate = date;
+            this.pubDate = date == null ? DateCodec.INVALID : date.getTime();
         }
 
         public Date parsePubDate(String dateString) {
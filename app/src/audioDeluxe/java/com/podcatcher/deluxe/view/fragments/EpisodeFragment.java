@@ -20,9 +20,11 @@ package com.podcatcher.deluxe.view.fragments;
 
 import com.podcatcher.deluxe.R;
 import com.podcatcher.deluxe.listeners.OnDownloadEpisodeListener;
+import com.podcatcher.deluxe.listeners.OnLoadEpisodeBodyListener;
 import com.podcatcher.deluxe.listeners.OnPlayEpisodeFromPositionListener;
 import com.podcatcher.deluxe.model.EpisodeManager;
 import com.podcatcher.deluxe.model.ParserUtils;
+import com.podcatcher.deluxe.model.tasks.LoadEpisodeBodyTask;
 import com.podcatcher.deluxe.model.types.Episode;
 import com.podcatcher.deluxe.view.Utils;
 
@@ -32,6 +34,7 @@ import android.app.Activity;
 import android.app.Fragment;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -56,7 +59,7 @@ import static android.view.View.VISIBLE;
 /**
  * Fragment showing episode details.
  */
-public class EpisodeFragment extends Fragment {
+public class EpisodeFragment extends Fragment implements OnLoadEpisodeBodyListener {
 
     /**
      * The listener for the menu item
@@ -277,7 +280,6 @@ public class EpisodeFragment extends Fragment {
      *
      * @param selectedEpisode Episode to show.
      */
-    @TargetApi(Build.VERSION_CODES.KITKAT)
     public void setEpisode(Episode selectedEpisode) {
         // Set handle to episode in case we are not resumed
         this.currentEpisode = selectedEpisode;
@@ -297,25 +299,8 @@ public class EpisodeFragment extends Fragment {
             // Episode metadata
             metadataBoxTextView.setText(createMetadataBoxText());
 
-            // Set episode description
-            final boolean isNewWebView = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
-            final boolean hasHtmlDescription = currentEpisode.getLongDescription() != null;
-            final String encoding = currentEpisode.getPodcast().getFeedEncoding();
-
-            final WebSettings settings = descriptionView.getSettings();
-            settings.setLoadWithOverviewMode(isNewWebView && hasHtmlDescription);
-            settings.setUseWideViewPort(isNewWebView && hasHtmlDescription);
-            settings.setLayoutAlgorithm(isNewWebView ?
-                    hasHtmlDescription ?
-                            WebSettings.LayoutAlgorithm.TEXT_AUTOSIZING :
-                            WebSettings.LayoutAlgorithm.NORMAL :
-                    WebSettings.LayoutAlgorithm.SINGLE_COLUMN);
-
-            descriptionView.loadDataWithBaseURL(null, // Even a null baseURL somehow helps
-                    getCurrentEpisodeDescription(),
-                    EPISODE_DESCRIPTION_MIME_TYPE,
-                    encoding != null ? encoding : EPISODE_DESCRIPTION_DEFAULT_ENCODING,
-                    null);
+            // Set episode description, the texts might need to be read from disk
+            new LoadEpisodeBodyTask(this).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, currentEpisode);
         }
 
         // Update the UI widget's visibility to reflect state
@@ -339,6 +324,32 @@ public class EpisodeFragment extends Fragment {
         }
     }
 
+    @Override
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public void onEpisodeBodyLoaded(Episode episode, String description, String longDescription) {
+        // Only show the texts if the episode is still the one shown
+        if (viewCreated && episode.equals(currentEpisode)) {
+            final boolean isNewWebView = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+            final boolean hasHtmlDescription = longDescription != null;
+            final String encoding = currentEpisode.getPodcast().getFeedEncoding();
+
+            final WebSettings settings = descriptionView.getSettings();
+            settings.setLoadWithOverviewMode(isNewWebView && hasHtmlDescription);
+            settings.setUseWideViewPort(isNewWebView && hasHtmlDescription);
+            settings.setLayoutAlgorithm(isNewWebView ?
+                    hasHtmlDescription ?
+                            WebSettings.LayoutAlgorithm.TEXT_AUTOSIZING :
+                            WebSettings.LayoutAlgorithm.NORMAL :
+                    WebSettings.LayoutAlgorithm.SINGLE_COLUMN);
+
+            descriptionView.loadDataWithBaseURL(null, // Even a null baseURL somehow helps
+                    getCurrentEpisodeDescription(description, longDescription),
+                    EPISODE_DESCRIPTION_MIME_TYPE,
+                    encoding != null ? encoding : EPISODE_DESCRIPTION_DEFAULT_ENCODING,
+                    null);
+        }
+    }
+
     /**
      * Set whether the fragment should show the download menu item. You can call
      * this any time and can expect it to happen on menu creation at the latest.
@@ -451,15 +462,15 @@ public class EpisodeFragment extends Fragment {
         return currentEpisode.getDuration() > 0 || currentEpisode.getFileSize() > 0 ? result : null;
     }
 
-    private String getCurrentEpisodeDescription() {
+    private String getCurrentEpisodeDescription(String description, String longDescription) {
         StringBuilder builder = new StringBuilder();
 
         // Prefer HTML description over text/plain over placeholder
-        builder.append(currentEpisode.getLongDescription() == null ?
-                currentEpisode.getDescription() == null ?
+        builder.append(longDescription == null ?
+                description == null ?
                         getString(R.string.episode_no_description) :
-                        currentEpisode.getDescription() :
-                currentEpisode.getLongDescription());
+                        description :
+                longDescription);
 
         // Add link to website if given
         final String websiteUrl = currentEpisode.getWebsiteUrl();
@@ -20,6 +20,7 @@ package com.podcatcher.deluxe;
 
 import com.podcatcher.deluxe.listeners.OnLoadDownloadsListener;
 import com.podcatcher.deluxe.listeners.OnLoadPodcastListener;
+import com.podcatcher.deluxe.listeners.OnLoadPodcastPageListener;
 import com.podcatcher.deluxe.listeners.OnReverseSortingListener;
 import com.podcatcher.deluxe.listeners.OnSelectPodcastListener;
 import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
@@ -50,8 +51,8 @@ import static com.podcatcher.deluxe.view.fragments.AuthorizationFragment.USERNAM
  * extend or simply show this layout.
  */
 public abstract class EpisodeListActivity extends EpisodeActivity implements
-        OnLoadPodcastListener, OnEnterAuthorizationListener, OnSelectPodcastListener,
-        OnLoadDownloadsListener, OnReverseSortingListener {
+        OnLoadPodcastListener, OnLoadPodcastPageListener, OnEnterAuthorizationListener,
+        OnSelectPodcastListener, OnLoadDownloadsListener, OnReverseSortingListener {
 
     /**
      * Key used to save the current content mode in bundle
@@ -264,6 +265,15 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
             selection.setPodcast(new Podcast(podcast.getName(), newUrl));
     }
 
+    @Override
+    public void onPodcastPageLoaded(Podcast podcast, List<Episode> newEpisodes) {
+        // Show episodes from paged feeds as they come in
+        if (selection.isAll() || selection.isSingle() && podcast.equals(selection.getPodcast())) {
+            currentEpisodeSet.addAll(newEpisodes);
+            updateEpisodeListUi();
+        }
+    }
+
     @Override
     public void onPodcastLoaded(Podcast podcast) {
         // Update list fragment to show episode list
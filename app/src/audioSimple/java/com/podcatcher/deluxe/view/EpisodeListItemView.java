@@ -179,9 +179,9 @@ public class EpisodeListItemView extends PodcatcherListItemView {
         if (showPodcastName)
             builder.append(episode.getPodcast().getName()).append(SEPARATOR);
         if (!showPodcastName && episode.getDuration() > 0)
-            builder.append(ParserUtils.formatTime(episode.getDuration())).append(SEPARATOR);
+            ParserUtils.appendTime(builder, episode.getDuration()).append(SEPARATOR);
         if (!showPodcastName && episode.getFileSize() > 0)
-            builder.append(ParserUtils.formatFileSize(episode.getFileSize()));
+            ParserUtils.appendFileSize(builder, episode.getFileSize());
 
         String result = builder.toString();
         if (result.endsWith(SEPARATOR))
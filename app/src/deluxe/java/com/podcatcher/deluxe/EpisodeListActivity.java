@@ -21,10 +21,13 @@ package com.podcatcher.deluxe;
 import com.podcatcher.deluxe.listeners.OnLoadDownloadsListener;
 import com.podcatcher.deluxe.listeners.OnLoadPlaylistListener;
 import com.podcatcher.deluxe.listeners.OnLoadPodcastListener;
+import com.podcatcher.deluxe.listeners.OnLoadPodcastPageListener;
 import com.podcatcher.deluxe.listeners.OnReorderEpisodeListener;
 import com.podcatcher.deluxe.listeners.OnReverseSortingListener;
 import com.podcatcher.deluxe.listeners.OnSelectPodcastListener;
 import com.podcatcher.deluxe.listeners.OnToggleFilterListener;
+import com.podcatcher.deluxe.model.EpisodeTimeline;
+import com.podcatcher.deluxe.model.EpisodeTimeline.StateSource;
 import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
 import com.podcatcher.deluxe.model.types.Episode;
 import com.podcatcher.deluxe.model.types.Podcast;
@@ -37,15 +40,13 @@ import com.podcatcher.deluxe.view.fragments.EpisodeListFragment;
 import android.app.ActionBar;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import static com.podcatcher.deluxe.view.fragments.AuthorizationFragment.USERNAME_PRESET_KEY;
 
@@ -56,9 +57,9 @@ import static com.podcatcher.deluxe.view.fragments.AuthorizationFragment.USERNAM
  * extend or simply show this layout.
  */
 public abstract class EpisodeListActivity extends EpisodeActivity implements
-        OnLoadPodcastListener, OnEnterAuthorizationListener, OnSelectPodcastListener,
-        OnLoadDownloadsListener, OnReverseSortingListener, OnLoadPlaylistListener,
-        OnReorderEpisodeListener, OnToggleFilterListener {
+        OnLoadPodcastListener, OnLoadPodcastPageListener, OnEnterAuthorizationListener,
+        OnSelectPodcastListener, OnLoadDownloadsListener, OnReverseSortingListener, OnLoadPlaylistListener,
+        OnReorderEpisodeListener, OnToggleFilterListener, StateSource {
 
     /**
      * Key used to save the current content mode in bundle
@@ -68,6 +69,10 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
      * Key used to store podcast URL in intent or bundle
      */
     public static final String PODCAST_URL_KEY = "podcast_url_key";
+    /**
+     * The minimum time (millis) between two episode list updates while podcasts load
+     */
+    private static final long EPISODE_LIST_UPDATE_DELAY = 300;
 
     /**
      * The current episode list fragment
@@ -79,13 +84,31 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
     protected ContentSpinner contentSpinner;
 
     /**
-     * The current episode set (ordered)
+     * The current episodes (ordered, with their states)
      */
-    private SortedSet<Episode> currentEpisodeSet = new TreeSet<>();
+    private EpisodeTimeline currentEpisodes = new EpisodeTimeline(this);
     /**
      * Load failed counter for all podcasts selected mode
      */
     private int loadFailedCounter = 0;
+    /**
+     * The handler to delay episode list updates while many podcasts load
+     */
+    private final Handler episodeListUpdateHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Updates the episode list, posted at most once at a time
+     */
+    private final Runnable episodeListUpdater = new Runnable() {
+
+        @Override
+        public void run() {
+            updateEpisodeListUi();
+        }
+    };
+    /**
+     * Whether an episode list update is posted
+     */
+    private boolean episodeListUpdatePending = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -130,6 +153,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         super.onDestroy();
 
         podcastManager.removeLoadPodcastListener(this);
+        episodeListUpdateHandler.removeCallbacks(episodeListUpdater);
     }
 
     @Override
@@ -160,7 +184,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         selection.setPodcast(podcast);
         selection.setMode(ContentMode.SINGLE_PODCAST);
 
-        this.currentEpisodeSet = new TreeSet<>();
+        this.currentEpisodes = new EpisodeTimeline(this);
         this.loadFailedCounter = 0;
 
         switch (view) {
@@ -195,7 +219,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         selection.resetPodcast();
         selection.setMode(ContentMode.ALL_PODCASTS);
 
-        this.currentEpisodeSet = new TreeSet<>();
+        this.currentEpisodes = new EpisodeTimeline(this);
         this.loadFailedCounter = 0;
 
         switch (view) {
@@ -239,7 +263,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         selection.resetPodcast();
         selection.setMode(ContentMode.SINGLE_PODCAST);
 
-        currentEpisodeSet.clear();
+        currentEpisodes.clear();
 
         if (!view.isSmallPortrait()) {
             // If there is an episode list visible, reset it
@@ -257,7 +281,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         selection.resetPodcast();
         selection.setMode(ContentMode.DOWNLOADS);
 
-        this.currentEpisodeSet = new TreeSet<>();
+        this.currentEpisodes = new EpisodeTimeline(this);
 
         switch (view) {
             case SMALL_LANDSCAPE:
@@ -286,7 +310,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         selection.resetPodcast();
         selection.setMode(ContentMode.PLAYLIST);
 
-        this.currentEpisodeSet = new TreeSet<>(new Comparator<Episode>() {
+        this.currentEpisodes = new EpisodeTimeline(this, new Comparator<Episode>() {
 
             @Override
             public int compare(Episode one, Episode another) {
@@ -335,12 +359,21 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         }
     }
 
+    @Override
+    public void onPodcastPageLoaded(Podcast podcast, List<Episode> newEpisodes) {
+        // Show episodes from paged feeds as they come in
+        if (selection.isAll() || selection.isSingle() && podcast.equals(selection.getPodcast())) {
+            currentEpisodes.add(newEpisodes);
+            updateEpisodeListUiWhileLoading();
+        }
+    }
+
     @Override
     public void onPodcastLoaded(Podcast podcast) {
         // Update list fragment to show episode list
         if (selection.isAll() || selection.isSingle() && podcast.equals(selection.getPodcast())) {
-            currentEpisodeSet.addAll(podcast.getEpisodes());
-            updateEpisodeListUi();
+            currentEpisodes.add(podcast.getEpisodes());
+            updateEpisodeListUiWhileLoading();
         }
 
         // We may want to auto-download the latest episode
@@ -378,7 +411,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
                 authorizationFragment.show(getFragmentManager(), AuthorizationFragment.TAG);
             } else {
                 // We might at least be able to show special episodes
-                if (!currentEpisodeSet.isEmpty())
+                if (!currentEpisodes.isEmpty())
                     updateEpisodeListUi();
                 else
                     episodeListFragment.showLoadFailed(code);
@@ -387,7 +420,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         // One of potentially many podcasts failed
         else if (selection.isAll()) {
             // The last podcast failed and we have no episodes at all
-            if (podcastManager.getLoadCount() == 0 && currentEpisodeSet.isEmpty())
+            if (podcastManager.getLoadCount() == 0 && currentEpisodes.isEmpty())
                 episodeListFragment.showLoadAllFailed();
                 // One of many podcasts failed to load
             else {
@@ -411,7 +444,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         // If showing downloads or in one of the podcast modes, add downloaded
         // episodes to the episode list
         if (!ContentMode.PLAYLIST.equals(selection.getMode())) {
-            currentEpisodeSet.addAll(downloads);
+            currentEpisodes.add(downloads);
 
             // Update the UI unless the podcast is still loading
             if (!(selection.isSingle() && podcastManager.isLoading(selection.getPodcast())))
@@ -431,7 +464,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         // If showing playlist or in one of the podcast modes, add enqueued
         // episodes to the episode list
         if (!ContentMode.DOWNLOADS.equals(selection.getMode())) {
-            currentEpisodeSet.addAll(playlist);
+            currentEpisodes.add(playlist);
 
             // Update the UI unless the podcast is still loading
             if (!(selection.isSingle() && podcastManager.isLoading(selection.getPodcast())))
@@ -517,7 +550,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
             }
 
             // Clear and reset the playlist
-            currentEpisodeSet.clear();
+            currentEpisodes.clear();
             episodeListFragment.resetUi();
             episodeListFragment.setEnableSwipeReorder(true);
             episodeListFragment.setShowPodcastNames(true);
@@ -541,7 +574,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
             }
 
             // Clear and reset the playlist
-            currentEpisodeSet.clear();
+            currentEpisodes.clear();
             episodeListFragment.resetUi();
             episodeListFragment.setEnableSwipeReorder(true);
             episodeListFragment.setShowPodcastNames(true);
@@ -555,12 +588,14 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
             super.onDownloadProgress(episode, percent);
 
         // Check whether the episode is potentially currently displayed
-        if (currentEpisodeSet.contains(episode))
+        if (currentEpisodes.contains(episode))
             episodeListFragment.showProgress(episode, percent);
     }
 
     @Override
     public void onDownloadSuccess(Episode episode) {
+        currentEpisodes.updateStates(episode);
+
         if (!view.isSmallPortrait()) {
             super.onDownloadSuccess(episode);
 
@@ -570,6 +605,33 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         }
     }
 
+    @Override
+    public void onDownloadDeleted(Episode episode) {
+        currentEpisodes.updateStates(episode);
+
+        super.onDownloadDeleted(episode);
+    }
+
+    @Override
+    public void onPlaylistChanged() {
+        // We do not know which episodes changed
+        currentEpisodes.updateStates();
+
+        super.onPlaylistChanged();
+    }
+
+    @Override
+    public void onStateChanged(Episode episode, boolean newState) {
+        currentEpisodes.updateStates(episode);
+
+        super.onStateChanged(episode, newState);
+    }
+
+    @Override
+    public int getStates(@NonNull Episode episode) {
+        return episodeManager.getStates(episode);
+    }
+
     /**
      * Make sure the episode list selection matches current state.
      */
@@ -585,7 +647,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
      * Update the sorting menu icon visibility.
      */
     protected void updateSortingUi() {
-        episodeListFragment.setSortMenuItemVisibility(currentEpisodeSet.size() > 1 &&
+        episodeListFragment.setSortMenuItemVisibility(currentEpisodes.size() > 1 &&
                         !ContentMode.PLAYLIST.equals(selection.getMode()),
                 selection.isEpisodeOrderReversed()
         );
@@ -595,7 +657,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
      * Update the filter menu icon visibility.
      */
     protected void updateFilterUi() {
-        episodeListFragment.setFilterMenuItemVisibility(!currentEpisodeSet.isEmpty() &&
+        episodeListFragment.setFilterMenuItemVisibility(!currentEpisodes.isEmpty() &&
                         !ContentMode.PLAYLIST.equals(selection.getMode()),
                 selection.isEpisodeFilterEnabled()
         );
@@ -641,8 +703,8 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         final int loadingPodcastCount = podcastManager.getLoadCount();
 
         // Load finished for all podcasts and there are episodes
-        if (loadingPodcastCount == 0 && !currentEpisodeSet.isEmpty()) {
-            final int episodeCount = currentEpisodeSet.size();
+        if (loadingPodcastCount == 0 && !currentEpisodes.isEmpty()) {
+            final int episodeCount = currentEpisodes.size();
 
             if (episodeCount == 0)
                 contentSpinner.setSubtitle(null);
@@ -660,31 +722,36 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
                     podcastCount, (podcastCount - loadingPodcastCount), podcastCount));
     }
 
+    /**
+     * Update the episode list after episodes came in. While more podcasts
+     * are loading, the update is delayed, so the episodes of all podcasts
+     * loaded in the meantime are merged and shown in one go.
+     */
+    private void updateEpisodeListUiWhileLoading() {
+        if (podcastManager.getLoadCount() == 0)
+            updateEpisodeListUi();
+        else if (!episodeListUpdatePending) {
+            episodeListUpdatePending = true;
+            episodeListUpdateHandler.postDelayed(episodeListUpdater, EPISODE_LIST_UPDATE_DELAY);
+        }
+    }
+
     /**
      * Set the current episode list to show in the episode list fragment using
-     * {@link #currentEpisodeSet} as the basis. This will filter and reverse the
+     * {@link #currentEpisodes} as the basis. This will filter and reverse the
      * list as needed.
      */
     private void updateEpisodeListUi() {
-        final List<Episode> filteredList = new ArrayList<>(currentEpisodeSet);
+        // Any delayed update is covered by this one
+        episodeListUpdateHandler.removeCallbacks(episodeListUpdater);
+        episodeListUpdatePending = false;
 
-        // Further refine the episode list if not in playlist mode
-        if (!ContentMode.PLAYLIST.equals(selection.getMode())) {
-            // Apply the filter
-            if (selection.isEpisodeFilterEnabled()) {
-                Iterator<Episode> iterator = filteredList.iterator();
-
-                while (iterator.hasNext())
-                    if (episodeManager.getState(iterator.next()))
-                        iterator.remove();
-            }
-
-            // We might need to reverse the order of our list,
-            // but there is no need for sorting since we already come
-            // from a sorted set.
-            if (selection.isEpisodeOrderReversed())
-                Collections.reverse(filteredList);
-        }
+        // Filter and reverse the episode list if not in playlist mode, there
+        // is no need for sorting since the timeline is sorted already
+        final boolean refine = !ContentMode.PLAYLIST.equals(selection.getMode());
+        final List<Episode> filteredList = currentEpisodes.select(
+                refine && selection.isEpisodeFilterEnabled() ? EpisodeTimeline.OLD : 0,
+                refine && selection.isEpisodeOrderReversed());
 
         // Make sure the episode list fragment shows the right empty view
         if (ContentMode.DOWNLOADS.equals(selection.getMode()))
@@ -692,7 +759,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
         else if (ContentMode.PLAYLIST.equals(selection.getMode()))
             episodeListFragment.setEmptyStringId(R.string.playlist_empty);
         else if (selection.isEpisodeFilterEnabled() &&
-                filteredList.isEmpty() && !currentEpisodeSet.isEmpty())
+                filteredList.isEmpty() && !currentEpisodes.isEmpty())
             episodeListFragment.setEmptyStringId(R.string.episodes_no_new);
         else if (selection.isAll())
             episodeListFragment.setEmptyStringId(R.string.episode_none_all_podcasts);
@@ -710,7 +777,7 @@ public abstract class EpisodeListActivity extends EpisodeActivity implements
             episodeListFragment
                     .setShowTopInfoBox(true, getString(R.string.podcast_load_multiple_error_some));
         else if (selection.isEpisodeFilterEnabled()) {
-            final int filteredCount = currentEpisodeSet.size() - filteredList.size();
+            final int filteredCount = currentEpisodes.size() - filteredList.size();
 
             episodeListFragment.setShowTopInfoBox(
                     filteredCount > 0, getResources().getQuantityString(
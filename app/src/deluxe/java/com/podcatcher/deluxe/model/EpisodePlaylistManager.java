@@ -82,7 +82,7 @@ public abstract class EpisodePlaylistManager extends EpisodeDownloadManager {
                 // Find records for playlist entries
                 if (entry.getValue().playlistPosition != null) {
                     // Create and add the downloaded episode
-                    Episode playlistEntry = entry.getValue().marshalEpisode(entry.getKey());
+                    Episode playlistEntry = entry.getValue().marshalEpisode(entry.getKey(), PodcastManager.getInstance());
                     playlist.put(entry.getValue().playlistPosition, playlistEntry);
                 }
             }
@@ -22,6 +22,8 @@ import com.podcatcher.deluxe.Podcatcher;
 import com.podcatcher.deluxe.listeners.OnChangeEpisodeStateListener;
 import com.podcatcher.deluxe.listeners.OnChangePodcastListListener;
 import com.podcatcher.deluxe.listeners.OnLoadPodcastListener;
+import com.podcatcher.deluxe.model.EpisodeTimeline.StateSource;
+import com.podcatcher.deluxe.model.tasks.remote.DownloadEpisodeTask.EpisodeDownloadError;
 import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
 import com.podcatcher.deluxe.model.types.Episode;
 import com.podcatcher.deluxe.model.types.EpisodeMetadata;
@@ -29,7 +31,9 @@ import com.podcatcher.deluxe.model.types.Podcast;
 import com.podcatcher.deluxe.model.types.Progress;
 
 import android.os.Process;
+import android.support.annotation.NonNull;
 
+import java.io.File;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -44,12 +48,16 @@ import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
  * @see EpisodeManager
  */
 public abstract class EpisodeStateManager extends EpisodePlaylistManager implements
-        OnLoadPodcastListener, OnChangePodcastListListener {
+        OnLoadPodcastListener, OnChangePodcastListListener, StateSource {
 
     /**
      * The call-back set for the episode state changed listeners
      */
     private Set<OnChangeEpisodeStateListener> stateListeners = new HashSet<>();
+    /**
+     * The new, downloaded and playlist episode counts per podcast
+     */
+    private final EpisodeCounter episodeCounter = new EpisodeCounter(this);
 
     /**
      * Helper to prevent clean-up from running too often
@@ -72,6 +80,8 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
     @Override
     public void onEpisodeMetadataLoaded(Map<String, EpisodeMetadata> metadata) {
         super.onEpisodeMetadataLoaded(metadata);
+        // All states might have changed
+        episodeCounter.clear();
 
         // We register to be alerted on podcast loads and podcast list changes
         // so we can perform some clean-ups
@@ -111,6 +121,7 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
 
             // Mark metadata record as dirty
             metadataChanged = true;
+            episodeCounter.update(episode);
 
             // Alert listeners
             for (OnChangeEpisodeStateListener listener : stateListeners)
@@ -137,20 +148,44 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
     }
 
     /**
-     * Count the number of episodes not marked old for given podcast.
+     * Get the number of episodes not marked old for given podcast. This is
+     * kept up-to-date as states change, so it is cheap to call.
      *
      * @param podcast Podcast to count for.
      * @return The number of new episode in the podcast.
      */
     public int getNewEpisodeCount(Podcast podcast) {
-        int count = 0;
+        return podcast == null ? 0 : episodeCounter.getNewCount(podcast);
+    }
 
-        if (podcast != null)
-            for (Episode episode : podcast.getEpisodes())
-                if (!getState(episode))
-                    count++;
+    /**
+     * Get the number of episodes downloaded for given podcast, see
+     * {@link #getNewEpisodeCount(Podcast)}.
+     *
+     * @param podcast Podcast to count for.
+     * @return The number of downloaded episode in the podcast.
+     */
+    public int getDownloadedEpisodeCount(Podcast podcast) {
+        return podcast == null ? 0 : episodeCounter.getDownloadedCount(podcast);
+    }
+
+    /**
+     * Get the number of episodes in the playlist for given podcast, see
+     * {@link #getNewEpisodeCount(Podcast)}.
+     *
+     * @param podcast Podcast to count for.
+     * @return The number of the podcast's episodes in the playlist.
+     */
+    public int getPlaylistEpisodeCount(Podcast podcast) {
+        return podcast == null ? 0 : episodeCounter.getPlaylistCount(podcast);
+    }
 
-        return count;
+    @Override
+    public int getStates(@NonNull Episode episode) {
+        // No file system checks here, this runs for every episode counted
+        return (getState(episode) ? EpisodeTimeline.OLD : 0) |
+                (getLocalPath(episode) != null ? EpisodeTimeline.DOWNLOADED : 0) |
+                (isInPlaylist(episode) ? EpisodeTimeline.IN_PLAYLIST : 0);
     }
 
     /**
@@ -227,6 +262,44 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
         return 0;
     }
 
+    @Override
+    public void onEpisodeDownloaded(Episode episode, File episodeFile) {
+        super.onEpisodeDownloaded(episode, episodeFile);
+
+        episodeCounter.update(episode);
+    }
+
+    @Override
+    public void onEpisodeDownloadFailed(Episode episode, EpisodeDownloadError error) {
+        super.onEpisodeDownloadFailed(episode, error);
+
+        episodeCounter.update(episode);
+    }
+
+    @Override
+    public void deleteDownload(Episode episode) {
+        super.deleteDownload(episode);
+
+        if (episode != null)
+            episodeCounter.update(episode);
+    }
+
+    @Override
+    public void insertAtPlaylistPosition(Episode episode, int position) {
+        super.insertAtPlaylistPosition(episode, position);
+
+        if (episode != null)
+            episodeCounter.update(episode);
+    }
+
+    @Override
+    public void removeFromPlaylist(Episode episode) {
+        super.removeFromPlaylist(episode);
+
+        if (episode != null)
+            episodeCounter.update(episode);
+    }
+
     public void onPodcastAdded(Podcast podcast) {
         // pass
     }
@@ -234,6 +307,8 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
     @Override
     public void onPodcastRemoved(final Podcast podcast) {
         if (podcast != null) {
+            episodeCounter.remove(podcast);
+
             // Go off the main thread, we rely on getting an iterator from the
             // metadata being thread safe here!
             new Thread() {
@@ -269,6 +344,10 @@ public abstract class EpisodeStateManager extends EpisodePlaylistManager impleme
 
     @Override
     public void onPodcastLoaded(final Podcast podcast) {
+        // Count the episodes now, not when the podcast list asks
+        if (podcast != null)
+            episodeCounter.update(podcast);
+
         // We do not want to run this too frequently and for all podcasts at
         // once. In addition it should run only once per podcast during the
         // lifetime of this EpisodeManager
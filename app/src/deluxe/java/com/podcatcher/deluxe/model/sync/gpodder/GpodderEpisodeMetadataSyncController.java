@@ -108,7 +108,7 @@ abstract class GpodderEpisodeMetadataSyncController extends GpodderPodcastListSy
                         // Get us an episode and perform change on main thread
                         final EpisodeMetadata meta = new EpisodeMetadata();
                         meta.podcastUrl = new Podcast(null, podcastUrl).getUrl();
-                        final Episode episode = meta.marshalEpisode(decode(action.getEpisode(), "UTF8"));
+                        final Episode episode = meta.marshalEpisode(decode(action.getEpisode(), "UTF8"), podcastManager);
                         //noinspection unchecked
                         publishProgress(new AbstractMap.SimpleEntry<>(episode, action));
                     }
@@ -106,7 +106,7 @@ abstract class PodcareEpisodeMetadataSyncController extends PodcarePodcastListSy
                             // Get us an episode
                             final EpisodeMetadata meta = new EpisodeMetadata();
                             meta.podcastUrl = podcastUrl;
-                            final Episode episode = meta.marshalEpisode(item.getFile());
+                            final Episode episode = meta.marshalEpisode(item.getFile(), podcastManager);
                             // Act on the episode action if in receive mode
                             if (episode != null)
                                 //noinspection unchecked
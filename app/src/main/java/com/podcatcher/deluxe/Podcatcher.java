@@ -18,7 +18,10 @@
 
 package com.podcatcher.deluxe;
 
+import com.podcatcher.deluxe.model.EpisodeBodyStore;
 import com.podcatcher.deluxe.model.EpisodeManager;
+import com.podcatcher.deluxe.model.EpisodeSearchManager;
+import com.podcatcher.deluxe.model.FeedPlatform;
 import com.podcatcher.deluxe.model.PodcastManager;
 import com.podcatcher.deluxe.model.SuggestionManager;
 import com.podcatcher.deluxe.model.SyncManager;
@@ -99,6 +102,8 @@ public class Podcatcher extends Application {
         USER_AGENT_VALUE = String.format("%1$s/%2$s", getString(R.string.app_name), VERSION_NAME);
 
         Picasso.with(this).setIndicatorsEnabled(BuildConfig.DEBUG);
+        // The feed model prefers the enclosures matching our media flavor
+        FeedPlatform.setPreferredMediaType(BuildConfig.FLAVOR_media);
 
         // This will only run once in the lifetime of the app
         // since the application is an implicit singleton. We create the other
@@ -108,6 +113,8 @@ public class Podcatcher extends Application {
         EpisodeManager.getInstance(this);
         // dito
         SuggestionManager.getInstance(this);
+        // The search index needs the podcast manager
+        EpisodeSearchManager.getInstance(this);
         // and sync as well
         SyncManager.getInstance(this);
 
@@ -119,6 +126,18 @@ public class Podcatcher extends Application {
             // This should not happen, but the app works without the cache
         }
 
+        // Keep long episode texts on disk instead of the heap, opening the store
+        // deletes the texts from the last run, so do not wait for it here. Feeds
+        // parsed before the store is open simply keep their texts in memory.
+        final File bodyDirectory = new File(getCacheDir(), "bodies");
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                EpisodeBodyStore.getInstance().open(bodyDirectory);
+            }
+        });
+
         // If permissions are limited, disable auto-download and auto-delete.
         // This code will run if the user pulls the permission from under us,
         // since the system will restart the app.
@@ -151,6 +170,15 @@ public class Podcatcher extends Application {
         // Make sure we save our state before eventually being killed
         PodcastManager.getInstance().saveState();
         EpisodeManager.getInstance().saveState();
+        EpisodeSearchManager.getInstance().saveState();
+    }
+
+    @Override
+    public void onTerminate() {
+        super.onTerminate();
+
+        // The search index is written with a delay, do not lose the latest changes
+        EpisodeSearchManager.getInstance().saveState();
     }
 
     /**
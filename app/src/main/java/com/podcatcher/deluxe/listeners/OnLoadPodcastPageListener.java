@@ -0,0 +1,43 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.listeners;
+
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import java.util.List;
+
+/**
+ * Interface definition for a callback to be invoked when an additional page
+ * of a paged (expanded) podcast feed is loaded. This is an optional addition
+ * to the {@link OnLoadPodcastListener}, implement it to show episodes from
+ * podcasts with many pages before all of them are available.
+ */
+public interface OnLoadPodcastPageListener {
+
+    /**
+     * Called once a page of episodes is loaded and added to the podcast.
+     * {@link OnLoadPodcastListener#onPodcastLoaded(Podcast)} will still be called
+     * once all pages are done.
+     *
+     * @param podcast     Podcast loading.
+     * @param newEpisodes The episodes added from the page, in feed order.
+     */
+    void onPodcastPageLoaded(Podcast podcast, List<Episode> newEpisodes);
+}
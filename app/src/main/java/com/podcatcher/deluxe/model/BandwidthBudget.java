@@ -0,0 +1,210 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A byte budget for background podcast refreshes on metered connections. The
+ * budget has an hourly and a daily limit, each counted in a fixed window that
+ * starts with the first byte spent after the previous window ended.
+ * <p>
+ * <b>Usage:</b> Call {@link #tryReserve(long)} with the bytes a refresh is
+ * expected to cost before starting it. Once done, call
+ * {@link #settle(long, long)} with the reservation and the bytes actually
+ * used. Traffic not reserved before (e.g. loads the user started) can be
+ * reported via {@link #settle(long, long)} with a zero reservation.
+ * </p>
+ * <p>
+ * <b>Oversized refreshes:</b> A refresh expected to cost more than a limit
+ * would never fit. One of these is let through per hourly window as long as
+ * there is any budget left, the window is then used up.
+ * </p>
+ */
+public class BandwidthBudget {
+
+    /**
+     * The default hourly limit (bytes)
+     */
+    public static final long DEFAULT_HOURLY_LIMIT = 1024 * 1024;
+    /**
+     * The default daily limit (bytes)
+     */
+    public static final long DEFAULT_DAILY_LIMIT = 4 * 1024 * 1024;
+
+    /**
+     * Length of the hourly window (millis)
+     */
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    /**
+     * Length of the daily window (millis)
+     */
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The hourly limit (bytes)
+     */
+    private long hourlyLimit;
+    /**
+     * The daily limit (bytes)
+     */
+    private long dailyLimit;
+
+    /**
+     * Start of the current hourly window (epoch millis)
+     */
+    private long hourStart;
+    /**
+     * Bytes spent (or reserved) in the current hourly window
+     */
+    private long hourSpent;
+    /**
+     * Start of the current daily window (epoch millis)
+     */
+    private long dayStart;
+    /**
+     * Bytes spent (or reserved) in the current daily window
+     */
+    private long daySpent;
+    /**
+     * Flag indicating that an oversized refresh ran in the current hourly window
+     */
+    private boolean hourOversized;
+
+    /**
+     * Create a budget with the default limits.
+     */
+    public BandwidthBudget() {
+        this(DEFAULT_HOURLY_LIMIT, DEFAULT_DAILY_LIMIT);
+    }
+
+    /**
+     * Create a budget.
+     *
+     * @param hourlyLimit The bytes available per hour, zero turns background
+     *                    refreshes on metered connections off.
+     * @param dailyLimit  The bytes available per day.
+     */
+    public BandwidthBudget(long hourlyLimit, long dailyLimit) {
+        setLimits(hourlyLimit, dailyLimit);
+    }
+
+    /**
+     * Change the budget's limits. Bytes already spent count against the new limits.
+     *
+     * @param hourlyLimit The bytes available per hour, zero turns background
+     *                    refreshes on metered connections off.
+     * @param dailyLimit  The bytes available per day.
+     */
+    public synchronized void setLimits(long hourlyLimit, long dailyLimit) {
+        this.hourlyLimit = Math.max(0, hourlyLimit);
+        this.dailyLimit = Math.max(0, dailyLimit);
+    }
+
+    /**
+     * @return The bytes that can still be spent right now.
+     */
+    public synchronized long getRemaining() {
+        rollWindows(now());
+
+        return Math.max(0, Math.min(hourlyLimit - hourSpent, dailyLimit - daySpent));
+    }
+
+    /**
+     * @return The point in time (epoch millis) more budget becomes available,
+     * i.e. the end of the window that is used up.
+     */
+    public synchronized long getReplenishedAt() {
+        final long now = now();
+        rollWindows(now);
+
+        if (daySpent >= dailyLimit && dayStart > 0)
+            return dayStart + DAY;
+        else if (hourSpent >= hourlyLimit && hourStart > 0)
+            return hourStart + HOUR;
+        else
+            return now;
+    }
+
+    /**
+     * Reserve bytes for a refresh, if the budget allows it.
+     *
+     * @param bytes The bytes the refresh is expected to use.
+     * @return <code>true</code> iff the bytes are reserved and the refresh can run.
+     */
+    public synchronized boolean tryReserve(long bytes) {
+        final long remaining = getRemaining();
+
+        if (bytes > remaining) {
+            // Let one refresh through that would never fit otherwise
+            if (remaining == 0 || hourOversized || bytes <= Math.min(hourlyLimit, dailyLimit))
+                return false;
+
+            hourOversized = true;
+        }
+
+        spend(bytes);
+        return true;
+    }
+
+    /**
+     * Report the bytes actually used, replacing the reservation made before.
+     *
+     * @param reserved The bytes reserved via {@link #tryReserve(long)}, zero if none.
+     * @param actual   The bytes actually used.
+     */
+    public synchronized void settle(long reserved, long actual) {
+        spend(actual - reserved);
+    }
+
+    /**
+     * @return The current point in time (epoch millis), sub-classes might
+     * use a clock of their own.
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void spend(long bytes) {
+        final long now = now();
+        rollWindows(now);
+
+        // Start new windows with the first byte spent
+        if (hourStart == 0)
+            hourStart = now;
+        if (dayStart == 0)
+            dayStart = now;
+
+        hourSpent = Math.max(0, hourSpent + bytes);
+        daySpent = Math.max(0, daySpent + bytes);
+    }
+
+    private void rollWindows(long now) {
+        if (hourStart > 0 && now - hourStart >= HOUR) {
+            hourStart = 0;
+            hourSpent = 0;
+            hourOversized = false;
+        }
+
+        if (dayStart > 0 && now - dayStart >= DAY) {
+            dayStart = 0;
+            daySpent = 0;
+        }
+    }
+}
@@ -481,7 +481,7 @@ public abstract class EpisodeDownloadManager extends EpisodeInformationManager i
                 // Find records for downloaded episodes
                 if (isDownloaded(entry.getValue())) {
                     // Create and add the downloaded episode
-                    Episode download = entry.getValue().marshalEpisode(entry.getKey());
+                    Episode download = entry.getValue().marshalEpisode(entry.getKey(), PodcastManager.getInstance());
 
                     if (download != null)
                         result.add(download);
@@ -603,7 +603,7 @@ public abstract class EpisodeDownloadManager extends EpisodeInformationManager i
                 // Only act if we care for this download
                 if (data.downloadId != null && data.downloadId == downloadId) {
                     // Create the downloading episode
-                    Episode download = entry.getValue().marshalEpisode(entry.getKey());
+                    Episode download = entry.getValue().marshalEpisode(entry.getKey(), PodcastManager.getInstance());
                     if (download != null) {
                         Intent intent = new Intent(podcatcher.getApplicationContext(),
                                 PodcastActivity.class)
@@ -0,0 +1,313 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.Podcatcher;
+import com.podcatcher.deluxe.listeners.OnChangePodcastListListener;
+import com.podcatcher.deluxe.listeners.OnLoadPodcastListener;
+import com.podcatcher.deluxe.model.EpisodeSearchIndex.Hit;
+import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
+import com.podcatcher.deluxe.model.types.Podcast;
+import com.podcatcher.deluxe.model.types.Progress;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+/**
+ * The episode search manager, persistent and global singleton. Keeps the
+ * full-text {@link EpisodeSearchIndex} over the episodes of all podcasts:
+ * The index is read from disk on start-up, so search works before the
+ * podcasts are loaded, updated each time a podcast loads and written back
+ * once there have been no more updates for a while (or via
+ * {@link #saveState()}). All work on the index happens on a
+ * background thread of its own, searches can run on any thread.
+ */
+public class EpisodeSearchManager implements OnLoadPodcastListener, OnChangePodcastListListener {
+
+    /**
+     * The name of the file we store the search index in
+     */
+    public static final String INDEX_FILENAME = "episodes.idx";
+    /**
+     * The time (millis) to wait after the last change before the index is
+     * written, so a refresh of all podcasts writes it once only
+     */
+    private static final long STORE_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * The single instance
+     */
+    private static EpisodeSearchManager manager;
+    /**
+     * The application itself
+     */
+    private Podcatcher podcatcher;
+
+    /**
+     * The index itself
+     */
+    private final EpisodeSearchIndex index = new EpisodeSearchIndex();
+    /**
+     * The executor all index work runs on, one thread only
+     */
+    private final ScheduledThreadPoolExecutor indexExecutor;
+    /**
+     * Flag to indicate whether the index changed since it was stored,
+     * only used on the executor's thread
+     */
+    private boolean indexChanged = false;
+    /**
+     * The delayed write of the index, if any, only used on the executor's thread
+     */
+    private ScheduledFuture<?> delayedStore;
+
+    /**
+     * Read the index from disk.
+     */
+    private final Runnable loadIndex = new Runnable() {
+
+        @Override
+        public void run() {
+            InputStream in = null;
+
+            try {
+                in = new FileInputStream(getIndexFile());
+                index.load(in);
+            } catch (IOException e) {
+                // Pass, there might be no index yet, it is built as podcasts load
+            } finally {
+                close(in);
+            }
+        }
+    };
+    /**
+     * Write the index to disk, if changed.
+     */
+    private final Runnable storeIndex = new Runnable() {
+
+        @Override
+        public void run() {
+            // This write covers any write still waiting
+            if (delayedStore != null) {
+                delayedStore.cancel(false);
+                delayedStore = null;
+            }
+
+            if (indexChanged) {
+                // Write to a new file first, so an old index stays intact if this fails
+                final File file = getIndexFile();
+                final File temp = new File(file.getPath() + ".tmp");
+                OutputStream out = null;
+
+                try {
+                    out = new FileOutputStream(temp);
+                    index.store(out);
+                    close(out);
+                    out = null;
+
+                    if (temp.renameTo(file))
+                        indexChanged = false;
+                } catch (IOException e) {
+                    // Nothing we can do here, we will try again with the next change
+                } finally {
+                    close(out);
+                }
+            }
+        }
+    };
+
+    /**
+     * Init the episode search manager.
+     *
+     * @param app The podcatcher application object (also a singleton).
+     */
+    private EpisodeSearchManager(Podcatcher app) {
+        this.podcatcher = app;
+
+        // Tokenizing episodes and writing the index can take a while,
+        // so this work gets a thread of its own
+        this.indexExecutor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+
+                    public Thread newThread(@NonNull final Runnable r) {
+                        return new Thread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(THREAD_PRIORITY_BACKGROUND);
+
+                                r.run();
+                            }
+                        }, "EpisodeSearchIndex");
+                    }
+                });
+        this.indexExecutor.setKeepAliveTime(1L, TimeUnit.SECONDS);
+        this.indexExecutor.allowCoreThreadTimeOut(true);
+        this.indexExecutor.execute(loadIndex);
+
+        // We want to be alerted on podcast loads and podcast list changes
+        PodcastManager.getInstance().addLoadPodcastListener(this);
+        PodcastManager.getInstance().addChangePodcastListListener(this);
+    }
+
+    /**
+     * Get the episode search manager instance. The returned manager object is
+     * a singleton, all calls to this method will always return the same
+     * single instance of the episode search manager.
+     *
+     * @param podcatcher The main app object.
+     * @return The episode search manager handle.
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    public static EpisodeSearchManager getInstance(Podcatcher podcatcher) {
+        if (manager == null)
+            manager = new EpisodeSearchManager(podcatcher);
+
+        return manager;
+    }
+
+    /**
+     * Get the episode search manager instance. The returned manager object is
+     * a singleton, all calls to this method will always return the same
+     * single instance of the episode search manager.
+     *
+     * @return The episode search manager handle.
+     */
+    public static EpisodeSearchManager getInstance() {
+        // We make sure in Application.onCreate() that this method is not called
+        // unless the other one with the application instance actually set ran
+        // to least once
+        return manager;
+    }
+
+    /**
+     * Find the episodes matching a query, see
+     * {@link EpisodeSearchIndex#search(String, int)}. Use
+     * {@link PodcastManager#findEpisodeForUrl(String, String)} to get the
+     * episode objects for loaded podcasts.
+     *
+     * @param query The words to look for.
+     * @param limit The number of results to give at most.
+     * @return The newest matching episodes, newest first.
+     */
+    @NonNull
+    public List<Hit> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    /**
+     * Persist the search index to disk (async). It is save to call this at
+     * any time, if there is no change in the index, no action is taken.
+     */
+    public void saveState() {
+        indexExecutor.execute(storeIndex);
+    }
+
+    @Override
+    public void onPodcastLoaded(final Podcast podcast) {
+        if (podcast != null)
+            indexExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    index.update(podcast);
+                    onIndexChanged();
+                }
+            });
+    }
+
+    @Override
+    public void onPodcastRemoved(final Podcast podcast) {
+        if (podcast != null)
+            removeFromIndex(podcast.getUrl());
+    }
+
+    @Override
+    public void onPodcastMoved(Podcast podcast, String newUrl) {
+        // The podcast is indexed under its new URL once it loads from there
+        if (podcast != null)
+            removeFromIndex(podcast.getUrl());
+    }
+
+    @Override
+    public void onPodcastAdded(Podcast podcast) {
+        // pass, the podcast is indexed once loaded
+    }
+
+    @Override
+    public void onPodcastLoadProgress(Podcast podcast, Progress progress) {
+        // pass
+    }
+
+    @Override
+    public void onPodcastLoadFailed(Podcast podcast, PodcastLoadError code) {
+        // pass
+    }
+
+    private void removeFromIndex(final String podcastUrl) {
+        indexExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                index.remove(podcastUrl);
+                onIndexChanged();
+            }
+        });
+    }
+
+    /**
+     * Mark the index changed and (re-)schedule writing it. Only call this
+     * on the executor's thread.
+     */
+    private void onIndexChanged() {
+        indexChanged = true;
+
+        if (delayedStore != null)
+            delayedStore.cancel(false);
+        delayedStore = indexExecutor.schedule(storeIndex, STORE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private File getIndexFile() {
+        return new File(podcatcher.getFilesDir(), INDEX_FILENAME);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null)
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing we can do here
+            }
+    }
+}
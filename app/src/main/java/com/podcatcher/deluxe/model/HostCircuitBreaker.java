@@ -0,0 +1,195 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the hosts podcast feeds fail to load from. Once several feeds
+ * on the same host failed within a short time, the host is considered down and
+ * the circuit "opens": background refreshes for all feeds on that host are held
+ * back until the circuit's open time is up. After that, a single trial load is
+ * allowed. If it succeeds, the circuit closes again, otherwise it opens for
+ * twice the time (up to a maximum).
+ * <p>
+ * This class does not load anything itself, report outcomes via
+ * {@link #onSuccess(String)} and {@link #onFailure(String)} and ask
+ * {@link #allowRequest(String)} before starting a background load.
+ * </p>
+ */
+public class HostCircuitBreaker {
+
+    /**
+     * The number of failures within {@link #FAILURE_WINDOW} that open the circuit
+     */
+    public static final int FAILURE_THRESHOLD = 3;
+    /**
+     * The time window failures are counted in (millis)
+     */
+    public static final long FAILURE_WINDOW = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * The time a circuit stays open after first tripping (millis)
+     */
+    public static final long MIN_OPEN_TIME = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * The maximum time a circuit stays open (millis)
+     */
+    public static final long MAX_OPEN_TIME = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * The state of the hosts with recent failures, hosts not in here are fine
+     */
+    private final Map<String, HostState> hosts = new HashMap<>();
+
+    /**
+     * The failure state of a host
+     */
+    private static class HostState {
+
+        /**
+         * The number of failures in the current window
+         */
+        private int failures;
+        /**
+         * The start of the current failure window
+         */
+        private long windowStart;
+        /**
+         * The number of times the circuit opened in a row
+         */
+        private int trips;
+        /**
+         * The point in time the circuit is open until, zero if closed
+         */
+        private long openUntil;
+        /**
+         * The point in time the trial request in the half-open state started,
+         * zero if there is none
+         */
+        private long trialStartedAt;
+    }
+
+    /**
+     * Check whether a request to the given host should be started. If the
+     * circuit is half-open, this will let exactly one (trial) request through,
+     * unless that request did not report back within {@link #MIN_OPEN_TIME}.
+     *
+     * @param host The host to check, <code>null</code> is always allowed.
+     * @return <code>false</code> iff the circuit for the host is open.
+     */
+    public synchronized boolean allowRequest(@Nullable String host) {
+        final HostState state = host == null ? null : hosts.get(host);
+        final long now = now();
+
+        if (state == null || state.openUntil == 0)
+            return true;
+        else if (now < state.openUntil ||
+                (state.trialStartedAt > 0 && now - state.trialStartedAt < MIN_OPEN_TIME))
+            return false;
+        else {
+            state.trialStartedAt = now;
+            return true;
+        }
+    }
+
+    /**
+     * @param host The host to check.
+     * @return The point in time (epoch millis) the host will be tried
+     * again or zero if the circuit is closed.
+     */
+    public synchronized long getOpenUntil(@Nullable String host) {
+        final HostState state = host == null ? null : hosts.get(host);
+
+        return state == null ? 0 : state.openUntil;
+    }
+
+    /**
+     * @return The number of hosts with open (or half-open) circuits.
+     */
+    public synchronized int getOpenCount() {
+        int count = 0;
+        for (HostState state : hosts.values())
+            if (state.openUntil > 0)
+                count++;
+
+        return count;
+    }
+
+    /**
+     * Report that a request to the host succeeded, this closes its circuit.
+     *
+     * @param host The host.
+     */
+    public synchronized void onSuccess(@Nullable String host) {
+        if (host != null)
+            hosts.remove(host);
+    }
+
+    /**
+     * Report that the host could not be reached. This might open its circuit.
+     *
+     * @param host The host.
+     */
+    public synchronized void onFailure(@Nullable String host) {
+        if (host == null)
+            return;
+
+        final long now = now();
+        HostState state = hosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            state.windowStart = now;
+            hosts.put(host, state);
+        }
+
+        // The trial request for a half-open circuit failed
+        if (state.openUntil > 0 && now >= state.openUntil)
+            trip(state, now);
+        // Circuit closed, count the failure (failures while open do not count)
+        else if (state.openUntil == 0) {
+            if (now - state.windowStart > FAILURE_WINDOW) {
+                state.windowStart = now;
+                state.failures = 0;
+            }
+
+            if (++state.failures >= FAILURE_THRESHOLD)
+                trip(state, now);
+        }
+    }
+
+    /**
+     * @return The current point in time (epoch millis), sub-classes might
+     * use a clock of their own.
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void trip(HostState state, long now) {
+        state.trips++;
+        state.openUntil = now + Math.min(MAX_OPEN_TIME,
+                MIN_OPEN_TIME << Math.min(state.trips - 1, 16));
+        state.trialStartedAt = 0;
+        state.failures = 0;
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The executor used to load podcasts. Other than a plain fixed thread pool,
+ * this does not run queued loads first-in-first-out, but by their
+ * {@link Priority}: A podcast the user is looking at does not have to wait
+ * for all the background refreshes queued before it. Loads within the same
+ * priority run in the order submitted.
+ * <p>
+ * <b>Usage:</b> Use {@link #lane(Podcast, Priority)} to get the executor to
+ * run a podcast's load task on. Once queued, the load can be moved to a
+ * higher priority via {@link #promote(Podcast, Priority)} or dropped from
+ * the queue via {@link #remove(Podcast)}.
+ * </p>
+ */
+public class PodcastLoadExecutor extends ThreadPoolExecutor {
+
+    /**
+     * The priorities (lanes) podcast loads run in, highest first
+     */
+    public enum Priority {
+        /**
+         * The podcast is shown to the user
+         */
+        VISIBLE,
+
+        /**
+         * The user explicitly asked for a refresh
+         */
+        USER_REFRESH,
+
+        /**
+         * Background refresh, nobody is waiting for it
+         */
+        BACKGROUND
+    }
+
+    /**
+     * The sequence used to keep loads with the same priority in order
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * The loads queued, but not yet started, by podcast
+     */
+    private final Map<Podcast, QueuedLoad> queued = new HashMap<>();
+
+    /**
+     * A podcast load waiting in the queue
+     */
+    private class QueuedLoad implements Runnable, Comparable<QueuedLoad> {
+
+        /**
+         * The podcast loaded, might be <code>null</code> for other work
+         */
+        private final Podcast podcast;
+        /**
+         * The actual work to do
+         */
+        private final Runnable load;
+        /**
+         * The load's current priority
+         */
+        private Priority priority;
+        /**
+         * The load's position within its priority
+         */
+        private long position;
+
+        private QueuedLoad(Podcast podcast, Priority priority, Runnable load) {
+            this.podcast = podcast;
+            this.load = load;
+            this.priority = priority;
+            this.position = sequence.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            load.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull QueuedLoad another) {
+            if (priority != another.priority)
+                return priority.compareTo(another.priority);
+            else
+                return position < another.position ? -1 : (position == another.position ? 0 : 1);
+        }
+    }
+
+    /**
+     * Create the executor.
+     *
+     * @param threadCount   The number of loads to run in parallel.
+     * @param threadFactory The factory to create the loader threads.
+     */
+    public PodcastLoadExecutor(int threadCount, ThreadFactory threadFactory) {
+        super(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), threadFactory);
+    }
+
+    /**
+     * Get the executor to hand a podcast's load task to (e.g. via
+     * {@link android.os.AsyncTask#executeOnExecutor(Executor, Object[])}).
+     *
+     * @param podcast  The podcast the task will load.
+     * @param priority The priority to queue the load with.
+     * @return An executor queueing all work given to it with the priority set.
+     */
+    public Executor lane(@NonNull final Podcast podcast, @NonNull final Priority priority) {
+        return new Executor() {
+
+            @Override
+            public void execute(@NonNull Runnable load) {
+                final QueuedLoad queuedLoad = new QueuedLoad(podcast, priority, load);
+
+                synchronized (queued) {
+                    queued.put(podcast, queuedLoad);
+                }
+
+                try {
+                    PodcastLoadExecutor.super.execute(queuedLoad);
+                } catch (RejectedExecutionException ree) {
+                    synchronized (queued) {
+                        if (queued.get(podcast) == queuedLoad)
+                            queued.remove(podcast);
+                    }
+
+                    throw ree;
+                }
+            }
+        };
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        // Work not coming through a lane runs in the background lane
+        super.execute(command instanceof QueuedLoad ? command :
+                new QueuedLoad(null, Priority.BACKGROUND, command));
+    }
+
+    /**
+     * Move the podcast's load to a higher priority, if it is still queued.
+     * Loads already running or queued with a higher priority are not affected.
+     *
+     * @param podcast  The podcast to promote.
+     * @param priority The new priority.
+     * @return <code>true</code> iff the load was promoted.
+     */
+    public boolean promote(@NonNull Podcast podcast, @NonNull Priority priority) {
+        synchronized (queued) {
+            final QueuedLoad queuedLoad = queued.get(podcast);
+
+            // Not queued or already good enough
+            if (queuedLoad == null || queuedLoad.priority.compareTo(priority) <= 0)
+                return false;
+
+            // The queue does not re-sort on changes, re-insert
+            if (getQueue().remove(queuedLoad)) {
+                queuedLoad.priority = priority;
+                queuedLoad.position = sequence.getAndIncrement();
+                getQueue().add(queuedLoad);
+
+                return true;
+            } else
+                return false;
+        }
+    }
+
+    /**
+     * Drop the podcast's load from the queue, if it has not started yet.
+     *
+     * @param podcast The podcast to drop.
+     * @return <code>true</code> iff the load was still queued and is removed.
+     */
+    public boolean remove(@NonNull Podcast podcast) {
+        synchronized (queued) {
+            final QueuedLoad queuedLoad = queued.remove(podcast);
+
+            return queuedLoad != null && getQueue().remove(queuedLoad);
+        }
+    }
+
+    /**
+     * @param podcast  The podcast to check.
+     * @param priority The priority to check.
+     * @return <code>true</code> iff the podcast's load is queued with the given priority.
+     */
+    public boolean isQueued(@NonNull Podcast podcast, @NonNull Priority priority) {
+        synchronized (queued) {
+            final QueuedLoad queuedLoad = queued.get(podcast);
+
+            return queuedLoad != null && queuedLoad.priority == priority;
+        }
+    }
+
+    /**
+     * @param priority The priority to count.
+     * @return The number of loads queued with the given priority.
+     */
+    public int getQueuedCount(@NonNull Priority priority) {
+        int count = 0;
+
+        synchronized (queued) {
+            for (QueuedLoad queuedLoad : queued.values())
+                if (queuedLoad.priority == priority)
+                    count++;
+        }
+
+        return count;
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable runnable) {
+        super.beforeExecute(thread, runnable);
+
+        // The load is not queued anymore
+        final QueuedLoad started = (QueuedLoad) runnable;
+        if (started.podcast != null)
+            synchronized (queued) {
+                if (queued.get(started.podcast) == started)
+                    queued.remove(started.podcast);
+            }
+    }
+}
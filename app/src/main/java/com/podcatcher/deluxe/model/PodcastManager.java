@@ -22,9 +22,11 @@ import com.podcatcher.deluxe.BuildConfig;
 import com.podcatcher.deluxe.GetRestrictionsReceiver;
 import com.podcatcher.deluxe.Podcatcher;
 import com.podcatcher.deluxe.SettingsActivity;
+import com.podcatcher.deluxe.model.PodcastLoadExecutor.Priority;
 import com.podcatcher.deluxe.listeners.OnChangePodcastListListener;
 import com.podcatcher.deluxe.listeners.OnLoadPodcastListListener;
 import com.podcatcher.deluxe.listeners.OnLoadPodcastListener;
+import com.podcatcher.deluxe.listeners.OnLoadPodcastPageListener;
 import com.podcatcher.deluxe.model.tasks.StorePodcastListTask;
 import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask;
 import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
@@ -46,14 +48,14 @@ import org.xmlpull.v1.XmlPullParser;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -66,7 +68,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * sub-class only, there is never more than one instance of this around. You
  * should never have to create this yourself.
  */
-public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastListener {
+public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastListener,
+        OnLoadPodcastPageListener, PodcastUpdateScheduler.OnPodcastDueListener, PodcastDirectory {
 
     /**
      * The time podcast content is buffered on non-mobile connections (in
@@ -99,19 +102,53 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * The list of podcasts we know
      */
     private List<Podcast> podcastList;
+    /**
+     * The podcast list as handed out, replaced on each change
+     */
+    private volatile ListSnapshot<Podcast> podcastSnapshot = ListSnapshot.empty();
+    /**
+     * The podcasts and their episodes by URL, kept in step with the list
+     */
+    private final PodcastIndex podcastIndex = new PodcastIndex();
     /**
      * Flag to indicate whether podcast list is dirty
      */
     private boolean podcastListChanged;
 
     /**
-     * An {@link java.util.concurrent.Executor} for loading podcasts in parallel.
+     * The {@link PodcastLoadExecutor} for loading podcasts in parallel (by priority).
+     */
+    public final PodcastLoadExecutor loadPodcastExecutor;
+    /**
+     * The podcasts currently loading (or queued) and their load tasks
+     */
+    private final Map<Podcast, LoadPodcastTask> loadingPodcasts =
+            Collections.synchronizedMap(new HashMap<Podcast, LoadPodcastTask>());
+    /**
+     * The scheduler for background podcast refreshes
+     */
+    private final PodcastUpdateScheduler updateScheduler;
+    /**
+     * Time to wait before retrying a background refresh that could not run (in milliseconds)
+     */
+    private static final long UPDATE_RETRY_DELAY = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * The circuit breaker holding back background refreshes for hosts that are down
+     */
+    private final HostCircuitBreaker circuitBreaker = new HostCircuitBreaker();
+    /**
+     * The byte budget for background refreshes on metered connections, off
+     * until the user can change it, so only podcasts never loaded are refreshed
      */
-    public final Executor loadPodcastExecutor;
+    private final BandwidthBudget meteredBudget = new BandwidthBudget(0, 0);
     /**
-     * The podcasts currently loading
+     * The bytes reserved from the metered budget by podcasts loading
      */
-    private final Set<Podcast> loadingPodcasts = Collections.synchronizedSet(new HashSet<Podcast>());
+    private final Map<Podcast, Long> meteredReservations = new ConcurrentHashMap<>();
+    /**
+     * The feed size assumed for podcasts we do not know the size of (bytes)
+     */
+    private static final long DEFAULT_FEED_SIZE = 100 * 1024;
 
     /**
      * The call-back set for the podcast list load listeners
@@ -163,13 +200,15 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         // for lengthy podcast feed downloads to finish before their async tasks
         // can run on the default executor.
         final int threadCount = Runtime.getRuntime().availableProcessors() + 2;
-        this.loadPodcastExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+        this.loadPodcastExecutor = new PodcastLoadExecutor(threadCount, new ThreadFactory() {
             private final AtomicInteger count = new AtomicInteger(1);
 
             public Thread newThread(@NonNull Runnable r) {
                 return new Thread(r, "LoadPodcastTask #" + count.getAndIncrement());
             }
         });
+        // Init the background refresh scheduler, this is started once the podcast list is available
+        this.updateScheduler = new PodcastUpdateScheduler(this);
     }
 
     /**
@@ -214,19 +253,22 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         // Put some nice sample podcasts for testing
         if (BuildConfig.DEBUG)
             putSamplePodcasts();
+        podcastIndex.reset(podcastList);
+        podcastSnapshot = podcastSnapshot.next(podcastList);
 
         // Alert call-backs (if any)
         for (OnLoadPodcastListListener listener : loadPodcastListListeners)
             listener.onPodcastListLoaded(getPodcastList(), input);
 
-        // Run podcast update task every five minutes
+        // Schedule background refreshes for all podcasts
         final boolean isSelectAllOnStart = PreferenceManager.getDefaultSharedPreferences(
                 podcatcher.getApplicationContext()).getBoolean(
                 SettingsActivity.KEY_SELECT_ALL_ON_START, false);
-        new Timer().schedule(new PodcastUpdateTask(),
-                isSelectAllOnStart || BuildConfig.DEBUG ?
-                        TimeUnit.MINUTES.toMillis(5) : 0, TimeUnit.MINUTES.toMillis(5)
-        );
+        updateScheduler.clear();
+        for (Podcast podcast : podcastList)
+            updateScheduler.schedule(podcast);
+        updateScheduler.start(isSelectAllOnStart || BuildConfig.DEBUG ?
+                TimeUnit.MINUTES.toMillis(5) : 0);
     }
 
     @Override
@@ -238,21 +280,18 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
 
     /**
      * Get the list of podcast currently known. This will come as a sorted,
-     * shallow-copied list. Use the <code>add</code> and <code>remove</code>
-     * methods to alter it. The method will return <code>null</code> if the list
+     * immutable snapshot that does not change when podcasts are added or
+     * removed later. Use the <code>add</code> and <code>remove</code> methods
+     * to alter the list, and compare the snapshot's version to find out
+     * whether it changed. The method will return <code>null</code> if the list
      * in not available yet (we are still starting up), you should register a
      * load listener to be notified on load completion.
      *
      * @return The podcast list, or <code>null</code> if not available.
      * @see OnLoadPodcastListListener
      */
-    public List<Podcast> getPodcastList() {
-        if (podcastList == null)
-            return null;
-            // return copy in order to make sure
-            // nobody changes this list on us.
-        else
-            return new ArrayList<>(podcastList);
+    public ListSnapshot<Podcast> getPodcastList() {
+        return podcastList == null ? null : podcastSnapshot;
     }
 
     /**
@@ -274,6 +313,9 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * method will return immediately. Implement the appropriate call-back to
      * monitor the load process and to get its result. Note that the async task
      * might be held back until the episode metadata has finished loading.
+     * Since the podcast is expected to be shown to the user, its load skips the
+     * queue of background refreshes. If the podcast is already queued for loading,
+     * the load is moved up accordingly.
      *
      * @param podcast     Podcast to load.
      * @param forceReload If <code>true</code>, the podcast will be refreshed from the
@@ -282,12 +324,16 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @see EpisodeManager#blockUntilEpisodeMetadataIsLoaded()
      */
     public void load(Podcast podcast, boolean forceReload) {
+        final Priority priority = forceReload ? Priority.USER_REFRESH : Priority.VISIBLE;
+
         if (!forceReload && !shouldReload(podcast))
             onPodcastLoaded(podcast);
         else synchronized (loadingPodcasts) {
-            if (!loadingPodcasts.contains(podcast))
+            if (loadingPodcasts.containsKey(podcast))
+                loadPodcastExecutor.promote(podcast, priority);
+            else
                 try {
-                    enqueueLoadPodcastTask(podcast);
+                    enqueueLoadPodcastTask(podcast, priority);
                 } catch (RejectedExecutionException ree) {
                     // Skip update
                     onPodcastLoadFailed(podcast, PodcastLoadError.UNKNOWN);
@@ -295,6 +341,58 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         }
     }
 
+    /**
+     * Cancel loading the given podcast. If the load is still queued, it is
+     * dropped, if it is already running, it is aborted. Listeners will be
+     * alerted via {@link OnLoadPodcastListener#onPodcastLoadFailed(Podcast, PodcastLoadError)}
+     * with the code set to {@link PodcastLoadError#CANCELLED} once the task has
+     * stopped. Until then, the podcast counts as loading, so no other load can
+     * start writing to it concurrently. The podcast keeps any content loaded
+     * earlier. Nothing happens if the podcast is not loading or its load is
+     * already cancelled. Call this on the main thread.
+     *
+     * @param podcast Podcast to stop loading.
+     * @return <code>true</code> iff the podcast was loading and is cancelled.
+     */
+    public boolean cancelLoad(Podcast podcast) {
+        synchronized (loadingPodcasts) {
+            final LoadPodcastTask task = loadingPodcasts.get(podcast);
+            if (task == null || task.isCancelled())
+                return false;
+
+            loadPodcastExecutor.remove(podcast);
+            // The task reports back via onPodcastLoadFailed(), which
+            // will remove the podcast from the set of loading podcasts
+            task.cancelLoad();
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancel all background refreshes that have not started yet.
+     * This does not affect any loads the user is waiting for.
+     *
+     * @return The number of loads cancelled.
+     * @see #cancelLoad(Podcast)
+     */
+    public int cancelBackgroundLoads() {
+        final List<Podcast> background = new ArrayList<>();
+
+        synchronized (loadingPodcasts) {
+            for (Podcast podcast : loadingPodcasts.keySet())
+                if (loadPodcastExecutor.isQueued(podcast, Priority.BACKGROUND))
+                    background.add(podcast);
+        }
+
+        int count = 0;
+        for (Podcast podcast : background)
+            if (cancelLoad(podcast))
+                count++;
+
+        return count;
+    }
+
     /**
      * Check whether a podcast is currently loading.
      *
@@ -302,7 +400,7 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @return <code>true</code> iff loading.
      */
     public boolean isLoading(Podcast podcast) {
-        return loadingPodcasts.contains(podcast);
+        return loadingPodcasts.containsKey(podcast);
     }
 
     /**
@@ -312,6 +410,76 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         return loadingPodcasts.size();
     }
 
+    /**
+     * @return The background refresh schedule, ordered by due date.
+     * @see PodcastUpdateScheduler
+     */
+    public List<PodcastUpdateScheduler.Refresh> getRefreshSchedule() {
+        return updateScheduler.getSchedule();
+    }
+
+    @Override
+    public void onPodcastsDue(List<Podcast> podcasts) {
+        // We block on the loading set to avoid it being modified concurrently and
+        // to make sure each podcast is only loaded once
+        synchronized (loadingPodcasts) {
+            final long now = System.currentTimeMillis();
+            List<Podcast> refresh = new ArrayList<>();
+
+            for (Podcast podcast : podcasts)
+                // We need to be online, if the podcast is already
+                // loading, the load will re-schedule the podcast once done
+                if (!podcatcher.isOnline())
+                    updateScheduler.schedule(podcast, now + UPDATE_RETRY_DELAY);
+                else if (!loadingPodcasts.containsKey(podcast))
+                    refresh.add(podcast);
+
+            // On metered connections, only refresh what the budget allows
+            if (podcatcher.isOnMeteredConnection())
+                refresh = selectWithinBudget(refresh, now);
+
+            for (Podcast podcast : refresh) {
+                final String host = getHost(podcast);
+
+                // The podcast's host seems to be down, do not waste a thread on it
+                if (!circuitBreaker.allowRequest(host)) {
+                    releaseReservation(podcast);
+
+                    final long openUntil = circuitBreaker.getOpenUntil(host);
+                    updateScheduler.schedule(podcast, openUntil > now ? openUntil : now + UPDATE_RETRY_DELAY);
+                } else
+                    try {
+                        enqueueLoadPodcastTask(podcast, Priority.BACKGROUND);
+                    } catch (RejectedExecutionException ree) {
+                        releaseReservation(podcast);
+                        updateScheduler.schedule(podcast, now + UPDATE_RETRY_DELAY);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Set the byte budget for background refreshes on metered connections. Refreshes
+     * are ranked by the likelihood of new episodes per byte and run until the budget
+     * is used up. Podcasts that have never been loaded are always refreshed.
+     * The budget is zero (off) unless set here.
+     *
+     * @param hourlyBytes The bytes to spend per hour, zero turns background refreshes
+     *                    on metered connections off.
+     * @param dailyBytes  The bytes to spend per day.
+     */
+    public void setMeteredRefreshBudget(long hourlyBytes, long dailyBytes) {
+        meteredBudget.setLimits(hourlyBytes, dailyBytes);
+    }
+
+    /**
+     * @return The bytes background refreshes on metered connections can
+     * still use right now.
+     */
+    public long getMeteredRefreshBudgetRemaining() {
+        return meteredBudget.getRemaining();
+    }
+
     @Override
     public void onPodcastLoadProgress(Podcast podcast, Progress progress) {
         // Notify listeners
@@ -319,10 +487,21 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
             listener.onPodcastLoadProgress(podcast, progress);
     }
 
+    @Override
+    public void onPodcastPageLoaded(Podcast podcast, List<Episode> newEpisodes) {
+        // Make the episodes loaded so far available for lookup
+        podcastIndex.update(podcast);
+
+        // Notify listeners interested in partial results
+        for (OnLoadPodcastListener listener : loadPodcastListeners)
+            if (listener instanceof OnLoadPodcastPageListener)
+                ((OnLoadPodcastPageListener) listener).onPodcastPageLoaded(podcast, newEpisodes);
+    }
+
     @Override
     public void onPodcastMoved(Podcast podcast, String newUrl) {
         // Remove from the set of loading task
-        loadingPodcasts.remove(podcast);
+        onLoadFinished(podcast);
 
         final Podcast newPodcast = new Podcast(podcast.getName(), newUrl);
         newPodcast.setUsername(podcast.getUsername());
@@ -330,9 +509,13 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
 
         // Replace podcast and load new version
         if (podcastList.contains(podcast)) {
-            podcastList.remove(podcastList.indexOf(podcast));
+            podcastIndex.remove(podcastList.remove(podcastList.indexOf(podcast)));
             podcastList.add(newPodcast);
+            podcastIndex.add(newPodcast);
+            updateScheduler.remove(podcast);
+            updateScheduler.schedule(newPodcast);
             Collections.sort(podcastList);
+            podcastSnapshot = podcastSnapshot.next(podcastList);
 
             // Mark podcast list dirty
             podcastListChanged = true;
@@ -349,9 +532,17 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     @Override
     public void onPodcastLoaded(Podcast podcast) {
         // Remove from the set of loading task
-        loadingPodcasts.remove(podcast);
+        final boolean loadedFromRemote = onLoadFinished(podcast);
         // Clear the failed count for this podcast
         podcast.resetFailedLoadAttempts();
+        // The podcast's host is fine (unless we did not even ask it)
+        if (loadedFromRemote)
+            circuitBreaker.onSuccess(getHost(podcast));
+        // The episodes have changed, update the lookup
+        podcastIndex.update(podcast);
+        // Plan the next background refresh based on the new content
+        if (podcastList != null && podcastList.contains(podcast))
+            updateScheduler.schedule(podcast);
 
         // Notify listeners
         if (blockExplicit && podcast.isExplicit())
@@ -364,9 +555,28 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     @Override
     public void onPodcastLoadFailed(Podcast podcast, PodcastLoadError code) {
         // Remove from the set of loading task
-        loadingPodcasts.remove(podcast);
-        // Increment the failed load attempt count
-        podcast.incrementFailedLoadAttempts();
+        onLoadFinished(podcast);
+        // Pages loaded before the failure might have changed the episodes
+        podcastIndex.update(podcast);
+
+        // Cancelled loads did not fail, they just need to happen later
+        if (code == PodcastLoadError.CANCELLED) {
+            if (podcastList != null && podcastList.contains(podcast))
+                updateScheduler.schedule(podcast, System.currentTimeMillis() + UPDATE_RETRY_DELAY);
+        } else {
+            // Increment the failed load attempt count
+            podcast.incrementFailedLoadAttempts();
+            // Keep track of hosts that are down, failures while we are offline do not count
+            if (code == PodcastLoadError.NOT_REACHABLE) {
+                if (podcatcher.isOnline())
+                    circuitBreaker.onFailure(getHost(podcast));
+            } else if (code != PodcastLoadError.UNKNOWN)
+                circuitBreaker.onSuccess(getHost(podcast));
+            // Back off, even if the podcast has never been loaded
+            if (podcastList != null && podcastList.contains(podcast))
+                updateScheduler.schedule(podcast, System.currentTimeMillis() +
+                        PodcastUpdateScheduler.getRetryDelay(code, podcast.getFailedLoadAttemptCount()));
+        }
 
         // Notify listeners
         for (OnLoadPodcastListener listener : loadPodcastListeners)
@@ -388,6 +598,9 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
             // Add the new podcast
             podcastList.add(newPodcast);
             Collections.sort(podcastList);
+            podcastSnapshot = podcastSnapshot.next(podcastList);
+            podcastIndex.add(newPodcast);
+            updateScheduler.schedule(newPodcast);
 
             // Make sure podcast is loaded, if that did not yet happen
             load(newPodcast, false);
@@ -413,6 +626,9 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         if (index >= 0 && index < size()) {
             // Remove podcast at given position
             Podcast removedPodcast = podcastList.remove(index);
+            podcastSnapshot = podcastSnapshot.next(podcastList);
+            podcastIndex.remove(removedPodcast);
+            updateScheduler.remove(removedPodcast);
 
             // Alert listeners of removed podcast
             for (OnChangePodcastListListener listener : changePodcastListListeners)
@@ -459,7 +675,7 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         if (podcastListChanged && podcastList != null) {
             final StorePodcastListTask task = new StorePodcastListTask(podcatcher, null);
             task.setWriteAuthorization(true);
-            task.execute(new ArrayList<>(podcastList));
+            task.execute(podcastSnapshot);
 
             // Reset the flag, so the list will only be saved if changed again
             podcastListChanged = false;
@@ -521,15 +737,10 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @param url URL of podcast to look up.
      * @return The podcast object, or <code>null</code> if not found.
      */
+    @Override
     public Podcast findPodcastForUrl(String url) {
         // Make sure search only runs once the podcast list is actually available.
-        if (podcastList != null && url != null)
-            // Find the podcast object
-            for (Podcast podcast : podcastList)
-                if (podcast.equalByUrl(url))
-                    return podcast;
-
-        return null;
+        return podcastList != null ? podcastIndex.findPodcastForUrl(url) : null;
     }
 
     /**
@@ -541,14 +752,7 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      */
     public Episode findEpisodeForUrl(String url) {
         // Make sure search only runs once the podcast list is actually available.
-        if (podcastList != null && url != null)
-            // Go try find the episode
-            for (Podcast podcast : podcastList)
-                for (Episode episode : podcast.getEpisodes())
-                    if (episode.equalByUrl(url))
-                        return episode;
-
-        return null;
+        return podcastList != null ? podcastIndex.findEpisodeForUrl(url) : null;
     }
 
     /**
@@ -559,23 +763,10 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
      * @param podcastUrl URL of the podcast to look in.
      * @return The episode object, or <code>null</code> if not found.
      */
+    @Override
     public Episode findEpisodeForUrl(String episodeUrl, String podcastUrl) {
         // Make sure search only runs once the podcast list is actually available.
-        if (podcastList != null && episodeUrl != null) {
-            // No podcast info given, use regular method
-            if (podcastUrl == null)
-                return findEpisodeForUrl(episodeUrl);
-            else {
-                final Podcast podcast = findPodcastForUrl(podcastUrl);
-                // Go try find the episode
-                if (podcast != null)
-                    for (Episode episode : podcast.getEpisodes())
-                        if (episode.equalByUrl(episodeUrl))
-                            return episode;
-            }
-        }
-
-        return null;
+        return podcastList != null ? podcastIndex.findEpisodeForUrl(episodeUrl, podcastUrl) : null;
     }
 
     /**
@@ -641,15 +832,18 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
     /**
      * Create, prepare and run {@link LoadPodcastTask} on our loadPodcastExecutor.
      *
-     * @param podcast Podcast to load.
+     * @param podcast  Podcast to load.
+     * @param priority The priority to queue the load with.
      */
-    private void enqueueLoadPodcastTask(Podcast podcast) {
+    private void enqueueLoadPodcastTask(Podcast podcast, Priority priority) {
         // Download podcast RSS feed (async)
         final LoadPodcastTask task = new LoadPodcastTask(this);
         task.setBlockExplicitEpisodes(blockExplicit);
         // We will accept stale versions from the cache in certain situations
         task.setMaxStale(podcatcher.isOnline() ? podcatcher.isOnMeteredConnection() ?
                 MAX_STALE_MOBILE : MAX_STALE : MAX_STALE_OFFLINE);
+        // Allow the task to detect unchanged feeds and skip parsing them
+        task.setSpoolDirectory(podcatcher.getCacheDir());
 
         final boolean syncActive = SyncManager.getInstance().getActiveControllerCount() > 0;
         // If this is a new podcast and it returns empty, the user might have
@@ -661,10 +855,10 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         task.setReportPodcastMovedFromFeed(!syncActive);
 
         // Enqueue podcast load/refresh
-        task.executeOnExecutor(loadPodcastExecutor, podcast);
+        task.executeOnExecutor(loadPodcastExecutor.lane(podcast, priority), podcast);
 
         // Update the set of currently loading podcasts
-        loadingPodcasts.add(podcast);
+        loadingPodcasts.put(podcast, task);
     }
 
     /**
@@ -691,6 +885,94 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
         }
     }
 
+    /**
+     * Remove the podcast from the set of podcasts loading and account
+     * for the bytes its load used on metered connections.
+     *
+     * @param podcast The podcast done loading.
+     * @return <code>true</code> iff the podcast was actually loading.
+     */
+    private boolean onLoadFinished(Podcast podcast) {
+        final LoadPodcastTask task = loadingPodcasts.remove(podcast);
+        final Long reserved = meteredReservations.remove(podcast);
+
+        if (reserved != null || (task != null && podcatcher.isOnMeteredConnection()))
+            meteredBudget.settle(reserved == null ? 0 : reserved,
+                    task == null ? 0 : task.getBytesLoaded());
+
+        return task != null;
+    }
+
+    /**
+     * Rank the podcasts given by the likelihood of new episodes per byte and
+     * reserve the budget for as many of them as possible. Podcasts that do not fit
+     * the budget are re-scheduled for when more budget becomes available.
+     *
+     * @param podcasts The podcasts to refresh.
+     * @param now      The current point in time (epoch millis).
+     * @return The podcasts that should be refreshed.
+     */
+    private List<Podcast> selectWithinBudget(List<Podcast> podcasts, final long now) {
+        final List<Podcast> selected = new ArrayList<>();
+        final List<Podcast> ranked = new ArrayList<>();
+        final Map<Podcast, Double> values = new HashMap<>();
+
+        for (Podcast podcast : podcasts)
+            // Podcasts never loaded are always refreshed
+            if (podcast.getLastLoaded() == null)
+                selected.add(podcast);
+            else {
+                final double likelihood = PodcastUpdateScheduler.getNewEpisodeLikelihood(podcast,
+                        PodcastUpdateScheduler.estimatePublishingInterval(podcast), now);
+
+                values.put(podcast, likelihood / getExpectedFeedSize(podcast));
+                ranked.add(podcast);
+            }
+
+        // Best value first
+        Collections.sort(ranked, new Comparator<Podcast>() {
+
+            @Override
+            public int compare(Podcast lhs, Podcast rhs) {
+                return Double.compare(values.get(rhs), values.get(lhs));
+            }
+        });
+
+        // Greedily fill the budget, smaller feeds might still fit after a bigger one did not
+        for (Podcast podcast : ranked) {
+            final long expected = getExpectedFeedSize(podcast);
+
+            if (meteredBudget.tryReserve(expected)) {
+                meteredReservations.put(podcast, expected);
+                selected.add(podcast);
+            } else
+                updateScheduler.schedule(podcast,
+                        Math.max(meteredBudget.getReplenishedAt(), now + UPDATE_RETRY_DELAY));
+        }
+
+        return selected;
+    }
+
+    private void releaseReservation(Podcast podcast) {
+        final Long reserved = meteredReservations.remove(podcast);
+
+        if (reserved != null)
+            meteredBudget.settle(reserved, 0);
+    }
+
+    private long getExpectedFeedSize(Podcast podcast) {
+        return podcast.getFileSize() > 0 ? podcast.getFileSize() : DEFAULT_FEED_SIZE;
+    }
+
+    /**
+     * @param podcast Podcast to get the host for.
+     * @return The host the podcast's feed lives on or <code>null</code>
+     * if not available.
+     */
+    private String getHost(Podcast podcast) {
+        return podcast.getUrl() == null ? null : Uri.parse(podcast.getUrl()).getHost();
+    }
+
     /**
      * Check whether we are in a restricted profile and should filter out
      * podcasts (suggestions) with explicit content.
@@ -741,38 +1023,4 @@ public class PodcastManager implements OnLoadPodcastListListener, OnLoadPodcastL
 
         Collections.sort(podcastList);
     }
-
-    /**
-     * This is the background update task
-     */
-    private class PodcastUpdateTask extends TimerTask {
-
-        @Override
-        public void run() {
-            // We block on the loading set to avoid it being modified concurrently and
-            // to make sure each podcast is only loaded once
-            synchronized (loadingPodcasts) {
-                // There are some conditions here: We need to be online
-                // and no podcasts are currently loading
-                if (podcatcher.isOnline() && loadingPodcasts.isEmpty()) {
-                    // This is the current time minus the time to live for the podcast minus
-                    // some extra time to make sure we refresh before it is actually due
-                    final Date triggerIfLoadedBefore = new Date(new Date().getTime() -
-                            TIME_TO_LIVE - TimeUnit.MINUTES.toMillis(6)); // six minutes before reload
-
-                    // Test each podcast and schedule reload as needed
-                    for (Podcast podcast : podcastList)
-                        // There are more conditions here: The podcast has not been loaded
-                        // or, when on wifi, has not been loaded recently enough
-                        if (podcast.getLastLoaded() == null || (!podcatcher.isOnMeteredConnection() &&
-                                podcast.getLastLoaded().before(triggerIfLoadedBefore)))
-                            try {
-                                enqueueLoadPodcastTask(podcast);
-                            } catch (RejectedExecutionException ree) {
-                                // Skip update
-                            }
-                }
-            }
-        }
-    }
 }
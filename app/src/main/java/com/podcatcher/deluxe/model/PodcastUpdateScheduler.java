@@ -0,0 +1,495 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.tasks.remote.LoadPodcastTask.PodcastLoadError;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules background podcast refreshes. Each podcast gets its own point in
+ * time it is due for a refresh, estimated from the intervals between the
+ * publication dates of its episodes. The podcasts are kept in a priority queue
+ * ordered by their due date, and the scheduler only wakes up once the head of
+ * the queue is due. This way, a daily news show is refreshed much more often
+ * than a podcast publishing twice a year.
+ * <p>
+ * <b>Usage:</b> Add podcasts via {@link #schedule(Podcast)} (which will calculate
+ * the due date) or {@link #schedule(Podcast, long)}. Once due, the podcast is
+ * removed from the queue and handed to the {@link OnPodcastDueListener}, all
+ * podcasts due at the same time are handed over together. Make sure
+ * to re-schedule the podcast once it is loaded (or failed to load).
+ * </p>
+ */
+public class PodcastUpdateScheduler {
+
+    /**
+     * The minimum time between two refreshes of a podcast (in milliseconds)
+     */
+    public static final long MIN_REFRESH_INTERVAL = PodcastManager.TIME_TO_LIVE;
+    /**
+     * The maximum time between two refreshes of a podcast (in milliseconds),
+     * even if the podcast does not seem to publish anything new in the meantime
+     */
+    public static final long MAX_REFRESH_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    /**
+     * The time to wait before retrying a podcast that could not be reached
+     * (or failed for unknown reasons) for the first time (in milliseconds)
+     */
+    public static final long RETRY_DELAY_NOT_REACHABLE = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * The time to wait before retrying a podcast that could not be parsed
+     * for the first time (in milliseconds)
+     */
+    public static final long RETRY_DELAY_NOT_PARSABLE = TimeUnit.HOURS.toMillis(1);
+    /**
+     * The number of most recent publication intervals considered for the estimate
+     */
+    private static final int INTERVAL_SAMPLE_SIZE = 10;
+
+    /**
+     * The call-back interface for podcasts due for refresh.
+     */
+    public interface OnPodcastDueListener {
+
+        /**
+         * Called on the scheduler's thread when podcasts are due for refresh.
+         * The podcasts are not in the scheduler's queue anymore.
+         *
+         * @param podcasts The podcasts due, in the order they became due.
+         */
+        void onPodcastsDue(List<Podcast> podcasts);
+    }
+
+    /**
+     * An entry in the refresh schedule.
+     */
+    public static class Refresh implements Comparable<Refresh> {
+
+        /**
+         * The podcast to refresh
+         */
+        private final Podcast podcast;
+        /**
+         * When the podcast is due (epoch millis)
+         */
+        private final long dueAt;
+        /**
+         * The estimated publishing interval (millis), -1 if unknown
+         */
+        private final long publishingInterval;
+
+        private Refresh(Podcast podcast, long dueAt, long publishingInterval) {
+            this.podcast = podcast;
+            this.dueAt = dueAt;
+            this.publishingInterval = publishingInterval;
+        }
+
+        /**
+         * @return The podcast to refresh.
+         */
+        public Podcast getPodcast() {
+            return podcast;
+        }
+
+        /**
+         * @return The point in time the podcast is due for refresh.
+         */
+        public Date getDueAt() {
+            return new Date(dueAt);
+        }
+
+        /**
+         * @return The estimated time between two episodes of the podcast (in
+         * milliseconds) or -1 if not available.
+         */
+        public long getPublishingInterval() {
+            return publishingInterval;
+        }
+
+        @Override
+        public int compareTo(@NonNull Refresh another) {
+            return dueAt < another.dueAt ? -1 : (dueAt == another.dueAt ? 0 : 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s due at %s (publishes every %d minutes)",
+                    podcast, new Date(dueAt), publishingInterval < 0 ? -1 :
+                            TimeUnit.MILLISECONDS.toMinutes(publishingInterval));
+        }
+    }
+
+    /**
+     * The listener to alert when podcasts are due
+     */
+    private final OnPodcastDueListener listener;
+    /**
+     * The schedule, ordered by due date
+     */
+    private final PriorityQueue<Refresh> queue = new PriorityQueue<>();
+    /**
+     * The podcasts scheduled and their entry in the queue
+     */
+    private final Map<Podcast, Refresh> scheduled = new HashMap<>();
+    /**
+     * The executor we use to wake up when the head of the queue is due
+     */
+    private final ScheduledThreadPoolExecutor executor;
+    /**
+     * The pending wake-up, if any
+     */
+    private ScheduledFuture<?> wakeUp;
+    /**
+     * The point in time the pending wake-up fires
+     */
+    private long wakeUpAt = Long.MAX_VALUE;
+    /**
+     * The point in time before which the scheduler will not wake up
+     */
+    private long startAt = Long.MAX_VALUE;
+
+    /**
+     * The runnable handing out all podcasts due
+     */
+    private final Runnable dispatchDuePodcasts = new Runnable() {
+
+        @Override
+        public void run() {
+            final List<Podcast> due = new ArrayList<>();
+
+            synchronized (PodcastUpdateScheduler.this) {
+                wakeUp = null;
+                wakeUpAt = Long.MAX_VALUE;
+
+                final long now = System.currentTimeMillis();
+                while (!queue.isEmpty() && queue.peek().dueAt <= now)
+                    due.add(removeHead());
+
+                rearm();
+            }
+
+            // Alert the listener outside the lock, it will most likely
+            // re-schedule podcasts and might hold locks of its own
+            if (!due.isEmpty())
+                listener.onPodcastsDue(due);
+        }
+    };
+
+    /**
+     * Create a new scheduler. It will not wake up before {@link #start(long)}
+     * is called.
+     *
+     * @param listener The call-back to alert when podcasts are due.
+     */
+    public PodcastUpdateScheduler(@NonNull OnPodcastDueListener listener) {
+        this.listener = listener;
+
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                final Thread thread = new Thread(r, "PodcastUpdateScheduler");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+        // We re-arm the wake-up quite often, do not keep cancelled runs around,
+        // older platforms do not have this and get purged in rearm() instead
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+            executor.setRemoveOnCancelPolicy(true);
+
+        this.executor = executor;
+    }
+
+    /**
+     * Start handing out podcasts that are due.
+     *
+     * @param initialDelay Time to wait before the first podcast is handed out (millis).
+     */
+    public synchronized void start(long initialDelay) {
+        this.startAt = System.currentTimeMillis() + Math.max(0, initialDelay);
+
+        rearm();
+    }
+
+    /**
+     * Add the podcast to the schedule, estimating when it is due from its
+     * publishing history and the last time it was loaded. If the podcast
+     * is already scheduled, its due date is updated.
+     *
+     * @param podcast The podcast to schedule.
+     * @see #getDueDate(Podcast, long, long)
+     */
+    public void schedule(@NonNull Podcast podcast) {
+        final long interval = estimatePublishingInterval(podcast);
+
+        schedule(podcast, getDueDate(podcast, interval, System.currentTimeMillis()), interval);
+    }
+
+    /**
+     * Add the podcast to the schedule, due at the given point in time. If the
+     * podcast is already scheduled, its due date is updated.
+     *
+     * @param podcast The podcast to schedule.
+     * @param dueAt   When the podcast is due (epoch millis).
+     */
+    public void schedule(@NonNull Podcast podcast, long dueAt) {
+        schedule(podcast, dueAt, estimatePublishingInterval(podcast));
+    }
+
+    /**
+     * Remove the podcast from the schedule, nothing happens if it is not scheduled.
+     *
+     * @param podcast The podcast to remove.
+     */
+    public synchronized void remove(@NonNull Podcast podcast) {
+        final Refresh refresh = scheduled.remove(podcast);
+
+        if (refresh != null) {
+            queue.remove(refresh);
+            rearm();
+        }
+    }
+
+    /**
+     * Remove all podcasts from the schedule.
+     */
+    public synchronized void clear() {
+        scheduled.clear();
+        queue.clear();
+
+        rearm();
+    }
+
+    /**
+     * @return The current schedule, ordered by due date. Useful for debugging.
+     */
+    @NonNull
+    public synchronized List<Refresh> getSchedule() {
+        final Refresh[] schedule = queue.toArray(new Refresh[queue.size()]);
+        Arrays.sort(schedule);
+
+        return Collections.unmodifiableList(Arrays.asList(schedule));
+    }
+
+    /**
+     * Estimate the typical time between two episodes of the given podcast.
+     * This is the median of the intervals between the publication dates of
+     * the most recent episodes.
+     *
+     * @param podcast Podcast to look at.
+     * @return The interval in milliseconds or -1 if the podcast does not have
+     * enough episodes with publication dates.
+     */
+    public static long estimatePublishingInterval(@NonNull Podcast podcast) {
+        final List<Episode> episodes = podcast.getEpisodes();
+        final long[] pubDates = new long[episodes.size()];
+
+        int count = 0;
+        for (Episode episode : episodes)
+            // Skip episodes without date and live streams
+            if (episode.getPubTime() != DateCodec.INVALID && !episode.isLive())
+                pubDates[count++] = episode.getPubTime();
+
+        if (count < 2)
+            return -1;
+
+        // Look at the most recent episodes only
+        Arrays.sort(pubDates, 0, count);
+        final int samples = Math.min(count - 1, INTERVAL_SAMPLE_SIZE);
+        final long[] intervals = new long[samples];
+        for (int index = 0; index < samples; index++)
+            intervals[index] = pubDates[count - 1 - index] - pubDates[count - 2 - index];
+
+        Arrays.sort(intervals);
+        final long median = intervals[samples / 2];
+
+        return median > 0 ? median : -1;
+    }
+
+    /**
+     * Estimate the probability that the podcast published a new episode since
+     * it was last loaded, assuming episodes come in at random with the podcast's
+     * publishing interval on average.
+     *
+     * @param podcast            The podcast to look at.
+     * @param publishingInterval The podcast's publishing interval (millis), -1 if unknown.
+     * @param now                The current point in time (epoch millis).
+     * @return The probability between 0 and 1. Podcasts never loaded are certain
+     * to have news. If the interval is unknown, {@link #MAX_REFRESH_INTERVAL} is assumed.
+     * @see #estimatePublishingInterval(Podcast)
+     */
+    public static double getNewEpisodeLikelihood(@NonNull Podcast podcast, long publishingInterval, long now) {
+        final Date lastLoaded = podcast.getLastLoaded();
+        if (lastLoaded == null)
+            return 1;
+
+        final long interval = publishingInterval > 0 ? publishingInterval : MAX_REFRESH_INTERVAL;
+        final long elapsed = Math.max(0, now - lastLoaded.getTime());
+
+        return 1 - Math.exp(-elapsed / (double) interval);
+    }
+
+    /**
+     * Calculate when the given podcast is due for refresh. Podcasts never loaded
+     * are due immediately. For all others, this predicts the next publication
+     * from the latest episode and the publishing interval, but never refreshes
+     * more often than {@link #MIN_REFRESH_INTERVAL} and at least once
+     * every {@link #MAX_REFRESH_INTERVAL}. If a new episode is overdue, the
+     * podcast is checked a few times per publishing interval.
+     *
+     * @param podcast            The podcast to look at.
+     * @param publishingInterval The podcast's publishing interval (millis), -1 if unknown.
+     * @param now                The current point in time (epoch millis).
+     * @return The point in time the podcast is due (epoch millis).
+     * @see #estimatePublishingInterval(Podcast)
+     */
+    public static long getDueDate(@NonNull Podcast podcast, long publishingInterval, long now) {
+        final Date lastLoaded = podcast.getLastLoaded();
+
+        // Never loaded, go get it
+        if (lastLoaded == null)
+            return now;
+        // We do not know anything about the podcast, use the default
+        if (publishingInterval <= 0)
+            return lastLoaded.getTime() + MIN_REFRESH_INTERVAL;
+
+        final long earliest = lastLoaded.getTime() + MIN_REFRESH_INTERVAL;
+        final long latest = lastLoaded.getTime() + MAX_REFRESH_INTERVAL;
+        final long predicted = findLatestPubDate(podcast) + publishingInterval;
+
+        // The next episode is overdue, check regularly
+        if (predicted <= lastLoaded.getTime())
+            return Math.min(latest, Math.max(earliest, lastLoaded.getTime() + publishingInterval / 4));
+        else
+            return Math.min(latest, Math.max(earliest, predicted));
+    }
+
+    /**
+     * Calculate the time to wait before refreshing a podcast that failed to load.
+     * The delay doubles with each failed attempt in a row, starting from a base
+     * depending on the error: Unreachable feeds are retried soon, broken feeds
+     * take longer to get fixed. Failures that will not go away without the user
+     * (e.g. missing authorization) are retried after {@link #MAX_REFRESH_INTERVAL}.
+     *
+     * @param error          The reason the last load failed.
+     * @param failedAttempts The number of failed loads in a row (including the last).
+     * @return The time to wait (millis), never more than {@link #MAX_REFRESH_INTERVAL}.
+     * @see Podcast#getFailedLoadAttemptCount()
+     */
+    public static long getRetryDelay(PodcastLoadError error, int failedAttempts) {
+        final long base;
+        switch (error) {
+            case NOT_REACHABLE:
+            case UNKNOWN:
+                base = RETRY_DELAY_NOT_REACHABLE;
+                break;
+            case NOT_PARSABLE:
+                base = RETRY_DELAY_NOT_PARSABLE;
+                break;
+            default:
+                return MAX_REFRESH_INTERVAL;
+        }
+
+        // Cap the shift so this does not overflow for many failures
+        final int doublings = Math.min(Math.max(0, failedAttempts - 1), 16);
+        return Math.min(MAX_REFRESH_INTERVAL, base << doublings);
+    }
+
+    private static long findLatestPubDate(Podcast podcast) {
+        long latest = 0;
+
+        for (Episode episode : podcast.getEpisodes())
+            if (episode.getPubTime() != DateCodec.INVALID && !episode.isLive())
+                latest = Math.max(latest, episode.getPubTime());
+
+        return latest;
+    }
+
+    private synchronized void schedule(Podcast podcast, long dueAt, long interval) {
+        final Refresh old = scheduled.remove(podcast);
+        if (old != null)
+            queue.remove(old);
+
+        final Refresh refresh = new Refresh(podcast, dueAt, interval);
+        scheduled.put(podcast, refresh);
+        queue.add(refresh);
+
+        rearm();
+    }
+
+    private Podcast removeHead() {
+        final Refresh head = queue.poll();
+        scheduled.remove(head.podcast);
+
+        return head.podcast;
+    }
+
+    /**
+     * Make sure the wake-up is set for the head of the queue. Call with lock held.
+     */
+    private void rearm() {
+        // Not started or nothing to do
+        if (startAt == Long.MAX_VALUE || queue.isEmpty()) {
+            if (wakeUp != null)
+                cancelWakeUp();
+
+            wakeUp = null;
+            wakeUpAt = Long.MAX_VALUE;
+        } else {
+            final long next = Math.max(startAt, queue.peek().dueAt);
+
+            // Only re-arm if the wake-up changes
+            if (wakeUp == null || next != wakeUpAt) {
+                if (wakeUp != null)
+                    cancelWakeUp();
+
+                wakeUpAt = next;
+                wakeUp = executor.schedule(dispatchDuePodcasts,
+                        Math.max(0, next - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void cancelWakeUp() {
+        wakeUp.cancel(false);
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+            executor.purge();
+    }
+}
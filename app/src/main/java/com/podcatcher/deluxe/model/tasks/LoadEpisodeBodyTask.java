@@ -0,0 +1,79 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.tasks;
+
+import com.podcatcher.deluxe.listeners.OnLoadEpisodeBodyListener;
+import com.podcatcher.deluxe.model.EpisodeBodyStore;
+import com.podcatcher.deluxe.model.types.Episode;
+
+import android.os.AsyncTask;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Get the long texts of an episode. These might need to be read from the
+ * {@link EpisodeBodyStore}, so do not ask the episode on the main thread.
+ */
+public class LoadEpisodeBodyTask extends AsyncTask<Episode, Void, Episode> {
+
+    /**
+     * Call back
+     */
+    private final WeakReference<OnLoadEpisodeBodyListener> listener;
+
+    /**
+     * The episode's description
+     */
+    private String description;
+    /**
+     * The episode's long description
+     */
+    private String longDescription;
+
+    /**
+     * Create new task.
+     *
+     * @param listener Callback to be alerted on completion. The listener is
+     *                 held as a weak reference, so you can safely call this from a
+     *                 fragment without leaking it.
+     */
+    public LoadEpisodeBodyTask(OnLoadEpisodeBodyListener listener) {
+        this.listener = new WeakReference<>(listener);
+    }
+
+    @Override
+    protected Episode doInBackground(Episode... episodes) {
+        final Episode episode = episodes[0];
+
+        if (episode != null) {
+            this.description = episode.getDescription();
+            this.longDescription = episode.getLongDescription();
+        }
+
+        return episode;
+    }
+
+    @Override
+    protected void onPostExecute(Episode episode) {
+        final OnLoadEpisodeBodyListener listener = this.listener.get();
+
+        if (listener != null && episode != null)
+            listener.onEpisodeBodyLoaded(episode, description, longDescription);
+    }
+}
@@ -19,19 +19,16 @@
 package com.podcatcher.deluxe.model.tasks;
 
 import com.podcatcher.deluxe.listeners.OnLoadPodcastListListener;
+import com.podcatcher.deluxe.model.OpmlParser;
 import com.podcatcher.deluxe.model.PodcastManager;
-import com.podcatcher.deluxe.model.tags.OPML;
 import com.podcatcher.deluxe.model.types.Podcast;
 import com.podcatcher.deluxe.model.types.Progress;
 
 import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
-import android.text.Html;
-import android.util.Base64;
 
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.File;
@@ -42,7 +39,6 @@ import java.util.Collections;
 import java.util.List;
 
 import static com.podcatcher.deluxe.model.PodcastManager.OPML_FILENAME;
-import static com.podcatcher.deluxe.model.PodcastManager.OPML_FILE_ENCODING;
 
 /**
  * Loads the default podcast list from the file system asynchronously. Use
@@ -114,26 +110,7 @@ public class LoadPodcastListTask extends AsyncTask<Void, Progress, List<Podcast>
 
             // 3. Parse the OPML file
             parser.setInput(fileStream, PodcastManager.OPML_FILE_ENCODING);
-            int eventType = parser.next();
-
-            // Read complete document
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                // We only need start tags here
-                if (eventType == XmlPullParser.START_TAG) {
-                    String tagName = parser.getName();
-
-                    // Podcast found, add it
-                    if (tagName.equalsIgnoreCase(OPML.OUTLINE)) {
-                        final Podcast listItem = createPodcast(parser);
-
-                        if (listItem != null)
-                            result.add(listItem);
-                    }
-                }
-
-                // Done, get next parsing event
-                eventType = parser.next();
-            }
+            result.addAll(OpmlParser.parse(parser));
 
             // 4. Sort
             Collections.sort(result);
@@ -165,55 +142,4 @@ public class LoadPodcastListTask extends AsyncTask<Void, Progress, List<Podcast>
         if (listener != null)
             listener.onPodcastListLoadFailed(importFile, exception);
     }
-
-    /**
-     * Read podcast information from the given parser and create a new podcast
-     * object for it.
-     *
-     * @param parser Parser to read from. Has to be set to the OPML outline
-     *               start tag.
-     * @return A new Podcast instance with name and URL set. If any error
-     * occurs, <code>null</code> is returned.
-     */
-    private Podcast createPodcast(XmlPullParser parser) {
-        Podcast result = null;
-
-        try {
-            // Make sure we start at item tag
-            parser.require(XmlPullParser.START_TAG, "", OPML.OUTLINE);
-            // Get the podcast name
-            String name = parser.getAttributeValue("", OPML.TEXT);
-            // Make sure podcast name looks good
-            if (name != null)
-                name = Html.fromHtml(name).toString();
-
-            // Create the podcast
-            result = new Podcast(name, parser.getAttributeValue("", OPML.XMLURL));
-
-            // Set logo URL and label if given
-            final String logoUrl = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_LOGO);
-            if (logoUrl != null && logoUrl.startsWith("http"))
-                result.setLogoUrl(Html.fromHtml(logoUrl).toString());
-            final String label = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_LABEL);
-            if (label != null && !label.trim().isEmpty())
-                result.setFeedLabel(label);
-
-            // Set authorization information
-            final String userAttribute = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_USER);
-            final String passAttribute = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_PASS);
-            if (userAttribute != null && passAttribute != null)
-                try {
-                    result.setUsername(new String(Base64.decode(userAttribute, Base64.NO_WRAP), OPML_FILE_ENCODING));
-                    result.setPassword(new String(Base64.decode(passAttribute, Base64.NO_WRAP), OPML_FILE_ENCODING));
-                } catch (Throwable re) {
-                    /* Cannot recover auth information, do not use it */
-                    result.setUsername(null);
-                    result.setPassword(null);
-                }
-        } catch (XmlPullParserException | IOException e) {
-            /* Bad outline, skip */
-        }
-
-        return result;
-    }
 }
@@ -20,36 +20,19 @@ package com.podcatcher.deluxe.model.tasks;
 
 import com.podcatcher.deluxe.listeners.OnStoreEpisodeMetadataListener;
 import com.podcatcher.deluxe.model.EpisodeManager;
+import com.podcatcher.deluxe.model.EpisodeMetadataWriter;
 import com.podcatcher.deluxe.model.types.EpisodeMetadata;
 
 import android.content.Context;
-import android.text.TextUtils;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import static com.podcatcher.deluxe.model.tags.METADATA.DOWNLOAD_ID;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DATE;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DESCRIPTION;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DURATION;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_FILE_SIZE;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_MEDIA_TYPE;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_NAME;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_RESUME_AT;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_STATE;
-import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_URL;
-import static com.podcatcher.deluxe.model.tags.METADATA.LOCAL_FILE_PATH;
-import static com.podcatcher.deluxe.model.tags.METADATA.METADATA;
-import static com.podcatcher.deluxe.model.tags.METADATA.PLAYLIST_POSITION;
-import static com.podcatcher.deluxe.model.tags.METADATA.PODCAST_NAME;
-import static com.podcatcher.deluxe.model.tags.METADATA.PODCAST_URL;
-
 /**
  * Stores the episode metadata information to the file system.
  */
@@ -93,10 +76,7 @@ public class StoreEpisodeMetadataTask extends StoreFileTask<Map<String, EpisodeM
             writer = new BufferedWriter(new OutputStreamWriter(fileStream, FILE_ENCODING));
 
             // 3. Write new file content
-            writeHeader();
-            for (Entry<String, EpisodeMetadata> entry : params[0].entrySet())
-                writeRecord(entry.getKey(), entry.getValue());
-            writeFooter();
+            new EpisodeMetadataWriter(writer).write(params[0]);
         } catch (Exception ex) {
             this.exception = ex;
 
@@ -126,55 +106,6 @@ public class StoreEpisodeMetadataTask extends StoreFileTask<Map<String, EpisodeM
             listener.onEpisodeMetadataStoreFailed(exception);
     }
 
-    private void writeRecord(String key, EpisodeMetadata value) throws IOException {
-        writeLine(1, "<" + METADATA + " " + EPISODE_URL + "=\"" + TextUtils.htmlEncode(key) + "\">");
-
-        // Data will only be written if present, see null checks in writeData()
-        writeData(value.episodeName, EPISODE_NAME);
-        if (value.episodePubDate != null)
-            writeData(value.episodePubDate.getTime(), EPISODE_DATE);
-        writeData(value.episodeDuration, EPISODE_DURATION);
-        writeData(value.episodeFileSize, EPISODE_FILE_SIZE);
-        writeData(value.episodeMediaType, EPISODE_MEDIA_TYPE);
-        writeData(value.episodeDescription, EPISODE_DESCRIPTION);
-        writeData(value.podcastName, PODCAST_NAME);
-        writeData(value.podcastUrl, PODCAST_URL);
-        writeData(value.downloadId, DOWNLOAD_ID);
-        writeData(value.filePath, LOCAL_FILE_PATH);
-        writeData(value.resumeAt, EPISODE_RESUME_AT);
-        if (value.isOld != null && value.isOld)
-            writeData(Boolean.TRUE.toString(), EPISODE_STATE);
-        writeData(value.playlistPosition, PLAYLIST_POSITION);
-
-        writeLine(1, "</" + METADATA + ">");
-    }
-
-    private void writeData(String data, String tag) throws IOException {
-        // For all fields: only write data that is actually there!
-        if (data != null)
-            writeLine(2, "<" + tag + ">" + TextUtils.htmlEncode(data) + "</" + tag + ">");
-    }
-
-    private void writeData(Long data, String tag) throws IOException {
-        // For all fields: only write data that is actually there!
-        if (data != null)
-            writeLine(2, "<" + tag + ">" + data + "</" + tag + ">");
-    }
-
-    private void writeData(Integer data, String tag) throws IOException {
-        if (data != null)
-            writeData(Long.valueOf(data), tag);
-    }
-
-    private void writeHeader() throws IOException {
-        writeLine(0, "<?xml version=\"1.0\" encoding=\"" + FILE_ENCODING + "\"?>");
-        writeLine(0, "<xml dateModified=\"" + new Date().getTime() + "\">");
-    }
-
-    private void writeFooter() throws IOException {
-        writeLine(0, "</xml>");
-    }
-
     private void cleanMetadata(Map<String, EpisodeMetadata> metadata) {
         Iterator<Entry<String, EpisodeMetadata>> iterator = metadata.entrySet().iterator();
 
@@ -18,12 +18,12 @@
 
 package com.podcatcher.deluxe.model.tasks;
 
+import com.podcatcher.deluxe.model.XmlFileWriter;
 import com.podcatcher.deluxe.model.types.Progress;
 
 import android.os.AsyncTask;
 
 import java.io.BufferedWriter;
-import java.io.IOException;
 
 /**
  * Abstract task for file writing.
@@ -35,27 +35,10 @@ public abstract class StoreFileTask<Params> extends AsyncTask<Params, Progress,
     /**
      * The file encoding
      */
-    public static final String FILE_ENCODING = "utf8";
-    /**
-     * The indent char
-     */
-    protected static final char INDENT = ' ';
+    public static final String FILE_ENCODING = XmlFileWriter.FILE_ENCODING;
 
     /**
      * The file writer
      */
     protected BufferedWriter writer;
-
-    /**
-     * @param level Indent level to put in front of line.
-     * @param line  Actual text to write.
-     * @throws IOException If writing the line goes wrong.
-     */
-    protected void writeLine(int level, String line) throws IOException {
-        for (int i = 0; i < level * 2; i++)
-            writer.write(INDENT);
-
-        writer.write(line);
-        writer.newLine();
-    }
 }
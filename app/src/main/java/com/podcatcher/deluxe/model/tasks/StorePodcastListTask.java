@@ -20,13 +20,12 @@ package com.podcatcher.deluxe.model.tasks;
 
 import com.podcatcher.deluxe.R;
 import com.podcatcher.deluxe.listeners.OnStorePodcastListListener;
+import com.podcatcher.deluxe.model.OpmlWriter;
 import com.podcatcher.deluxe.model.PodcastManager;
-import com.podcatcher.deluxe.model.tags.OPML;
 import com.podcatcher.deluxe.model.types.Podcast;
 
 import android.content.Context;
 import android.net.Uri;
-import android.util.Base64;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -35,10 +34,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.Date;
 import java.util.List;
 
-import static android.text.TextUtils.htmlEncode;
 import static com.podcatcher.deluxe.model.PodcastManager.OPML_FILENAME;
 
 /**
@@ -141,10 +138,9 @@ public class StorePodcastListTask extends StoreFileTask<List<Podcast>> {
                     PodcastManager.OPML_FILE_ENCODING));
 
             // 2. Write new file content
-            writeHeader(opmlFileTitle);
-            for (Podcast podcast : podcastList)
-                writePodcast(podcast);
-            writeFooter();
+            final OpmlWriter opmlWriter = new OpmlWriter(writer);
+            opmlWriter.setWriteAuthorization(writeAuthorization);
+            opmlWriter.write(opmlFileTitle, podcastList);
         } catch (Exception ex) {
             this.exception = ex;
 
@@ -173,61 +169,4 @@ public class StorePodcastListTask extends StoreFileTask<List<Podcast>> {
         if (listener != null)
             listener.onPodcastListStoreFailed(podcastList, exportLocation, exception);
     }
-
-    private void writePodcast(Podcast podcast) throws IOException {
-        // Only write out valid podcasts
-        if (hasNameAndUrl(podcast)) {
-            String opmlString = String.format("<%s %s=\"%s\" %s=\"%s\" %s=\"%s\" %s=\"%s\"",
-                    OPML.OUTLINE,
-                    OPML.TEXT, htmlEncode(podcast.getName()),
-                    OPML.TITLE, htmlEncode(podcast.getName()),
-                    OPML.TYPE, OPML.RSS_TYPE,
-                    OPML.XMLURL, htmlEncode(podcast.getUrl()));
-
-            if (podcast.hasLogoUrl())
-                opmlString = String.format("%s %s=\"%s\"", opmlString,
-                        OPML.PCD_NS_PREFIX + OPML.PCD_LOGO, htmlEncode(podcast.getLogoUrl()));
-
-            if (podcast.getFeedLabel() != null)
-                opmlString = String.format("%s %s=\"%s\"", opmlString,
-                        OPML.PCD_NS_PREFIX + OPML.PCD_LABEL, htmlEncode(podcast.getFeedLabel()));
-
-            if (writeAuthorization && podcast.getAuthorization() != null)
-                // We store the podcast password in the app's private folder base64
-                // encoded (but in the clear). This is justified because it is hard to
-                // attack the file (unless you get your hands on the device) and the
-                // password is not very sensitive since it is only a
-                // podcast we are accessing, not personal information.
-                opmlString = String.format("%s %s=\"%s\" %s=\"%s\"", opmlString,
-                        OPML.PCD_NS_PREFIX + OPML.PCD_USER,
-                        Base64.encodeToString(podcast.getUsername().getBytes(), Base64.NO_WRAP),
-                        OPML.PCD_NS_PREFIX + OPML.PCD_PASS,
-                        Base64.encodeToString(podcast.getPassword().getBytes(), Base64.NO_WRAP));
-
-            writeLine(2, opmlString + " />");
-        }
-    }
-
-    /**
-     * @return Whether given podcast has an non-empty name and an URL.
-     */
-    private boolean hasNameAndUrl(Podcast podcast) {
-        return podcast.getName() != null && podcast.getName().trim().length() > 0 &&
-                podcast.getUrl() != null && podcast.getUrl().startsWith("http");
-    }
-
-    private void writeHeader(String fileName) throws IOException {
-        writeLine(0, "<?xml version=\"1.0\" encoding=\"" + FILE_ENCODING + "\"?>");
-        writeLine(0, "<opml xmlns:pcd=\"" + OPML.PCD_NAMESPACE + "\" version=\"2.0\">");
-        writeLine(1, "<head>");
-        writeLine(2, "<title>" + fileName + "</title>");
-        writeLine(2, "<dateModified>" + new Date().toString() + "</dateModified>");
-        writeLine(1, "</head>");
-        writeLine(1, "<body>");
-    }
-
-    private void writeFooter() throws IOException {
-        writeLine(1, "</body>");
-        writeLine(0, "</opml>");
-    }
 }
@@ -20,8 +20,10 @@ package com.podcatcher.deluxe.model.tasks.remote;
 
 import com.podcatcher.deluxe.BuildConfig;
 import com.podcatcher.deluxe.listeners.OnLoadPodcastListener;
+import com.podcatcher.deluxe.listeners.OnLoadPodcastPageListener;
 import com.podcatcher.deluxe.model.EpisodeManager;
 import com.podcatcher.deluxe.model.tags.JSON;
+import com.podcatcher.deluxe.model.tags.RSS;
 import com.podcatcher.deluxe.model.types.Episode;
 import com.podcatcher.deluxe.model.types.Podcast;
 import com.podcatcher.deluxe.model.types.Progress;
@@ -34,11 +36,25 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.nio.charset.Charset;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Loads a podcast's RSS file from the server and parses its contents
@@ -57,6 +73,16 @@ import java.util.Arrays;
  * {@link OnLoadPodcastListener#onPodcastLoadFailed(Podcast, PodcastLoadError)}
  * will be called with the code set to {@link PodcastLoadError#AUTH_REQUIRED}.
  * </p>
+ * <p>
+ * <b>Paged feeds:</b> If the podcast is expanded, all pages of the feed are
+ * loaded. While one page is parsed, the following pages are already downloaded
+ * in the background. If the listener also implements
+ * {@link OnLoadPodcastPageListener}, it will be alerted on each page added.
+ * </p>
+ * <p>
+ * <b>Tracing:</b> Each load records its timings and sizes in a {@link LoadTrace},
+ * which is handed to the {@link LoadTraceLog} once the task completes.
+ * </p>
  */
 public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
 
@@ -92,10 +118,40 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
      */
     private static final String CHECK_FEED_URL = "http://podcatcher-deluxe.com/preferred-url.json/";
 
+    /**
+     * The directory to spool feeds to while checking their content hash,
+     * if <code>null</code>, unchanged feeds will not be detected by their content.
+     */
+    private File spoolDirectory;
+    /**
+     * Flag indicating that the feed did not change since the last load,
+     * either because the server said so or its content hash matched.
+     */
+    private boolean feedUnchanged = false;
+    /**
+     * The number of loads that found the feed content unchanged and skipped parsing
+     */
+    private static final AtomicInteger contentHashHits = new AtomicInteger();
+    /**
+     * The number of loads that compared content hashes and found the feed changed
+     */
+    private static final AtomicInteger contentHashMisses = new AtomicInteger();
+
+    /**
+     * The number of pages of an expanded feed that are downloaded ahead of
+     * the page currently parsed
+     */
+    private static final int PAGE_LOOK_AHEAD = 2;
+
     /**
      * The error code returned on failure
      */
     private PodcastLoadError errorCode = PodcastLoadError.UNKNOWN;
+    /**
+     * Flag indicating that the load was cancelled from the outside and
+     * the listener should not hear back from us
+     */
+    private volatile boolean loadCancelled = false;
 
     /**
      * Podcast load error codes as returned by
@@ -137,7 +193,12 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
         /**
          * The feed file was too big to be loaded
          */
-        TOO_LARGE
+        TOO_LARGE,
+
+        /**
+         * The load was cancelled before it completed.
+         */
+        CANCELLED
     }
 
     /**
@@ -181,9 +242,51 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
         this.reportPodcastMovedIfEmpty = report;
     }
 
+    /**
+     * @param directory A directory the task can write temporary files to. If set,
+     *                  the task will download feeds that have been parsed before
+     *                  to a file first and only parse it if its length or content
+     *                  hash does not match those from the last load. Default is
+     *                  <code>null</code>, always parsing the feed while loading it.
+     * @see Podcast#getContentHash()
+     */
+    public void setSpoolDirectory(File directory) {
+        this.spoolDirectory = directory;
+    }
+
+    /**
+     * @return The number of podcast loads (by all tasks) that found
+     * the feed unchanged by its content hash and skipped parsing.
+     * @see #setSpoolDirectory(File)
+     */
+    public static int getContentHashHitCount() {
+        return contentHashHits.get();
+    }
+
+    /**
+     * @return The number of podcast loads (by all tasks) that compared
+     * the feed content hash and had to parse since the feed changed.
+     * @see #setSpoolDirectory(File)
+     */
+    public static int getContentHashMissCount() {
+        return contentHashMisses.get();
+    }
+
+    /**
+     * Cancel the load, whether it already started or not. Other than
+     * {@link #cancel(boolean)}, this will alert the listener with
+     * {@link PodcastLoadError#CANCELLED} once the task has actually stopped
+     * and will not touch the podcast anymore.
+     */
+    public void cancelLoad() {
+        this.loadCancelled = true;
+        cancel(true);
+    }
+
     @Override
     protected Void doInBackground(Podcast... podcasts) {
         this.podcast = podcasts[0];
+        this.trace = new LoadTrace(podcast == null ? null : podcast.getUrl());
 
         // Update the thread name to include the podcast working on
         if (BuildConfig.DEBUG && podcast != null)
@@ -191,26 +294,22 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
                     " [" + podcast.getName() + "]");
 
         try {
-            // 1. Load the file from the Internet
+            // 1. Load the file from the Internet and parse it
             publishProgress(Progress.CONNECT);
 
             // Set auth
             this.authorization = podcast.getAuthorization();
-            // ... and go get the file
-            byte[] podcastRssFile = loadFile(new URL(podcast.getUrl()));
-            // Take a moment to remove any leading whitespaces that might make the parser fail
-            if (podcastRssFile.length > 0 && Character.isWhitespace(podcastRssFile[0]))
-                podcastRssFile = removeLeadingWhitespaces(podcastRssFile);
-
-            podcast.setFileSize(podcastRssFile.length);
-
-            if (!isCancelled()) {
-                publishProgress(Progress.PARSE);
-
-                // 2. Parse as podcast content
-                final XmlPullParser parser = prepareParser(podcastRssFile);
-                final String newFeedUrl = podcast.parse(parser);
-
+            // Make the request conditional, but only if we actually have the content
+            // in memory, since the server will not send any if the feed is unchanged
+            if (podcast.getLastLoaded() != null)
+                setValidators(podcast.getETag(), podcast.getLastModified());
+            // ... and go get the file, we parse straight from the remote stream
+            // so the feed is never held in memory as a whole
+            final String newFeedUrl = parse(podcast, new URL(podcast.getUrl()), true);
+
+            // If the feed did not change, we are done here since all
+            // the steps below already ran on the podcast's content
+            if (!isCancelled() && !feedUnchanged) {
                 // Check for new feed URL we should move to
                 if (newFeedUrl != null && reportPodcastMovedFromFeed && isGoodNewUrl(newFeedUrl)) {
                     shouldMoveToUrl = newFeedUrl;
@@ -225,11 +324,8 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
                     cancel(true);
 
                 // If expand flag is set on the podcast, process all pages
-                if (podcast.isExpanded())
-                    while (podcast.getNextPage() != null) {
-                        final byte[] nextPageRssFile = removeLeadingWhitespaces(loadFile(new URL(podcast.getNextPage())));
-                        podcast.parseEpisodes(prepareParser(nextPageRssFile));
-                    }
+                if (!isCancelled() && podcast.isExpanded() && podcast.getNextPage() != null)
+                    parseRemainingPages(podcast);
 
                 // 3. Clean out explicit episodes
                 if (!isCancelled() && blockExplicit) {
@@ -245,10 +341,13 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
                 if (!isCancelled()) {
                     // 4. We need to wait here and make sure the episode metadata is
                     // available before we return
+                    final long waitStart = System.nanoTime();
                     EpisodeManager.getInstance().blockUntilEpisodeMetadataIsLoaded();
+                    trace.onMetadataWait(System.nanoTime() - waitStart);
 
                     // 5. Update additional episode metadata where available, if not
                     // parsed from the feed
+                    final long mergeStart = System.nanoTime();
                     final EpisodeManager episodeManager = EpisodeManager.getInstance();
 
                     for (Episode episode : podcast.getEpisodes()) {
@@ -258,6 +357,8 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
                         if (episode.getFileSize() <= 0)
                             episode.setFileSize(episodeManager.findMediaFileSize(episode));
                     }
+
+                    trace.onMetadataMerge(System.nanoTime() - mergeStart);
                 }
             }
         } catch (XmlPullParserException xppe) {
@@ -297,18 +398,31 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
 
     @Override
     protected void onProgressUpdate(Progress... progress) {
-        listener.onPodcastLoadProgress(podcast, progress[0]);
+        if (progress[0] instanceof PageLoaded) {
+            if (listener instanceof OnLoadPodcastPageListener)
+                ((OnLoadPodcastPageListener) listener).onPodcastPageLoaded(podcast,
+                        ((PageLoaded) progress[0]).newEpisodes);
+        } else
+            listener.onPodcastLoadProgress(podcast, progress[0]);
     }
 
     @Override
     protected void onPostExecute(Void nothing) {
+        finishTrace(LoadTraceLog.OUTCOME_OK);
+
         listener.onPodcastLoaded(podcast);
     }
 
     @Override
     protected void onCancelled(Void nothing) {
         // Background task failed to complete
-        if (needsAuthorization)
+        finishTrace(loadCancelled ? PodcastLoadError.CANCELLED.name() :
+                needsAuthorization ? PodcastLoadError.AUTH_REQUIRED.name() :
+                        shouldMoveToUrl != null ? "MOVED" : errorCode.name());
+
+        if (loadCancelled)
+            listener.onPodcastLoadFailed(podcast, PodcastLoadError.CANCELLED);
+        else if (needsAuthorization)
             listener.onPodcastLoadFailed(podcast, PodcastLoadError.AUTH_REQUIRED);
         else if (shouldMoveToUrl != null)
             listener.onPodcastMoved(podcast, shouldMoveToUrl);
@@ -316,35 +430,233 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
             listener.onPodcastLoadFailed(podcast, errorCode);
     }
 
-    private byte[] removeLeadingWhitespaces(byte[] byteArray) {
-        int firstNonWhiteSpacePosition = 0;
+    /**
+     * Load the feed at the given location and parse it while it is downloaded.
+     *
+     * @param target    Podcast to parse the feed into.
+     * @param remote    Location of the feed (or feed page).
+     * @param firstPage Whether this is the feed's first page. If so, the podcast
+     *                  will be fully parsed and its file size will be updated,
+     *                  otherwise only episodes are appended.
+     * @return The value of the new-feed-url tag, if any and this is the first page.
+     * Will also be <code>null</code> if the feed was not modified and thus not parsed.
+     * @throws IOException            If the feed cannot be loaded.
+     * @throws XmlPullParserException If the feed cannot be parsed.
+     * @see Podcast#parse(XmlPullParser)
+     * @see Podcast#parseEpisodes(XmlPullParser)
+     */
+    private String parse(Podcast target, URL remote, boolean firstPage)
+            throws IOException, XmlPullParserException {
+        RemoteFileStream remoteStream = null;
 
-        // Trailing whitespaces make the XML pull parser fail, remove them
-        while (firstNonWhiteSpacePosition < byteArray.length &&
-                Character.isWhitespace(byteArray[firstNonWhiteSpacePosition]))
-            firstNonWhiteSpacePosition++;
+        try {
+            // Since parsing happens while the file downloads, there is no
+            // separate parse progress to report, the stream reports load progress
+            remoteStream = openStream(remote, true);
+            // Feed unchanged, skip parsing
+            if (remoteStream == null) {
+                this.feedUnchanged = true;
+                target.refreshLastLoaded();
+                return null;
+            }
+
+            String result = null;
+            final long parseStart = System.nanoTime();
+            if (firstPage) {
+                // The podcast content is available, check whether the feed
+                // content changed before parsing it, this times its own parse
+                if (spoolDirectory != null && target.getLastLoaded() != null &&
+                        target.getContentHash() != 0)
+                    result = parseIfChanged(target, remoteStream);
+                else {
+                    result = target.parse(prepareParser(remoteStream));
+                    // The parser might have stopped at the episodes already known,
+                    // but file size and content hash need to cover the complete feed
+                    drain(remoteStream);
+                    // The parser waited for the network, that time is not parsing
+                    trace.onParse(System.nanoTime() - parseStart - remoteStream.getReadNanos());
+                }
 
-        return Arrays.copyOfRange(byteArray, firstNonWhiteSpacePosition, byteArray.length);
+                target.setFileSize(remoteStream.getBytesRead());
+                target.setValidators(eTag, lastModified);
+                target.setContentHash(remoteStream.getContentHash());
+            } else {
+                target.parseEpisodes(prepareParser(remoteStream));
+                trace.onParse(System.nanoTime() - parseStart - remoteStream.getReadNanos());
+            }
+
+            return result;
+        } finally {
+            if (remoteStream != null)
+                try {
+                    remoteStream.close();
+                } catch (IOException e) {
+                    // Nothing we can do here
+                }
+        }
+    }
+
+    /**
+     * Load and parse all the pages of the given podcast following its first page.
+     * A prefetch thread downloads up to {@link #PAGE_LOOK_AHEAD} pages ahead of
+     * the page parsed here, so network and parsing overlap. The pages are parsed
+     * in feed order and each one is reported to the listener once added.
+     *
+     * @param target The podcast to parse into, its first page needs to be parsed.
+     * @throws IOException            If any of the pages cannot be loaded.
+     * @throws XmlPullParserException If any of the pages cannot be parsed.
+     */
+    private void parseRemainingPages(Podcast target) throws IOException, XmlPullParserException {
+        final PagePrefetcher prefetcher = new PagePrefetcher(new URL(target.getNextPage()));
+        final Thread prefetchThread = new Thread(prefetcher, Thread.currentThread().getName() + " (prefetch)");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+
+        try {
+            while (!isCancelled()) {
+                final FeedPage page = prefetcher.pages.take();
+
+                if (page == FeedPage.LAST)
+                    break;
+                else if (page.error instanceof IOException)
+                    throw (IOException) page.error;
+                else if (page.error instanceof RuntimeException)
+                    throw (RuntimeException) page.error;
+
+                final int episodeCount = target.getEpisodeCount();
+                final long parseStart = System.nanoTime();
+                target.parseEpisodes(prepareParser(new ByteArrayInputStream(page.content)));
+                trace.onParse(System.nanoTime() - parseStart);
+
+                // Alert the listener of the episodes added, explicit
+                // episodes will only be removed once all pages are done
+                final List<Episode> episodes = target.getEpisodes();
+                final List<Episode> newEpisodes = new ArrayList<>();
+                for (Episode episode : episodes.subList(episodeCount, episodes.size()))
+                    if (!blockExplicit || !episode.isExplicit())
+                        newEpisodes.add(episode);
+
+                if (!newEpisodes.isEmpty())
+                    publishProgress(new PageLoaded(newEpisodes));
+            }
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException("Interrupted while waiting for the next page");
+        } finally {
+            // Make sure the prefetcher does not continue if we stopped early
+            prefetcher.stopped = true;
+            prefetchThread.interrupt();
+        }
+    }
+
+    private String parseIfChanged(Podcast target, RemoteFileStream remoteStream)
+            throws IOException, XmlPullParserException {
+        final File spoolFile = File.createTempFile("feed", null, spoolDirectory);
+
+        try {
+            // 1. Download the complete feed into the spool file
+            final OutputStream spoolOut = new FileOutputStream(spoolFile);
+            try {
+                final byte[] buffer = new byte[8 * 1024];
+                int bytesRead;
+
+                while ((bytesRead = remoteStream.read(buffer)) > 0)
+                    spoolOut.write(buffer, 0, bytesRead);
+            } finally {
+                spoolOut.close();
+            }
+
+            // 2. Compare length and hash, skip parsing if nothing changed,
+            // a 32-bit hash alone is too easily matched by a different feed
+            if (remoteStream.getBytesRead() == target.getFileSize() &&
+                    remoteStream.getContentHash() == target.getContentHash()) {
+                contentHashHits.incrementAndGet();
+
+                this.feedUnchanged = true;
+                target.refreshLastLoaded();
+                return null;
+            } else {
+                contentHashMisses.incrementAndGet();
+
+                // 3. Parse from the spool file
+                final InputStream spoolIn = new BufferedInputStream(new FileInputStream(spoolFile));
+                final long parseStart = System.nanoTime();
+                try {
+                    return target.parse(prepareParser(spoolIn));
+                } finally {
+                    trace.onParse(System.nanoTime() - parseStart);
+                    spoolIn.close();
+                }
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            spoolFile.delete();
+        }
+    }
+
+    private void drain(InputStream stream) throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+
+        int bytesRead;
+        do
+            bytesRead = stream.read(buffer);
+        while (bytesRead > 0);
     }
 
     @NonNull
-    private XmlPullParser prepareParser(byte[] podcastRssFile) throws XmlPullParserException {
+    private XmlPullParser prepareParser(InputStream podcastRssFile) throws XmlPullParserException {
         final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
         factory.setNamespaceAware(true);
 
         final XmlPullParser parser = factory.newPullParser();
-        parser.setInput(new ByteArrayInputStream(podcastRssFile), null);
+        parser.setInput(podcastRssFile, null);
 
         return parser;
     }
 
+    /**
+     * Find the next page link in the feed page given without parsing any episodes.
+     *
+     * @param content The feed page.
+     * @return The next page URL or <code>null</code> if there is none
+     * or the page cannot be read.
+     */
+    private String findNextPage(byte[] content) {
+        try {
+            final XmlPullParser parser = prepareParser(new ByteArrayInputStream(content));
+            int eventType = parser.next();
+
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG &&
+                        RSS.LINK.equalsIgnoreCase(parser.getName()) &&
+                        RSS.ATOM_NAMESPACE.equalsIgnoreCase(parser.getNamespace()) &&
+                        RSS.NEXT.equalsIgnoreCase(parser.getAttributeValue("", RSS.REL)))
+                    return parser.getAttributeValue("", RSS.HREF);
+
+                eventType = parser.next();
+            }
+        } catch (XmlPullParserException | IOException e) {
+            // pass, the page will fail when parsed
+        }
+
+        return null;
+    }
+
+    private void finishTrace(String outcome) {
+        // The task might have been cancelled before it even started
+        if (trace != null) {
+            if (podcast != null)
+                trace.setEpisodeCount(podcast.getEpisodeCount());
+
+            trace.finish(outcome);
+            LoadTraceLog.getInstance().record(trace);
+        }
+    }
+
     private boolean isGoodNewUrl(String newFeedUrl) {
         try {
             final Podcast test = new Podcast(null, newFeedUrl);
-            final byte[] podcastRssFile = removeLeadingWhitespaces(loadFile(new URL(newFeedUrl)));
-            final XmlPullParser parser = prepareParser(podcastRssFile);
 
-            return test.parse(parser) == null && test.getEpisodeCount() > 0;
+            return parse(test, new URL(newFeedUrl), true) == null && test.getEpisodeCount() > 0;
         } catch (IOException | RuntimeException | XmlPullParserException e) {
             return false;
         }
@@ -368,4 +680,125 @@ public class LoadPodcastTask extends LoadRemoteFileTask<Podcast, Void> {
 
         return shouldMoveToUrl != null;
     }
+
+    /**
+     * A downloaded page of a paged feed, or the error that occurred loading it
+     */
+    private static class FeedPage {
+
+        /**
+         * Marker for the end of the feed
+         */
+        private static final FeedPage LAST = new FeedPage(null, null);
+
+        /**
+         * The page's content
+         */
+        private final byte[] content;
+        /**
+         * The error loading the page, if any
+         */
+        private final Exception error;
+
+        private FeedPage(byte[] content, Exception error) {
+            this.content = content;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The progress event used to alert the listener of a page parsed,
+     * equal to {@link Progress#PAGE}
+     */
+    private static class PageLoaded extends Progress {
+
+        /**
+         * The episodes added from the page
+         */
+        private final List<Episode> newEpisodes;
+
+        private PageLoaded(List<Episode> newEpisodes) {
+            super(PROGRESS_PAGE, -1);
+
+            this.newEpisodes = newEpisodes;
+        }
+    }
+
+    /**
+     * Downloads the pages of a paged feed and hands them to the parsing thread.
+     * Since the next page is only known once a page is downloaded, the prefetcher
+     * scans each page for the next page link, which is much faster than parsing
+     * its episodes.
+     */
+    private class PagePrefetcher implements Runnable {
+
+        /**
+         * The pages downloaded, but not yet parsed
+         */
+        private final BlockingQueue<FeedPage> pages = new ArrayBlockingQueue<>(PAGE_LOOK_AHEAD);
+        /**
+         * The first page to download
+         */
+        private final URL firstPage;
+        /**
+         * Flag indicating that the parsing thread is not interested in any more pages
+         */
+        private volatile boolean stopped = false;
+
+        private PagePrefetcher(URL firstPage) {
+            this.firstPage = firstPage;
+        }
+
+        @Override
+        public void run() {
+            // Some feeds link back to earlier pages, make sure we stop there
+            final Set<String> visited = new HashSet<>();
+
+            try {
+                URL next = firstPage;
+
+                while (next != null && !stopped && !isCancelled() && visited.add(next.toString())) {
+                    FeedPage page;
+                    try {
+                        final byte[] content = download(next);
+                        final String nextPage = findNextPage(content);
+
+                        page = new FeedPage(content, null);
+                        next = nextPage == null ? null : new URL(nextPage);
+                    } catch (IOException | RuntimeException e) {
+                        page = new FeedPage(null, e);
+                        next = null;
+                    }
+
+                    // This blocks while we are too far ahead of the parser
+                    pages.put(page);
+                    if (page.error != null)
+                        return;
+                }
+
+                pages.put(FeedPage.LAST);
+            } catch (InterruptedException ie) {
+                // Parser stopped, nothing more to do
+            }
+        }
+
+        private byte[] download(URL page) throws IOException {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            final RemoteFileStream remoteStream = openStream(page, true);
+            if (remoteStream == null)
+                throw new IOException("No content for " + page);
+
+            try {
+                final byte[] buffer = new byte[8 * 1024];
+                int bytesRead;
+
+                while ((bytesRead = remoteStream.read(buffer)) > 0)
+                    result.write(buffer, 0, bytesRead);
+            } finally {
+                remoteStream.close();
+            }
+
+            return result.toByteArray();
+        }
+    }
 }
@@ -18,23 +18,36 @@
 
 package com.podcatcher.deluxe.model.tasks.remote;
 
+import com.podcatcher.deluxe.model.DateCodec;
 import com.podcatcher.deluxe.model.types.Progress;
 
 import android.os.AsyncTask;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 import static com.podcatcher.deluxe.Podcatcher.AUTHORIZATION_KEY;
 import static com.podcatcher.deluxe.Podcatcher.USER_AGENT_KEY;
 import static com.podcatcher.deluxe.Podcatcher.USER_AGENT_VALUE;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 
 /**
- * Abstract super class for file download tasks.
+ * Abstract super class for file download tasks. All tasks share the
+ * connections of the {@link RemoteFileClient}.
  *
  * @param <Params> Params as defined by {@link AsyncTask}
  * @param <Result> Result as defined by {@link AsyncTask}
@@ -53,9 +66,21 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
     protected static final int READ_TIMEOUT = 60000;
 
     /**
-     * The use caches flag set to the http connection before it is opened.
+     * The http response header field key for the entity tag
+     */
+    private static final String ETAG_KEY = "ETag";
+    /**
+     * The http request header field key for the conditional entity tag
+     */
+    private static final String IF_NONE_MATCH_KEY = "If-None-Match";
+    /**
+     * The http response header field key for the last modified date
      */
-    protected boolean useCaches = false;
+    private static final String LAST_MODIFIED_KEY = "Last-Modified";
+    /**
+     * The http request header field key for the conditional last modified date
+     */
+    private static final String IF_MODIFIED_SINCE_KEY = "If-Modified-Since";
 
     /**
      * The max stale cache control to set
@@ -71,9 +96,44 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
      */
     protected String authorization;
     /**
-     * The flag to indicate that authorization is/was required
+     * The flag to indicate that authorization is/was required, volatile since
+     * sub-classes might open streams from more than one thread
+     */
+    protected volatile boolean needsAuthorization = false;
+
+    /**
+     * The entity tag to send as a "If-None-Match" header with the next request
+     */
+    protected String ifNoneMatch;
+    /**
+     * The point in time (millis) to send as a "If-Modified-Since" header with
+     * the next request, values below or equal zero turn this off
+     */
+    protected long ifModifiedSince = -1;
+    /**
+     * The entity tag returned by the remote for the last request, if any
+     */
+    protected volatile String eTag;
+    /**
+     * The last modified date (millis) returned by the remote for the last
+     * request, -1 if not available
+     */
+    protected volatile long lastModified = -1;
+    /**
+     * The flag to indicate that the remote file was not modified
+     * (the server replied 304 to our conditional request)
      */
-    protected boolean needsAuthorization = false;
+    protected volatile boolean notModified = false;
+
+    /**
+     * The trace to record the load's timings and sizes to,
+     * <code>null</code> if the task does not trace
+     */
+    protected LoadTrace trace;
+    /**
+     * The number of bytes loaded by this task so far (all requests)
+     */
+    private final AtomicLong bytesLoaded = new AtomicLong();
 
     /**
      * Set a "max-stale" cache control directive when downloading the file. The
@@ -89,8 +149,8 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
     /**
      * Set a load limit for the actual download of the file. The default is a
      * negative number, turning off the limit evaluation. If positive and
-     * reached, {@link #loadFile(URL)} below will return <code>null</code>
-     * immediately.
+     * reached, {@link #loadFile(URL)} and streams returned by
+     * {@link #openStream(URL, boolean)} will fail immediately.
      *
      * @param bytes The limit to set in bytes.
      */
@@ -98,90 +158,72 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
         this.loadLimit = bytes;
     }
 
+    /**
+     * Set the validators to send with the next request. If the remote supports
+     * conditional requests and the file did not change, the request will not
+     * return any content but set the {@link #notModified} flag. The validators
+     * are only used for one request and reset afterwards.
+     *
+     * @param eTag         The entity tag from an earlier request, give
+     *                     <code>null</code> to skip.
+     * @param lastModified The last modified date (millis) from an earlier
+     *                     request, give values below or equal zero to skip.
+     */
+    public void setValidators(String eTag, long lastModified) {
+        this.ifNoneMatch = eTag;
+        this.ifModifiedSince = lastModified;
+    }
+
+    /**
+     * @return The number of bytes this task loaded from remote so far, including
+     * all requests it made. If the remote compressed the content, this counts
+     * the uncompressed bytes, so it will never be lower than the actual traffic.
+     */
+    public long getBytesLoaded() {
+        return bytesLoaded.get();
+    }
+
     /**
      * Download the file and return it as a byte array. Will feed
      * {@link #publishProgress(Object...)}.
      *
      * @param remote URL connection to load from.
-     * @return The file content.
+     * @return The file content or <code>null</code> if the file was not
+     * modified since the validators set with the request.
      * @throws IOException If something goes wrong.
+     * @see #openStream(URL, boolean)
      */
     protected byte[] loadFile(URL remote) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) remote.openConnection();
-        connection.setConnectTimeout(CONNECT_TIMEOUT);
-        connection.setReadTimeout(READ_TIMEOUT);
-        // Set whether we use the http cache
-        connection.setUseCaches(useCaches);
-        // We set a custom user agent here because some servers (e.g. ZDF.de)
-        // redirect connections from mobile devices to servers where the content
-        // we are looking for might not be available.
-        connection.setRequestProperty(USER_AGENT_KEY, USER_AGENT_VALUE);
-        // Set cache control directive
-        if (maxStale >= 0)
-            connection.addRequestProperty("Cache-Control", "max-stale=" + maxStale);
-        // Allow for password protected feeds
-        if (authorization != null)
-            connection.setRequestProperty(AUTHORIZATION_KEY, authorization);
-
-        BufferedInputStream bufferedRemoteStream = null;
+        RemoteFileStream remoteStream = null;
         ByteArrayOutputStream result = null;
 
         try {
-            // 1. Open stream and check whether we know its length
-            bufferedRemoteStream = new BufferedInputStream(connection.getInputStream());
-            final int contentLength = connection.getContentLength();
-            // Check whether we should abort load since we have a load limit set
-            // and the content length is higher.
-            if (loadLimit >= 0 && contentLength >= 0 && contentLength > loadLimit)
-                throw new IOException("Load limit exceeded (content length reported by remote is "
-                        + contentLength + " bytes, limit was " + loadLimit + " bytes)!");
-            // Check whether we could calculate the percentage of completion,
-            // this only works if a content length is given and the content is
-            // not gzipped
-            final boolean isZippedResponse = connection.getContentEncoding() != null &&
-                    connection.getContentEncoding().equals("gzip");
-            final boolean sendLoadProgress = contentLength > 0 && !isZippedResponse;
-
-            // showResponseHeaderDetails(connection);
+            // 1. Open stream (this checks the load limit, if possible)
+            remoteStream = openStream(remote, false);
+            if (remoteStream == null)
+                return null;
 
             // 2. Create the byte buffer to write to
             result = new ByteArrayOutputStream();
-            publishProgress(Progress.LOAD);
 
             byte[] buffer = new byte[1024];
             int bytesRead;
-            int totalBytes = 0;
-
-            // 3. Read stream and report progress (if possible)
-            while ((bytesRead = bufferedRemoteStream.read(buffer)) > 0) {
-                if (isCancelled())
-                    return null;
-
-                totalBytes += bytesRead;
-                if (loadLimit >= 0 && totalBytes > loadLimit)
-                    throw new IOException("Load limit exceeded (read " + totalBytes +
-                            " bytes, limit was " + loadLimit + " bytes)!");
 
+            // 3. Read stream, the remote stream reports progress (if possible)
+            while ((bytesRead = remoteStream.read(buffer)) > 0)
                 result.write(buffer, 0, bytesRead);
 
-                if (sendLoadProgress)
-                    publishProgress(new Progress(totalBytes, contentLength));
-            }
-
             // 4. Return result as a byte array
             return result.toByteArray();
-        } catch (IOException ioe) {
-            // Make sure sub-classes can react if auth is needed
-            if (connection.getResponseCode() == HTTP_UNAUTHORIZED)
-                needsAuthorization = true;
-
-            throw ioe;
+        } catch (InterruptedIOException iioe) {
+            // Task was cancelled while loading
+            return null;
         } finally {
             // Close the streams
-            // To remote
-            if (bufferedRemoteStream != null)
+            // To remote (this will also disconnect)
+            if (remoteStream != null)
                 try {
-                    bufferedRemoteStream.close();
+                    remoteStream.close();
                 } catch (Exception e) {
                     // Nothing we can do here
                 }
@@ -194,10 +236,307 @@ public abstract class LoadRemoteFileTask<Params, Result> extends
                     // Nothing we can do here
                 }
 
-            // Disconnect
-            connection.disconnect();
-
             // reportCacheStats();
         }
     }
+
+    /**
+     * Open a stream to the remote file. Other than {@link #loadFile(URL)}, this
+     * does not hold the file content in memory, but allows the caller to consume
+     * (e.g. parse) the content while it is downloaded. The stream returned will feed
+     * {@link #publishProgress(Object...)}, enforce the load limit and throw an
+     * {@link InterruptedIOException} once the task is cancelled. Make sure to close
+     * the stream when done, this will also close the underlying connection.
+     *
+     * @param remote               URL connection to load from.
+     * @param skipLeadingWhitespace Whether the stream should drop any whitespace
+     *                              at the very beginning of the file. This is useful
+     *                              because these make the XML pull parser fail.
+     * @return The stream to read the file content from or <code>null</code>
+     * if the file was not modified since the validators set with the request.
+     * @throws IOException If something goes wrong.
+     * @see #setValidators(String, long)
+     */
+    protected RemoteFileStream openStream(URL remote, boolean skipLeadingWhitespace) throws IOException {
+        final RemoteFileClient client = RemoteFileClient.getInstance();
+        final Request request = buildRequest(remote);
+        final Response response = client.execute(request);
+
+        try {
+            // 0. Check whether the remote file changed at all and keep the
+            // validators given, so the next request can be conditional
+            this.notModified = response.code() == HTTP_NOT_MODIFIED;
+            if (notModified) {
+                client.release(request, response);
+                return null;
+            }
+
+            // Make sure sub-classes can react if auth is needed
+            if (response.code() == HTTP_UNAUTHORIZED)
+                needsAuthorization = true;
+            if (!response.isSuccessful())
+                throw new IOException("Remote returned error code " + response.code());
+
+            this.eTag = response.header(ETAG_KEY);
+            final Date lastModifiedDate = response.headers().getDate(LAST_MODIFIED_KEY);
+            this.lastModified = lastModifiedDate != null && lastModifiedDate.getTime() > 0 ?
+                    lastModifiedDate.getTime() : -1;
+
+            // 1. Open stream and check whether we know its length, this is not
+            // the case if the content is gzipped, since the http client
+            // transparently unzips the content and drops the length
+            final ResponseBody body = response.body();
+            final InputStream bufferedRemoteStream = new BufferedInputStream(body.byteStream());
+            final long contentLength = body.contentLength();
+            // Check whether we should abort load since we have a load limit set
+            // and the content length is higher.
+            if (loadLimit >= 0 && contentLength >= 0 && contentLength > loadLimit)
+                throw new IOException("Load limit exceeded (content length reported by remote is "
+                        + contentLength + " bytes, limit was " + loadLimit + " bytes)!");
+
+            // 2. Wrap the stream, this will count bytes and report progress
+            publishProgress(Progress.LOAD);
+            return new RemoteFileStream(bufferedRemoteStream, client, request, response,
+                    contentLength > 0 && contentLength <= Integer.MAX_VALUE ? (int) contentLength : -1,
+                    skipLeadingWhitespace);
+        } catch (IOException | RuntimeException e) {
+            // Close the response and release the connection
+            client.release(request, response);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Create and configure the request for the remote file.
+     *
+     * @param remote URL to request.
+     * @return The request.
+     * @throws MalformedURLException If the URL is not a http(s) URL.
+     */
+    private Request buildRequest(URL remote) throws MalformedURLException {
+        final Request.Builder builder = new Request.Builder();
+        try {
+            builder.url(remote);
+        } catch (IllegalArgumentException iae) {
+            throw new MalformedURLException("Cannot load " + remote);
+        }
+
+        // We set a custom user agent here because some servers (e.g. ZDF.de)
+        // redirect connections from mobile devices to servers where the content
+        // we are looking for might not be available.
+        builder.header(USER_AGENT_KEY, USER_AGENT_VALUE);
+        // Set cache control directive
+        if (maxStale >= 0)
+            builder.addHeader("Cache-Control", "max-stale=" + maxStale);
+        // Allow for password protected feeds
+        if (authorization != null)
+            builder.header(AUTHORIZATION_KEY, authorization);
+        // Make the request conditional if we have validators (only once)
+        if (ifNoneMatch != null)
+            builder.header(IF_NONE_MATCH_KEY, ifNoneMatch);
+        if (ifModifiedSince > 0) {
+            builder.header(IF_MODIFIED_SINCE_KEY, DateCodec.formatHttpDate(ifModifiedSince));
+        }
+        this.ifNoneMatch = null;
+        this.ifModifiedSince = -1;
+        // Have the client record connection timings
+        if (trace != null)
+            builder.tag(trace);
+
+        return builder.build();
+    }
+
+    /**
+     * The stream returned by {@link #openStream(URL, boolean)}. Counts the bytes
+     * read, reports progress, enforces the load limit and reacts to the task
+     * being cancelled. It also calculates a checksum over all the bytes read
+     * that can be used to detect whether the remote file changed.
+     */
+    protected class RemoteFileStream extends FilterInputStream {
+
+        /**
+         * The client the stream's response came from
+         */
+        private final RemoteFileClient client;
+        /**
+         * The request the stream's response answers
+         */
+        private final Request request;
+        /**
+         * The response the stream reads from
+         */
+        private final Response response;
+        /**
+         * The content length, if known and progress should be reported, -1 otherwise
+         */
+        private final int contentLength;
+        /**
+         * Flag indicating whether leading whitespaces still need to be skipped
+         */
+        private boolean skipLeadingWhitespace;
+        /**
+         * The number of bytes read from the remote so far
+         */
+        private int totalBytes = 0;
+        /**
+         * The checksum over all bytes read so far
+         */
+        private final CRC32 checksum = new CRC32();
+        /**
+         * The time spent waiting for the remote in read calls (nanos)
+         */
+        private long readNanos = 0;
+        /**
+         * Flag indicating whether the stream has been closed
+         */
+        private boolean closed = false;
+
+        private RemoteFileStream(InputStream in, RemoteFileClient client, Request request,
+                                 Response response, int contentLength, boolean skipLeadingWhitespace) {
+            super(in);
+
+            this.client = client;
+            this.request = request;
+            this.response = response;
+            this.contentLength = contentLength;
+            this.skipLeadingWhitespace = skipLeadingWhitespace;
+        }
+
+        /**
+         * @return The number of bytes read from the remote file so far,
+         * including any skipped leading whitespaces.
+         */
+        public int getBytesRead() {
+            return totalBytes;
+        }
+
+        /**
+         * @return The time spent in read calls waiting for the remote so far (nanos).
+         * Subtract this from the time a consumer of the stream took to get the
+         * consumer's own processing time.
+         */
+        public long getReadNanos() {
+            return readNanos;
+        }
+
+        /**
+         * @return A hash over the content read so far, including any skipped
+         * leading whitespaces. This combines the content's CRC-32 checksum
+         * (lower half) with its length (upper half), so it is never zero once
+         * some content has been read. Only compare values taken after the
+         * stream is consumed completely.
+         */
+        public long getContentHash() {
+            return ((long) totalBytes << 32) | checksum.getValue();
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            skipLeadingWhitespace();
+
+            final long start = System.nanoTime();
+            final int result = super.read();
+            readNanos += System.nanoTime() - start;
+            if (result >= 0) {
+                checksum.update(result);
+                count(1);
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            checkCancelled();
+            skipLeadingWhitespace();
+
+            final long start = System.nanoTime();
+            final int bytesRead = super.read(buffer, offset, length);
+            readNanos += System.nanoTime() - start;
+            if (bytesRead > 0) {
+                checksum.update(buffer, offset, bytesRead);
+                count(bytesRead);
+            }
+
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long byteCount) throws IOException {
+            if (byteCount <= 0)
+                return 0;
+
+            // We need to see all bytes to keep the checksum intact
+            final byte[] buffer = new byte[(int) Math.min(byteCount, 1024)];
+            long skipped = 0;
+
+            while (skipped < byteCount) {
+                final int bytesRead = read(buffer, 0, (int) Math.min(byteCount - skipped, buffer.length));
+                if (bytesRead <= 0)
+                    break;
+
+                skipped += bytesRead;
+            }
+
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            // Marking would mess up our byte count
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Make sure to release the response only once
+            if (closed)
+                return;
+            closed = true;
+
+            try {
+                super.close();
+            } finally {
+                client.release(request, response);
+
+                bytesLoaded.addAndGet(totalBytes);
+                if (trace != null)
+                    trace.onTransfer(readNanos, totalBytes);
+            }
+        }
+
+        private void skipLeadingWhitespace() throws IOException {
+            // This relies on the wrapped stream being buffered (supporting mark/reset)
+            while (skipLeadingWhitespace) {
+                in.mark(1);
+                final int next = in.read();
+
+                if (next >= 0 && Character.isWhitespace(next)) {
+                    checksum.update(next);
+                    count(1);
+                }
+                else {
+                    in.reset();
+                    skipLeadingWhitespace = false;
+                }
+            }
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (isCancelled())
+                throw new InterruptedIOException("Load cancelled");
+        }
+
+        private void count(int bytesRead) throws IOException {
+            totalBytes += bytesRead;
+            if (loadLimit >= 0 && totalBytes > loadLimit)
+                throw new IOException("Load limit exceeded (read " + totalBytes +
+                        " bytes, limit was " + loadLimit + " bytes)!");
+
+            if (contentLength > 0)
+                publishProgress(new Progress(totalBytes, contentLength));
+        }
+    }
 }
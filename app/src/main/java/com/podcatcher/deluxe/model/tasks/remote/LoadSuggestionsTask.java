@@ -127,7 +127,7 @@ public class LoadSuggestionsTask extends LoadRemoteFileTask<Void, List<Suggestio
                 suggestions = restoreSuggestionsFromFileCache();
             else {
                 // 1.2 If that is not the case, we need to go over the air and
-                // store a cached version ourselves (useCaches = false)
+                // store a cached version ourselves (there is no http cache)
                 suggestions = loadFile(new URL(SOURCE));
                 storeSuggestionsToFileCache(suggestions);
             }
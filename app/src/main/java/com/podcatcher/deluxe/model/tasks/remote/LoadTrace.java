@@ -0,0 +1,300 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.tasks.remote;
+
+import android.net.Uri;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timings and sizes recorded for one feed load. A trace covers all the
+ * requests a task makes (e.g. for all pages of a paged feed), but connect
+ * time and time to first byte are only taken from the first request.
+ * All times are wall clock times in milliseconds, -1 if not available.
+ * <p>
+ * Traces are filled by the loading task and the {@link RemoteFileClient},
+ * they are complete once {@link #isFinished()} and then collected by
+ * {@link LoadTraceLog}.
+ * </p>
+ *
+ * @see LoadTraceLog
+ */
+public class LoadTrace {
+
+    /**
+     * The URL loaded
+     */
+    private final String url;
+    /**
+     * The host loaded from
+     */
+    private final String host;
+    /**
+     * When the load started (epoch millis)
+     */
+    private final long startedAt;
+    /**
+     * When the load started (nano time)
+     */
+    private final long startNanos;
+
+    /**
+     * When the first request started (nano time), 0 if not yet
+     */
+    private long callStartNanos;
+    /**
+     * The time to get a connection, including DNS, TCP and TLS
+     */
+    private long connectMillis = -1;
+    /**
+     * Whether the first request reused a pooled connection
+     */
+    private boolean connectionReused = true;
+    /**
+     * The time from starting the first request to the response headers
+     */
+    private long timeToFirstByteMillis = -1;
+    /**
+     * The time spent reading response bodies (nanos)
+     */
+    private long transferNanos;
+    /**
+     * The number of bytes received from the network, -1 until a response body ended
+     */
+    private long compressedBytes = -1;
+    /**
+     * The number of bytes read after decompression
+     */
+    private long decompressedBytes;
+    /**
+     * The time spent parsing, not counting the time waiting for the network (nanos)
+     */
+    private long parseNanos;
+    /**
+     * The number of episodes after the load
+     */
+    private int episodeCount = -1;
+    /**
+     * The time spent waiting for the episode metadata (nanos)
+     */
+    private long metadataWaitNanos;
+    /**
+     * The time spent merging the episode metadata (nanos)
+     */
+    private long metadataMergeNanos;
+    /**
+     * The total time of the load
+     */
+    private long totalMillis = -1;
+    /**
+     * The load's outcome, <code>null</code> while not finished
+     */
+    private String outcome;
+
+    /**
+     * Create a new trace and start the clock.
+     *
+     * @param url The URL loaded.
+     */
+    public LoadTrace(String url) {
+        this.url = url;
+        this.host = url == null ? null : Uri.parse(url).getHost();
+        this.startedAt = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return The URL loaded.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return The host loaded from, might be <code>null</code>.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return When the load started.
+     */
+    public Date getStartedAt() {
+        return new Date(startedAt);
+    }
+
+    /**
+     * @return The time to get a connection (DNS, TCP and TLS). Close to zero
+     * if a pooled connection was reused.
+     */
+    public synchronized long getConnectMillis() {
+        return connectMillis;
+    }
+
+    /**
+     * @return Whether the first request ran on a pooled connection.
+     */
+    public synchronized boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    /**
+     * @return The time from starting the first request to its response headers.
+     */
+    public synchronized long getTimeToFirstByteMillis() {
+        return timeToFirstByteMillis;
+    }
+
+    /**
+     * @return The time spent reading content from the network. For feeds parsed
+     * while loading, this is the time the parser had to wait for data.
+     */
+    public synchronized long getTransferMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(transferNanos);
+    }
+
+    /**
+     * @return The number of bytes received from the network, -1 if not known.
+     */
+    public synchronized long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return The number of content bytes after decompression.
+     */
+    public synchronized long getDecompressedBytes() {
+        return decompressedBytes;
+    }
+
+    /**
+     * @return The time spent parsing, excluding the time waiting for the network.
+     */
+    public synchronized long getParseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(parseNanos);
+    }
+
+    /**
+     * @return The number of episodes the podcast has after the load, -1 if not known.
+     */
+    public synchronized int getEpisodeCount() {
+        return episodeCount;
+    }
+
+    /**
+     * @return The time spent blocked waiting for the episode metadata to become available.
+     */
+    public synchronized long getMetadataWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metadataWaitNanos);
+    }
+
+    /**
+     * @return The time spent merging episode metadata into the podcast's episodes.
+     */
+    public synchronized long getMetadataMergeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metadataMergeNanos);
+    }
+
+    /**
+     * @return The total time of the load, -1 if not finished.
+     */
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * @return The load's outcome (e.g. "OK" or an error code), <code>null</code>
+     * while not finished.
+     */
+    public synchronized String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return Whether the load is complete.
+     */
+    public synchronized boolean isFinished() {
+        return outcome != null;
+    }
+
+    synchronized void onCallStart() {
+        if (callStartNanos == 0)
+            callStartNanos = System.nanoTime();
+    }
+
+    synchronized void onConnectStart() {
+        if (timeToFirstByteMillis < 0)
+            connectionReused = false;
+    }
+
+    synchronized void onConnectionAcquired() {
+        if (connectMillis < 0 && callStartNanos > 0)
+            connectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - callStartNanos);
+    }
+
+    synchronized void onResponseHeadersStart() {
+        if (timeToFirstByteMillis < 0 && callStartNanos > 0)
+            timeToFirstByteMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - callStartNanos);
+    }
+
+    synchronized void onResponseBodyEnd(long byteCount) {
+        compressedBytes = Math.max(0, compressedBytes) + byteCount;
+    }
+
+    synchronized void onTransfer(long nanos, long bytes) {
+        transferNanos += nanos;
+        decompressedBytes += bytes;
+    }
+
+    synchronized void onParse(long nanos) {
+        parseNanos += Math.max(0, nanos);
+    }
+
+    synchronized void onMetadataWait(long nanos) {
+        metadataWaitNanos += nanos;
+    }
+
+    synchronized void onMetadataMerge(long nanos) {
+        metadataMergeNanos += nanos;
+    }
+
+    synchronized void setEpisodeCount(int count) {
+        this.episodeCount = count;
+    }
+
+    synchronized void finish(String outcome) {
+        if (this.outcome == null) {
+            this.outcome = outcome;
+            this.totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s [%s] total %dms, connect %dms%s, ttfb %dms, " +
+                        "transfer %dms (%d/%d bytes), parse %dms, %d episodes, " +
+                        "metadata wait %dms, merge %dms",
+                url, outcome, totalMillis, connectMillis, connectionReused ? " (reused)" : "",
+                timeToFirstByteMillis, getTransferMillis(), compressedBytes, decompressedBytes,
+                getParseMillis(), episodeCount, getMetadataWaitMillis(), getMetadataMergeMillis());
+    }
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.tasks.remote;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects the {@link LoadTrace}s of finished feed loads. Only the most recent
+ * traces are kept in memory (see {@link #CAPACITY}), older ones are dropped.
+ * Use {@link #getSummaryByPodcast()} and {@link #getSummaryByHost()} to find
+ * the feeds that dominate the refresh cost.
+ */
+public class LoadTraceLog {
+
+    /**
+     * The maximum number of traces kept
+     */
+    public static final int CAPACITY = 256;
+    /**
+     * The outcome of loads that completed successfully
+     */
+    public static final String OUTCOME_OK = "OK";
+
+    /**
+     * The single instance
+     */
+    private static final LoadTraceLog log = new LoadTraceLog();
+
+    /**
+     * The traces, oldest first
+     */
+    private final Deque<LoadTrace> traces = new ArrayDeque<>(CAPACITY);
+
+    /**
+     * Percentile summary for a group of traces
+     */
+    public static class Summary {
+
+        /**
+         * The number of loads
+         */
+        private final int count;
+        /**
+         * The number of loads that did not complete successfully
+         */
+        private final int failures;
+        /**
+         * Total time percentiles (50, 90, 99)
+         */
+        private final long[] total;
+        /**
+         * Time to first byte percentiles (50, 90, 99)
+         */
+        private final long[] timeToFirstByte;
+        /**
+         * Connect time percentiles (50, 90, 99)
+         */
+        private final long[] connect;
+        /**
+         * Transfer time percentiles (50, 90, 99)
+         */
+        private final long[] transfer;
+        /**
+         * Parse time percentiles (50, 90, 99)
+         */
+        private final long[] parse;
+        /**
+         * The bytes received from the network in total
+         */
+        private final long compressedBytes;
+        /**
+         * The content bytes in total
+         */
+        private final long decompressedBytes;
+
+        private Summary(List<LoadTrace> group) {
+            final int size = group.size();
+            final long[] totals = new long[size];
+            final long[] ttfbs = new long[size];
+            final long[] connects = new long[size];
+            final long[] transfers = new long[size];
+            final long[] parses = new long[size];
+            long compressed = 0;
+            long decompressed = 0;
+            int failed = 0;
+
+            for (int index = 0; index < size; index++) {
+                final LoadTrace trace = group.get(index);
+
+                totals[index] = trace.getTotalMillis();
+                ttfbs[index] = trace.getTimeToFirstByteMillis();
+                connects[index] = trace.getConnectMillis();
+                transfers[index] = trace.getTransferMillis();
+                parses[index] = trace.getParseMillis();
+                compressed += Math.max(0, trace.getCompressedBytes());
+                decompressed += trace.getDecompressedBytes();
+
+                if (!LoadTraceLog.OUTCOME_OK.equals(trace.getOutcome()))
+                    failed++;
+            }
+
+            this.count = size;
+            this.failures = failed;
+            this.total = percentiles(totals);
+            this.timeToFirstByte = percentiles(ttfbs);
+            this.connect = percentiles(connects);
+            this.transfer = percentiles(transfers);
+            this.parse = percentiles(parses);
+            this.compressedBytes = compressed;
+            this.decompressedBytes = decompressed;
+        }
+
+        /**
+         * @return The number of loads summarized.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return The number of loads that did not complete successfully.
+         */
+        public int getFailureCount() {
+            return failures;
+        }
+
+        /**
+         * @param percentile Percentile to get, one of 50, 90 or 99.
+         * @return The total load time at the percentile given (millis).
+         */
+        public long getTotalMillis(int percentile) {
+            return total[index(percentile)];
+        }
+
+        /**
+         * @param percentile Percentile to get, one of 50, 90 or 99.
+         * @return The time to first byte at the percentile given (millis).
+         */
+        public long getTimeToFirstByteMillis(int percentile) {
+            return timeToFirstByte[index(percentile)];
+        }
+
+        /**
+         * @param percentile Percentile to get, one of 50, 90 or 99.
+         * @return The connect time at the percentile given (millis).
+         */
+        public long getConnectMillis(int percentile) {
+            return connect[index(percentile)];
+        }
+
+        /**
+         * @param percentile Percentile to get, one of 50, 90 or 99.
+         * @return The transfer time at the percentile given (millis).
+         */
+        public long getTransferMillis(int percentile) {
+            return transfer[index(percentile)];
+        }
+
+        /**
+         * @param percentile Percentile to get, one of 50, 90 or 99.
+         * @return The parse time at the percentile given (millis).
+         */
+        public long getParseMillis(int percentile) {
+            return parse[index(percentile)];
+        }
+
+        /**
+         * @return The bytes received from the network by all loads.
+         */
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        /**
+         * @return The content bytes read by all loads.
+         */
+        public long getDecompressedBytes() {
+            return decompressedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d loads (%d failed), total p50/p90/p99 %d/%d/%dms, " +
+                            "connect p50/p90/p99 %d/%d/%dms, ttfb p50/p90/p99 %d/%d/%dms, " +
+                            "transfer p50/p90/p99 %d/%d/%dms, parse p50/p90/p99 %d/%d/%dms, %d/%d bytes",
+                    count, failures, total[0], total[1], total[2],
+                    connect[0], connect[1], connect[2],
+                    timeToFirstByte[0], timeToFirstByte[1], timeToFirstByte[2],
+                    transfer[0], transfer[1], transfer[2],
+                    parse[0], parse[1], parse[2], compressedBytes, decompressedBytes);
+        }
+
+        private static int index(int percentile) {
+            return percentile <= 50 ? 0 : percentile <= 90 ? 1 : 2;
+        }
+
+        private static long[] percentiles(long[] values) {
+            Arrays.sort(values);
+
+            return new long[]{rank(values, 50), rank(values, 90), rank(values, 99)};
+        }
+
+        private static long rank(long[] sorted, int percentile) {
+            if (sorted.length == 0)
+                return -1;
+
+            // Nearest rank method
+            final int rank = (int) Math.ceil(percentile / 100d * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+        }
+    }
+
+    private LoadTraceLog() {
+        // Use getInstance()
+    }
+
+    /**
+     * @return The single instance.
+     */
+    public static LoadTraceLog getInstance() {
+        return log;
+    }
+
+    /**
+     * Add a finished trace, dropping the oldest trace if full.
+     *
+     * @param trace The trace to add, ignored if not finished.
+     */
+    public synchronized void record(@NonNull LoadTrace trace) {
+        if (!trace.isFinished())
+            return;
+
+        if (traces.size() == CAPACITY)
+            traces.removeFirst();
+
+        traces.addLast(trace);
+    }
+
+    /**
+     * @return The traces kept, oldest first.
+     */
+    @NonNull
+    public synchronized List<LoadTrace> getTraces() {
+        return Collections.unmodifiableList(new ArrayList<>(traces));
+    }
+
+    /**
+     * Remove all traces.
+     */
+    public synchronized void clear() {
+        traces.clear();
+    }
+
+    /**
+     * @return Summaries of the traces kept by feed URL.
+     */
+    @NonNull
+    public Map<String, Summary> getSummaryByPodcast() {
+        final Map<String, List<LoadTrace>> groups = new HashMap<>();
+
+        for (LoadTrace trace : getTraces())
+            addToGroup(groups, trace.getUrl(), trace);
+
+        return summarize(groups);
+    }
+
+    /**
+     * @return Summaries of the traces kept by feed host.
+     */
+    @NonNull
+    public Map<String, Summary> getSummaryByHost() {
+        final Map<String, List<LoadTrace>> groups = new HashMap<>();
+
+        for (LoadTrace trace : getTraces())
+            addToGroup(groups, trace.getHost(), trace);
+
+        return summarize(groups);
+    }
+
+    private void addToGroup(Map<String, List<LoadTrace>> groups, String key, LoadTrace trace) {
+        List<LoadTrace> group = groups.get(key);
+        if (group == null) {
+            group = new ArrayList<>();
+            groups.put(key, group);
+        }
+
+        group.add(trace);
+    }
+
+    private Map<String, Summary> summarize(Map<String, List<LoadTrace>> groups) {
+        final Map<String, Summary> result = new HashMap<>();
+
+        for (Map.Entry<String, List<LoadTrace>> group : groups.entrySet())
+            result.put(group.getKey(), new Summary(group.getValue()));
+
+        return result;
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.tasks.remote;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The HTTP client shared by all {@link LoadRemoteFileTask}s. Wraps a single
+ * {@link OkHttpClient}, so all remote file loads share one connection pool
+ * (and HTTP/2 connections where the server supports it). This means that the
+ * many feeds often hosted by the same server (e.g. feedburner, libsyn) reuse
+ * connections instead of doing a new (TLS) handshake for each feed. In addition,
+ * the client limits the number of concurrent requests to the same host. There
+ * is no response cache involved. Requests tagged with a {@link LoadTrace} get
+ * their connect and first byte timings recorded.
+ * <p>
+ * <b>Usage:</b> Call {@link #execute(Request)} to run a request, this might
+ * block until a connection to the host becomes available. Once done with the
+ * response, you <em>have to</em> call {@link #release(Request, Response)}.
+ * </p>
+ */
+public class RemoteFileClient {
+
+    /**
+     * The default number of concurrent requests per host
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+    /**
+     * The default number of idle connections kept in the pool
+     */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    /**
+     * The default time idle connections are kept alive (in milliseconds)
+     */
+    public static final long DEFAULT_KEEP_ALIVE = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The single instance
+     */
+    private static RemoteFileClient client;
+
+    /**
+     * The actual http client
+     */
+    private final OkHttpClient httpClient;
+    /**
+     * The maximum number of concurrent requests per host
+     */
+    private final int maxRequestsPerHost;
+    /**
+     * The permits available per host
+     */
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Create the client.
+     *
+     * @param maxRequestsPerHost The number of concurrent requests per host.
+     * @param maxIdleConnections The number of idle connections to keep in the pool.
+     * @param keepAlive          The time to keep idle connections alive (in milliseconds).
+     */
+    private RemoteFileClient(int maxRequestsPerHost, int maxIdleConnections, long keepAlive) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive, TimeUnit.MILLISECONDS))
+                .connectTimeout(LoadRemoteFileTask.CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)
+                .readTimeout(LoadRemoteFileTask.READ_TIMEOUT, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(new EventListener.Factory() {
+
+                    @Override
+                    public EventListener create(@NonNull Call call) {
+                        final Object tag = call.request().tag();
+
+                        return tag instanceof LoadTrace ?
+                                new TraceListener((LoadTrace) tag) : EventListener.NONE;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Get the shared client instance. Will create the client using the
+     * default configuration if {@link #configure(int, int, long)} has
+     * not been called before.
+     *
+     * @return The singleton instance.
+     */
+    public static synchronized RemoteFileClient getInstance() {
+        if (client == null)
+            client = new RemoteFileClient(DEFAULT_MAX_REQUESTS_PER_HOST,
+                    DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE);
+
+        return client;
+    }
+
+    /**
+     * Configure the shared client. Only requests started after this call
+     * are affected, requests running use the configuration they started with.
+     *
+     * @param maxRequestsPerHost The number of concurrent requests per host (>0).
+     * @param maxIdleConnections The number of idle connections to keep in the pool.
+     * @param keepAlive          The time to keep idle connections alive (in milliseconds).
+     */
+    public static synchronized void configure(int maxRequestsPerHost, int maxIdleConnections,
+                                              long keepAlive) {
+        client = new RemoteFileClient(Math.max(1, maxRequestsPerHost), maxIdleConnections, keepAlive);
+    }
+
+    /**
+     * Run the given request. This will block while the maximum number of
+     * requests to the request's host are running. Make sure to call
+     * {@link #release(Request, Response)} once done with the response.
+     *
+     * @param request Request to run.
+     * @return The response.
+     * @throws IOException If the request fails or the thread is interrupted
+     *                     while waiting for the host to become available.
+     */
+    @NonNull
+    public Response execute(@NonNull Request request) throws IOException {
+        final Semaphore permits = getPermits(request);
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException("Interrupted while waiting for " + request.url().host());
+        }
+
+        try {
+            return httpClient.newCall(request).execute();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Close the response given and make its host available for other
+     * requests.
+     *
+     * @param request  The request as given to {@link #execute(Request)}.
+     * @param response The response as returned by {@link #execute(Request)}.
+     */
+    public void release(@NonNull Request request, @NonNull Response response) {
+        try {
+            if (response.body() != null)
+                response.body().close();
+        } finally {
+            getPermits(request).release();
+        }
+    }
+
+    /**
+     * @return The number of idle connections in the pool.
+     */
+    public int getIdleConnectionCount() {
+        return httpClient.connectionPool().idleConnectionCount();
+    }
+
+    /**
+     * @return The total number of connections in the pool.
+     */
+    public int getConnectionCount() {
+        return httpClient.connectionPool().connectionCount();
+    }
+
+    private Semaphore getPermits(Request request) {
+        // We use the original request's host, redirects do not count
+        final String host = request.url().host();
+
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null) {
+            final Semaphore newPermits = new Semaphore(maxRequestsPerHost, true);
+            permits = hostPermits.putIfAbsent(host, newPermits);
+
+            if (permits == null)
+                permits = newPermits;
+        }
+
+        return permits;
+    }
+
+    /**
+     * Records the network events of a call into its trace
+     */
+    private static class TraceListener extends EventListener {
+
+        /**
+         * The trace to record to
+         */
+        private final LoadTrace trace;
+
+        private TraceListener(LoadTrace trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            trace.onCallStart();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            trace.onConnectStart();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            trace.onConnectionAcquired();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            trace.onResponseHeadersStart();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            trace.onResponseBodyEnd(byteCount);
+        }
+    }
+}
@@ -67,6 +67,14 @@ public class Progress {
      * Done state
      */
     public static final Progress DONE = new Progress(PROGRESS_DONE, -1);
+    /**
+     * Flag indicating a page of a paged feed was added
+     */
+    protected static final int PROGRESS_PAGE = -6;
+    /**
+     * Page added state
+     */
+    public static final Progress PAGE = new Progress(PROGRESS_PAGE, -1);
 
     /**
      * The actual amount of progress made
@@ -128,6 +136,8 @@ public class Progress {
                     return "Parse";
                 case PROGRESS_DONE:
                     return "Done";
+                case PROGRESS_PAGE:
+                    return "Page";
                 default:
                     return "Unknown progress";
             }
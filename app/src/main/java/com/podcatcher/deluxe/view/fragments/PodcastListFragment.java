@@ -52,6 +52,7 @@ import android.widget.ListView;
 
 import com.squareup.picasso.Picasso;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -271,7 +272,8 @@ public class PodcastListFragment extends PodcatcherListFragment {
      * @param podcastList List of podcasts to show.
      */
     public void setPodcastList(List<Podcast> podcastList) {
-        this.currentPodcastList = podcastList;
+        // We add and remove podcasts on our own, so we need a copy
+        this.currentPodcastList = new ArrayList<>(podcastList);
 
         showProgress = false;
         showLoadFailed = false;
@@ -284,9 +286,9 @@ public class PodcastListFragment extends PodcatcherListFragment {
         if (viewCreated) {
             if (adapter == null)
                 // This also set the member
-                setListAdapter(new PodcastListAdapter(getActivity(), podcastList));
+                setListAdapter(new PodcastListAdapter(getActivity(), currentPodcastList));
             else
-                ((PodcastListAdapter) adapter).updateList(podcastList);
+                ((PodcastListAdapter) adapter).updateList(currentPodcastList);
 
             updateUiElementVisibility();
         }
@@ -0,0 +1,576 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.model.DateCodec;
+import com.podcatcher.deluxe.model.FeedPlatform;
+import com.podcatcher.deluxe.model.ParserUtils;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Creates the documents the app reads and writes, in any size and with the
+ * kind of mess found in the wild: RSS feeds (with Atom paging links), OPML
+ * subscription lists and the app's episode metadata file. The output only
+ * depends on the seed and the parameters given, so benchmark runs are
+ * comparable. Run {@link #main(String[])} to write a corpus to disk.
+ */
+public class CorpusGenerator {
+
+    /**
+     * How far the documents generated deviate from the specs
+     */
+    public enum Messiness {
+        /**
+         * Plain RSS 2.0 as in the spec, one enclosure, RFC 822 dates
+         */
+        CLEAN,
+
+        /**
+         * What most feeds look like: iTunes and content namespaces, HTML show
+         * notes, some chapter marks, mixed case element names
+         */
+        TYPICAL,
+
+        /**
+         * All of the above plus character references and markup in titles,
+         * odd and broken dates, several enclosures of different types,
+         * unknown sub-trees and paging links
+         */
+        MESSY
+    }
+
+    /**
+     * The publication date of episode number zero (millis)
+     */
+    private static final long FIRST_PUB_DATE = 946684800000L;
+    /**
+     * The time between two episodes (millis)
+     */
+    private static final long PUB_INTERVAL = 24 * 60 * 60 * 1000L;
+    /**
+     * The encoding used for all documents
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Month names as found in feeds
+     */
+    private static final String[] MONTHS = {"January", "February", "March", "April", "May", "June",
+            "July", "August", "September", "October", "November", "December"};
+    /**
+     * Day names as found in feeds (Sunday is first, like in the calendar)
+     */
+    private static final String[] DAYS = {"Sunday", "Monday", "Tuesday", "Wednesday", "Thursday",
+            "Friday", "Saturday"};
+    /**
+     * Zones as found in feeds, named and numeric
+     */
+    private static final String[] ZONES = {"GMT", "UT", "Z", "EST", "PDT", "CEST", "AEST", "+0100",
+            "-0500", "+05:30", ""};
+    /**
+     * Episode titles with character references and markup (HTML entities
+     * need to be escaped to keep the feed well-formed XML)
+     */
+    private static final String[] MESSY_TITLES = {"Episode %d &amp;amp; friends", "Caf&amp;eacute; talk #%d",
+            "&#8220;Quoted&#8221; number %d", "It&#x2019;s episode %d", "<![CDATA[<b>Bold</b> episode %d]]>",
+            "  Episode\n\t%d   spaced  ", "Episode %d &amp;ndash; &amp;Uuml;ber &amp;copy &amp;unknown; &amp;amp",
+            "%d &lt;3"};
+    /**
+     * Media types for extra enclosures
+     */
+    private static final String[][] EXTRA_ENCLOSURES = {{"video/mp4", ".mp4"}, {"image/jpeg", ".jpg"},
+            {"audio/x-m4a", ".m4a"}, {"application/pdf", ".pdf"}, {"", ".ogg"}};
+    /**
+     * Hosts used in URLs
+     */
+    private static final String[] HOSTS = {"www.example.com", "feeds.example.org", "Media.Example.NET",
+            "cdn.example.com:80", "example.co.uk", "feeds.feedburner.com"};
+
+    /**
+     * Syllables words in generated texts are made of
+     */
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "sa", "te", "vo", "zi", "pa",
+            "dor", "fen", "gil", "han", "jus", "kel", "mon", "pir", "quo", "tas", "ber", "cil", "dra", "wen"};
+    /**
+     * The number of distinct words in generated texts
+     */
+    private static final int VOCABULARY_SIZE = 20000;
+
+    /**
+     * The random seed all documents are derived from
+     */
+    private final long seed;
+    /**
+     * The words for generated texts, most frequent first, created when needed
+     */
+    private String[] vocabulary;
+    /**
+     * The cumulative frequencies of the words, same order
+     */
+    private double[] frequencies;
+
+    /**
+     * Create a new generator.
+     *
+     * @param seed The random seed, the same seed gives the same documents.
+     */
+    public CorpusGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Create a feed document with items numbered from the given count down
+     * to one, sorted newest-first like most feeds are.
+     *
+     * @param items     The number of items (episodes) in the feed.
+     * @param messiness How messy the feed should be.
+     * @return The feed document.
+     */
+    public String feed(int items, Messiness messiness) {
+        final StringBuilder feed = new StringBuilder(items * 1500 + 2000);
+
+        feed.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<rss version=\"2.0\" xmlns:itunes=\"http://www.itunes.com/dtds/podcast-1.0.dtd\" ")
+                .append("xmlns:content=\"http://purl.org/rss/1.0/modules/content/\" ")
+                .append("xmlns:atom=\"http://www.w3.org/2005/Atom\" ")
+                .append("xmlns:psc=\"http://podlove.org/simple-chapters\" ")
+                .append("xmlns:media=\"http://search.yahoo.com/mrss/\" ")
+                .append("xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n<channel>\n")
+                .append("<title>Corpus Podcast ").append(seed).append("</title>\n")
+                .append("<link>http://www.example.com/</link>\n")
+                .append("<description>A podcast generated for benchmarking</description>\n")
+                .append("<language>en-us</language>\n");
+
+        if (messiness != Messiness.CLEAN)
+            feed.append("<atom:link rel=\"self\" href=\"http://www.example.com/feed\" />\n")
+                    .append("<itunes:explicit>no</itunes:explicit>\n")
+                    .append("<itunes:image href=\"http://www.example.com/logo.jpg\" />\n")
+                    .append("<itunes:owner><itunes:name>Owner</itunes:name>")
+                    .append("<itunes:email>owner@example.com</itunes:email></itunes:owner>\n")
+                    .append("<itunes:category text=\"Technology\"><itunes:category text=\"Podcasting\"/>")
+                    .append("</itunes:category>\n");
+        else
+            feed.append("<image><url>http://www.example.com/logo.jpg</url><title>Logo</title>")
+                    .append("<link>http://www.example.com/</link></image>\n");
+
+        if (messiness == Messiness.MESSY)
+            // Paged feed, see http://podlove.org/paged-feeds/
+            feed.append("<atom:link rel=\"first\" href=\"http://www.example.com/feed?page=1\" />\n")
+                    .append("<atom:link rel=\"next\" href=\"http://www.example.com/feed?page=2\" />\n")
+                    .append("<atom:link rel=\"last\" href=\"http://www.example.com/feed?page=")
+                    .append(items / 50 + 1).append("\" />\n")
+                    .append("<generator>Corpus &amp; Co.</generator>\n")
+                    .append("<unknown:tree xmlns:unknown=\"http://www.example.com/ns\"><unknown:leaf a=\"1\">")
+                    .append("<unknown:leaf>text</unknown:leaf></unknown:leaf></unknown:tree>\n");
+
+        for (int number = items; number > 0; number--)
+            appendItem(feed, new Random(seed * 31 + number), number, messiness);
+
+        return feed.append("</channel>\n</rss>\n").toString();
+    }
+
+    /**
+     * Create a subscription list document.
+     *
+     * @param subscriptions The number of podcasts in the list.
+     * @return The OPML document, in the format the app writes, but with
+     * the attributes other apps use as well.
+     */
+    public String opml(int subscriptions) {
+        final StringBuilder opml = new StringBuilder(subscriptions * 250 + 500);
+        final Random random = new Random(seed);
+
+        opml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<opml xmlns:pcd=\"http://www.podcatcher-deluxe.com/opml-ext\" version=\"2.0\">\n")
+                .append("  <head>\n    <title>Corpus podcast file</title>\n")
+                .append("    <dateModified>Sun, 17 Nov 2013 08:30:00 GMT</dateModified>\n  </head>\n")
+                .append("  <body>\n");
+
+        for (int index = 0; index < subscriptions; index++) {
+            final String name = random.nextInt(8) == 0 ?
+                    "Podcast " + index + " &amp; Friends &#8211; Caf&#233;" : "Podcast " + index;
+
+            opml.append("    <outline text=\"").append(name).append("\" title=\"").append(name)
+                    .append("\" type=\"rss\" xmlUrl=\"").append(escape(url(random, index, "feed"))).append('"');
+
+            if (random.nextInt(2) == 0)
+                opml.append(" pcd:logo=\"http://www.example.com/logos/").append(index).append(".png\"");
+            if (random.nextInt(10) == 0)
+                opml.append(" pcd:feedLabel=\"Label ").append(random.nextInt(5)).append('"');
+            if (random.nextInt(20) == 0)
+                opml.append(" pcd:user=\"").append(ParserUtils.encodeBase64(("user" + index).getBytes(UTF8)))
+                        .append("\" pcd:pass=\"").append(ParserUtils.encodeBase64(
+                        Long.toHexString(random.nextLong()).getBytes(UTF8))).append('"');
+
+            opml.append(" />\n");
+        }
+
+        return opml.append("  </body>\n</opml>\n").toString();
+    }
+
+    /**
+     * Create an episode metadata document like the app keeps it.
+     *
+     * @param entries The number of records.
+     * @return The metadata document. Most records only mark an episode as
+     * old, some have a resume time, downloads and playlist entries carry the
+     * full episode information.
+     */
+    public String metadata(int entries) {
+        final StringBuilder metadata = new StringBuilder(entries * 150 + 100);
+        final Random random = new Random(seed);
+        int playlistPosition = 0;
+
+        metadata.append("<?xml version=\"1.0\" encoding=\"utf8\"?>\n<xml dateModified=\"")
+                .append(FIRST_PUB_DATE).append("\">\n");
+
+        for (int index = 0; index < entries; index++) {
+            final int podcast = random.nextInt(Math.max(1, entries / 50));
+            final int kind = random.nextInt(100);
+
+            metadata.append("  <metadata episodeUrl=\"")
+                    .append(escape(url(random, podcast, "episode" + index + ".mp3"))).append("\">\n");
+            if (kind < 70)
+                metadata.append("    <isOld>true</isOld>\n");
+            else if (kind < 90)
+                metadata.append("    <resumeAt>").append(random.nextInt(7200000)).append("</resumeAt>\n");
+            else {
+                metadata.append("    <episodeName>Episode ").append(index).append(" &amp; friends</episodeName>\n")
+                        .append("    <episodeDate>").append(FIRST_PUB_DATE + index * PUB_INTERVAL)
+                        .append("</episodeDate>\n")
+                        .append("    <episodeDuration>").append(300 + random.nextInt(7200))
+                        .append("</episodeDuration>\n")
+                        .append("    <episodeFileSize>").append(random.nextInt(100000000))
+                        .append("</episodeFileSize>\n")
+                        .append("    <episodeMediaType>audio/mpeg</episodeMediaType>\n")
+                        .append("    <episodeDescription>&lt;p&gt;In episode ").append(index)
+                        .append(" we talk about &lt;b&gt;things&lt;/b&gt;.&lt;/p&gt;</episodeDescription>\n")
+                        .append("    <podcastName>Podcast ").append(podcast).append("</podcastName>\n")
+                        .append("    <podcastUrl>").append(escape(url(random, podcast, "feed")))
+                        .append("</podcastUrl>\n");
+
+                if (kind < 97)
+                    metadata.append("    <downloadId>").append(index).append("</downloadId>\n")
+                            .append("    <localFilePath>/storage/emulated/0/Podcasts/Podcast ").append(podcast)
+                            .append("/episode").append(index).append(".mp3</localFilePath>\n");
+                else
+                    metadata.append("    <playlistPosition>").append(playlistPosition++)
+                            .append("</playlistPosition>\n");
+            }
+            metadata.append("  </metadata>\n");
+        }
+
+        return metadata.append("</xml>\n").toString();
+    }
+
+    /**
+     * Create date strings as found in feeds.
+     *
+     * @param count     The number of dates.
+     * @param messiness For {@link Messiness#CLEAN}, all dates are proper RFC 822
+     *                  dates, otherwise some of the common deviations are used
+     *                  (and some dates cannot be parsed at all).
+     * @return The date strings.
+     */
+    public String[] dates(int count, Messiness messiness) {
+        final Random random = new Random(seed);
+        final String[] dates = new String[count];
+
+        for (int index = 0; index < count; index++)
+            dates[index] = messiness == Messiness.CLEAN ?
+                    DateCodec.formatHttpDate(FIRST_PUB_DATE + index * PUB_INTERVAL) :
+                    date(random, FIRST_PUB_DATE + index * PUB_INTERVAL + random.nextInt(86400) * 1000L,
+                            messiness == Messiness.MESSY ? 12 : 4);
+
+        return dates;
+    }
+
+    /**
+     * Create URLs as found in feeds and subscription lists.
+     *
+     * @param count     The number of URLs.
+     * @param messiness For {@link Messiness#CLEAN}, all URLs are canonical
+     *                  already, otherwise they have mixed case, default ports,
+     *                  dot segments, user info, fragments and the like.
+     * @return The URL strings.
+     */
+    public String[] urls(int count, Messiness messiness) {
+        final Random random = new Random(seed);
+        final String[] urls = new String[count];
+
+        for (int index = 0; index < count; index++)
+            urls[index] = messiness == Messiness.CLEAN ?
+                    "http://www.example.com/podcasts/" + index + "/feed" :
+                    url(random, index, random.nextBoolean() ? "feed" : "episode" + index + ".mp3");
+
+        return urls;
+    }
+
+    /**
+     * Create a text of made-up words. Words are taken from a fixed
+     * vocabulary with Zipf-like frequencies like in natural language: a few
+     * words are everywhere, most words are rare.
+     *
+     * @param random The random source, texts only depend on it and the seed.
+     * @param words  The number of words.
+     * @return The words, separated by spaces.
+     */
+    public String text(Random random, int words) {
+        if (vocabulary == null)
+            createVocabulary();
+
+        final StringBuilder text = new StringBuilder(words * 8);
+        for (int count = 0; count < words; count++) {
+            final double frequency = random.nextDouble() * frequencies[VOCABULARY_SIZE - 1];
+            final int position = Arrays.binarySearch(frequencies, frequency);
+
+            text.append(count == 0 ? "" : " ").append(vocabulary[position < 0 ? -position - 1 : position]);
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Create a parser reading the given document, the way the app sets it up.
+     *
+     * @param document The document, e.g. as generated here.
+     * @return The parser, at the start of the document.
+     * @throws XmlPullParserException If no parser is available.
+     */
+    public static XmlPullParser newParser(String document) throws XmlPullParserException {
+        final XmlPullParser parser = FeedPlatform.newParser();
+        parser.setInput(new StringReader(document));
+
+        return parser;
+    }
+
+    /**
+     * Write a corpus to disk: feeds of all sizes and messiness levels, OPML
+     * files of 10 to 5,000 subscriptions and metadata files of 100 to
+     * 100,000 entries.
+     *
+     * @param args The target directory (defaults to "corpus") and the seed
+     *             (defaults to 42).
+     * @throws IOException If a file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        final File directory = new File(args.length > 0 ? args[0] : "corpus");
+        final CorpusGenerator generator = new CorpusGenerator(args.length > 1 ? Long.parseLong(args[1]) : 42);
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+
+        for (Messiness messiness : Messiness.values())
+            for (int items : new int[]{10, 100, 1000, 5000})
+                write(new File(directory, "feed-" + messiness.name().toLowerCase(Locale.US) + "-" + items + ".xml"),
+                        generator.feed(items, messiness));
+        for (int subscriptions : new int[]{10, 100, 1000, 5000})
+            write(new File(directory, "podcasts-" + subscriptions + ".opml"), generator.opml(subscriptions));
+        for (int entries : new int[]{100, 1000, 10000, 100000})
+            write(new File(directory, "episodes-" + entries + ".xml"), generator.metadata(entries));
+    }
+
+    private static void write(File file, String document) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF8)) {
+            writer.write(document);
+        }
+    }
+
+    private static void appendItem(StringBuilder feed, Random random, int number, Messiness messiness) {
+        final int duration = 300 + random.nextInt(7200);
+        final long pubDate = FIRST_PUB_DATE + number * PUB_INTERVAL;
+        final boolean messy = messiness == Messiness.MESSY;
+        final boolean upperCase = messiness != Messiness.CLEAN && random.nextBoolean();
+
+        feed.append("<item>\n<title>")
+                .append(messy ? String.format(Locale.US, MESSY_TITLES[random.nextInt(MESSY_TITLES.length)], number) :
+                        "Episode " + number + " &amp; friends")
+                .append("</title>\n<link>http://www.example.com/episodes/").append(number).append("</link>\n");
+
+        if (!messy || random.nextInt(10) > 0)
+            feed.append("<guid isPermaLink=\"false\">").append(Long.toHexString(random.nextLong())).append("</guid>\n");
+        feed.append(upperCase ? "<PUBDATE>" : "<pubDate>")
+                .append(messy ? date(random, pubDate, 12) : DateCodec.formatHttpDate(pubDate))
+                .append(upperCase ? "</PUBDATE>\n" : "</pubDate>\n");
+
+        if (messiness == Messiness.CLEAN)
+            feed.append("<description>In episode ").append(number).append(" we talk about things.</description>\n");
+        else {
+            feed.append("<itunes:duration>");
+            if (messy && random.nextInt(4) == 0)
+                feed.append(duration);
+            else
+                feed.append(duration / 3600).append(':').append(duration / 60 % 60).append(':').append(duration % 60);
+            feed.append("</itunes:duration>\n")
+                    .append("<itunes:explicit>").append(random.nextInt(10) == 0 ? "yes" : "no")
+                    .append("</itunes:explicit>\n")
+                    .append("<itunes:summary>A summary of episode ").append(number).append("</itunes:summary>\n");
+            if (messy && random.nextBoolean())
+                feed.append("<description>&lt;p&gt;In episode ").append(number)
+                        .append(" we talk about &lt;b&gt;things&lt;/b&gt; &amp;amp; stuff.&lt;/p&gt;</description>\n");
+            else
+                feed.append("<description><![CDATA[<p>In episode ").append(number)
+                        .append(" we talk about <b>things</b>.</p>]]></description>\n");
+            // Show notes are the bulk of most feeds, a few hundred bytes to some KB per item
+            feed.append("<content:encoded><![CDATA[<p>Show notes for episode ").append(number).append(":</p><ul>");
+            for (int link = random.nextInt(16); link >= 0; link--)
+                feed.append("<li><a href=\"http://www.example.com/links/").append(Long.toHexString(random.nextLong()))
+                        .append("\">Link ").append(link).append("</a> about something mentioned</li>");
+            feed.append("</ul>]]></content:encoded>\n");
+
+            // Some episodes come with chapter marks
+            if (random.nextInt(4) == 0) {
+                feed.append("<psc:chapters version=\"1.2\">");
+                for (int chapter = 0; chapter < 8; chapter++)
+                    feed.append("<psc:chapter start=\"00:").append(chapter < 2 ? "0" : "").append(chapter * 5)
+                            .append(messy && chapter % 3 == 0 ? ":00" : ":00.000").append("\" title=\"Chapter ")
+                            .append(chapter + 1).append(messy ? " &amp; more" : "").append("\"/>");
+                feed.append("</psc:chapters>\n");
+            }
+        }
+
+        // Messy feeds have several enclosures, in any order
+        if (messy)
+            for (int extra = random.nextInt(3); extra > 0; extra--) {
+                final String[] type = EXTRA_ENCLOSURES[random.nextInt(EXTRA_ENCLOSURES.length)];
+                feed.append("<enclosure url=\"http://media.example.com/episode").append(number).append(type[1])
+                        .append("\" length=\"").append(random.nextBoolean() ? duration * 16000 : 0)
+                        .append("\" type=\"").append(type[0]).append("\"/>\n");
+            }
+        feed.append("<enclosure url=\"http://media.example.com/episode").append(number)
+                .append(".mp3\" length=\"").append(duration * 16000).append("\" type=\"audio/mpeg\"/>\n");
+
+        if (messiness != Messiness.CLEAN)
+            feed.append("<media:group><media:content url=\"http://media.example.com/episode").append(number)
+                    .append(".m4a\"><media:title>Alternative</media:title></media:content></media:group>\n")
+                    .append("<itunes:keywords>tech, podcast, synthetic</itunes:keywords>\n");
+        if (messy && random.nextInt(5) == 0)
+            feed.append("<dc:creator>Host ").append(random.nextInt(3)).append("</dc:creator>\n");
+
+        feed.append("</item>\n");
+    }
+
+    private static String date(Random random, long millis, int variants) {
+        final Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"), Locale.US);
+        calendar.setTimeInMillis(millis);
+
+        final int year = calendar.get(Calendar.YEAR);
+        final String month = MONTHS[calendar.get(Calendar.MONTH)];
+        final String day = DAYS[calendar.get(Calendar.DAY_OF_WEEK) - 1];
+        final int date = calendar.get(Calendar.DAY_OF_MONTH);
+        final String time = String.format(Locale.US, "%02d:%02d:%02d", calendar.get(Calendar.HOUR_OF_DAY),
+                calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
+        final String zone = ZONES[random.nextInt(ZONES.length)];
+
+        switch (random.nextInt(variants)) {
+            case 0:
+                return String.format(Locale.US, "%s, %02d %s %d %s %s", day.substring(0, 3), date,
+                        month.substring(0, 3), year, time, zone).trim();
+            case 1:
+                return String.format(Locale.US, "%d %s %d %s %s", date, month.substring(0, 3), year, time, zone).trim();
+            case 2:
+                return String.format(Locale.US, "%d-%02d-%02dT%s%s", year, calendar.get(Calendar.MONTH) + 1, date,
+                        time, random.nextBoolean() ? "Z" : "+01:00");
+            case 3:
+                return String.format(Locale.US, "%s, %d %s %d %s GMT", day.substring(0, 3), date,
+                        month.substring(0, 3), year, time);
+            case 4:
+                // Spelled out names, no seconds
+                return String.format(Locale.US, "%s, %d %s %d %s %s", day, date, month, year,
+                        time.substring(0, 5), zone).trim();
+            case 5:
+                // No space after the comma, two-digit year
+                return String.format(Locale.US, "%s,%d %s %02d %s %s", day.substring(0, 3), date,
+                        month.substring(0, 3), year % 100, time, zone).trim();
+            case 6:
+                // Month first
+                return String.format(Locale.US, "%s %d, %d %s", month.substring(0, 3), date, year, time);
+            case 7:
+                // Lower case and a colon in the offset
+                return String.format(Locale.US, "%s, %02d %s %d %s +01:00", day.substring(0, 3), date,
+                        month.substring(0, 3), year, time).toLowerCase(Locale.US);
+            case 8:
+                // No time of day
+                return String.format(Locale.US, "%s, %d %s %d", day.substring(0, 3), date, month.substring(0, 3), year);
+            case 9:
+                return String.format(Locale.US, "%d-%02d-%02d", year, calendar.get(Calendar.MONTH) + 1, date);
+            case 10:
+                // Localized names, cannot be parsed
+                return String.format(Locale.GERMANY, "%s, %d. %s %d %s", "Mo", date, "Mär", year, time);
+            default:
+                return random.nextBoolean() ? "" : "TBA";
+        }
+    }
+
+    private void createVocabulary() {
+        final Random random = new Random(seed);
+        this.vocabulary = new String[VOCABULARY_SIZE];
+        this.frequencies = new double[VOCABULARY_SIZE];
+
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            final StringBuilder word = new StringBuilder();
+            for (int syllable = 1 + random.nextInt(rank < 100 ? 2 : 4); syllable > 0; syllable--)
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+
+            vocabulary[rank] = word.toString();
+            frequencies[rank] = (rank == 0 ? 0 : frequencies[rank - 1]) + 1d / (rank + 1);
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("\"", "&quot;");
+    }
+
+    private static String url(Random random, int number, String path) {
+        final String host = HOSTS[number % HOSTS.length];
+
+        switch (random.nextInt(8)) {
+            case 0:
+                return "HTTP://" + host.toUpperCase(Locale.US) + "/podcasts/" + number + "/" + path;
+            case 1:
+                return "http://" + host + "/podcasts/./archive/../" + number + "/" + path + "#top";
+            case 2:
+                return "http://user" + number + ":secret@" + host + "/podcasts/" + number + "/" + path;
+            case 3:
+                return "https://" + host + ":443/podcasts/" + number + "/" + path + "?format=xml&id=" + number;
+            case 4:
+                return "http://" + host + "/podcasts/" + number + "/" + path + "/";
+            case 5:
+                return "http://" + host + "/podcasts/%7Euser" + number + "/" + path;
+            default:
+                return "http://" + host + "/podcasts/" + number + "/" + path;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import android.support.annotation.NonNull;
+
+import java.io.Writer;
+
+/**
+ * Writer that drops everything, but counts the characters written. Used to
+ * measure writing documents without measuring the storage.
+ */
+public class CountingWriter extends Writer {
+
+    /**
+     * The number of characters written
+     */
+    private long count;
+
+    @Override
+    public void write(@NonNull char[] buffer, int offset, int length) {
+        count += length;
+    }
+
+    @Override
+    public void write(int c) {
+        count++;
+    }
+
+    @Override
+    public void write(@NonNull String text, int offset, int length) {
+        count += length;
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to flush
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close
+    }
+
+    /**
+     * @return The number of characters written so far.
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.model.EpisodeMetadataParser;
+import com.podcatcher.deluxe.model.EpisodeMetadataWriter;
+import com.podcatcher.deluxe.model.types.EpisodeMetadata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and storing the episode metadata file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EpisodeMetadataBenchmark {
+
+    /**
+     * The number of metadata records
+     */
+    @Param({"100", "10000", "100000"})
+    public int entries;
+
+    /**
+     * The metadata document
+     */
+    private String document;
+    /**
+     * The metadata to store
+     */
+    private Map<String, EpisodeMetadata> metadata;
+
+    @Setup
+    public void setUp() throws XmlPullParserException, IOException {
+        this.document = new CorpusGenerator(42).metadata(entries);
+        this.metadata = load();
+    }
+
+    @Benchmark
+    public Map<String, EpisodeMetadata> load() throws XmlPullParserException, IOException {
+        final Map<String, EpisodeMetadata> result = new HashMap<>();
+        EpisodeMetadataParser.parse(CorpusGenerator.newParser(document), result);
+
+        return result;
+    }
+
+    @Benchmark
+    public long store() throws IOException {
+        final CountingWriter counter = new CountingWriter();
+        new EpisodeMetadataWriter(counter).write(metadata);
+
+        return counter.getCount();
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.model.EpisodeSearchIndex;
+import com.podcatcher.deluxe.model.EpisodeSearchIndex.Hit;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link EpisodeSearchIndex}: queries of one to three words
+ * (some cut to prefixes) against a scan of all episode texts, updating a
+ * podcast after a reload and storing and loading the index. Podcasts are
+ * filled with episodes directly, titles and descriptions come from the
+ * corpus generator's made-up language.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EpisodeSearchBenchmark {
+
+    /**
+     * The number of queries prepared
+     */
+    private static final int QUERY_COUNT = 256;
+    /**
+     * The number of results asked for
+     */
+    private static final int LIMIT = 50;
+    /**
+     * The publication date of episode number zero (millis)
+     */
+    private static final long FIRST_PUB_DATE = 946684800000L;
+
+    /**
+     * The number of podcasts indexed
+     */
+    @Param({"200"})
+    public int podcastCount;
+    /**
+     * The number of episodes per podcast
+     */
+    @Param({"1000"})
+    public int episodeCount;
+
+    /**
+     * The podcasts indexed
+     */
+    private List<Podcast> podcasts;
+    /**
+     * The index over all podcasts
+     */
+    private final EpisodeSearchIndex index = new EpisodeSearchIndex();
+    /**
+     * The index as stored
+     */
+    private byte[] stored;
+    /**
+     * The queries to run
+     */
+    private String[] queries;
+    /**
+     * The podcast updated
+     */
+    private FilledPodcast reloaded;
+    /**
+     * The podcast's episodes before and after the reload, switched between
+     */
+    private List<Episode> before;
+    private List<Episode> after;
+    /**
+     * Whether the podcast has the episodes after the reload
+     */
+    private boolean isReloaded;
+    /**
+     * The index of the next query to use
+     */
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        final CorpusGenerator generator = new CorpusGenerator(42);
+        final Random random = new Random(42);
+
+        this.podcasts = new ArrayList<>(podcastCount);
+        for (int number = 0; number < podcastCount; number++) {
+            final FilledPodcast podcast = new FilledPodcast(number, generator.text(random, 2));
+            podcast.fill(createEpisodes(podcast, generator, 0));
+
+            podcasts.add(podcast);
+            index.update(podcast);
+        }
+
+        this.reloaded = (FilledPodcast) podcasts.get(0);
+        this.before = new ArrayList<>(reloaded.getEpisodes());
+        // A reload with ten new episodes on top, the oldest ten are gone
+        this.after = createEpisodes(reloaded, generator, 10);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.store(out);
+        this.stored = out.toByteArray();
+
+        this.queries = new String[QUERY_COUNT];
+        for (int query = 0; query < QUERY_COUNT; query++) {
+            final String words = generator.text(random, 1 + random.nextInt(3));
+
+            // Some queries are typed half-way
+            queries[query] = random.nextInt(4) == 0 ?
+                    words.substring(0, Math.max(2, words.length() - 3)) : words;
+        }
+    }
+
+    @Benchmark
+    public List<Hit> search() {
+        return index.search(queries[nextQuery()], LIMIT);
+    }
+
+    @Benchmark
+    public int scan() {
+        final String[] words = queries[nextQuery()].split(" ");
+        int matches = 0;
+
+        // What it takes without the index, only substrings are matched here
+        for (Podcast podcast : podcasts)
+            for (Episode episode : podcast.getEpisodes()) {
+                final String text = (podcast.getName() + " " + episode.getName() + " " +
+                        episode.getDescription()).toLowerCase(Locale.US);
+
+                boolean all = true;
+                for (String word : words)
+                    all &= text.contains(word);
+
+                if (all)
+                    matches++;
+            }
+
+        return matches;
+    }
+
+    @Benchmark
+    public int update() {
+        isReloaded = !isReloaded;
+        reloaded.fill(isReloaded ? after : before);
+        index.update(reloaded);
+
+        return index.size();
+    }
+
+    @Benchmark
+    public long store() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        index.store(out);
+
+        return out.count;
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        final EpisodeSearchIndex loaded = new EpisodeSearchIndex();
+        loaded.load(new ByteArrayInputStream(stored));
+
+        return loaded.size();
+    }
+
+    private int nextQuery() {
+        next = next + 1 == QUERY_COUNT ? 0 : next + 1;
+
+        return next;
+    }
+
+    private List<Episode> createEpisodes(FilledPodcast podcast, CorpusGenerator generator, int first) {
+        final List<Episode> episodes = new ArrayList<>(episodeCount);
+
+        // Newest first, each episode's texts only depend on its podcast and number
+        for (int number = first + episodeCount - 1; number >= first; number--) {
+            final Random random = new Random(podcast.number * 100003L + number);
+
+            episodes.add(new FilledEpisode(podcast, episodes.size(), number,
+                    "Episode " + number + ": " + generator.text(random, 5),
+                    "<p>" + generator.text(random, 30) + "</p>"));
+        }
+
+        return episodes;
+    }
+
+    /**
+     * Podcast filled with episodes, as if loaded
+     */
+    private static class FilledPodcast extends Podcast {
+
+        /**
+         * The podcast's number
+         */
+        private final int number;
+
+        private FilledPodcast(int number, String words) {
+            super("Podcast " + number + " " + words, "http://www.example.com/podcast" + number + "/feed");
+
+            this.number = number;
+        }
+
+        private void fill(List<Episode> filled) {
+            this.episodes = episodes.next(filled);
+        }
+    }
+
+    /**
+     * Episode with name, description, date and media URL
+     */
+    private static class FilledEpisode extends Episode {
+
+        private FilledEpisode(FilledPodcast podcast, int index, int number, String name, String description) {
+            super(podcast, index);
+
+            this.name = name;
+            this.description = description;
+            this.pubDate = FIRST_PUB_DATE + number * 3600000L + podcast.number;
+            this.mediaUrl = "http://media.example.com/podcast" + podcast.number + "/episode" + number + ".mp3";
+        }
+    }
+
+    /**
+     * Output stream that drops everything, but counts the bytes written
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        /**
+         * The number of bytes written
+         */
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            count += length;
+        }
+    }
+}
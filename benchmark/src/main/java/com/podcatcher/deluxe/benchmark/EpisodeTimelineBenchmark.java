@@ -0,0 +1,191 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.model.EpisodeTimeline;
+import com.podcatcher.deluxe.model.EpisodeTimeline.StateSource;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the episode list while the podcasts selected come in one
+ * by one: The tree set sorted, filtered and reversed again after every load
+ * as done before, against the {@link EpisodeTimeline} read after every load
+ * and read after every few loads (as the episode list refreshes when many
+ * podcasts load). Each run is a complete refresh of all podcasts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EpisodeTimelineBenchmark {
+
+    /**
+     * The publication date of episode number zero (millis)
+     */
+    private static final long FIRST_PUB_DATE = 946684800000L;
+    /**
+     * The number of podcasts loaded between two reads of the batched timeline
+     */
+    private static final int LOADS_PER_REFRESH = 10;
+
+    /**
+     * The number of podcasts loaded
+     */
+    @Param({"60", "200"})
+    public int podcastCount;
+    /**
+     * The number of episodes per podcast
+     */
+    @Param({"60", "300"})
+    public int episodeCount;
+
+    /**
+     * The podcasts in the order they load
+     */
+    private List<Podcast> podcasts;
+    /**
+     * The episodes' states, about half of them are old
+     */
+    private final Map<Episode, Integer> states = new HashMap<>();
+    /**
+     * Gives the states from the map
+     */
+    private final StateSource stateSource = new StateSource() {
+
+        @Override
+        public int getStates(Episode episode) {
+            final Integer result = states.get(episode);
+
+            return result == null ? 0 : result;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+
+        this.podcasts = new ArrayList<>(podcastCount);
+        for (int number = 0; number < podcastCount; number++) {
+            final FilledPodcast podcast = new FilledPodcast(number, episodeCount);
+
+            for (Episode episode : podcast.getEpisodes())
+                states.put(episode, random.nextInt(2));
+            podcasts.add(podcast);
+        }
+        Collections.shuffle(podcasts, random);
+    }
+
+    @Benchmark
+    public long treeSet() {
+        final SortedSet<Episode> set = new TreeSet<>();
+        long sink = 0;
+
+        for (Podcast podcast : podcasts) {
+            set.addAll(podcast.getEpisodes());
+
+            final List<Episode> filtered = new ArrayList<>(set);
+            final Iterator<Episode> iterator = filtered.iterator();
+            while (iterator.hasNext())
+                if (stateSource.getStates(iterator.next()) != 0)
+                    iterator.remove();
+            Collections.reverse(filtered);
+            sink += filtered.size();
+        }
+
+        return sink;
+    }
+
+    @Benchmark
+    public long timeline() {
+        return loadTimeline(1);
+    }
+
+    @Benchmark
+    public long timelineBatched() {
+        return loadTimeline(LOADS_PER_REFRESH);
+    }
+
+    private long loadTimeline(int loadsPerRefresh) {
+        final EpisodeTimeline timeline = new EpisodeTimeline(stateSource);
+        long sink = 0;
+
+        for (int loaded = 1; loaded <= podcasts.size(); loaded++) {
+            timeline.add(podcasts.get(loaded - 1).getEpisodes());
+
+            if (loaded % loadsPerRefresh == 0 || loaded == podcasts.size())
+                sink += timeline.select(EpisodeTimeline.OLD, true).size();
+        }
+
+        return sink;
+    }
+
+    /**
+     * Podcast with the given number of episodes, as if loaded
+     */
+    private static class FilledPodcast extends Podcast {
+
+        private FilledPodcast(int number, int episodeCount) {
+            super("Podcast " + number, "http://www.example.com/podcast" + number + "/feed");
+
+            final List<Episode> filled = new ArrayList<>(episodeCount);
+            for (int count = 0; count < episodeCount; count++)
+                filled.add(new FilledEpisode(this, count, number, episodeCount - count));
+            this.episodes = episodes.next(filled);
+        }
+    }
+
+    /**
+     * Episode with date and media URL, newer episodes first
+     */
+    private static class FilledEpisode extends Episode {
+
+        private FilledEpisode(Podcast podcast, int index, int podcastNumber, int number) {
+            super(podcast, index);
+
+            this.pubDate = FIRST_PUB_DATE + number * 3600000L + podcastNumber;
+            this.mediaUrl = "http://media.example.com/podcast" + podcastNumber + "/episode" + number + ".mp3";
+        }
+    }
+}
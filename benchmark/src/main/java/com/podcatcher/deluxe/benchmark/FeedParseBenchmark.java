@@ -0,0 +1,101 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.benchmark.CorpusGenerator.Messiness;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Podcast#parse(org.xmlpull.v1.XmlPullParser)} for feeds of
+ * different size and messiness, for podcasts seen the first time (full
+ * parse) and for a reload of a podcast already known (incremental parse).
+ * Episode texts are kept in memory, the body store is not opened.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeedParseBenchmark {
+
+    /**
+     * The feed URL used for all podcasts
+     */
+    private static final String FEED_URL = "http://www.example.com/feed";
+
+    /**
+     * The number of episodes in the feed
+     */
+    @Param({"10", "100", "1000"})
+    public int items;
+    /**
+     * How messy the feed is
+     */
+    @Param({"CLEAN", "TYPICAL", "MESSY"})
+    public Messiness messiness;
+
+    /**
+     * The feed document
+     */
+    private String feed;
+    /**
+     * The podcast that knows the feed already
+     */
+    private Podcast known;
+
+    @Setup
+    public void setUp() throws XmlPullParserException, IOException {
+        this.feed = new CorpusGenerator(42).feed(items, messiness);
+
+        this.known = new Podcast(null, FEED_URL);
+        known.parse(CorpusGenerator.newParser(feed));
+    }
+
+    @Benchmark
+    public Podcast parseNew() throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, FEED_URL);
+        podcast.parse(CorpusGenerator.newParser(feed));
+
+        return podcast;
+    }
+
+    @Benchmark
+    public Podcast parseKnown() throws XmlPullParserException, IOException {
+        known.parse(CorpusGenerator.newParser(feed));
+
+        return known;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.benchmark.CorpusGenerator.Messiness;
+import com.podcatcher.deluxe.model.FeedTags;
+import com.podcatcher.deluxe.model.tags.RSS;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the element name dispatch of {@link FeedTags#lookup(String)}
+ * against the lower-case-and-switch dispatch the feed entities used before,
+ * for all the element names of large feeds, and the complete parse of these.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeedTagsBenchmark {
+
+    /**
+     * The number of episodes in the feed
+     */
+    @Param({"1000", "10000", "50000"})
+    public int items;
+
+    /**
+     * The feed document
+     */
+    private String feed;
+    /**
+     * The element names in the feed, as the parser reports them
+     */
+    private String[] names;
+
+    @Setup
+    public void setUp() throws XmlPullParserException, IOException {
+        this.feed = new CorpusGenerator(42).feed(items, Messiness.TYPICAL);
+
+        final List<String> names = new ArrayList<>();
+        final XmlPullParser scanner = CorpusGenerator.newParser(feed);
+        for (int event = scanner.next(); event != XmlPullParser.END_DOCUMENT; event = scanner.next())
+            if (event == XmlPullParser.START_TAG)
+                names.add(scanner.getName());
+
+        this.names = names.toArray(new String[names.size()]);
+    }
+
+    @Benchmark
+    public int dispatchLegacy() {
+        int sink = 0;
+        for (String name : names)
+            sink += legacyDispatch(name);
+
+        return sink;
+    }
+
+    @Benchmark
+    public int dispatchLookup() {
+        int sink = 0;
+        for (String name : names)
+            sink += FeedTags.lookup(name);
+
+        return sink;
+    }
+
+    @Benchmark
+    public Podcast parse() throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        podcast.parse(CorpusGenerator.newParser(feed));
+
+        return podcast;
+    }
+
+    /**
+     * The dispatch the feed entities used before, kept for comparison
+     */
+    private static int legacyDispatch(String name) {
+        switch (name.toLowerCase(Locale.US)) {
+            case RSS.ITEM:
+                return FeedTags.ITEM;
+            case RSS.TITLE:
+                return FeedTags.TITLE;
+            case RSS.GUID:
+                return FeedTags.GUID;
+            case RSS.LINK:
+                return FeedTags.LINK;
+            case RSS.EXPLICIT:
+                return FeedTags.EXPLICIT;
+            case RSS.DATE:
+                return FeedTags.DATE;
+            case RSS.PUBDATE:
+                return FeedTags.PUBDATE;
+            case RSS.DURATION:
+                return FeedTags.DURATION;
+            case RSS.DESCRIPTION:
+                return FeedTags.DESCRIPTION;
+            case RSS.SUMMARY:
+                return FeedTags.SUMMARY;
+            case RSS.CONTENT_ENCODED:
+                return FeedTags.CONTENT_ENCODED;
+            case RSS.ENCLOSURE:
+                return FeedTags.ENCLOSURE;
+            case RSS.CHAPTERS:
+                return FeedTags.CHAPTERS;
+            default:
+                return FeedTags.UNKNOWN;
+        }
+    }
+}
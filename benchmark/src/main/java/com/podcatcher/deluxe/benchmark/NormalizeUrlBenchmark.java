@@ -0,0 +1,137 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.benchmark.CorpusGenerator.Messiness;
+import com.podcatcher.deluxe.model.UrlCanonicalizer;
+import com.podcatcher.deluxe.model.types.FeedEntity;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures URL normalization as done for all feed entities and for podcast
+ * feed URLs (which also extracts the user info). The number of distinct URLs
+ * decides whether these are served from the {@link UrlCanonicalizer} cache
+ * (fewer than {@link UrlCanonicalizer#CAPACITY}) or not.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NormalizeUrlBenchmark {
+
+    /**
+     * The number of URLs normalized per invocation
+     */
+    private static final int BATCH = 1024;
+
+    /**
+     * The number of distinct URLs
+     */
+    @Param({"1000", "100000"})
+    public int urlCount;
+    /**
+     * How messy the URLs are
+     */
+    @Param({"CLEAN", "MESSY"})
+    public Messiness messiness;
+
+    /**
+     * The URL strings
+     */
+    private String[] urls;
+    /**
+     * The index of the next URL to use
+     */
+    private int next;
+    /**
+     * The entity to normalize with
+     */
+    private final EntityNormalizer entity = new EntityNormalizer();
+    /**
+     * The podcast to normalize feed URLs with
+     */
+    private final PodcastNormalizer podcast = new PodcastNormalizer();
+
+    @Setup
+    public void setUp() {
+        this.urls = new CorpusGenerator(42).urls(urlCount, messiness);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void normalizeUrl(Blackhole blackhole) {
+        for (int count = 0; count < BATCH; count++)
+            blackhole.consume(entity.normalize(nextUrl()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void normalizeFeedUrl(Blackhole blackhole) {
+        for (int count = 0; count < BATCH; count++)
+            blackhole.consume(podcast.normalize(nextUrl()));
+    }
+
+    private String nextUrl() {
+        next = next + 1 == urls.length ? 0 : next + 1;
+
+        return urls[next];
+    }
+
+    /**
+     * Feed entity giving access to the URL normalization
+     */
+    private static class EntityNormalizer extends FeedEntity {
+
+        private String normalize(String url) {
+            return normalizeUrl(url);
+        }
+    }
+
+    /**
+     * Podcast giving access to the feed URL normalization
+     */
+    private static class PodcastNormalizer extends Podcast {
+
+        private PodcastNormalizer() {
+            super(null, "http://www.example.com/feed");
+        }
+
+        private String normalize(String url) {
+            return normalizeUrl(url);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.model.OpmlParser;
+import com.podcatcher.deluxe.model.OpmlWriter;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and storing the podcast list (OPML), the way the app does
+ * it for its own podcast file: with credentials.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OpmlBenchmark {
+
+    /**
+     * The number of podcasts in the list
+     */
+    @Param({"10", "500", "5000"})
+    public int subscriptions;
+
+    /**
+     * The OPML document
+     */
+    private String opml;
+    /**
+     * The podcasts to store
+     */
+    private List<Podcast> podcasts;
+
+    @Setup
+    public void setUp() throws XmlPullParserException, IOException {
+        this.opml = new CorpusGenerator(42).opml(subscriptions);
+        this.podcasts = OpmlParser.parse(CorpusGenerator.newParser(opml));
+    }
+
+    @Benchmark
+    public List<Podcast> load() throws XmlPullParserException, IOException {
+        return OpmlParser.parse(CorpusGenerator.newParser(opml));
+    }
+
+    @Benchmark
+    public long store() throws IOException {
+        final CountingWriter counter = new CountingWriter();
+
+        final OpmlWriter writer = new OpmlWriter(counter);
+        writer.setWriteAuthorization(true);
+        writer.write("Benchmark podcast file", podcasts);
+
+        return counter.getCount();
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.benchmark.CorpusGenerator.Messiness;
+import com.podcatcher.deluxe.model.types.FeedEntity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the date parsing all feed entities use for their dates, with
+ * proper RFC 822 dates and with the mix of formats found in the wild.
+ * The shared, synchronized {@link SimpleDateFormat} used before is measured
+ * on the same dates for comparison, on one and on several threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseDateBenchmark {
+
+    /**
+     * The number of dates parsed per invocation
+     */
+    private static final int DATES = 1024;
+
+    /**
+     * How messy the dates are
+     */
+    @Param({"CLEAN", "TYPICAL", "MESSY"})
+    public Messiness messiness;
+
+    /**
+     * The date strings
+     */
+    private String[] dates;
+    /**
+     * The entity to parse with
+     */
+    private final DateParser parser = new DateParser();
+
+    @Setup
+    public void setUp() {
+        this.dates = new CorpusGenerator(42).dates(DATES, messiness);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATES)
+    public void parseDate(Blackhole blackhole) {
+        for (String date : dates)
+            blackhole.consume(parser.parse(date));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATES)
+    public void parseDateLegacy(Blackhole blackhole) {
+        for (String date : dates)
+            blackhole.consume(LegacyDateParser.parse(date));
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(DATES)
+    public void parseDateContended(Blackhole blackhole) {
+        for (String date : dates)
+            blackhole.consume(parser.parse(date));
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(DATES)
+    public void parseDateLegacyContended(Blackhole blackhole) {
+        for (String date : dates)
+            blackhole.consume(LegacyDateParser.parse(date));
+    }
+
+    /**
+     * Feed entity giving access to the date parsing
+     */
+    private static class DateParser extends FeedEntity {
+
+        private Date parse(String date) {
+            return parseDate(date);
+        }
+    }
+
+    /**
+     * The date parsing the feed entities used before, kept for comparison
+     */
+    private static class LegacyDateParser {
+
+        private static final SimpleDateFormat DATE_FORMATTER =
+                new SimpleDateFormat("EEE, dd MMM yy HH:mm:ss zzz", Locale.US);
+        private static final String[] DATE_FORMAT_TEMPLATE_ALTERNATIVES = {
+                "EEE, dd MMM yy",
+                "yy-MM-dd",
+                "dd MMM yy HH:mm:ss zzz",
+                "EEE,dd MMM yy HH:mm:ss zzz"
+        };
+
+        private static Date parse(String dateString) {
+            dateString = dateString.trim();
+
+            try {
+                synchronized (DATE_FORMATTER) {
+                    return DATE_FORMATTER.parse(dateString);
+                }
+            } catch (ParseException e) {
+                for (String format : DATE_FORMAT_TEMPLATE_ALTERNATIVES)
+                    try {
+                        return new SimpleDateFormat(format, Locale.US).parse(dateString);
+                    } catch (ParseException e1) {
+                        // pass
+                    }
+            }
+
+            return null;
+        }
+    }
+}
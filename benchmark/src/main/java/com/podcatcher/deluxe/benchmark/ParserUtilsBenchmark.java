@@ -0,0 +1,189 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.model.ParserUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the duration and file size parsing and formatting in
+ * {@link ParserUtils} against the regex and {@link String#format(String, Object...)}
+ * based implementation used before, on the same durations and sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserUtilsBenchmark {
+
+    /**
+     * The number of values handled per invocation
+     */
+    private static final int BATCH = 1024;
+
+    /**
+     * Durations (seconds)
+     */
+    private final int[] times = new int[BATCH];
+    /**
+     * The durations as found in feeds, in the different notations used
+     */
+    private final String[] timeStrings = new String[BATCH];
+    /**
+     * File sizes (bytes)
+     */
+    private final long[] sizes = new long[BATCH];
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+
+        for (int index = 0; index < BATCH; index++) {
+            final int time = random.nextInt(3 * 3600);
+
+            times[index] = time;
+            sizes[index] = random.nextInt(200 * 1024 * 1024);
+            switch (index % 4) {
+                case 0:
+                    timeStrings[index] = String.format(Locale.US, "%d:%02d:%02d",
+                            time / 3600, time / 60 % 60, time % 60);
+                    break;
+                case 1:
+                    timeStrings[index] = String.format(Locale.US, "%02d:%02d", time / 60, time % 60);
+                    break;
+                case 2:
+                    timeStrings[index] = Integer.toString(time);
+                    break;
+                default:
+                    timeStrings[index] = String.format(Locale.US, "%d:%02d:%02d.%03d",
+                            time / 3600, time / 60 % 60, time % 60, random.nextInt(1000));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void unformatTime(Blackhole blackhole) throws ParseException {
+        for (String time : timeStrings)
+            blackhole.consume(ParserUtils.unformatTime(time));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void unformatTimeLegacy(Blackhole blackhole) throws ParseException {
+        for (String time : timeStrings)
+            blackhole.consume(LegacyParserUtils.unformatTime(time));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatTime(Blackhole blackhole) {
+        for (int time : times)
+            blackhole.consume(ParserUtils.formatTime(time));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatTimeLegacy(Blackhole blackhole) {
+        for (int time : times)
+            blackhole.consume(LegacyParserUtils.formatTime(time));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatFileSize(Blackhole blackhole) {
+        for (long size : sizes)
+            blackhole.consume(ParserUtils.formatFileSize(size));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatFileSizeLegacy(Blackhole blackhole) {
+        for (long size : sizes)
+            blackhole.consume(LegacyParserUtils.formatFileSize(size));
+    }
+
+    /**
+     * The implementation used before, kept for comparison
+     */
+    private static class LegacyParserUtils {
+
+        private static final String SHORT_DURATION = "%2$d:%3$02d";
+        private static final String LONG_DURATION = "%d:%02d:%02d";
+
+        private static String formatTime(int time) {
+            final int hours = time / 3600;
+
+            return String.format(hours > 0 ? LONG_DURATION : SHORT_DURATION,
+                    hours, (time / 60) - 60 * hours, time % 60);
+        }
+
+        private static int unformatTime(String timeString) throws ParseException {
+            try {
+                final String[] all = timeString.split("\\.");
+                final int millis = all.length == 2 && all[1].length() == 3 ? Integer.parseInt(all[1]) : 0;
+                final String[] nonFraction = all.length == 2 ? all[0].split(":") : timeString.split(":");
+
+                int result;
+                switch (nonFraction.length) {
+                    case 1:
+                        result = Integer.parseInt(all.length == 2 ? all[0] : timeString);
+                        break;
+                    case 2:
+                        result = Integer.parseInt(nonFraction[1]) + Integer.parseInt(nonFraction[0]) * 60;
+                        break;
+                    case 3:
+                        result = Integer.parseInt(nonFraction[2]) + Integer.parseInt(nonFraction[1]) * 60
+                                + Integer.parseInt(nonFraction[0]) * 3600;
+                        break;
+                    default:
+                        throw new ParseException("Invalid time string " + timeString, 0);
+                }
+
+                return result * 1000 + millis;
+            } catch (NumberFormatException | NullPointerException ne) {
+                throw new ParseException("Invalid time string " + timeString, 0);
+            }
+        }
+
+        private static String formatFileSize(long bytes) {
+            final int megaBytes = (int) bytes / (1024 * 1024);
+            return megaBytes > 0 ? megaBytes + "MB" : bytes / 1024 + "KB";
+        }
+    }
+}
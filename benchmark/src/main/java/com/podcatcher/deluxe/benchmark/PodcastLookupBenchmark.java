@@ -0,0 +1,199 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.benchmark;
+
+import com.podcatcher.deluxe.model.PodcastIndex;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures podcast and episode lookup by URL as done by the podcast manager,
+ * with the {@link PodcastIndex} and with the scan of the podcast list (and
+ * all episodes) used before. Podcasts are filled with episodes directly
+ * instead of parsing feeds, so half a million episodes fit into memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PodcastLookupBenchmark {
+
+    /**
+     * The number of lookups prepared
+     */
+    private static final int QUERY_COUNT = 1024;
+
+    /**
+     * The number of podcasts in the list
+     */
+    @Param({"500"})
+    public int podcastCount;
+    /**
+     * The number of episodes per podcast
+     */
+    @Param({"1000"})
+    public int episodeCount;
+
+    /**
+     * The podcast list, sorted
+     */
+    private List<Podcast> podcasts;
+    /**
+     * The index over the podcast list
+     */
+    private final PodcastIndex index = new PodcastIndex();
+    /**
+     * The feed URLs to look up
+     */
+    private String[] podcastUrls;
+    /**
+     * The media URLs to look up, episode i is in podcast i
+     */
+    private String[] episodeUrls;
+    /**
+     * The index of the next query to use
+     */
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.podcasts = new ArrayList<>(podcastCount);
+        for (int number = 0; number < podcastCount; number++)
+            podcasts.add(new FilledPodcast(number, episodeCount));
+        index.reset(podcasts);
+
+        final Random random = new Random(42);
+        this.podcastUrls = new String[QUERY_COUNT];
+        this.episodeUrls = new String[QUERY_COUNT];
+        for (int query = 0; query < QUERY_COUNT; query++) {
+            final Podcast podcast = podcasts.get(random.nextInt(podcastCount));
+
+            podcastUrls[query] = podcast.getUrl();
+            episodeUrls[query] = podcast.getEpisodes().get(random.nextInt(episodeCount)).getMediaUrl();
+        }
+    }
+
+    @Benchmark
+    public Podcast findPodcastScan() {
+        return scanPodcasts(podcastUrls[nextQuery()]);
+    }
+
+    @Benchmark
+    public Podcast findPodcastIndex() {
+        return index.findPodcastForUrl(podcastUrls[nextQuery()]);
+    }
+
+    @Benchmark
+    public Episode findEpisodeScan() {
+        final String url = episodeUrls[nextQuery()];
+
+        for (Podcast podcast : podcasts)
+            for (Episode episode : podcast.getEpisodes())
+                if (episode.equalByUrl(url))
+                    return episode;
+
+        return null;
+    }
+
+    @Benchmark
+    public Episode findEpisodeIndex() {
+        return index.findEpisodeForUrl(episodeUrls[nextQuery()]);
+    }
+
+    @Benchmark
+    public Episode findEpisodeInPodcastScan() {
+        final int query = nextQuery();
+        final Podcast podcast = scanPodcasts(podcastUrls[query]);
+
+        if (podcast != null)
+            for (Episode episode : podcast.getEpisodes())
+                if (episode.equalByUrl(episodeUrls[query]))
+                    return episode;
+
+        return null;
+    }
+
+    @Benchmark
+    public Episode findEpisodeInPodcastIndex() {
+        final int query = nextQuery();
+
+        return index.findEpisodeForUrl(episodeUrls[query], podcastUrls[query]);
+    }
+
+    private Podcast scanPodcasts(String url) {
+        for (Podcast podcast : podcasts)
+            if (podcast.equalByUrl(url))
+                return podcast;
+
+        return null;
+    }
+
+    private int nextQuery() {
+        next = next + 1 == QUERY_COUNT ? 0 : next + 1;
+
+        return next;
+    }
+
+    /**
+     * Podcast with the given number of episodes, as if loaded
+     */
+    private static class FilledPodcast extends Podcast {
+
+        private FilledPodcast(int number, int episodeCount) {
+            super("Podcast " + number, "http://www.example.com/podcast" + number + "/feed");
+
+            final List<Episode> filled = new ArrayList<>(episodeCount);
+            for (int count = 0; count < episodeCount; count++)
+                filled.add(new FilledEpisode(this, count,
+                        "http://media.example.com/podcast" + number + "/episode" + count + ".mp3"));
+            this.episodes = episodes.next(filled);
+        }
+    }
+
+    /**
+     * Episode with a media URL only
+     */
+    private static class FilledEpisode extends Episode {
+
+        private FilledEpisode(Podcast podcast, int index, String mediaUrl) {
+            super(podcast, index);
+
+            this.mediaUrl = mediaUrl;
+        }
+    }
+}
@@ -0,0 +1,590 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import android.support.annotation.NonNull;
+
+import java.util.TimeZone;
+
+/**
+ * Thread-safe parser (and formatter) for the date strings found in podcast
+ * feeds. Other than {@link java.text.SimpleDateFormat} this does not hold any
+ * state, so it can be used by any number of threads in parallel without
+ * locking, and it does not allocate anything but the parser's cursor.
+ * <p>
+ * Supported are RFC 822 dates (as used by RSS) including the deviations
+ * common in real-world feeds:
+ * <ul>
+ * <li>the day of week is optional, might be spelled out and might miss the
+ * comma or the space after it ("Sun,17 Nov 2013"),</li>
+ * <li>month names might be spelled out, come before the day ("Nov 17, 2013")
+ * and have any case,</li>
+ * <li>two-digit years (00-49 are 20xx, 50-99 are 19xx),</li>
+ * <li>missing seconds or time of day,</li>
+ * <li>named zones (UT, GMT, US zones, some European and Australian zones),
+ * numeric offsets with or without colon and missing zones.</li>
+ * </ul>
+ * Also supported are ISO 8601 (RFC 3339) dates as used by Atom feeds, e.g.
+ * "2013-11-17T00:00:00.000+01:00", with or without time and zone. Dates
+ * without zone are taken to be in the device's local time zone. Unknown zone
+ * names are treated as UTC.
+ * </p>
+ */
+public class DateCodec {
+
+    /**
+     * The value returned if a string cannot be parsed
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * Millis per minute
+     */
+    private static final long MINUTE = 60 * 1000;
+    /**
+     * Millis per hour
+     */
+    private static final long HOUR = 60 * MINUTE;
+    /**
+     * Millis per day
+     */
+    private static final long DAY = 24 * HOUR;
+    /**
+     * Marker for "no zone given" used while parsing
+     */
+    private static final int LOCAL_ZONE = Integer.MIN_VALUE;
+
+    /**
+     * Names used when formatting, indexed by day of week (Thursday is the epoch)
+     */
+    private static final String[] DAY_NAMES = {"Thu", "Fri", "Sat", "Sun", "Mon", "Tue", "Wed"};
+    /**
+     * Names used when formatting, indexed by month - 1
+     */
+    private static final String[] MONTH_NAMES = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+            "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    /**
+     * The string parsed
+     */
+    private final CharSequence text;
+    /**
+     * The string's length
+     */
+    private final int length;
+    /**
+     * The current position in the string
+     */
+    private int pos;
+    /**
+     * The number of digits read by the last call to {@link #readNumber(int)}
+     */
+    private int digits;
+
+    private DateCodec(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Parse a feed date string.
+     *
+     * @param text The string to parse, surrounding white space is ignored.
+     * @return The point in time given as epoch millis, or {@link #INVALID}
+     * if the string is not a date we understand.
+     */
+    public static long parse(@NonNull CharSequence text) {
+        return new DateCodec(text).parse();
+    }
+
+    /**
+     * Format a point in time as needed by HTTP headers (RFC 1123, always GMT),
+     * e.g. "Sun, 17 Nov 2013 06:00:00 GMT".
+     *
+     * @param millis The point in time to format (epoch millis).
+     * @return The date string.
+     */
+    @NonNull
+    public static String formatHttpDate(long millis) {
+        final long days = floorDiv(millis, DAY);
+        final int millisOfDay = (int) (millis - days * DAY);
+        final int[] civil = civilFromDays(days);
+
+        final StringBuilder builder = new StringBuilder(29);
+        builder.append(DAY_NAMES[(int) floorMod(days, 7)]).append(", ");
+        appendTwoDigits(builder, civil[2]).append(' ');
+        builder.append(MONTH_NAMES[civil[1] - 1]).append(' ');
+        builder.append(civil[0]).append(' ');
+        appendTwoDigits(builder, millisOfDay / (int) HOUR).append(':');
+        appendTwoDigits(builder, millisOfDay / (int) MINUTE % 60).append(':');
+        appendTwoDigits(builder, millisOfDay / 1000 % 60).append(" GMT");
+
+        return builder.toString();
+    }
+
+    private long parse() {
+        skipWhitespace();
+        if (pos >= length)
+            return INVALID;
+
+        // All the formats we support start with a digit or a name
+        if (isDigit(peek())) {
+            final int first = readNumber(4);
+            final int firstDigits = digits;
+
+            // "2013-11-17" is ISO, but "17-Nov-2013" is not
+            if (pos + 1 < length && peek() == '-' && isDigit(text.charAt(pos + 1)))
+                return parseIso(first, firstDigits);
+            else
+                return parseRfc822(first, firstDigits);
+        } else if (isLetter(peek())) {
+            // Day of week (we do not check it, feeds get it wrong anyway) or month
+            final int month = readMonth();
+            if (month > 0)
+                return parseMonthFirst(month);
+
+            skipLetters();
+            skip('.');
+            skipWhitespace();
+            skip(',');
+            skipWhitespace();
+
+            if (pos < length && isDigit(peek())) {
+                final int day = readNumber(2);
+                return parseRfc822(day, digits);
+            } else if (pos < length && isLetter(peek())) {
+                final int monthAfterDay = readMonth();
+                return monthAfterDay > 0 ? parseMonthFirst(monthAfterDay) : INVALID;
+            }
+        }
+
+        return INVALID;
+    }
+
+    /**
+     * Parse the rest of an RFC 822 date, e.g. "Nov 2013 00:00:00 -0600".
+     */
+    private long parseRfc822(int day, int dayDigits) {
+        if (dayDigits > 2)
+            return INVALID;
+
+        skipWhitespace();
+        skip('-');
+        final int month = readMonth();
+        if (month < 0)
+            return INVALID;
+        skip('-');
+        skipWhitespace();
+
+        return parseYearTimeAndZone(day, month);
+    }
+
+    /**
+     * Parse the rest of a date with the month first, e.g. "17, 2013 00:00:00 -0600".
+     */
+    private long parseMonthFirst(int month) {
+        skipWhitespace();
+        if (pos >= length || !isDigit(peek()))
+            return INVALID;
+
+        final int day = readNumber(2);
+        skip(',');
+        skipWhitespace();
+
+        return parseYearTimeAndZone(day, month);
+    }
+
+    private long parseYearTimeAndZone(int day, int month) {
+        if (pos >= length || !isDigit(peek()))
+            return INVALID;
+
+        final int year = expandYear(readNumber(4), digits);
+
+        // Time of day is optional
+        skipWhitespace();
+        long millisOfDay = 0;
+        if (pos < length && isDigit(peek())) {
+            millisOfDay = parseTime();
+            if (millisOfDay < 0)
+                return INVALID;
+
+            skipWhitespace();
+        }
+
+        final int zone = parseZone();
+        return toMillis(year, month, day, millisOfDay, zone);
+    }
+
+    /**
+     * Parse the rest of an ISO 8601 date, e.g. "-11-17T00:00:00Z".
+     */
+    private long parseIso(int year, int yearDigits) {
+        if (yearDigits != 4 && yearDigits != 2)
+            return INVALID;
+
+        pos++; // '-'
+        final int month = readNumber(2);
+        if (digits == 0 || pos >= length || peek() != '-')
+            return INVALID;
+
+        pos++; // '-'
+        final int day = readNumber(2);
+        if (digits == 0)
+            return INVALID;
+
+        // Time of day is optional, but required after the separator
+        long millisOfDay = 0;
+        final boolean separator = pos < length && (peek() == 'T' || peek() == 't');
+        if (separator)
+            pos++;
+        else
+            skipWhitespace();
+
+        if (separator || (pos < length && isDigit(peek()))) {
+            millisOfDay = parseTime();
+            if (millisOfDay < 0)
+                return INVALID;
+        }
+
+        skipWhitespace();
+        final int zone = parseZone();
+        return toMillis(expandYear(year, yearDigits), month, day, millisOfDay, zone);
+    }
+
+    /**
+     * Parse a time of day, e.g. "13:45", "13:45:12" or "13:45:12.345".
+     *
+     * @return The millis since midnight or -1 on failure.
+     */
+    private long parseTime() {
+        final int hours = readNumber(2);
+        if (pos >= length || peek() != ':')
+            return -1;
+
+        pos++; // ':'
+        final int minutes = readNumber(2);
+        if (digits != 2)
+            return -1;
+
+        int seconds = 0;
+        int millis = 0;
+        if (pos < length && peek() == ':') {
+            pos++;
+            seconds = readNumber(2);
+            if (digits != 2)
+                return -1;
+
+            // Fractions, we only keep the millis
+            if (pos < length && (peek() == '.' || peek() == ',')) {
+                pos++;
+                int scale = 100;
+                while (pos < length && isDigit(peek())) {
+                    millis += (text.charAt(pos++) - '0') * scale;
+                    scale /= 10;
+                }
+            }
+        }
+
+        if (hours > 24 || minutes > 59 || seconds > 60)
+            return -1;
+
+        return hours * HOUR + minutes * MINUTE + seconds * 1000L + millis;
+    }
+
+    /**
+     * Parse the zone at the current position.
+     *
+     * @return The zone's offset in minutes, {@link #LOCAL_ZONE} if none is given.
+     */
+    private int parseZone() {
+        if (pos >= length)
+            return LOCAL_ZONE;
+
+        final char first = peek();
+        if (first == '+' || first == '-')
+            return parseOffset();
+        else if (first == 'Z' || first == 'z') {
+            pos++;
+            if (pos >= length || !isLetter(peek()))
+                return 0;
+            pos--;
+        }
+
+        if (!isLetter(first))
+            return LOCAL_ZONE;
+
+        // Zone names are short, pack them into an int for the lookup
+        int key = 0;
+        int letters = 0;
+        while (pos < length && isLetter(peek())) {
+            if (letters++ < 4)
+                key = key << 8 | toLower(peek());
+            pos++;
+        }
+
+        final int offset = letters > 4 ? 0 : namedZoneOffset(key);
+
+        // E.g. "GMT+01:00"
+        if ((key == GMT || key == UTC || key == UT) && pos < length &&
+                (peek() == '+' || peek() == '-'))
+            return parseOffset();
+        else
+            return offset;
+    }
+
+    /**
+     * Parse a numeric zone offset like "+0100", "-05:30" or "+01".
+     *
+     * @return The offset in minutes.
+     */
+    private int parseOffset() {
+        final int sign = text.charAt(pos++) == '-' ? -1 : 1;
+        int value = readNumber(4);
+
+        if (digits <= 2) {
+            value *= 100;
+            if (pos < length && peek() == ':') {
+                pos++;
+                value += readNumber(2);
+            }
+        }
+
+        return sign * (value / 100 * 60 + value % 100);
+    }
+
+    private static final int UT = 'u' << 8 | 't';
+    private static final int UTC = 'u' << 16 | 't' << 8 | 'c';
+    private static final int GMT = 'g' << 16 | 'm' << 8 | 't';
+
+    private static int namedZoneOffset(int key) {
+        switch (key) {
+            case 'e' << 16 | 's' << 8 | 't':
+                return -5 * 60;
+            case 'e' << 16 | 'd' << 8 | 't':
+                return -4 * 60;
+            case 'c' << 16 | 's' << 8 | 't':
+                return -6 * 60;
+            case 'c' << 16 | 'd' << 8 | 't':
+                return -5 * 60;
+            case 'm' << 16 | 's' << 8 | 't':
+                return -7 * 60;
+            case 'm' << 16 | 'd' << 8 | 't':
+                return -6 * 60;
+            case 'p' << 16 | 's' << 8 | 't':
+                return -8 * 60;
+            case 'p' << 16 | 'd' << 8 | 't':
+                return -7 * 60;
+            case 'a' << 24 | 'k' << 16 | 's' << 8 | 't':
+                return -9 * 60;
+            case 'h' << 16 | 's' << 8 | 't':
+                return -10 * 60;
+            case 'b' << 16 | 's' << 8 | 't':
+            case 'c' << 16 | 'e' << 8 | 't':
+            case 'm' << 16 | 'e' << 8 | 't':
+            case 'w' << 24 | 'e' << 16 | 's' << 8 | 't':
+                return 60;
+            case 'c' << 24 | 'e' << 16 | 's' << 8 | 't':
+            case 'm' << 24 | 'e' << 16 | 's' << 8 | 't':
+            case 'e' << 16 | 'e' << 8 | 't':
+                return 2 * 60;
+            case 'e' << 24 | 'e' << 16 | 's' << 8 | 't':
+                return 3 * 60;
+            case 'a' << 24 | 'e' << 16 | 's' << 8 | 't':
+                return 10 * 60;
+            case 'a' << 24 | 'e' << 16 | 'd' << 8 | 't':
+                return 11 * 60;
+            default:
+                // UT, UTC, GMT, Z, military zones and anything we do not know
+                return 0;
+        }
+    }
+
+    /**
+     * Read a month name (three letters at least) at the current position.
+     *
+     * @return The month (1-12) or -1 if there is no month name.
+     */
+    private int readMonth() {
+        if (pos + 3 > length)
+            return -1;
+
+        final int key = toLower(text.charAt(pos)) << 16 |
+                toLower(text.charAt(pos + 1)) << 8 | toLower(text.charAt(pos + 2));
+        final int month;
+        switch (key) {
+            case 'j' << 16 | 'a' << 8 | 'n':
+                month = 1;
+                break;
+            case 'f' << 16 | 'e' << 8 | 'b':
+                month = 2;
+                break;
+            case 'm' << 16 | 'a' << 8 | 'r':
+                month = 3;
+                break;
+            case 'a' << 16 | 'p' << 8 | 'r':
+                month = 4;
+                break;
+            case 'm' << 16 | 'a' << 8 | 'y':
+                month = 5;
+                break;
+            case 'j' << 16 | 'u' << 8 | 'n':
+                month = 6;
+                break;
+            case 'j' << 16 | 'u' << 8 | 'l':
+                month = 7;
+                break;
+            case 'a' << 16 | 'u' << 8 | 'g':
+                month = 8;
+                break;
+            case 's' << 16 | 'e' << 8 | 'p':
+                month = 9;
+                break;
+            case 'o' << 16 | 'c' << 8 | 't':
+                month = 10;
+                break;
+            case 'n' << 16 | 'o' << 8 | 'v':
+                month = 11;
+                break;
+            case 'd' << 16 | 'e' << 8 | 'c':
+                month = 12;
+                break;
+            default:
+                return -1;
+        }
+
+        // Skip the rest of spelled out or abbreviated names ("September", "Sept.")
+        skipLetters();
+        skip('.');
+        return month;
+    }
+
+    /**
+     * Read a non-negative number of up to the given number of digits and
+     * store the number of digits actually read in {@link #digits}.
+     */
+    private int readNumber(int maxDigits) {
+        int value = 0;
+        digits = 0;
+
+        while (pos < length && digits < maxDigits && isDigit(peek())) {
+            value = value * 10 + (text.charAt(pos++) - '0');
+            digits++;
+        }
+
+        return value;
+    }
+
+    private char peek() {
+        return text.charAt(pos);
+    }
+
+    private void skip(char c) {
+        if (pos < length && peek() == c)
+            pos++;
+    }
+
+    private void skipLetters() {
+        while (pos < length && isLetter(peek()))
+            pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < length && (peek() <= ' ' || peek() == '\u00a0'))
+            pos++;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static int expandYear(int year, int yearDigits) {
+        // RFC 2822, section 4.3
+        if (yearDigits <= 2)
+            return year < 50 ? 2000 + year : 1900 + year;
+        else if (yearDigits == 3)
+            return 1900 + year;
+        else
+            return year;
+    }
+
+    private static long toMillis(int year, int month, int day, long millisOfDay, int zone) {
+        if (month < 1 || month > 12 || day < 1 || day > 31)
+            return INVALID;
+
+        final long wallMillis = daysFromCivil(year, month, day) * DAY + millisOfDay;
+
+        if (zone != LOCAL_ZONE)
+            return wallMillis - zone * MINUTE;
+        else {
+            final TimeZone local = TimeZone.getDefault();
+            return wallMillis - local.getOffset(wallMillis - local.getRawOffset());
+        }
+    }
+
+    /**
+     * @return The days since the epoch for the given date in the proleptic
+     * Gregorian calendar, days beyond the end of the month roll over.
+     */
+    private static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        final long era = (year >= 0 ? year : year - 399) / 400;
+        final long yearOfEra = year - era * 400;
+        final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return Year, month (1-12) and day for the given days since the epoch.
+     */
+    private static int[] civilFromDays(long days) {
+        days += 719468;
+        final long era = (days >= 0 ? days : days - 146096) / 146097;
+        final long dayOfEra = days - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long monthIndex = (5 * dayOfYear + 2) / 153;
+        final int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        final int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+
+        return new int[]{(int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0)), month, day};
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+        return builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static long floorDiv(long x, long y) {
+        final long result = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? result - 1 : result;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
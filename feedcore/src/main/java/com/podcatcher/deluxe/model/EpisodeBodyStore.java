@@ -0,0 +1,498 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the long texts of episodes (description and content) on disk instead
+ * of the heap. These are only needed once the user looks at an episode, but
+ * easily take a few KB each. The texts are written to segment files while a
+ * feed is parsed, the episodes only keep a handle (a long) to read the text
+ * back on demand. The texts read recently are kept in a small cache.
+ * <p>
+ * Each parse of a feed writes a segment of its own. Once a podcast is
+ * parsed again completely, the podcast retires its old segments. Retired
+ * segments are kept for a while, since some episode objects from the old
+ * parse might still be around, but deleted once they take up too much space.
+ * Reading from a deleted segment returns <code>null</code>. Incremental parses
+ * keep the old segments in use and add one, so the podcast moves the texts
+ * still in use to a new segment once it has too many (see
+ * {@link Writer#owns(long)}) and retires the old ones.
+ * </p>
+ * <p>
+ * The store does nothing until {@link #open(File)} is called, which deletes
+ * all content from earlier runs of the app, since all feeds are parsed again.
+ * </p>
+ */
+public class EpisodeBodyStore {
+
+    /**
+     * The handle given for texts not stored
+     */
+    public static final long NONE = 0;
+    /**
+     * Texts shorter than this are not worth storing (chars)
+     */
+    public static final int MIN_LENGTH = 128;
+
+    /**
+     * The number of texts cached
+     */
+    private static final int CACHE_SIZE = 16;
+    /**
+     * The disk space retired segments can take before being deleted (bytes)
+     */
+    private static final long RETIRED_BUDGET = 16 * 1024 * 1024;
+    /**
+     * The number of bits used for the offset in a handle
+     */
+    private static final int OFFSET_BITS = 40;
+    /**
+     * The largest segment id, keeps the handles positive
+     */
+    private static final int MAX_SEGMENT_ID = (1 << (63 - OFFSET_BITS)) - 1;
+    /**
+     * The estimated memory used by a string object, not counting its characters (bytes)
+     */
+    private static final int STRING_OVERHEAD = 40;
+    /**
+     * The charset texts are stored in
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The single instance
+     */
+    private static final EpisodeBodyStore store = new EpisodeBodyStore();
+
+    /**
+     * The directory segment files go to, <code>null</code> while not open
+     */
+    private File directory;
+    /**
+     * The id the next segment gets
+     */
+    private int nextSegmentId = 1;
+    /**
+     * All segments on disk by id
+     */
+    private final Map<Integer, Segment> segments = new HashMap<>();
+    /**
+     * The retired segments, oldest first
+     */
+    private final Deque<Segment> retired = new ArrayDeque<>();
+    /**
+     * The disk space used by retired segments (bytes)
+     */
+    private long retiredBytes = 0;
+
+    /**
+     * The texts read recently by handle
+     */
+    private final Map<Long, String> cache = new LinkedHashMap<Long, String>(CACHE_SIZE, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    /**
+     * The number of reads answered from the cache
+     */
+    private long cacheHits = 0;
+    /**
+     * The number of reads that went to disk
+     */
+    private long diskReads = 0;
+
+    /**
+     * A segment file, written by a single {@link Writer} and read afterwards
+     */
+    private static class Segment {
+
+        private final int id;
+        private final File file;
+
+        /**
+         * The stream to the file while the segment is written
+         */
+        private OutputStream out;
+        private long bytes = 0;
+        private int texts = 0;
+
+        private Segment(int id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Writes the texts of one feed parse to a segment. Not thread-safe, use
+     * from the parsing thread only.
+     */
+    public class Writer {
+
+        private final Segment segment;
+
+        private Writer(Segment segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Store the given text.
+         *
+         * @param text The text to store.
+         * @return The handle to read the text with or {@link #NONE} if the
+         * text was not stored because it is <code>null</code>, too short or
+         * the write failed. Keep the text in memory in this case.
+         */
+        public long write(@Nullable String text) {
+            if (text == null || text.length() < MIN_LENGTH)
+                return NONE;
+
+            final byte[] bytes = text.getBytes(UTF8);
+
+            synchronized (segment) {
+                if (segment.out == null)
+                    return NONE;
+
+                try {
+                    final long offset = segment.bytes;
+                    final int prefix = writeLength(segment.out, bytes.length);
+                    segment.out.write(bytes);
+
+                    segment.bytes += prefix + bytes.length;
+                    segment.texts++;
+
+                    return ((long) segment.id << OFFSET_BITS) | offset;
+                } catch (IOException ioe) {
+                    // Keep this text in memory
+                    return NONE;
+                }
+            }
+        }
+
+        /**
+         * @param handle A handle as returned by {@link #write(String)}.
+         * @return Whether the text for the handle is stored in this writer's segment.
+         */
+        public boolean owns(long handle) {
+            return handle != NONE && (int) (handle >>> OFFSET_BITS) == segment.id;
+        }
+
+        /**
+         * @return The id of the segment written to.
+         */
+        public int getSegmentId() {
+            return segment.id;
+        }
+
+        /**
+         * Finish writing, the texts stay readable until the segment is retired
+         * and deleted.
+         */
+        public void close() {
+            synchronized (segment) {
+                closeQuietly(segment);
+            }
+        }
+
+        /**
+         * Finish writing and delete the segment, because the texts written are
+         * not needed (e.g. the parse failed).
+         */
+        public void discard() {
+            close();
+            delete(segment.id);
+        }
+    }
+
+    private EpisodeBodyStore() {
+        // Use getInstance()
+    }
+
+    /**
+     * @return The single instance.
+     */
+    public static EpisodeBodyStore getInstance() {
+        return store;
+    }
+
+    /**
+     * Start storing texts in the given directory. Any content in the
+     * directory is deleted.
+     *
+     * @param directory The directory to use, will be created if needed.
+     */
+    public synchronized void open(@NonNull File directory) {
+        final File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+
+        if (directory.isDirectory() || directory.mkdirs())
+            this.directory = directory;
+    }
+
+    /**
+     * Stop storing texts and delete all texts stored. Episodes created
+     * while the store was open will lose their description and content, so
+     * only call this if there are none left in use.
+     */
+    public synchronized void close() {
+        for (Integer id : new ArrayList<>(segments.keySet()))
+            delete(id);
+
+        this.directory = null;
+    }
+
+    /**
+     * @return Whether texts are stored.
+     */
+    public synchronized boolean isOpen() {
+        return directory != null;
+    }
+
+    /**
+     * Create a writer for a new segment.
+     *
+     * @return The writer or <code>null</code> if the store is not open or
+     * the segment file cannot be created. Keep the texts in memory then.
+     */
+    @Nullable
+    public synchronized Writer newWriter() {
+        if (directory == null)
+            return null;
+
+        final int id = nextSegmentId;
+        nextSegmentId = nextSegmentId == MAX_SEGMENT_ID ? 1 : nextSegmentId + 1;
+        if (segments.containsKey(id))
+            delete(id);
+
+        final Segment segment = new Segment(id, new File(directory, "segment" + id));
+        try {
+            segment.out = new BufferedOutputStream(new FileOutputStream(segment.file));
+        } catch (IOException ioe) {
+            return null;
+        }
+
+        segments.put(id, segment);
+        return new Writer(segment);
+    }
+
+    /**
+     * Read a text stored.
+     *
+     * @param handle The handle as returned by {@link Writer#write(String)}.
+     * @return The text or <code>null</code> if not available anymore.
+     */
+    @Nullable
+    public String read(long handle) {
+        final Segment segment;
+        synchronized (this) {
+            final String cached = cache.get(handle);
+            if (cached != null) {
+                cacheHits++;
+                return cached;
+            }
+
+            segment = segments.get((int) (handle >>> OFFSET_BITS));
+            if (segment == null)
+                return null;
+
+            diskReads++;
+        }
+
+        String text = null;
+        synchronized (segment) {
+            RandomAccessFile file = null;
+
+            try {
+                // Make sure a segment still written is readable
+                if (segment.out != null)
+                    segment.out.flush();
+
+                file = new RandomAccessFile(segment.file, "r");
+                file.seek(handle & ((1L << OFFSET_BITS) - 1));
+
+                final byte[] bytes = new byte[readLength(file)];
+                file.readFully(bytes);
+                text = new String(bytes, UTF8);
+            } catch (IOException ioe) {
+                // Not available, segment deleted
+            } finally {
+                if (file != null)
+                    try {
+                        file.close();
+                    } catch (IOException e) {
+                        // pass
+                    }
+            }
+        }
+
+        if (text != null)
+            synchronized (this) {
+                cache.put(handle, text);
+            }
+
+        return text;
+    }
+
+    /**
+     * Mark the given segments as not in use anymore. Their texts stay
+     * readable for a while, but will be deleted once the retired segments
+     * take up too much space.
+     *
+     * @param segmentIds The segments to retire.
+     */
+    public synchronized void retire(@NonNull Collection<Integer> segmentIds) {
+        for (int id : segmentIds) {
+            final Segment segment = segments.get(id);
+
+            if (segment != null && !retired.contains(segment)) {
+                retired.addLast(segment);
+                retiredBytes += segment.bytes;
+            }
+        }
+
+        while (retiredBytes > RETIRED_BUDGET && !retired.isEmpty())
+            delete(retired.peekFirst().id);
+    }
+
+    /**
+     * @return The number of texts stored in segments in use.
+     */
+    public synchronized int getTextCount() {
+        int texts = 0;
+        for (Segment segment : segments.values())
+            if (!retired.contains(segment))
+                texts += segment.texts;
+
+        return texts;
+    }
+
+    /**
+     * @return The estimated heap memory the texts stored in segments in use
+     * would take as strings, minus the handles kept instead (bytes). This
+     * assumes compact (one byte per char) strings for mostly ASCII texts,
+     * Android versions before 8.0 use twice as much.
+     */
+    public synchronized long getEstimatedHeapSaved() {
+        long saved = 0;
+        for (Segment segment : segments.values())
+            if (!retired.contains(segment))
+                saved += segment.bytes + segment.texts * (STRING_OVERHEAD - 8);
+
+        return saved;
+    }
+
+    /**
+     * @return The disk space used by all segments, including retired ones (bytes).
+     */
+    public synchronized long getDiskUsage() {
+        long bytes = 0;
+        for (Segment segment : segments.values())
+            bytes += segment.bytes;
+
+        return bytes;
+    }
+
+    /**
+     * @return The share of reads answered from the cache, between 0 and 1.
+     */
+    public synchronized double getCacheHitRate() {
+        final long total = cacheHits + diskReads;
+
+        return total == 0 ? 0 : (double) cacheHits / total;
+    }
+
+    private synchronized void delete(int id) {
+        final Segment segment = segments.remove(id);
+
+        if (segment != null) {
+            if (retired.remove(segment))
+                retiredBytes -= segment.bytes;
+
+            synchronized (segment) {
+                closeQuietly(segment);
+                //noinspection ResultOfMethodCallIgnored
+                segment.file.delete();
+            }
+
+            // Drop cached texts from the segment, the id might be used again
+            cache.clear();
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        if (segment.out != null)
+            try {
+                segment.out.close();
+            } catch (IOException e) {
+                // pass
+            } finally {
+                segment.out = null;
+            }
+    }
+
+    private static int writeLength(OutputStream out, int length) throws IOException {
+        // Seven bits per byte, high bit set if more bytes follow
+        int bytes = 1;
+        while (length > 0x7f) {
+            out.write((length & 0x7f) | 0x80);
+            length >>>= 7;
+            bytes++;
+        }
+        out.write(length);
+
+        return bytes;
+    }
+
+    private static int readLength(RandomAccessFile file) throws IOException {
+        int length = 0;
+        int shift = 0;
+        int next;
+
+        do {
+            next = file.readUnsignedByte();
+            length |= (next & 0x7f) << shift;
+            shift += 7;
+        } while ((next & 0x80) != 0 && shift < 32);
+
+        return length;
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.EpisodeTimeline.StateSource;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.podcatcher.deluxe.model.EpisodeTimeline.DOWNLOADED;
+import static com.podcatcher.deluxe.model.EpisodeTimeline.IN_PLAYLIST;
+import static com.podcatcher.deluxe.model.EpisodeTimeline.OLD;
+
+/**
+ * Keeps the number of new, downloaded and playlist episodes per podcast, so
+ * the podcast list can show these without asking for the state of every
+ * episode each time a row is bound. A podcast is counted the first time it
+ * is asked for and again only once its episode list changed. Tell the
+ * counter about state changes via {@link #update(Episode)}, it will then
+ * adjust the counts of all podcasts the episode is part of.
+ * <p>
+ * States are taken from the {@link StateSource} given, the counter is
+ * thread-safe.
+ * </p>
+ */
+public class EpisodeCounter {
+
+    /**
+     * Where the states come from
+     */
+    private final StateSource stateSource;
+    /**
+     * The counts per podcast
+     */
+    private final Map<Podcast, Counts> counts = new IdentityHashMap<>();
+    /**
+     * The places each episode (by media URL) is counted at
+     */
+    private final Map<String, List<Slot>> slots = new HashMap<>();
+
+    /**
+     * The counts for one podcast
+     */
+    private static class Counts {
+
+        /**
+         * The episode list counted
+         */
+        private final ListSnapshot<Episode> episodes;
+        /**
+         * The state flags of each episode, same order as the list
+         */
+        private final int[] states;
+        /**
+         * The number of episodes not marked old
+         */
+        private int newCount;
+        /**
+         * The number of episodes downloaded
+         */
+        private int downloadedCount;
+        /**
+         * The number of episodes in the playlist
+         */
+        private int playlistCount;
+
+        private Counts(@NonNull ListSnapshot<Episode> episodes) {
+            this.episodes = episodes;
+            this.states = new int[episodes.size()];
+        }
+
+        private void add(int flags, int sign) {
+            if ((flags & OLD) == 0)
+                newCount += sign;
+            if ((flags & DOWNLOADED) != 0)
+                downloadedCount += sign;
+            if ((flags & IN_PLAYLIST) != 0)
+                playlistCount += sign;
+        }
+    }
+
+    /**
+     * A place an episode is counted at: the podcast's counts and the position
+     * in its episode list
+     */
+    private static class Slot {
+
+        /**
+         * The podcast's counts
+         */
+        private final Counts counts;
+        /**
+         * The episode's position in the counted list
+         */
+        private final int index;
+
+        private Slot(@NonNull Counts counts, int index) {
+            this.counts = counts;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Create a new counter.
+     *
+     * @param stateSource Where to get the episode states from.
+     */
+    public EpisodeCounter(@NonNull StateSource stateSource) {
+        this.stateSource = stateSource;
+    }
+
+    /**
+     * @param podcast The podcast to count for.
+     * @return The number of episodes in the podcast not marked old.
+     */
+    public synchronized int getNewCount(@NonNull Podcast podcast) {
+        return get(podcast).newCount;
+    }
+
+    /**
+     * @param podcast The podcast to count for.
+     * @return The number of episodes in the podcast downloaded.
+     */
+    public synchronized int getDownloadedCount(@NonNull Podcast podcast) {
+        return get(podcast).downloadedCount;
+    }
+
+    /**
+     * @param podcast The podcast to count for.
+     * @return The number of episodes in the podcast in the playlist.
+     */
+    public synchronized int getPlaylistCount(@NonNull Podcast podcast) {
+        return get(podcast).playlistCount;
+    }
+
+    /**
+     * Count the podcast's episodes again if its episode list changed since
+     * the last time. Call this when the podcast (re-)loaded, otherwise it
+     * will happen on the next read.
+     *
+     * @param podcast The podcast to update the counts for.
+     */
+    public synchronized void update(@NonNull Podcast podcast) {
+        get(podcast);
+    }
+
+    /**
+     * Update the counts for all podcasts given episode is part of, because
+     * its state changed.
+     *
+     * @param episode The episode with a new state.
+     */
+    public synchronized void update(@NonNull Episode episode) {
+        final List<Slot> episodeSlots = episode.getMediaUrl() == null ?
+                null : slots.get(episode.getMediaUrl());
+
+        if (episodeSlots != null) {
+            final int flags = stateSource.getStates(episode);
+
+            for (Slot slot : episodeSlots) {
+                final int before = slot.counts.states[slot.index];
+
+                if (before != flags) {
+                    slot.counts.add(before, -1);
+                    slot.counts.add(flags, 1);
+                    slot.counts.states[slot.index] = flags;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the counts for given podcast, e.g. because it was removed.
+     *
+     * @param podcast The podcast to drop.
+     */
+    public synchronized void remove(@NonNull Podcast podcast) {
+        final Counts removed = counts.remove(podcast);
+
+        if (removed != null)
+            dropSlots(removed);
+    }
+
+    /**
+     * Forget all counts, e.g. because the states all changed.
+     * Podcasts will be counted again when asked for.
+     */
+    public synchronized void clear() {
+        counts.clear();
+        slots.clear();
+    }
+
+    /**
+     * Count all podcasts known again from scratch and compare to the counts
+     * kept. Meant for tests, this is as slow as counting without the counter.
+     *
+     * @throws IllegalStateException If the counts kept are off.
+     */
+    public synchronized void checkInvariants() {
+        int slotCount = 0;
+
+        for (Map.Entry<Podcast, Counts> entry : counts.entrySet()) {
+            final Counts kept = entry.getValue();
+            final Counts recount = new Counts(kept.episodes);
+
+            for (int index = 0; index < kept.episodes.size(); index++) {
+                final Episode episode = kept.episodes.get(index);
+
+                recount.states[index] = stateSource.getStates(episode);
+                recount.add(recount.states[index], 1);
+
+                if (kept.states[index] != recount.states[index])
+                    throw new IllegalStateException("State of " + episode.getMediaUrl() + " in " +
+                            entry.getKey().getUrl() + " is " + kept.states[index] + ", should be " +
+                            recount.states[index]);
+                if (episode.getMediaUrl() != null)
+                    slotCount++;
+            }
+
+            if (kept.newCount != recount.newCount || kept.downloadedCount != recount.downloadedCount ||
+                    kept.playlistCount != recount.playlistCount)
+                throw new IllegalStateException("Counts for " + entry.getKey().getUrl() + " are " +
+                        kept.newCount + "/" + kept.downloadedCount + "/" + kept.playlistCount +
+                        ", should be " + recount.newCount + "/" + recount.downloadedCount + "/" +
+                        recount.playlistCount);
+        }
+
+        for (List<Slot> episodeSlots : slots.values())
+            slotCount -= episodeSlots.size();
+        if (slotCount != 0)
+            throw new IllegalStateException("Slots are off by " + -slotCount);
+    }
+
+    @NonNull
+    private Counts get(@NonNull Podcast podcast) {
+        final ListSnapshot<Episode> episodes = podcast.getEpisodes();
+        Counts current = counts.get(podcast);
+
+        // Snapshots are replaced whenever the episode list changes
+        if (current == null || current.episodes != episodes) {
+            if (current != null)
+                dropSlots(current);
+
+            current = new Counts(episodes);
+            for (int index = 0; index < episodes.size(); index++) {
+                final Episode episode = episodes.get(index);
+
+                current.states[index] = stateSource.getStates(episode);
+                current.add(current.states[index], 1);
+
+                if (episode.getMediaUrl() != null)
+                    addSlot(episode.getMediaUrl(), new Slot(current, index));
+            }
+
+            counts.put(podcast, current);
+        }
+
+        return current;
+    }
+
+    private void addSlot(@NonNull String mediaUrl, @NonNull Slot slot) {
+        final List<Slot> episodeSlots = slots.get(mediaUrl);
+
+        // Most episodes are part of one podcast only
+        if (episodeSlots == null)
+            slots.put(mediaUrl, Collections.singletonList(slot));
+        else if (episodeSlots.size() == 1) {
+            final List<Slot> shared = new ArrayList<>(2);
+            shared.add(episodeSlots.get(0));
+            shared.add(slot);
+
+            slots.put(mediaUrl, shared);
+        } else
+            episodeSlots.add(slot);
+    }
+
+    private void dropSlots(@NonNull Counts dropped) {
+        for (Episode episode : dropped.episodes) {
+            final List<Slot> episodeSlots = episode.getMediaUrl() == null ?
+                    null : slots.get(episode.getMediaUrl());
+
+            if (episodeSlots == null)
+                continue;
+            else if (episodeSlots.size() == 1 && episodeSlots.get(0).counts == dropped)
+                slots.remove(episode.getMediaUrl());
+            else if (episodeSlots.size() > 1) {
+                for (int index = episodeSlots.size() - 1; index >= 0; index--)
+                    if (episodeSlots.get(index).counts == dropped)
+                        episodeSlots.remove(index);
+
+                if (episodeSlots.isEmpty())
+                    slots.remove(episode.getMediaUrl());
+            }
+        }
+    }
+}
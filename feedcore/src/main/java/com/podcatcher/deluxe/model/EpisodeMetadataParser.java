@@ -0,0 +1,154 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.types.EpisodeMetadata;
+
+import android.support.annotation.NonNull;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+
+import static com.podcatcher.deluxe.model.tags.METADATA.DOWNLOAD_ID;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DATE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DESCRIPTION;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DURATION;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_FILE_SIZE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_MEDIA_TYPE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_NAME;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_RESUME_AT;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_STATE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_URL;
+import static com.podcatcher.deluxe.model.tags.METADATA.LOCAL_FILE_PATH;
+import static com.podcatcher.deluxe.model.tags.METADATA.METADATA;
+import static com.podcatcher.deluxe.model.tags.METADATA.PLAYLIST_POSITION;
+import static com.podcatcher.deluxe.model.tags.METADATA.PODCAST_NAME;
+import static com.podcatcher.deluxe.model.tags.METADATA.PODCAST_URL;
+
+/**
+ * Reads the episode metadata file the app keeps the user's episode
+ * information (downloads, resume times, state, playlist) in.
+ */
+public class EpisodeMetadataParser {
+
+    private EpisodeMetadataParser() {
+        // Static parsing only
+    }
+
+    /**
+     * Read all metadata records from a metadata document.
+     *
+     * @param parser Parser to read from, set to the beginning of the document.
+     * @param result The map to put the records in, keyed by episode URL. If
+     *               the document is broken, the records read before the problem
+     *               are in here.
+     * @throws XmlPullParserException On parsing errors.
+     * @throws IOException            If the document cannot be read.
+     */
+    public static void parse(@NonNull XmlPullParser parser, @NonNull Map<String, EpisodeMetadata> result)
+            throws XmlPullParserException, IOException {
+        int eventType = parser.next();
+
+        // Read complete document
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            // We only need start tags here
+            if (eventType == XmlPullParser.START_TAG) {
+                String tagName = parser.getName();
+
+                // Metadata found
+                if (tagName.equalsIgnoreCase(METADATA)) {
+                    final String key = parser.getAttributeValue(null, EPISODE_URL);
+                    final EpisodeMetadata metadata = readMetadata(parser);
+
+                    result.put(key, metadata);
+                }
+
+            }
+
+            // Done, get next parsing event
+            eventType = parser.next();
+        }
+    }
+
+    private static EpisodeMetadata readMetadata(XmlPullParser parser)
+            throws XmlPullParserException, IOException {
+
+        // Create the resulting metadata record
+        EpisodeMetadata result = new EpisodeMetadata();
+
+        // Parse the metadata information
+        int eventType = parser.next();
+
+        // Read till the end of the metadata tag is reached
+        while (!(eventType == XmlPullParser.END_TAG && parser.getName().equals(METADATA))) {
+            // We only need start tags here
+            if (eventType == XmlPullParser.START_TAG)
+                switch (parser.getName()) {
+                    case EPISODE_NAME:
+                        result.episodeName = parser.nextText();
+                        break;
+                    case EPISODE_DATE:
+                        result.episodePubDate = new Date(Long.parseLong(parser.nextText()));
+                        break;
+                    case EPISODE_DURATION:
+                        result.episodeDuration = Integer.parseInt(parser.nextText());
+                        break;
+                    case EPISODE_FILE_SIZE:
+                        result.episodeFileSize = Long.parseLong(parser.nextText());
+                        break;
+                    case EPISODE_MEDIA_TYPE:
+                        result.episodeMediaType = parser.nextText();
+                        break;
+                    case EPISODE_DESCRIPTION:
+                        result.episodeDescription = parser.nextText();
+                        break;
+                    case PODCAST_NAME:
+                        result.podcastName = parser.nextText();
+                        break;
+                    case PODCAST_URL:
+                        result.podcastUrl = parser.nextText();
+                        break;
+                    case DOWNLOAD_ID:
+                        result.downloadId = Long.parseLong(parser.nextText());
+                        break;
+                    case LOCAL_FILE_PATH:
+                        result.filePath = parser.nextText();
+                        break;
+                    case EPISODE_RESUME_AT:
+                        result.resumeAt = Integer.parseInt(parser.nextText());
+                        break;
+                    case EPISODE_STATE:
+                        result.isOld = Boolean.parseBoolean(parser.nextText());
+                        break;
+                    case PLAYLIST_POSITION:
+                        result.playlistPosition = Integer.parseInt(parser.nextText());
+                        break;
+                }
+
+            // Done, get next parsing event
+            eventType = parser.next();
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.types.EpisodeMetadata;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.podcatcher.deluxe.model.tags.METADATA.DOWNLOAD_ID;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DATE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DESCRIPTION;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_DURATION;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_FILE_SIZE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_MEDIA_TYPE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_NAME;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_RESUME_AT;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_STATE;
+import static com.podcatcher.deluxe.model.tags.METADATA.EPISODE_URL;
+import static com.podcatcher.deluxe.model.tags.METADATA.LOCAL_FILE_PATH;
+import static com.podcatcher.deluxe.model.tags.METADATA.METADATA;
+import static com.podcatcher.deluxe.model.tags.METADATA.PLAYLIST_POSITION;
+import static com.podcatcher.deluxe.model.tags.METADATA.PODCAST_NAME;
+import static com.podcatcher.deluxe.model.tags.METADATA.PODCAST_URL;
+
+/**
+ * Writes the episode metadata file. This is the counterpart to
+ * {@link EpisodeMetadataParser}.
+ */
+public class EpisodeMetadataWriter extends XmlFileWriter {
+
+    /**
+     * Create a new metadata writer.
+     *
+     * @param writer The writer to write the document to.
+     */
+    public EpisodeMetadataWriter(@NonNull Writer writer) {
+        super(writer);
+    }
+
+    /**
+     * Write the complete metadata document.
+     *
+     * @param metadata The metadata records to write, keyed by episode URL.
+     * @throws IOException If writing the document goes wrong.
+     */
+    public void write(@NonNull Map<String, EpisodeMetadata> metadata) throws IOException {
+        writeHeader();
+        for (Entry<String, EpisodeMetadata> entry : metadata.entrySet())
+            writeRecord(entry.getKey(), entry.getValue());
+        writeFooter();
+
+        writer.flush();
+    }
+
+    private void writeRecord(String key, EpisodeMetadata value) throws IOException {
+        writeLine(1, "<" + METADATA + " " + EPISODE_URL + "=\"" + escape(key) + "\">");
+
+        // Data will only be written if present, see null checks in writeData()
+        writeData(value.episodeName, EPISODE_NAME);
+        if (value.episodePubDate != null)
+            writeData(value.episodePubDate.getTime(), EPISODE_DATE);
+        writeData(value.episodeDuration, EPISODE_DURATION);
+        writeData(value.episodeFileSize, EPISODE_FILE_SIZE);
+        writeData(value.episodeMediaType, EPISODE_MEDIA_TYPE);
+        writeData(value.episodeDescription, EPISODE_DESCRIPTION);
+        writeData(value.podcastName, PODCAST_NAME);
+        writeData(value.podcastUrl, PODCAST_URL);
+        writeData(value.downloadId, DOWNLOAD_ID);
+        writeData(value.filePath, LOCAL_FILE_PATH);
+        writeData(value.resumeAt, EPISODE_RESUME_AT);
+        if (value.isOld != null && value.isOld)
+            writeData(Boolean.TRUE.toString(), EPISODE_STATE);
+        writeData(value.playlistPosition, PLAYLIST_POSITION);
+
+        writeLine(1, "</" + METADATA + ">");
+    }
+
+    private void writeData(String data, String tag) throws IOException {
+        // For all fields: only write data that is actually there!
+        if (data != null)
+            writeLine(2, "<" + tag + ">" + escape(data) + "</" + tag + ">");
+    }
+
+    private void writeData(Long data, String tag) throws IOException {
+        // For all fields: only write data that is actually there!
+        if (data != null)
+            writeLine(2, "<" + tag + ">" + data + "</" + tag + ">");
+    }
+
+    private void writeData(Integer data, String tag) throws IOException {
+        if (data != null)
+            writeData(Long.valueOf(data), tag);
+    }
+
+    private void writeHeader() throws IOException {
+        writeLine(0, "<?xml version=\"1.0\" encoding=\"" + FILE_ENCODING + "\"?>");
+        writeLine(0, "<xml dateModified=\"" + new Date().getTime() + "\">");
+    }
+
+    private void writeFooter() throws IOException {
+        writeLine(0, "</xml>");
+    }
+}
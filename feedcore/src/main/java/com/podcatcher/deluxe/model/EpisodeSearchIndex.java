@@ -0,0 +1,949 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full-text search over the episodes of all podcasts. This is an inverted
+ * index: each word of an episode's title and description and of its
+ * podcast's name points to the episodes it occurs in. Podcasts are updated
+ * as they load, only episodes new or changed since the last update are
+ * tokenized. Query words also match longer words starting with them (if at
+ * least {@link #MIN_PREFIX_LENGTH} characters long), results need to match
+ * all query words and come newest first.
+ * <p>
+ * The index can be written to and read from disk, the postings (the
+ * episodes per word) are stored as variable length deltas, about one byte
+ * per posting. Words and media URLs only store what differs from the one
+ * before. Removed episodes are only marked as such until enough of them
+ * pile up, then the index is compacted.
+ * </p>
+ * <p>
+ * The index is thread-safe: searches and stores run at the same time,
+ * updates wait for these. Updates tokenize the episode texts, which might
+ * need to read these from disk, so run them off the main thread.
+ * </p>
+ */
+public class EpisodeSearchIndex {
+
+    /**
+     * Query words this long or longer match all words starting with them,
+     * shorter ones only match words equal to them
+     */
+    public static final int MIN_PREFIX_LENGTH = 2;
+
+    /**
+     * Words are cut to this length (chars)
+     */
+    private static final int MAX_TERM_LENGTH = 32;
+    /**
+     * Episode names are cut to this length (chars)
+     */
+    private static final int MAX_NAME_LENGTH = 512;
+    /**
+     * The length of HTML entities to skip at most (chars)
+     */
+    private static final int MAX_ENTITY_LENGTH = 10;
+    /**
+     * The number of removed episodes to wait for before compacting
+     */
+    private static final int COMPACT_THRESHOLD = 1024;
+    /**
+     * The first bytes of an index file, "PCSX"
+     */
+    private static final int FILE_MAGIC = 0x50435358;
+    /**
+     * The index file format version
+     */
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * A search result
+     */
+    public static class Hit {
+
+        /**
+         * The episode's media URL
+         */
+        private final String mediaUrl;
+        /**
+         * The episode's name
+         */
+        private final String name;
+        /**
+         * The episode's publication date (millis)
+         */
+        private final long pubTime;
+        /**
+         * The episode's podcast's URL
+         */
+        private final String podcastUrl;
+        /**
+         * The episode's podcast's name
+         */
+        private final String podcastName;
+
+        private Hit(String mediaUrl, String name, long pubTime, String podcastUrl, String podcastName) {
+            this.mediaUrl = mediaUrl;
+            this.name = name;
+            this.pubTime = pubTime;
+            this.podcastUrl = podcastUrl;
+            this.podcastName = podcastName;
+        }
+
+        /**
+         * @return The episode's media URL, use this and the podcast URL to
+         * find the episode object (if loaded).
+         */
+        @NonNull
+        public String getMediaUrl() {
+            return mediaUrl;
+        }
+
+        /**
+         * @return The episode's name (possibly cut short).
+         */
+        @NonNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The episode's publication date (millis) or
+         * {@link DateCodec#INVALID}.
+         */
+        public long getPubTime() {
+            return pubTime;
+        }
+
+        /**
+         * @return The URL of the podcast the episode is part of.
+         */
+        @NonNull
+        public String getPodcastUrl() {
+            return podcastUrl;
+        }
+
+        /**
+         * @return The name of the podcast the episode is part of.
+         */
+        @NonNull
+        public String getPodcastName() {
+            return podcastName;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * A podcast in the index
+     */
+    private static class Source {
+
+        /**
+         * The podcast's URL
+         */
+        private final String url;
+        /**
+         * The podcast's name
+         */
+        private String name;
+        /**
+         * The podcast's episodes in the index, document id by media URL
+         */
+        private Map<String, Integer> docs = new HashMap<>();
+
+        private Source(@NonNull String url, @NonNull String name) {
+            this.url = url;
+            this.name = name;
+        }
+    }
+
+    /**
+     * The documents (ids) a term occurs in, sorted
+     */
+    private static class Postings {
+
+        /**
+         * The document ids, the first size are used
+         */
+        private int[] docs = new int[2];
+        /**
+         * The number of document ids
+         */
+        private int size;
+
+        private void add(int doc) {
+            if (size == docs.length)
+                docs = Arrays.copyOf(docs, size * 2);
+
+            docs[size++] = doc;
+        }
+    }
+
+    /**
+     * An episode to index
+     */
+    private static class Document {
+
+        /**
+         * The episode itself
+         */
+        private final Episode episode;
+        /**
+         * The episode's media URL
+         */
+        private final String mediaUrl;
+        /**
+         * The hash of the episode's indexed properties
+         */
+        private final int hash;
+        /**
+         * The terms, <code>null</code> until tokenized
+         */
+        private String[] terms;
+
+        private Document(@NonNull Episode episode, int hash) {
+            this.episode = episode;
+            this.mediaUrl = episode.getMediaUrl();
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Guards all the state below
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * The podcasts by URL
+     */
+    private Map<String, Source> sources = new HashMap<>();
+    /**
+     * The postings by term, sorted for prefix look-ups
+     */
+    private TreeMap<String, Postings> terms = new TreeMap<>();
+
+    /**
+     * The number of document ids given out
+     */
+    private int docCount;
+    /**
+     * The documents' podcasts by id
+     */
+    private Source[] docSources = new Source[64];
+    /**
+     * The documents' media URLs by id
+     */
+    private String[] docMediaUrls = new String[64];
+    /**
+     * The documents' names by id
+     */
+    private String[] docNames = new String[64];
+    /**
+     * The documents' publication dates by id
+     */
+    private long[] docPubTimes = new long[64];
+    /**
+     * The documents' hashes by id
+     */
+    private int[] docHashes = new int[64];
+    /**
+     * The ids of removed documents
+     */
+    private BitSet deleted = new BitSet();
+    /**
+     * The number of removed documents
+     */
+    private int deletedCount;
+
+    /**
+     * Add the episodes of given podcast to the index or update them. Only
+     * episodes new or changed (by name and publication date, or the
+     * podcast's name) are tokenized, episodes no longer in the podcast are
+     * removed.
+     *
+     * @param podcast The podcast as loaded.
+     */
+    public void update(@NonNull Podcast podcast) {
+        final String podcastName = podcast.getName() == null ? "" : podcast.getName();
+        final Map<String, Integer> known = getHashes(podcast.getUrl());
+
+        // Tokenize without holding the lock, searches can go on meanwhile
+        final List<Episode> episodes = podcast.getEpisodes();
+        final List<Document> documents = new ArrayList<>(episodes.size());
+        final Set<String> seen = new HashSet<>(episodes.size() * 2);
+        for (Episode episode : episodes)
+            if (episode.getMediaUrl() != null && seen.add(episode.getMediaUrl())) {
+                final Document document = new Document(episode, hash(podcastName, episode));
+                final Integer knownHash = known.get(document.mediaUrl);
+
+                if (knownHash == null || knownHash != document.hash)
+                    document.terms = tokenize(podcastName, episode);
+
+                documents.add(document);
+            }
+
+        lock.writeLock().lock();
+        try {
+            Source source = sources.get(podcast.getUrl());
+            if (source == null) {
+                source = new Source(podcast.getUrl(), podcastName);
+                sources.put(source.url, source);
+            }
+            source.name = podcastName;
+
+            final Map<String, Integer> before = source.docs;
+            final Map<String, Integer> after = new HashMap<>(documents.size() * 2);
+            for (Document document : documents) {
+                final Integer doc = before.remove(document.mediaUrl);
+
+                if (doc != null && docHashes[doc] == document.hash)
+                    after.put(document.mediaUrl, doc);
+                else {
+                    if (doc != null)
+                        delete(doc);
+                    // Changed by another update meanwhile
+                    if (document.terms == null)
+                        document.terms = tokenize(podcastName, document.episode);
+
+                    after.put(document.mediaUrl, add(source, document));
+                }
+            }
+            for (int doc : before.values())
+                delete(doc);
+
+            source.docs = after;
+            if (after.isEmpty())
+                sources.remove(source.url);
+
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all episodes of a podcast from the index.
+     *
+     * @param podcastUrl The podcast's URL.
+     */
+    public void remove(@Nullable String podcastUrl) {
+        lock.writeLock().lock();
+        try {
+            final Source source = sources.remove(podcastUrl);
+
+            if (source != null) {
+                for (int doc : source.docs.values())
+                    delete(doc);
+
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove everything from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset(new HashMap<String, Source>(), new TreeMap<String, Postings>(), 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of episodes in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of distinct words in the index.
+     */
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the episodes matching a query.
+     *
+     * @param query The words to look for, an episode matches if it has all
+     *              of these (or words starting with them).
+     * @param limit The number of results to give at most.
+     * @return The newest matching episodes, newest first.
+     */
+    @NonNull
+    public List<Hit> search(@Nullable String query, int limit) {
+        final Set<String> words = new HashSet<>();
+        tokenize(query, words);
+
+        if (words.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+
+        lock.readLock().lock();
+        try {
+            BitSet matches = null;
+            for (String word : words) {
+                final BitSet wordMatches = match(word);
+
+                if (matches == null)
+                    matches = wordMatches;
+                else
+                    matches.and(wordMatches);
+
+                if (matches.isEmpty())
+                    return Collections.emptyList();
+            }
+
+            // Removed documents are still in the postings
+            matches.andNot(deleted);
+
+            final int[] newest = newest(matches, limit);
+            final List<Hit> hits = new ArrayList<>(newest.length);
+            for (int doc : newest)
+                hits.add(new Hit(docMediaUrls[doc], docNames[doc], docPubTimes[doc],
+                        docSources[doc].url, docSources[doc].name));
+
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the index to a stream. Searches can go on meanwhile, updates wait.
+     *
+     * @param stream The stream to write to, flushed but not closed here.
+     * @throws IOException If writing fails.
+     */
+    public void store(@NonNull OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        lock.readLock().lock();
+        try {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+
+            // Podcasts, referred to by their position
+            final Map<Source, Integer> sourceIds = new IdentityHashMap<>();
+            out.writeInt(sources.size());
+            for (Source source : sources.values()) {
+                sourceIds.put(source, sourceIds.size());
+                out.writeUTF(source.url);
+                out.writeUTF(source.name);
+            }
+
+            // Documents, numbered without the gaps removed ones leave
+            final int[] remap = new int[docCount];
+            String previousUrl = "";
+            out.writeInt(docCount - deletedCount);
+            for (int doc = 0, next = 0; doc < docCount; doc++)
+                if (deleted.get(doc))
+                    remap[doc] = -1;
+                else {
+                    remap[doc] = next++;
+                    out.writeInt(sourceIds.get(docSources[doc]));
+                    writeFrontCoded(out, previousUrl, docMediaUrls[doc]);
+                    previousUrl = docMediaUrls[doc];
+                    out.writeUTF(docNames[doc]);
+                    out.writeLong(docPubTimes[doc]);
+                    out.writeInt(docHashes[doc]);
+                }
+
+            // Terms and their postings as deltas
+            String previousTerm = "";
+            for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                final Postings postings = entry.getValue();
+
+                int count = 0;
+                for (int index = 0; index < postings.size; index++)
+                    if (remap[postings.docs[index]] >= 0)
+                        count++;
+
+                if (count > 0) {
+                    writeFrontCoded(out, previousTerm, entry.getKey());
+                    previousTerm = entry.getKey();
+                    writeVarInt(out, count);
+
+                    for (int index = 0, previous = 0; index < postings.size; index++) {
+                        final int doc = remap[postings.docs[index]];
+
+                        if (doc >= 0) {
+                            writeVarInt(out, doc - previous);
+                            previous = doc;
+                        }
+                    }
+                }
+            }
+            // The end of the list, no term shares more than all of the one before
+            writeVarInt(out, previousTerm.length() + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Replace the index's content with what was stored before.
+     *
+     * @param stream The stream to read from, not closed here.
+     * @throws IOException If reading fails or the content is not an index
+     *                     as written by {@link #store(OutputStream)}.
+     *                     The index is not changed then.
+     */
+    public void load(@NonNull InputStream stream) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+        if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+            throw new IOException("Not an episode index or unknown version");
+
+        final Source[] sourceList = new Source[in.readInt()];
+        final Map<String, Source> newSources = new HashMap<>(sourceList.length * 2);
+        for (int index = 0; index < sourceList.length; index++) {
+            sourceList[index] = new Source(in.readUTF(), in.readUTF());
+            newSources.put(sourceList[index].url, sourceList[index]);
+        }
+
+        final int newDocCount = in.readInt();
+        if (newDocCount < 0)
+            throw new IOException("Invalid document count " + newDocCount);
+        final Source[] newDocSources = new Source[Math.max(newDocCount, 64)];
+        final String[] newDocMediaUrls = new String[newDocSources.length];
+        final String[] newDocNames = new String[newDocSources.length];
+        final long[] newDocPubTimes = new long[newDocSources.length];
+        final int[] newDocHashes = new int[newDocSources.length];
+        for (int doc = 0; doc < newDocCount; doc++) {
+            final int sourceId = in.readInt();
+            if (sourceId < 0 || sourceId >= sourceList.length)
+                throw new IOException("Invalid podcast " + sourceId);
+
+            newDocSources[doc] = sourceList[sourceId];
+            newDocMediaUrls[doc] = readFrontCoded(in, doc == 0 ? "" : newDocMediaUrls[doc - 1]);
+            if (newDocMediaUrls[doc] == null)
+                throw new IOException("Missing media URL");
+            newDocNames[doc] = in.readUTF();
+            newDocPubTimes[doc] = in.readLong();
+            newDocHashes[doc] = in.readInt();
+            newDocSources[doc].docs.put(newDocMediaUrls[doc], doc);
+        }
+
+        final TreeMap<String, Postings> newTerms = new TreeMap<>();
+        for (String term = readFrontCoded(in, ""); term != null; term = readFrontCoded(in, term)) {
+            final int count = readVarInt(in);
+            if (count <= 0 || count > newDocCount)
+                throw new IOException("Invalid posting count for " + term);
+
+            final Postings postings = new Postings();
+            postings.docs = new int[count];
+
+            for (int doc = 0; postings.size < postings.docs.length; postings.size++) {
+                doc += readVarInt(in);
+                if (doc < 0 || doc >= newDocCount || (postings.size > 0 && doc <= postings.docs[postings.size - 1]))
+                    throw new IOException("Invalid posting for " + term);
+
+                postings.docs[postings.size] = doc;
+            }
+
+            newTerms.put(term, postings);
+        }
+
+        lock.writeLock().lock();
+        try {
+            reset(newSources, newTerms, newDocCount);
+            this.docSources = newDocSources;
+            this.docMediaUrls = newDocMediaUrls;
+            this.docNames = newDocNames;
+            this.docPubTimes = newDocPubTimes;
+            this.docHashes = newDocHashes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @NonNull
+    private Map<String, Integer> getHashes(@NonNull String podcastUrl) {
+        lock.readLock().lock();
+        try {
+            final Source source = sources.get(podcastUrl);
+            if (source == null)
+                return Collections.emptyMap();
+
+            final Map<String, Integer> hashes = new HashMap<>(source.docs.size() * 2);
+            for (Map.Entry<String, Integer> entry : source.docs.entrySet())
+                hashes.put(entry.getKey(), docHashes[entry.getValue()]);
+
+            return hashes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int add(@NonNull Source source, @NonNull Document document) {
+        if (docCount == docSources.length) {
+            final int capacity = docCount * 2;
+
+            docSources = Arrays.copyOf(docSources, capacity);
+            docMediaUrls = Arrays.copyOf(docMediaUrls, capacity);
+            docNames = Arrays.copyOf(docNames, capacity);
+            docPubTimes = Arrays.copyOf(docPubTimes, capacity);
+            docHashes = Arrays.copyOf(docHashes, capacity);
+        }
+
+        final int doc = docCount++;
+        final String name = document.episode.getName() == null ? "" : document.episode.getName();
+        docSources[doc] = source;
+        docMediaUrls[doc] = document.mediaUrl;
+        docNames[doc] = name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name;
+        docPubTimes[doc] = document.episode.getPubTime();
+        docHashes[doc] = document.hash;
+
+        // Ids only grow, so the postings stay sorted
+        for (String term : document.terms) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+            }
+
+            postings.add(doc);
+        }
+
+        return doc;
+    }
+
+    private void delete(int doc) {
+        if (!deleted.get(doc)) {
+            deleted.set(doc);
+            deletedCount++;
+
+            docSources[doc] = null;
+            docMediaUrls[doc] = null;
+            docNames[doc] = null;
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (deletedCount < COMPACT_THRESHOLD || deletedCount * 2 < docCount)
+            return;
+
+        // Move the documents left, ids keep their order
+        final int[] remap = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++)
+            if (deleted.get(doc))
+                remap[doc] = -1;
+            else {
+                remap[doc] = next;
+                docSources[next] = docSources[doc];
+                docMediaUrls[next] = docMediaUrls[doc];
+                docNames[next] = docNames[doc];
+                docPubTimes[next] = docPubTimes[doc];
+                docHashes[next] = docHashes[doc];
+                next++;
+            }
+        Arrays.fill(docSources, next, docCount, null);
+        Arrays.fill(docMediaUrls, next, docCount, null);
+        Arrays.fill(docNames, next, docCount, null);
+
+        for (Source source : sources.values())
+            for (Map.Entry<String, Integer> entry : source.docs.entrySet())
+                entry.setValue(remap[entry.getValue()]);
+
+        final Iterator<Postings> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            final Postings postings = iterator.next();
+
+            int size = 0;
+            for (int index = 0; index < postings.size; index++)
+                if (remap[postings.docs[index]] >= 0)
+                    postings.docs[size++] = remap[postings.docs[index]];
+
+            if (size == 0)
+                iterator.remove();
+            else if (size < postings.docs.length / 4)
+                postings.docs = Arrays.copyOf(postings.docs, size);
+            postings.size = size;
+        }
+
+        docCount = next;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void reset(@NonNull Map<String, Source> newSources, @NonNull TreeMap<String, Postings> newTerms,
+                       int newDocCount) {
+        this.sources = newSources;
+        this.terms = newTerms;
+        this.docCount = newDocCount;
+        this.deleted = new BitSet();
+        this.deletedCount = 0;
+
+        if (newDocCount == 0) {
+            this.docSources = new Source[64];
+            this.docMediaUrls = new String[64];
+            this.docNames = new String[64];
+            this.docPubTimes = new long[64];
+            this.docHashes = new int[64];
+        }
+    }
+
+    @NonNull
+    private BitSet match(@NonNull String word) {
+        final BitSet matches = new BitSet(docCount);
+
+        if (word.length() < MIN_PREFIX_LENGTH)
+            add(matches, terms.get(word));
+        else
+            for (Postings postings : terms.subMap(word, true, word + Character.MAX_VALUE, false).values())
+                add(matches, postings);
+
+        return matches;
+    }
+
+    private static void add(@NonNull BitSet matches, @Nullable Postings postings) {
+        if (postings != null)
+            for (int index = 0; index < postings.size; index++)
+                matches.set(postings.docs[index]);
+    }
+
+    /**
+     * Pick the newest documents, using a heap with the oldest of these on top.
+     */
+    @NonNull
+    private int[] newest(@NonNull BitSet matches, int limit) {
+        final int[] heap = new int[Math.min(limit, matches.cardinality())];
+        int size = 0;
+
+        for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1))
+            if (size < heap.length) {
+                // Sift up
+                int child = size++;
+                while (child > 0 && isNewer(heap[(child - 1) / 2], doc)) {
+                    heap[child] = heap[(child - 1) / 2];
+                    child = (child - 1) / 2;
+                }
+                heap[child] = doc;
+            } else if (isNewer(doc, heap[0]))
+                siftDown(heap, size, doc);
+
+        // Take the oldest off the top, filling the result from the end
+        final int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heap[0];
+            size--;
+            if (size > 0)
+                siftDown(heap, size, heap[size]);
+        }
+
+        return result;
+    }
+
+    private void siftDown(@NonNull int[] heap, int size, int doc) {
+        int parent = 0;
+
+        while (2 * parent + 1 < size) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && isNewer(heap[child], heap[child + 1]))
+                child++;
+
+            if (!isNewer(doc, heap[child]))
+                break;
+
+            heap[parent] = heap[child];
+            parent = child;
+        }
+
+        heap[parent] = doc;
+    }
+
+    private boolean isNewer(int doc, int another) {
+        return docPubTimes[doc] != docPubTimes[another] ?
+                docPubTimes[doc] > docPubTimes[another] : doc > another;
+    }
+
+    private static int hash(@NonNull String podcastName, @NonNull Episode episode) {
+        final String name = episode.getName();
+        final long pubTime = episode.getPubTime();
+
+        // The description is left out, reading it might need a disk access
+        return 31 * (31 * podcastName.hashCode() + (name == null ? 0 : name.hashCode())) +
+                (int) (pubTime ^ (pubTime >>> 32));
+    }
+
+    @NonNull
+    private static String[] tokenize(@NonNull String podcastName, @NonNull Episode episode) {
+        final Set<String> terms = new HashSet<>();
+
+        tokenize(podcastName, terms);
+        tokenize(episode.getName(), terms);
+        tokenize(episode.getDescription(), terms);
+
+        return terms.toArray(new String[terms.size()]);
+    }
+
+    /**
+     * Split text into lower case words, skipping HTML tags and entities.
+     */
+    private static void tokenize(@Nullable String text, @NonNull Set<String> terms) {
+        if (text == null)
+            return;
+
+        final char[] term = new char[MAX_TERM_LENGTH];
+        int length = 0;
+
+        for (int index = 0; index < text.length(); index++) {
+            final char character = text.charAt(index);
+
+            if (Character.isLetterOrDigit(character)) {
+                if (length < MAX_TERM_LENGTH)
+                    term[length++] = Character.toLowerCase(character);
+                continue;
+            }
+
+            if (length > 0) {
+                terms.add(new String(term, 0, length));
+                length = 0;
+            }
+
+            if (character == '<' && index + 1 < text.length() && isTagStart(text.charAt(index + 1))) {
+                final int end = text.indexOf('>', index);
+                if (end > 0)
+                    index = end;
+            } else if (character == '&') {
+                final int end = text.indexOf(';', index);
+                if (end > 0 && end - index <= MAX_ENTITY_LENGTH && isEntity(text, index + 1, end))
+                    index = end;
+            }
+        }
+
+        if (length > 0)
+            terms.add(new String(term, 0, length));
+    }
+
+    private static boolean isTagStart(char character) {
+        return Character.isLetter(character) || character == '/' || character == '!';
+    }
+
+    private static boolean isEntity(@NonNull String text, int start, int end) {
+        for (int index = start; index < end; index++)
+            if (!Character.isLetterOrDigit(text.charAt(index)) && text.charAt(index) != '#')
+                return false;
+
+        return end > start;
+    }
+
+    /**
+     * Write the text as the length of the prefix it shares with the text
+     * before and the rest.
+     */
+    private static void writeFrontCoded(@NonNull DataOutputStream out, @NonNull String previous,
+                                        @NonNull String text) throws IOException {
+        int shared = 0;
+        final int length = Math.min(previous.length(), text.length());
+        while (shared < length && previous.charAt(shared) == text.charAt(shared))
+            shared++;
+
+        writeVarInt(out, shared);
+        out.writeUTF(text.substring(shared));
+    }
+
+    /**
+     * @return The text read or <code>null</code> at the end of a list.
+     */
+    @Nullable
+    private static String readFrontCoded(@NonNull DataInputStream in, @NonNull String previous)
+            throws IOException {
+        final int shared = readVarInt(in);
+        if (shared == previous.length() + 1)
+            return null;
+        else if (shared < 0 || shared > previous.length())
+            throw new IOException("Invalid prefix length " + shared);
+
+        return previous.substring(0, shared) + in.readUTF();
+    }
+
+    private static void writeVarInt(@NonNull DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(@NonNull DataInputStream in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte next = in.readByte();
+            value |= (next & 0x7F) << shift;
+
+            if ((next & 0x80) == 0)
+                return value;
+        }
+
+        throw new IOException("Invalid variable length integer");
+    }
+}
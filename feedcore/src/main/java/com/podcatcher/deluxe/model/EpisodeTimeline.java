@@ -0,0 +1,471 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.types.Episode;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The sorted, duplicate-free list of episodes from several sources (e.g.
+ * the podcasts selected, the downloads and the playlist) as shown in the
+ * episode list. Sources are merged in as they come in, without sorting the
+ * whole list again. Sources added between two reads of the timeline are
+ * batched and merged in one go, so episodes coming in one podcast at a time
+ * do not cost a pass over the whole timeline each. The timeline also keeps
+ * the state of its episodes (old, downloaded, in the playlist) as one bit
+ * set per state, so filtering the list does not need to ask for the state
+ * of every episode each time.
+ * <p>
+ * The states are taken from the {@link StateSource} given when episodes are
+ * merged in. Tell the timeline about later changes via
+ * {@link #updateStates(Episode)} or {@link #updateStates()}.
+ * </p>
+ * <p>
+ * The timeline is not thread-safe, use it from the main thread only.
+ * </p>
+ */
+public class EpisodeTimeline {
+
+    /**
+     * State flag for episodes marked old
+     */
+    public static final int OLD = 1;
+    /**
+     * State flag for episodes downloaded
+     */
+    public static final int DOWNLOADED = 1 << 1;
+    /**
+     * State flag for episodes in the playlist
+     */
+    public static final int IN_PLAYLIST = 1 << 2;
+    /**
+     * The number of state flags
+     */
+    private static final int STATE_COUNT = 3;
+    /**
+     * The episodes' natural order
+     */
+    private static final Comparator<Episode> NATURAL_ORDER = new Comparator<Episode>() {
+
+        @Override
+        public int compare(Episode one, Episode another) {
+            return one.compareTo(another);
+        }
+    };
+
+    /**
+     * Provides the states of episodes.
+     */
+    public interface StateSource {
+
+        /**
+         * @param episode The episode to get the state for.
+         * @return The episode's state flags, any combination of
+         * {@link #OLD}, {@link #DOWNLOADED} and {@link #IN_PLAYLIST}.
+         */
+        int getStates(@NonNull Episode episode);
+    }
+
+    /**
+     * Where the states come from
+     */
+    private final StateSource stateSource;
+    /**
+     * The order of the timeline
+     */
+    private final Comparator<? super Episode> order;
+    /**
+     * The episodes, sorted
+     */
+    private List<Episode> episodes = new ArrayList<>();
+    /**
+     * The episodes in the list or waiting to be merged, for quick look-up
+     */
+    private final Set<Episode> members = new HashSet<>();
+    /**
+     * The runs added, but not merged into the list yet, each sorted
+     */
+    private final List<List<Episode>> pending = new ArrayList<>();
+    /**
+     * One bit set per state flag, bit i is set if episode i has that state
+     */
+    private BitSet[] states = newStates(0);
+
+    /**
+     * Create an empty timeline in the episodes' natural order (newest first).
+     *
+     * @param stateSource Where to get the episodes' states from.
+     */
+    public EpisodeTimeline(@NonNull StateSource stateSource) {
+        this(stateSource, null);
+    }
+
+    /**
+     * Create an empty timeline in the given order.
+     *
+     * @param stateSource Where to get the episodes' states from.
+     * @param order       The order of the timeline, give <code>null</code>
+     *                    for the episodes' natural order.
+     */
+    public EpisodeTimeline(@NonNull StateSource stateSource, @Nullable Comparator<? super Episode> order) {
+        this.stateSource = stateSource;
+        this.order = order == null ? NATURAL_ORDER : order;
+    }
+
+    /**
+     * Merge episodes from one source into the timeline. Episodes already
+     * present are skipped.
+     *
+     * @param run The episodes to add, ideally sorted already (as the
+     *            episodes of a podcast usually are).
+     */
+    public void add(@NonNull Collection<Episode> run) {
+        merge(Collections.singletonList(run));
+    }
+
+    /**
+     * Merge episodes from several sources into the timeline. Episodes already
+     * present are skipped, as are duplicates within the sources. The actual
+     * merge is done when the timeline is read next, all sources added until
+     * then are merged in one go. This runs in O(m + n log k) for n episodes
+     * from k sources and m episodes present, plus the cost of sorting those
+     * runs not sorted already.
+     *
+     * @param runs The episodes to add, one collection per source.
+     */
+    public void merge(@NonNull List<? extends Collection<Episode>> runs) {
+        for (Collection<Episode> run : runs) {
+            final List<Episode> fresh = new ArrayList<>(run.size());
+
+            for (Episode episode : run)
+                if (episode != null && members.add(episode))
+                    fresh.add(episode);
+
+            if (!isSorted(fresh))
+                Collections.sort(fresh, order);
+
+            if (!fresh.isEmpty())
+                pending.add(fresh);
+        }
+    }
+
+    /**
+     * Remove all episodes from the timeline.
+     */
+    public void clear() {
+        episodes = new ArrayList<>();
+        members.clear();
+        pending.clear();
+        states = newStates(0);
+    }
+
+    /**
+     * @return The number of episodes in the timeline.
+     */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * @return Whether there are no episodes in the timeline.
+     */
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /**
+     * @param episode The episode to look for.
+     * @return Whether the episode is in the timeline.
+     */
+    public boolean contains(@Nullable Episode episode) {
+        return episode != null && members.contains(episode);
+    }
+
+    /**
+     * Update the states of the given episode from the state source. Nothing
+     * happens if the episode is not in the timeline.
+     *
+     * @param episode The episode with changed states.
+     */
+    public void updateStates(@Nullable Episode episode) {
+        if (contains(episode)) {
+            flush();
+
+            final int position = find(episode);
+            if (position >= 0)
+                setStates(states, position, stateSource.getStates(episode));
+        }
+    }
+
+    /**
+     * Update the states of all episodes from the state source. Use this if
+     * you cannot tell which episodes changed.
+     */
+    public void updateStates() {
+        flush();
+
+        for (int position = 0; position < episodes.size(); position++)
+            setStates(states, position, stateSource.getStates(episodes.get(position)));
+    }
+
+    /**
+     * Count the episodes that have none of the states given.
+     *
+     * @param excludedStates The state flags to filter out, zero for none.
+     * @return The number of episodes left after filtering.
+     */
+    public int count(int excludedStates) {
+        flush();
+        final BitSet excluded = union(excludedStates);
+
+        return excluded == null ? episodes.size() : episodes.size() - excluded.cardinality();
+    }
+
+    /**
+     * Get all episodes that have none of the states given.
+     *
+     * @param excludedStates The state flags to filter out, zero for none.
+     * @param reversed       Whether to give the episodes in reverse order.
+     * @return The episodes in timeline order (or the reverse), as a new list.
+     */
+    @NonNull
+    public List<Episode> select(int excludedStates, boolean reversed) {
+        return select(excludedStates, reversed, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get one page of the episodes that have none of the states given. This
+     * only looks at the episodes that pass the filter, plus a quick scan of
+     * the state bit sets.
+     *
+     * @param excludedStates The state flags to filter out, zero for none.
+     * @param reversed       Whether to give the episodes in reverse order.
+     * @param offset         The number of episodes (that pass the filter) to skip.
+     * @param limit          The maximum number of episodes to return.
+     * @return The episodes in timeline order (or the reverse), as a new list.
+     */
+    @NonNull
+    public List<Episode> select(int excludedStates, boolean reversed, int offset, int limit) {
+        flush();
+        final BitSet excluded = union(excludedStates);
+        final int total = excluded == null ? episodes.size() : episodes.size() - excluded.cardinality();
+        final int first = Math.min(Math.max(offset, 0), total);
+        final int count = Math.min(Math.max(limit, 0), total - first);
+
+        final List<Episode> result = new ArrayList<>(count);
+        if (excluded == null) {
+            if (reversed)
+                for (int index = total - first - 1; index >= total - first - count; index--)
+                    result.add(episodes.get(index));
+            else
+                result.addAll(episodes.subList(first, first + count));
+        } else {
+            // Reverse pages are counted from the end of the filtered list
+            final int skip = reversed ? total - first - count : first;
+            int position = excluded.nextClearBit(0);
+            for (int index = 0; index < skip; index++)
+                position = excluded.nextClearBit(position + 1);
+            for (int index = 0; index < count; index++) {
+                result.add(episodes.get(position));
+                position = excluded.nextClearBit(position + 1);
+            }
+
+            if (reversed)
+                Collections.reverse(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Merge the runs pending into the timeline: A k-way merge of the runs
+     * first, then one pass over the timeline to merge these in.
+     */
+    private void flush() {
+        if (pending.isEmpty())
+            return;
+
+        final PriorityQueue<Cursor> heads = new PriorityQueue<>(pending.size());
+        int addedCount = 0;
+        for (int source = 0; source < pending.size(); source++) {
+            heads.add(new Cursor(pending.get(source), source));
+            addedCount += pending.get(source).size();
+        }
+        pending.clear();
+
+        // k-way merge of the new runs first...
+        final List<Episode> added;
+        if (heads.size() == 1)
+            added = heads.poll().run;
+        else {
+            added = new ArrayList<>(addedCount);
+
+            while (!heads.isEmpty()) {
+                final Cursor head = heads.poll();
+                added.add(head.run.get(head.next));
+
+                if (++head.next < head.run.size())
+                    heads.add(head);
+            }
+        }
+
+        // ... then merge these into the timeline, episodes already there
+        // keep their states, the new ones get theirs from the source
+        final List<Episode> merged = new ArrayList<>(episodes.size() + addedCount);
+        final BitSet[] mergedStates = newStates(episodes.size() + addedCount);
+        int present = 0;
+        for (Episode episode : added) {
+            while (present < episodes.size() && order.compare(episodes.get(present), episode) <= 0)
+                copyPresent(present++, merged, mergedStates);
+
+            setStates(mergedStates, merged.size(), stateSource.getStates(episode));
+            merged.add(episode);
+        }
+        while (present < episodes.size())
+            copyPresent(present++, merged, mergedStates);
+
+        this.episodes = merged;
+        this.states = mergedStates;
+    }
+
+    /**
+     * Find an episode's position in the list. This is a binary search, with
+     * a scan of the list as the fall-back for orders that changed since the
+     * episodes were merged (e.g. the playlist order).
+     *
+     * @param episode The episode to look for.
+     * @return The position, -1 if not in the list.
+     */
+    private int find(Episode episode) {
+        int low = 0;
+        int high = episodes.size() - 1;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int result = order.compare(episodes.get(middle), episode);
+
+            if (result < 0)
+                low = middle + 1;
+            else if (result > 0)
+                high = middle - 1;
+            else {
+                // Custom orders might see other episodes as equal as well
+                for (int position = middle; position >= 0 &&
+                        order.compare(episodes.get(position), episode) == 0; position--)
+                    if (episodes.get(position).equals(episode))
+                        return position;
+                for (int position = middle + 1; position < episodes.size() &&
+                        order.compare(episodes.get(position), episode) == 0; position++)
+                    if (episodes.get(position).equals(episode))
+                        return position;
+
+                break;
+            }
+        }
+
+        return episodes.indexOf(episode);
+    }
+
+    private BitSet union(int stateFlags) {
+        BitSet result = null;
+
+        for (int state = 0; state < STATE_COUNT; state++)
+            if ((stateFlags & 1 << state) != 0) {
+                if (result == null)
+                    result = (BitSet) states[state].clone();
+                else
+                    result.or(states[state]);
+            }
+
+        return result;
+    }
+
+    private boolean isSorted(List<Episode> run) {
+        for (int index = 1; index < run.size(); index++)
+            if (order.compare(run.get(index - 1), run.get(index)) > 0)
+                return false;
+
+        return true;
+    }
+
+    private void copyPresent(int position, List<Episode> merged, BitSet[] mergedStates) {
+        for (int state = 0; state < STATE_COUNT; state++)
+            if (states[state].get(position))
+                mergedStates[state].set(merged.size());
+
+        merged.add(episodes.get(position));
+    }
+
+    private static BitSet[] newStates(int size) {
+        final BitSet[] result = new BitSet[STATE_COUNT];
+        for (int state = 0; state < STATE_COUNT; state++)
+            result[state] = new BitSet(size);
+
+        return result;
+    }
+
+    private static void setStates(BitSet[] states, int position, int stateFlags) {
+        for (int state = 0; state < STATE_COUNT; state++)
+            states[state].set(position, (stateFlags & 1 << state) != 0);
+    }
+
+    /**
+     * The next episode to take from one of the runs merged
+     */
+    private class Cursor implements Comparable<Cursor> {
+
+        /**
+         * The run, sorted
+         */
+        private final List<Episode> run;
+        /**
+         * The run's number
+         */
+        private final int source;
+        /**
+         * The position of the next episode in the run
+         */
+        private int next;
+
+        private Cursor(List<Episode> run, int source) {
+            this.run = run;
+            this.source = source;
+        }
+
+        @Override
+        public int compareTo(@NonNull Cursor another) {
+            final int result = order.compare(run.get(next), another.run.get(another.next));
+
+            // Keep the merge stable
+            return result != 0 ? result : source - another.source;
+        }
+    }
+}
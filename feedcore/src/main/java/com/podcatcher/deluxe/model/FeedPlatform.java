@@ -0,0 +1,78 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.tags.RSS;
+
+import android.support.annotation.NonNull;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * The few things the feed model needs from the platform it runs on. The app
+ * sets these up when it starts, the defaults work on a plain JVM (with an
+ * XML pull parser implementation like kXML on the class path) for tests and
+ * benchmarks.
+ */
+public class FeedPlatform {
+
+    /**
+     * The media type (prefix) the build prefers, "audio" or "video"
+     */
+    private static volatile String preferredMediaType = RSS.MEDIA_TYPE_AUDIO;
+
+    private FeedPlatform() {
+        // Static settings only
+    }
+
+    /**
+     * @return The media type prefix (e.g. "audio") episodes pick their
+     * enclosure by, if there are several.
+     */
+    @NonNull
+    public static String getPreferredMediaType() {
+        return preferredMediaType;
+    }
+
+    /**
+     * Set the media type prefix to prefer, see {@link #getPreferredMediaType()}.
+     *
+     * @param mediaType The media type prefix, e.g. the app flavor's media dimension.
+     */
+    public static void setPreferredMediaType(@NonNull String mediaType) {
+        preferredMediaType = mediaType;
+    }
+
+    /**
+     * Create the kind of parser the feed model expects: namespace aware and
+     * ready for input.
+     *
+     * @return A new parser.
+     * @throws XmlPullParserException If no parser implementation is available.
+     */
+    @NonNull
+    public static XmlPullParser newParser() throws XmlPullParserException {
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        return factory.newPullParser();
+    }
+}
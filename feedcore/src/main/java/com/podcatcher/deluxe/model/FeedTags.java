@@ -0,0 +1,193 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.tags.RSS;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.Locale;
+
+/**
+ * Maps the names of the feed elements the parsers care about to small integer
+ * ids. The lookup ignores the (ASCII) case of the name, but never creates a
+ * new string, so the parsers can dispatch on an int switch instead of
+ * lowercasing and comparing every element name they see. The names are
+ * placed in a collision-free (perfect) hash table built when this class is
+ * loaded.
+ */
+@SuppressWarnings("javadoc")
+public class FeedTags {
+
+    // Element ids, zero is reserved for elements not known
+    public static final int UNKNOWN = 0;
+    public static final int ITEM = 1;
+    public static final int TITLE = 2;
+    public static final int GUID = 3;
+    public static final int LINK = 4;
+    public static final int EXPLICIT = 5;
+    public static final int DATE = 6;
+    public static final int PUBDATE = 7;
+    public static final int DURATION = 8;
+    public static final int DESCRIPTION = 9;
+    public static final int SUMMARY = 10;
+    public static final int CONTENT_ENCODED = 11;
+    public static final int ENCLOSURE = 12;
+    public static final int CHAPTERS = 13;
+    public static final int CHAPTER = 14;
+    public static final int IMAGE = 15;
+    public static final int THUMBNAIL = 16;
+    public static final int NEW_URL = 17;
+    public static final int URL = 18;
+    public static final int SUBTITLE = 19;
+    public static final int CATEGORY = 20;
+    public static final int LANGUAGE = 21;
+    public static final int KEYWORDS = 22;
+
+    /**
+     * The element names by id, all lower case
+     */
+    private static final String[] NAMES = {null, RSS.ITEM, RSS.TITLE, RSS.GUID, RSS.LINK,
+            RSS.EXPLICIT, RSS.DATE, RSS.PUBDATE, RSS.DURATION, RSS.DESCRIPTION, RSS.SUMMARY,
+            RSS.CONTENT_ENCODED, RSS.ENCLOSURE, RSS.CHAPTERS, RSS.CHAPTER, RSS.IMAGE, RSS.THUMBNAIL,
+            RSS.NEW_URL, RSS.URL, RSS.SUBTITLE, RSS.CATEGORY, RSS.LANGUAGE, RSS.KEYWORDS};
+
+    /**
+     * The hash table, maps slots to element ids
+     */
+    private static final int[] SLOTS;
+    /**
+     * The multiplier used by {@link #hash(String)}, picked to have no collisions
+     */
+    private static final int MULTIPLIER;
+
+    static {
+        // Find the smallest table and a multiplier that place every name in
+        // a slot of its own. This takes a few iterations at most.
+        int size = Integer.highestOneBit(NAMES.length) * 2;
+        int multiplier = 31;
+        int[] slots = null;
+
+        while (slots == null) {
+            slots = place(size, multiplier);
+
+            if (slots == null) {
+                multiplier += 2;
+                if (multiplier > 1024) {
+                    multiplier = 31;
+                    size *= 2;
+                }
+            }
+        }
+
+        SLOTS = slots;
+        MULTIPLIER = multiplier;
+    }
+
+    private FeedTags() {
+        // Static lookups only
+    }
+
+    /**
+     * Find the id of the given element name.
+     *
+     * @param name The element's local name, case does not matter.
+     * @return The element id or {@link #UNKNOWN}.
+     */
+    public static int lookup(String name) {
+        if (name == null)
+            return UNKNOWN;
+
+        final int id = SLOTS[hash(name, MULTIPLIER) & (SLOTS.length - 1)];
+        return id != UNKNOWN && matches(NAMES[id], name) ? id : UNKNOWN;
+    }
+
+    /**
+     * Find the id of the element the given parser currently points at. The
+     * content:encoded element is only recognized in its namespace, just like
+     * a link is only a paging link in the Atom namespace.
+     *
+     * @param parser The parser, set to a start tag.
+     * @return The element id or {@link #UNKNOWN}.
+     */
+    public static int lookup(XmlPullParser parser) {
+        final int id = lookup(parser.getName());
+
+        return id == CONTENT_ENCODED &&
+                !RSS.CONTENT_NAMESPACE.equals(parser.getNamespace(parser.getPrefix())) ? UNKNOWN : id;
+    }
+
+    /**
+     * Get the lower case version of an element name. For known elements this
+     * is the constant from {@link RSS}, for unknown ones a new string is only
+     * created if the name has upper case characters.
+     *
+     * @param name The element's name.
+     * @param id   The element id as returned by {@link #lookup(String)}.
+     * @return The lower case name.
+     */
+    public static String toLowerCase(String name, int id) {
+        if (id != UNKNOWN)
+            return NAMES[id];
+
+        for (int index = 0; index < name.length(); index++)
+            if (Character.isUpperCase(name.charAt(index)))
+                return name.toLowerCase(Locale.US);
+
+        return name;
+    }
+
+    private static int[] place(int size, int multiplier) {
+        final int[] slots = new int[size];
+
+        for (int id = 1; id < NAMES.length; id++) {
+            final int slot = hash(NAMES[id], multiplier) & (size - 1);
+            if (slots[slot] != UNKNOWN)
+                return null;
+
+            slots[slot] = id;
+        }
+
+        return slots;
+    }
+
+    private static int hash(String name, int multiplier) {
+        int hash = 0;
+        for (int index = 0; index < name.length(); index++)
+            hash = hash * multiplier + toLower(name.charAt(index));
+
+        return hash ^ (hash >>> 11);
+    }
+
+    private static boolean matches(String lowerCase, String name) {
+        final int length = lowerCase.length();
+        if (name.length() != length)
+            return false;
+
+        for (int index = 0; index < length; index++)
+            if (lowerCase.charAt(index) != toLower(name.charAt(index)))
+                return false;
+
+        return true;
+    }
+
+    private static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
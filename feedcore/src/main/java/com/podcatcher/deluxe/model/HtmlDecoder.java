@@ -0,0 +1,418 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Turns the (possibly HTML-encoded) text found in feed titles and names into
+ * plain text in a single pass: Character references (named, decimal and hex)
+ * are decoded, markup is removed and white space is collapsed, just like
+ * <code>Html.fromHtml(text).toString()</code> would, but without building a
+ * span tree. Block elements (e.g. &lt;br&gt; or &lt;p&gt;) become a single
+ * space instead of line breaks, since the result is meant to be shown on a
+ * single line. Strings that need no decoding are returned as they are.
+ * <p>
+ * The named references supported are the HTML 4 set (plus "&amp;apos;"), they
+ * are also understood without the trailing semicolon as long as the name is
+ * not followed by more letters or digits. Numeric references in the range 0x80-0x9F are read as
+ * Windows-1252, as browsers do.
+ * </p>
+ */
+public class HtmlDecoder {
+
+    /**
+     * The longest entity name we know
+     */
+    private static final int MAX_ENTITY_LENGTH = 8;
+    /**
+     * The replacement for invalid characters
+     */
+    private static final char REPLACEMENT_CHARACTER = '\ufffd';
+
+    /**
+     * The named entities we know, sorted for binary search
+     */
+    private static final String[] ENTITY_NAMES = {
+            "AElig", "Aacute", "Acirc", "Agrave", "Alpha", "Aring", "Atilde", "Auml",
+            "Beta", "Ccedil", "Chi", "Dagger", "Delta", "ETH", "Eacute", "Ecirc",
+            "Egrave", "Epsilon", "Eta", "Euml", "Gamma", "Iacute", "Icirc", "Igrave",
+            "Iota", "Iuml", "Kappa", "Lambda", "Mu", "Ntilde", "Nu", "OElig",
+            "Oacute", "Ocirc", "Ograve", "Omega", "Omicron", "Oslash", "Otilde", "Ouml",
+            "Phi", "Pi", "Prime", "Psi", "Rho", "Scaron", "Sigma", "THORN",
+            "Tau", "Theta", "Uacute", "Ucirc", "Ugrave", "Upsilon", "Uuml", "Xi",
+            "Yacute", "Yuml", "Zeta", "aacute", "acirc", "acute", "aelig", "agrave",
+            "alefsym", "alpha", "amp", "and", "ang", "apos", "aring", "asymp",
+            "atilde", "auml", "bdquo", "beta", "brvbar", "bull", "cap", "ccedil",
+            "cedil", "cent", "chi", "circ", "clubs", "cong", "copy", "crarr",
+            "cup", "curren", "dArr", "dagger", "darr", "deg", "delta", "diams",
+            "divide", "eacute", "ecirc", "egrave", "empty", "emsp", "ensp", "epsilon",
+            "equiv", "eta", "eth", "euml", "euro", "exist", "fnof", "forall",
+            "frac12", "frac14", "frac34", "frasl", "gamma", "ge", "gt", "hArr",
+            "harr", "hearts", "hellip", "iacute", "icirc", "iexcl", "igrave", "image",
+            "infin", "int", "iota", "iquest", "isin", "iuml", "kappa", "lArr",
+            "lambda", "lang", "laquo", "larr", "lceil", "ldquo", "le", "lfloor",
+            "lowast", "loz", "lrm", "lsaquo", "lsquo", "lt", "macr", "mdash",
+            "micro", "middot", "minus", "mu", "nabla", "nbsp", "ndash", "ne",
+            "ni", "not", "notin", "nsub", "ntilde", "nu", "oacute", "ocirc",
+            "oelig", "ograve", "oline", "omega", "omicron", "oplus", "or", "ordf",
+            "ordm", "oslash", "otilde", "otimes", "ouml", "para", "part", "permil",
+            "perp", "phi", "pi", "piv", "plusmn", "pound", "prime", "prod",
+            "prop", "psi", "quot", "rArr", "radic", "rang", "raquo", "rarr",
+            "rceil", "rdquo", "real", "reg", "rfloor", "rho", "rlm", "rsaquo",
+            "rsquo", "sbquo", "scaron", "sdot", "sect", "shy", "sigma", "sigmaf",
+            "sim", "spades", "sub", "sube", "sum", "sup", "sup1", "sup2",
+            "sup3", "supe", "szlig", "tau", "there4", "theta", "thetasym", "thinsp",
+            "thorn", "tilde", "times", "trade", "uArr", "uacute", "uarr", "ucirc",
+            "ugrave", "uml", "upsih", "upsilon", "uuml", "weierp", "xi", "yacute",
+            "yen", "yuml", "zeta", "zwj", "zwnj"
+    };
+    /**
+     * The characters for the entities above, by index
+     */
+    private static final String ENTITY_VALUES =
+            "\u00c6\u00c1\u00c2\u00c0\u0391\u00c5\u00c3\u00c4" +
+            "\u0392\u00c7\u03a7\u2021\u0394\u00d0\u00c9\u00ca" +
+            "\u00c8\u0395\u0397\u00cb\u0393\u00cd\u00ce\u00cc" +
+            "\u0399\u00cf\u039a\u039b\u039c\u00d1\u039d\u0152" +
+            "\u00d3\u00d4\u00d2\u03a9\u039f\u00d8\u00d5\u00d6" +
+            "\u03a6\u03a0\u2033\u03a8\u03a1\u0160\u03a3\u00de" +
+            "\u03a4\u0398\u00da\u00db\u00d9\u03a5\u00dc\u039e" +
+            "\u00dd\u0178\u0396\u00e1\u00e2\u00b4\u00e6\u00e0" +
+            "\u2135\u03b1\u0026\u2227\u2220\u0027\u00e5\u2248" +
+            "\u00e3\u00e4\u201e\u03b2\u00a6\u2022\u2229\u00e7" +
+            "\u00b8\u00a2\u03c7\u02c6\u2663\u2245\u00a9\u21b5" +
+            "\u222a\u00a4\u21d3\u2020\u2193\u00b0\u03b4\u2666" +
+            "\u00f7\u00e9\u00ea\u00e8\u2205\u2003\u2002\u03b5" +
+            "\u2261\u03b7\u00f0\u00eb\u20ac\u2203\u0192\u2200" +
+            "\u00bd\u00bc\u00be\u2044\u03b3\u2265\u003e\u21d4" +
+            "\u2194\u2665\u2026\u00ed\u00ee\u00a1\u00ec\u2111" +
+            "\u221e\u222b\u03b9\u00bf\u2208\u00ef\u03ba\u21d0" +
+            "\u03bb\u2329\u00ab\u2190\u2308\u201c\u2264\u230a" +
+            "\u2217\u25ca\u200e\u2039\u2018\u003c\u00af\u2014" +
+            "\u00b5\u00b7\u2212\u03bc\u2207\u00a0\u2013\u2260" +
+            "\u220b\u00ac\u2209\u2284\u00f1\u03bd\u00f3\u00f4" +
+            "\u0153\u00f2\u203e\u03c9\u03bf\u2295\u2228\u00aa" +
+            "\u00ba\u00f8\u00f5\u2297\u00f6\u00b6\u2202\u2030" +
+            "\u22a5\u03c6\u03c0\u03d6\u00b1\u00a3\u2032\u220f" +
+            "\u221d\u03c8\"\u21d2\u221a\u232a\u00bb\u2192" +
+            "\u2309\u201d\u211c\u00ae\u230b\u03c1\u200f\u203a" +
+            "\u2019\u201a\u0161\u22c5\u00a7\u00ad\u03c3\u03c2" +
+            "\u223c\u2660\u2282\u2286\u2211\u2283\u00b9\u00b2" +
+            "\u00b3\u2287\u00df\u03c4\u2234\u03b8\u03d1\u2009" +
+            "\u00fe\u02dc\u00d7\u2122\u21d1\u00fa\u2191\u00fb" +
+            "\u00f9\u00a8\u03d2\u03c5\u00fc\u2118\u03be\u00fd" +
+            "\u00a5\u00ff\u03b6\u200d\u200c";
+
+    /**
+     * The characters for the numeric references 0x80-0x9F (Windows-1252)
+     */
+    private static final String WINDOWS_1252 =
+            "\u20ac\ufffd\u201a\u0192\u201e\u2026\u2020\u2021" +
+            "\u02c6\u2030\u0160\u2039\u0152\ufffd\u017d\ufffd" +
+            "\ufffd\u2018\u2019\u201c\u201d\u2022\u2013\u2014" +
+            "\u02dc\u2122\u0161\u203a\u0153\ufffd\u017e\u0178";
+    /**
+     * The elements that separate words, these are replaced by a space
+     */
+    private static final String[] BLOCK_ELEMENTS = {"br", "p", "div", "li", "ul", "ol", "dd", "dt",
+            "h1", "h2", "h3", "h4", "h5", "h6", "blockquote", "pre", "hr", "table", "tr", "td", "th"};
+    /**
+     * The elements whose content is dropped altogether
+     */
+    private static final String[] HIDDEN_ELEMENTS = {"script", "style"};
+
+    /**
+     * The text to decode
+     */
+    private final String text;
+    /**
+     * The text's length
+     */
+    private final int length;
+    /**
+     * The decoded text
+     */
+    private final StringBuilder builder;
+    /**
+     * Whether white space was seen since the last character appended
+     */
+    private boolean pendingSpace;
+
+    private HtmlDecoder(String text) {
+        this.text = text;
+        this.length = text.length();
+        this.builder = new StringBuilder(length);
+    }
+
+    /**
+     * Decode the given text.
+     *
+     * @param text The text to decode, as found in the feed.
+     * @return The plain text, with surrounding white space removed. This is
+     * the very string given if there is nothing to decode.
+     */
+    @NonNull
+    public static String decode(@NonNull String text) {
+        return needsDecoding(text) ? new HtmlDecoder(text).decode() : text;
+    }
+
+    /**
+     * @param text The text to check.
+     * @return Whether decoding would change the text, i.e. it contains
+     * references, markup or white space other than single blanks.
+     */
+    public static boolean needsDecoding(@NonNull String text) {
+        final int length = text.length();
+        if (length > 0 && (isWhitespace(text.charAt(0)) || isWhitespace(text.charAt(length - 1))))
+            return true;
+
+        char previous = 'x';
+        for (int index = 0; index < length; index++) {
+            final char c = text.charAt(index);
+
+            if (c == '&' || c == '<' || (c == ' ' && previous == ' ') || (c != ' ' && isWhitespace(c)))
+                return true;
+
+            previous = c;
+        }
+
+        return false;
+    }
+
+    private String decode() {
+        int index = 0;
+
+        while (index < length) {
+            final char c = text.charAt(index);
+
+            if (c == '&') {
+                final int end = decodeReference(index);
+                if (end > index) {
+                    index = end;
+                    continue;
+                }
+            } else if (c == '<') {
+                final int end = skipMarkup(index);
+                if (end > index) {
+                    index = end;
+                    continue;
+                }
+            }
+
+            append(c);
+            index++;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Decode the character reference starting at the given position (at the '&').
+     *
+     * @return The position after the reference or -1 if there is no valid reference.
+     */
+    private int decodeReference(int start) {
+        int index = start + 1;
+
+        if (index < length && text.charAt(index) == '#') {
+            index++;
+            final boolean hex = index < length && (text.charAt(index) == 'x' || text.charAt(index) == 'X');
+            if (hex)
+                index++;
+
+            final int digitsStart = index;
+            int codePoint = 0;
+            while (index < length) {
+                final int digit = Character.digit(text.charAt(index), hex ? 16 : 10);
+                if (digit < 0 || text.charAt(index) > 'z')
+                    break;
+
+                // Cap the value, it is invalid anyway
+                codePoint = Math.min(codePoint * (hex ? 16 : 10) + digit, Character.MAX_CODE_POINT + 1);
+                index++;
+            }
+
+            if (index == digitsStart)
+                return -1;
+            if (index < length && text.charAt(index) == ';')
+                index++;
+
+            if (codePoint >= 0x80 && codePoint <= 0x9f)
+                append(WINDOWS_1252.charAt(codePoint - 0x80));
+            else if (codePoint == 0 || codePoint > Character.MAX_CODE_POINT ||
+                    (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+                append(REPLACEMENT_CHARACTER);
+            else if (Character.isSupplementaryCodePoint(codePoint)) {
+                append(Character.highSurrogate(codePoint));
+                builder.append(Character.lowSurrogate(codePoint));
+            } else
+                append((char) codePoint);
+
+            return index;
+        } else {
+            while (index < length && index - start <= MAX_ENTITY_LENGTH && isLetterOrDigit(text.charAt(index)))
+                index++;
+
+            final int entity = findEntity(start + 1, index);
+            if (entity < 0 || (index < length && isLetterOrDigit(text.charAt(index))))
+                return -1;
+            if (index < length && text.charAt(index) == ';')
+                index++;
+
+            append(ENTITY_VALUES.charAt(entity));
+            return index;
+        }
+    }
+
+    /**
+     * Skip the tag, comment or processing instruction starting at the given position (at the '<').
+     *
+     * @return The position after the markup or -1 if this does not look like markup.
+     */
+    private int skipMarkup(int start) {
+        int index = start + 1;
+        if (index >= length)
+            return -1;
+
+        final char first = text.charAt(index);
+        // Comments
+        if (text.startsWith("!--", index)) {
+            final int end = text.indexOf("-->", index + 3);
+            return end < 0 ? length : end + 3;
+        }
+        // Doctype, CDATA and processing instructions
+        else if (first == '!' || first == '?') {
+            final int end = text.indexOf('>', index);
+            return end < 0 ? -1 : end + 1;
+        }
+
+        final boolean closing = first == '/';
+        if (closing)
+            index++;
+
+        final int nameStart = index;
+        while (index < length && isLetterOrDigit(text.charAt(index)))
+            index++;
+        final int nameEnd = index;
+        if (nameEnd == nameStart || !isLetter(text.charAt(nameStart)))
+            return -1;
+
+        // Find the end of the tag, attribute values might contain '>'
+        char quote = 0;
+        for (; index < length; index++) {
+            final char c = text.charAt(index);
+
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            } else if (c == '"' || c == '\'')
+                quote = c;
+            else if (c == '>')
+                break;
+            else if (c == '<')
+                return -1;
+        }
+        if (index >= length)
+            return -1;
+        index++;
+
+        if (isOneOf(nameStart, nameEnd, BLOCK_ELEMENTS))
+            pendingSpace = true;
+        else if (!closing && isOneOf(nameStart, nameEnd, HIDDEN_ELEMENTS)) {
+            // Drop everything up to the closing tag
+            while (index < length) {
+                final int end = text.indexOf("</", index);
+                if (end < 0)
+                    return length;
+                else if (text.regionMatches(true, end + 2, text, nameStart, nameEnd - nameStart)) {
+                    final int close = text.indexOf('>', end);
+                    return close < 0 ? length : close + 1;
+                } else
+                    index = end + 2;
+            }
+        }
+
+        return index;
+    }
+
+    private void append(char c) {
+        if (isWhitespace(c))
+            pendingSpace = true;
+        else {
+            // Collapse white space into a single blank, drop it at the start
+            if (pendingSpace && builder.length() > 0)
+                builder.append(' ');
+
+            pendingSpace = false;
+            builder.append(c);
+        }
+    }
+
+    private boolean isOneOf(int start, int end, String[] names) {
+        for (String name : names)
+            if (name.length() == end - start && text.regionMatches(true, start, name, 0, name.length()))
+                return true;
+
+        return false;
+    }
+
+    private int findEntity(int start, int end) {
+        int low = 0;
+        int high = ENTITY_NAMES.length - 1;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int compare = compare(ENTITY_NAMES[middle], start, end);
+
+            if (compare < 0)
+                low = middle + 1;
+            else if (compare > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+
+        return -1;
+    }
+
+    private int compare(String name, int start, int end) {
+        final int count = Math.min(name.length(), end - start);
+
+        for (int index = 0; index < count; index++) {
+            final int difference = name.charAt(index) - text.charAt(start + index);
+            if (difference != 0)
+                return difference;
+        }
+
+        return name.length() - (end - start);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list with a version. Owners of a list that changes publish a
+ * new snapshot (with a higher version) on each change instead of altering
+ * the list, so readers can take the current snapshot without copying it and
+ * iterate it while the owner changes the list on another thread. Readers
+ * that remember the version of the snapshot they looked at last can tell
+ * whether anything changed since by comparing it to the current snapshot's.
+ * Any attempt to alter a snapshot throws an
+ * {@link UnsupportedOperationException}.
+ *
+ * @param <E> The type of elements in the list.
+ */
+public class ListSnapshot<E> extends AbstractList<E> implements RandomAccess {
+
+    /**
+     * The empty snapshot, version zero
+     */
+    private static final ListSnapshot<Object> EMPTY = new ListSnapshot<>(new Object[0], 0);
+
+    /**
+     * The elements
+     */
+    private final Object[] elements;
+    /**
+     * The version of this snapshot
+     */
+    private final long version;
+
+    private ListSnapshot(@NonNull Object[] elements, long version) {
+        this.elements = elements;
+        this.version = version;
+    }
+
+    /**
+     * @param <E> The type of elements in the list.
+     * @return The empty snapshot, the one to start with.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <E> ListSnapshot<E> empty() {
+        return (ListSnapshot<E>) EMPTY;
+    }
+
+    /**
+     * Create the snapshot to replace this one.
+     *
+     * @param elements The elements the list holds now, these are copied.
+     * @return The new snapshot, its version is one higher than this one's.
+     */
+    @NonNull
+    public ListSnapshot<E> next(@NonNull Collection<? extends E> elements) {
+        return new ListSnapshot<>(elements.toArray(), version + 1);
+    }
+
+    /**
+     * @return The version of this snapshot, snapshots published later by
+     * the same owner have higher versions.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int location) {
+        return (E) elements[location];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.tags.OPML;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the podcast list from OPML documents, i.e. the app's own podcast
+ * list file as well as files imported from other podcatchers.
+ */
+public class OpmlParser {
+
+    /**
+     * The charset the credentials in the OPML file are encoded in
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private OpmlParser() {
+        // Static parsing only
+    }
+
+    /**
+     * Read all podcasts from an OPML document.
+     *
+     * @param parser Parser to read from, namespace aware and set to the
+     *               beginning of the document.
+     * @return The podcasts found, in document order. Outlines that cannot be
+     * read are skipped.
+     * @throws XmlPullParserException On parsing errors.
+     * @throws IOException            If the document cannot be read.
+     */
+    @NonNull
+    public static List<Podcast> parse(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+        final List<Podcast> result = new ArrayList<>();
+        int eventType = parser.next();
+
+        // Read complete document
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            // We only need start tags here
+            if (eventType == XmlPullParser.START_TAG) {
+                String tagName = parser.getName();
+
+                // Podcast found, add it
+                if (tagName.equalsIgnoreCase(OPML.OUTLINE)) {
+                    final Podcast listItem = createPodcast(parser);
+
+                    if (listItem != null)
+                        result.add(listItem);
+                }
+            }
+
+            // Done, get next parsing event
+            eventType = parser.next();
+        }
+
+        return result;
+    }
+
+    /**
+     * Read podcast information from the given parser and create a new podcast
+     * object for it.
+     *
+     * @param parser Parser to read from. Has to be set to the OPML outline
+     *               start tag.
+     * @return A new Podcast instance with name and URL set. If any error
+     * occurs, <code>null</code> is returned.
+     */
+    @Nullable
+    private static Podcast createPodcast(XmlPullParser parser) {
+        Podcast result = null;
+
+        try {
+            // Make sure we start at item tag
+            parser.require(XmlPullParser.START_TAG, "", OPML.OUTLINE);
+            // Get the podcast name
+            String name = parser.getAttributeValue("", OPML.TEXT);
+            // Make sure podcast name looks good
+            if (name != null)
+                name = HtmlDecoder.decode(name);
+
+            // Create the podcast
+            result = new Podcast(name, parser.getAttributeValue("", OPML.XMLURL));
+
+            // Set logo URL and label if given
+            final String logoUrl = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_LOGO);
+            if (logoUrl != null && logoUrl.startsWith("http"))
+                result.setLogoUrl(HtmlDecoder.decode(logoUrl));
+            final String label = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_LABEL);
+            if (label != null && !label.trim().isEmpty())
+                result.setFeedLabel(label);
+
+            // Set authorization information
+            final String userAttribute = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_USER);
+            final String passAttribute = parser.getAttributeValue(OPML.PCD_NAMESPACE, OPML.PCD_PASS);
+            if (userAttribute != null && passAttribute != null)
+                try {
+                    result.setUsername(new String(ParserUtils.decodeBase64(userAttribute), UTF8));
+                    result.setPassword(new String(ParserUtils.decodeBase64(passAttribute), UTF8));
+                } catch (Throwable re) {
+                    /* Cannot recover auth information, do not use it */
+                    result.setUsername(null);
+                    result.setPassword(null);
+                }
+        } catch (XmlPullParserException | IOException e) {
+            /* Bad outline, skip */
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.tags.OPML;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes podcast lists as OPML documents, the app's own podcast list file as
+ * well as exports. This is the counterpart to {@link OpmlParser}.
+ */
+public class OpmlWriter extends XmlFileWriter {
+
+    /**
+     * The charset the credentials are encoded in before going Base64
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Flag to indicate whether authorization information is written
+     */
+    private boolean writeAuthorization = false;
+
+    /**
+     * Create a new OPML writer.
+     *
+     * @param writer The writer to write the document to.
+     */
+    public OpmlWriter(@NonNull Writer writer) {
+        super(writer);
+    }
+
+    /**
+     * Sets the write authorization flag. If set to <code>true</code>, the
+     * resulting OPML file will contain extra information on the user's
+     * credentials for all podcasts in the list. The default is
+     * <code>false</code>. Use with care!
+     *
+     * @param write Whether credentials should be written to output.
+     */
+    public void setWriteAuthorization(boolean write) {
+        this.writeAuthorization = write;
+    }
+
+    /**
+     * Write the complete OPML document. Podcasts without name or URL are
+     * left out.
+     *
+     * @param title    The content of the document's title tag.
+     * @param podcasts The podcasts to write.
+     * @throws IOException If writing the document goes wrong.
+     */
+    public void write(@NonNull String title, @NonNull List<Podcast> podcasts) throws IOException {
+        writeHeader(title);
+        for (Podcast podcast : podcasts)
+            writePodcast(podcast);
+        writeFooter();
+
+        writer.flush();
+    }
+
+    private void writePodcast(Podcast podcast) throws IOException {
+        // Only write out valid podcasts
+        if (hasNameAndUrl(podcast)) {
+            String opmlString = String.format("<%s %s=\"%s\" %s=\"%s\" %s=\"%s\" %s=\"%s\"",
+                    OPML.OUTLINE,
+                    OPML.TEXT, escape(podcast.getName()),
+                    OPML.TITLE, escape(podcast.getName()),
+                    OPML.TYPE, OPML.RSS_TYPE,
+                    OPML.XMLURL, escape(podcast.getUrl()));
+
+            if (podcast.hasLogoUrl())
+                opmlString = String.format("%s %s=\"%s\"", opmlString,
+                        OPML.PCD_NS_PREFIX + OPML.PCD_LOGO, escape(podcast.getLogoUrl()));
+
+            if (podcast.getFeedLabel() != null)
+                opmlString = String.format("%s %s=\"%s\"", opmlString,
+                        OPML.PCD_NS_PREFIX + OPML.PCD_LABEL, escape(podcast.getFeedLabel()));
+
+            if (writeAuthorization && podcast.getAuthorization() != null)
+                // We store the podcast password in the app's private folder base64
+                // encoded (but in the clear). This is justified because it is hard to
+                // attack the file (unless you get your hands on the device) and the
+                // password is not very sensitive since it is only a
+                // podcast we are accessing, not personal information.
+                opmlString = String.format("%s %s=\"%s\" %s=\"%s\"", opmlString,
+                        OPML.PCD_NS_PREFIX + OPML.PCD_USER,
+                        ParserUtils.encodeBase64(podcast.getUsername().getBytes(UTF8)),
+                        OPML.PCD_NS_PREFIX + OPML.PCD_PASS,
+                        ParserUtils.encodeBase64(podcast.getPassword().getBytes(UTF8)));
+
+            writeLine(2, opmlString + " />");
+        }
+    }
+
+    /**
+     * @return Whether given podcast has an non-empty name and an URL.
+     */
+    private boolean hasNameAndUrl(Podcast podcast) {
+        return podcast.getName() != null && podcast.getName().trim().length() > 0 &&
+                podcast.getUrl() != null && podcast.getUrl().startsWith("http");
+    }
+
+    private void writeHeader(String title) throws IOException {
+        writeLine(0, "<?xml version=\"1.0\" encoding=\"" + FILE_ENCODING + "\"?>");
+        writeLine(0, "<opml xmlns:pcd=\"" + OPML.PCD_NAMESPACE + "\" version=\"2.0\">");
+        writeLine(1, "<head>");
+        writeLine(2, "<title>" + escape(title) + "</title>");
+        writeLine(2, "<dateModified>" + new Date().toString() + "</dateModified>");
+        writeLine(1, "</head>");
+        writeLine(1, "<body>");
+    }
+
+    private void writeFooter() throws IOException {
+        writeLine(1, "</body>");
+        writeLine(0, "</opml>");
+    }
+}
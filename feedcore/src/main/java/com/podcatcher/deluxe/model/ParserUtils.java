@@ -0,0 +1,481 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.text.DecimalFormatSymbols;
+import java.text.ParseException;
+import java.util.Locale;
+
+/**
+ * Utility class to support podcast XML/RSS parsing.
+ */
+public class ParserUtils {
+
+    /**
+     * A short time span format (no hours)
+     */
+    private static final String SHORT_DURATION = "%2$d:%3$02d";
+    /**
+     * A long time span format (with hours)
+     */
+    private static final String LONG_DURATION = "%d:%02d:%02d";
+    /**
+     * The value returned by {@link #parseInt(String, int, int)} if there is no number
+     */
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+    /**
+     * The alphabet used by {@link #encodeBase64(byte[])}
+     */
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    /**
+     * The number of recently formatted times kept
+     */
+    private static final int TIME_CACHE_SIZE = 64;
+
+    /**
+     * The recently formatted times, indexed by time modulo cache size
+     */
+    private static final FormattedTime[] timeCache = new FormattedTime[TIME_CACHE_SIZE];
+    /**
+     * The locale the zero digit below belongs to
+     */
+    private static Locale digitLocale;
+    /**
+     * The zero digit of the default locale, used just like String.format() does
+     */
+    private static char zeroDigit = '0';
+
+    /**
+     * A formatted time, immutable so it can be shared between threads
+     */
+    private static class FormattedTime {
+
+        private final int time;
+        private final char zeroDigit;
+        private final String text;
+
+        private FormattedTime(int time, char zeroDigit, String text) {
+            this.time = time;
+            this.zeroDigit = zeroDigit;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Format an amount of time. Recent results are cached, so this is
+     * cheap to call repeatedly for the same time (e.g. when binding views).
+     *
+     * @param time Non-negative amount of seconds to format.
+     * @return The time span as hh:mm:ss with appropriate omissions.
+     */
+    public static String formatTime(int time) {
+        if (time < 0)
+            return formatTimeWithFormatter(time);
+
+        final char zero = getZeroDigit();
+        final int slot = time % TIME_CACHE_SIZE;
+        final FormattedTime cached = timeCache[slot];
+
+        if (cached != null && cached.time == time && cached.zeroDigit == zero)
+            return cached.text;
+        else {
+            final String text = appendTime(new StringBuilder(8), time).toString();
+            timeCache[slot] = new FormattedTime(time, zero, text);
+
+            return text;
+        }
+    }
+
+    /**
+     * Append an amount of time to the given builder, formatted just like
+     * {@link #formatTime(int)} does, without creating any intermediate strings.
+     *
+     * @param builder The builder to append to.
+     * @param time    Non-negative amount of seconds to format.
+     * @return The builder given.
+     */
+    public static StringBuilder appendTime(StringBuilder builder, int time) {
+        if (time < 0)
+            return builder.append(formatTimeWithFormatter(time));
+
+        final char zero = getZeroDigit();
+        final int hours = time / 3600;
+        final int minutes = (time / 60) - 60 * hours;
+
+        if (hours > 0) {
+            appendDigits(builder, hours, 1, zero).append(':');
+            appendDigits(builder, minutes, 2, zero).append(':');
+        } else
+            appendDigits(builder, minutes, 1, zero).append(':');
+
+        return appendDigits(builder, time % 60, 2, zero);
+    }
+
+    /**
+     * Converts a time string like XX:XX:XX.XXX to millis.
+     *
+     * @param timeString String to parse. The fraction part (after the dot) is
+     *                   optional, but has to have three places if given.
+     * @return Amount of millis represented in time string given.
+     * @throws ParseException on bad string format.
+     */
+    public static int unformatTime(String timeString) throws ParseException {
+        if (timeString == null)
+            throw new ParseException("Invalid time string " + null, 0);
+
+        // Split off fractions (millis), we need exactly one dot followed by
+        // something other than dots. Further dots are fine at the very end.
+        final int length = timeString.length();
+        final int dot = timeString.indexOf('.');
+        int end = length;
+        int millis = 0;
+
+        if (dot >= 0) {
+            int fractionEnd = dot + 1;
+            while (fractionEnd < length && timeString.charAt(fractionEnd) != '.')
+                fractionEnd++;
+            for (int index = fractionEnd; index < length; index++)
+                if (timeString.charAt(index) != '.')
+                    throw new ParseException("Invalid time string " + timeString, 0);
+
+            if (fractionEnd == dot + 1)
+                throw new ParseException("Invalid time string " + timeString, 0);
+            else if (fractionEnd - dot - 1 == 3)
+                millis = checkedInt(parseInt(timeString, dot + 1, fractionEnd), timeString);
+
+            end = dot;
+        }
+
+        // Find the first three colon-separated parts, trailing colons are ignored
+        int partCount = 0;
+        int trimmedEnd = end;
+        while (trimmedEnd > 0 && timeString.charAt(trimmedEnd - 1) == ':')
+            trimmedEnd--;
+
+        final int firstColon = timeString.indexOf(':');
+        final int result;
+        if (firstColon < 0 || firstColon >= trimmedEnd)
+            // e.g. 03, the whole string has to be a number then
+            result = checkedInt(parseInt(timeString, 0, end), timeString);
+        else {
+            final int secondColon = timeString.indexOf(':', firstColon + 1);
+            partCount = secondColon < 0 || secondColon >= trimmedEnd ? 2 :
+                    timeString.indexOf(':', secondColon + 1) < 0 ||
+                            timeString.indexOf(':', secondColon + 1) >= trimmedEnd ? 3 : 4;
+
+            if (partCount == 2)
+                // e.g. 12:34
+                result = checkedInt(parseInt(timeString, firstColon + 1, trimmedEnd), timeString) +
+                        checkedInt(parseInt(timeString, 0, firstColon), timeString) * 60;
+            else if (partCount == 3)
+                // e.g. 01:12:34
+                result = checkedInt(parseInt(timeString, secondColon + 1, trimmedEnd), timeString) +
+                        checkedInt(parseInt(timeString, firstColon + 1, secondColon), timeString) * 60 +
+                        checkedInt(parseInt(timeString, 0, firstColon), timeString) * 3600;
+            else
+                throw new ParseException("Invalid time string " + timeString, 0);
+        }
+
+        return result * 1000 + millis;
+    }
+
+    /**
+     * Converts an ISO 8601 duration like PT1H12M34.5S to millis. Weeks,
+     * days, hours, minutes and (fractional) seconds are supported, years
+     * and months are not since their length is not fixed.
+     *
+     * @param durationString String to parse.
+     * @return Amount of millis represented by the duration given.
+     * @throws ParseException on bad string format.
+     */
+    public static int unformatIsoDuration(String durationString) throws ParseException {
+        final int length = durationString == null ? 0 : durationString.length();
+        if (length < 3 || toUpper(durationString.charAt(0)) != 'P')
+            throw new ParseException("Invalid duration " + durationString, 0);
+
+        long millis = 0;
+        boolean inTime = false;
+        boolean any = false;
+        int index = 1;
+
+        while (index < length) {
+            if (toUpper(durationString.charAt(index)) == 'T' && !inTime) {
+                inTime = true;
+                index++;
+                continue;
+            }
+
+            // Read the number, seconds might have a fraction
+            long value = 0;
+            long fraction = 0;
+            int fractionScale = 1000;
+            final int numberStart = index;
+            while (index < length && isAsciiDigit(durationString.charAt(index)) && value < Integer.MAX_VALUE)
+                value = value * 10 + (durationString.charAt(index++) - '0');
+            if (index < length && (durationString.charAt(index) == '.' || durationString.charAt(index) == ',')) {
+                index++;
+                while (index < length && isAsciiDigit(durationString.charAt(index))) {
+                    fractionScale /= 10;
+                    fraction += (durationString.charAt(index++) - '0') * fractionScale;
+                }
+            }
+            if (index == numberStart || index >= length)
+                throw new ParseException("Invalid duration " + durationString, index);
+
+            final char designator = toUpper(durationString.charAt(index++));
+            if (inTime && designator == 'H')
+                millis += value * 3600 * 1000;
+            else if (inTime && designator == 'M')
+                millis += value * 60 * 1000;
+            else if (inTime && designator == 'S')
+                millis += value * 1000 + fraction;
+            else if (!inTime && designator == 'D')
+                millis += value * 24 * 3600 * 1000;
+            else if (!inTime && designator == 'W')
+                millis += value * 7 * 24 * 3600 * 1000;
+            else
+                throw new ParseException("Invalid duration " + durationString, index - 1);
+
+            if (millis > Integer.MAX_VALUE)
+                throw new ParseException("Invalid duration " + durationString, index - 1);
+            any = true;
+        }
+
+        if (!any)
+            throw new ParseException("Invalid duration " + durationString, 0);
+
+        return (int) millis;
+    }
+
+    /**
+     * Format an information given in bytes to the more familiar mega-bytes.
+     *
+     * @param bytes The number of bytes to calculate with
+     * @return A string like "XMB" where X is the numeric representation of the size.
+     */
+    public static String formatFileSize(long bytes) {
+        return appendFileSize(new StringBuilder(8), bytes).toString();
+    }
+
+    /**
+     * Append a file size to the given builder, formatted just like
+     * {@link #formatFileSize(long)} does.
+     *
+     * @param builder The builder to append to.
+     * @param bytes   The number of bytes to calculate with
+     * @return The builder given.
+     */
+    public static StringBuilder appendFileSize(StringBuilder builder, long bytes) {
+        final int megaBytes = (int) bytes / (1024 * 1024);
+        return megaBytes > 0 ? builder.append(megaBytes).append("MB") :
+                builder.append(bytes / 1024).append("KB");
+    }
+
+    /**
+     * Skip the entire sub tree the given parser is currently pointing at.
+     *
+     * @param parser Parser to advance.
+     * @throws XmlPullParserException On parsing problems.
+     * @throws IOException            On I/O trouble.
+     */
+    public static void skipSubTree(XmlPullParser parser) throws XmlPullParserException, IOException {
+        // We need to see a start tag next. The tag and any sub-tree it might
+        // have will be skipped.
+        parser.require(XmlPullParser.START_TAG, null, null);
+
+        int level = 1;
+        // Continue parsing and increase/decrease the level
+        while (level > 0) {
+            int eventType = parser.next();
+            if (eventType == XmlPullParser.END_TAG) {
+                --level;
+            } else if (eventType == XmlPullParser.START_TAG) {
+                ++level;
+            }
+        }
+
+        // We are back to the original level, behind the start tag given and any
+        // sub-tree that might have been there. Return.
+    }
+
+    /**
+     * Encode the given bytes as Base64 (RFC 4648, padded, no line breaks) like
+     * the authorization header and the OPML file's credentials need them.
+     *
+     * @param bytes The bytes to encode.
+     * @return The encoded string.
+     */
+    public static String encodeBase64(byte[] bytes) {
+        final StringBuilder result = new StringBuilder((bytes.length + 2) / 3 * 4);
+
+        for (int index = 0; index < bytes.length; index += 3) {
+            final int remaining = bytes.length - index;
+            final int chunk = (bytes[index] & 0xff) << 16 |
+                    (remaining > 1 ? (bytes[index + 1] & 0xff) << 8 : 0) |
+                    (remaining > 2 ? bytes[index + 2] & 0xff : 0);
+
+            result.append(BASE64[chunk >> 18 & 0x3f]).append(BASE64[chunk >> 12 & 0x3f])
+                    .append(remaining > 1 ? BASE64[chunk >> 6 & 0x3f] : '=')
+                    .append(remaining > 2 ? BASE64[chunk & 0x3f] : '=');
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Decode the given Base64 (RFC 4648) string, see {@link #encodeBase64(byte[])}.
+     * White space and padding are ignored.
+     *
+     * @param encoded The string to decode.
+     * @return The decoded bytes.
+     * @throws IllegalArgumentException If the string is not valid Base64.
+     */
+    public static byte[] decodeBase64(String encoded) {
+        final byte[] buffer = new byte[encoded.length() * 3 / 4 + 3];
+        int length = 0;
+        int chunk = 0;
+        int count = 0;
+
+        for (int index = 0; index < encoded.length(); index++) {
+            final char c = encoded.charAt(index);
+            final int value;
+
+            if (c >= 'A' && c <= 'Z')
+                value = c - 'A';
+            else if (c >= 'a' && c <= 'z')
+                value = c - 'a' + 26;
+            else if (c >= '0' && c <= '9')
+                value = c - '0' + 52;
+            else if (c == '+')
+                value = 62;
+            else if (c == '/')
+                value = 63;
+            else if (c == '=' || Character.isWhitespace(c))
+                continue;
+            else
+                throw new IllegalArgumentException("Not Base64: " + encoded);
+
+            chunk = chunk << 6 | value;
+            if (++count == 4) {
+                buffer[length++] = (byte) (chunk >> 16);
+                buffer[length++] = (byte) (chunk >> 8);
+                buffer[length++] = (byte) chunk;
+                chunk = count = 0;
+            }
+        }
+
+        // Left-overs from the last, incomplete chunk
+        if (count == 1)
+            throw new IllegalArgumentException("Not Base64: " + encoded);
+        else if (count == 2)
+            buffer[length++] = (byte) (chunk >> 4);
+        else if (count == 3) {
+            buffer[length++] = (byte) (chunk >> 10);
+            buffer[length++] = (byte) (chunk >> 2);
+        }
+
+        final byte[] result = new byte[length];
+        System.arraycopy(buffer, 0, result, 0, length);
+
+        return result;
+    }
+
+    private static String formatTimeWithFormatter(int time) {
+        final int hours = time / 3600;
+
+        return String.format(hours > 0 ? LONG_DURATION : SHORT_DURATION,
+                hours, (time / 60) - 60 * hours, time % 60);
+    }
+
+    private static synchronized char getZeroDigit() {
+        // String.format() uses the default locale's digits, so do we
+        final Locale locale = Locale.getDefault();
+        if (!locale.equals(digitLocale)) {
+            zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+            digitLocale = locale;
+        }
+
+        return zeroDigit;
+    }
+
+    private static StringBuilder appendDigits(StringBuilder builder, int value, int minDigits, char zero) {
+        int divisor = 1;
+        int digits = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+            digits++;
+        }
+
+        for (; digits < minDigits; digits++)
+            builder.append(zero);
+        for (; divisor > 0; divisor /= 10)
+            builder.append((char) (zero + value / divisor % 10));
+
+        return builder;
+    }
+
+    /**
+     * Parse part of a string as a decimal int, accepting exactly what
+     * {@link Integer#parseInt(String)} accepts, but without throwing.
+     *
+     * @return The number or {@link #NOT_A_NUMBER}.
+     */
+    private static long parseInt(String string, int start, int end) {
+        if (start >= end)
+            return NOT_A_NUMBER;
+
+        final char first = string.charAt(start);
+        final boolean negative = first == '-';
+        if (negative || first == '+')
+            if (++start == end)
+                return NOT_A_NUMBER;
+
+        final long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (int index = start; index < end; index++) {
+            final char c = string.charAt(index);
+            final int digit = isAsciiDigit(c) ? c - '0' : Character.digit(c, 10);
+
+            if (digit < 0 || (value = value * 10 + digit) > limit)
+                return NOT_A_NUMBER;
+        }
+
+        return negative ? -value : value;
+    }
+
+    private static int checkedInt(long value, String timeString) throws ParseException {
+        if (value == NOT_A_NUMBER)
+            throw new ParseException("Invalid time string " + timeString, 0);
+
+        return (int) value;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static char toUpper(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
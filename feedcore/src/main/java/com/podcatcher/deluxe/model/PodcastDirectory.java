@@ -0,0 +1,48 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+/**
+ * Looks up the podcasts and episodes currently loaded, so the model can
+ * re-use these instead of creating new ones. The app's podcast manager
+ * implements this.
+ */
+public interface PodcastDirectory {
+
+    /**
+     * Find the podcast object for given URL.
+     *
+     * @param url URL of podcast to look up.
+     * @return The podcast object, or <code>null</code> if not found.
+     */
+    Podcast findPodcastForUrl(String url);
+
+    /**
+     * Find the episode object for given URL in the podcast given. Note that
+     * this will only search episodes currently loaded.
+     *
+     * @param episodeUrl URL of episode to look for.
+     * @param podcastUrl URL of the podcast to look in.
+     * @return The episode object, or <code>null</code> if not found.
+     */
+    Episode findEpisodeForUrl(String episodeUrl, String podcastUrl);
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash indexes over a podcast list: canonical feed URL to podcast and
+ * canonical media URL to episode. This replaces scanning all podcasts and
+ * all their episodes for each lookup. The owner of the list has to keep the
+ * index in step by calling {@link #add(Podcast)}, {@link #remove(Podcast)}
+ * and {@link #update(Podcast)} whenever the list or a podcast's episodes
+ * change. All methods are synchronized, so lookups from other threads always
+ * see a consistent state.
+ * <p>
+ * If several podcasts have an episode with the same media URL, lookups
+ * without a podcast give the episode of the podcast added first.
+ * </p>
+ */
+public class PodcastIndex implements PodcastDirectory {
+
+    /**
+     * The podcasts by (canonical) feed URL, in the order they were added
+     */
+    private final Map<String, Podcast> podcasts = new LinkedHashMap<>();
+    /**
+     * The episodes by (canonical) media URL
+     */
+    private final Map<String, Episode> episodes = new HashMap<>();
+    /**
+     * The media URLs indexed for each podcast, so these can be dropped
+     */
+    private final Map<Podcast, String[]> episodeUrls = new IdentityHashMap<>();
+    /**
+     * The order the podcasts were added in, so shared episodes go to the
+     * podcast added first
+     */
+    private final Map<Podcast, Integer> ranks = new IdentityHashMap<>();
+    /**
+     * The episodes of all podcasts by media URL, ordered by podcast rank.
+     * Only present for media URLs used by more than one podcast.
+     */
+    private final Map<String, List<Episode>> sharedEpisodes = new HashMap<>();
+    /**
+     * The rank to give to the next podcast added
+     */
+    private int nextRank = 0;
+
+    /**
+     * Drop everything indexed and index the given podcasts.
+     *
+     * @param podcastList The podcasts to index.
+     */
+    public synchronized void reset(@NonNull Collection<Podcast> podcastList) {
+        podcasts.clear();
+        episodes.clear();
+        episodeUrls.clear();
+        ranks.clear();
+        sharedEpisodes.clear();
+        nextRank = 0;
+
+        for (Podcast podcast : podcastList)
+            add(podcast);
+    }
+
+    /**
+     * Add a podcast and its episodes to the index. Podcasts without URL and
+     * podcasts already present (by URL) are ignored.
+     *
+     * @param podcast The podcast to add.
+     */
+    public synchronized void add(@NonNull Podcast podcast) {
+        if (podcast.getUrl() != null && !podcasts.containsKey(podcast.getUrl())) {
+            podcasts.put(podcast.getUrl(), podcast);
+            ranks.put(podcast, nextRank++);
+            indexEpisodes(podcast);
+        }
+    }
+
+    /**
+     * Remove a podcast and its episodes from the index.
+     *
+     * @param podcast The podcast to remove, needs to be the very instance
+     *                added, otherwise nothing happens.
+     */
+    public synchronized void remove(@NonNull Podcast podcast) {
+        if (podcast.getUrl() != null && podcasts.get(podcast.getUrl()) == podcast) {
+            podcasts.remove(podcast.getUrl());
+            dropEpisodes(podcast);
+            ranks.remove(podcast);
+        }
+    }
+
+    /**
+     * Re-index the episodes of the given podcast, call this after it was
+     * loaded.
+     *
+     * @param podcast The podcast with new episodes, needs to be the very
+     *                instance added, otherwise nothing happens.
+     */
+    public synchronized void update(@NonNull Podcast podcast) {
+        if (podcast.getUrl() != null && podcasts.get(podcast.getUrl()) == podcast) {
+            dropEpisodes(podcast);
+            indexEpisodes(podcast);
+        }
+    }
+
+    /**
+     * @return The number of podcasts indexed.
+     */
+    public synchronized int size() {
+        return podcasts.size();
+    }
+
+    @Nullable
+    @Override
+    public synchronized Podcast findPodcastForUrl(@Nullable String url) {
+        return url == null ? null : podcasts.get(UrlCanonicalizer.getInstance().canonicalizeFeedUrl(url));
+    }
+
+    /**
+     * Find the episode object for given URL in any podcast indexed.
+     *
+     * @param url URL of episode to look for.
+     * @return The episode object, or <code>null</code> if not found.
+     */
+    @Nullable
+    public synchronized Episode findEpisodeForUrl(@Nullable String url) {
+        return url == null ? null : episodes.get(UrlCanonicalizer.getInstance().canonicalizeMediaUrl(url));
+    }
+
+    @Nullable
+    @Override
+    public synchronized Episode findEpisodeForUrl(@Nullable String episodeUrl, @Nullable String podcastUrl) {
+        if (podcastUrl == null)
+            return findEpisodeForUrl(episodeUrl);
+
+        final Podcast podcast = findPodcastForUrl(podcastUrl);
+        final Episode episode = findEpisodeForUrl(episodeUrl);
+        if (podcast == null || episode == null || episode.getPodcast() == podcast)
+            return podcast == null ? null : episode;
+
+        // The episode found belongs to another podcast, but the media URL
+        // might be used by the podcast we are looking in as well
+        final List<Episode> owners = sharedEpisodes.get(episode.getMediaUrl());
+        if (owners != null)
+            for (Episode candidate : owners)
+                if (candidate.getPodcast() == podcast)
+                    return candidate;
+
+        return null;
+    }
+
+    private void indexEpisodes(Podcast podcast) {
+        final List<Episode> list = podcast.getEpisodes();
+        final String[] urls = new String[list.size()];
+
+        for (int index = 0; index < urls.length; index++) {
+            final Episode episode = list.get(index);
+            urls[index] = episode.getMediaUrl();
+
+            if (urls[index] != null) {
+                final Episode present = episodes.get(urls[index]);
+
+                // First one wins, as with a scan of the podcast
+                if (present == null)
+                    episodes.put(urls[index], episode);
+                else if (present.getPodcast() != podcast)
+                    addOwner(urls[index], present, episode);
+            }
+        }
+
+        episodeUrls.put(podcast, urls);
+    }
+
+    private void addOwner(String url, Episode present, Episode episode) {
+        List<Episode> owners = sharedEpisodes.get(url);
+        if (owners == null) {
+            owners = new ArrayList<>(2);
+            owners.add(present);
+            sharedEpisodes.put(url, owners);
+        }
+
+        // Insert by rank, unless the podcast already has an episode with that URL
+        final int rank = ranks.get(episode.getPodcast());
+        int position = owners.size();
+        for (int index = 0; index < owners.size(); index++) {
+            final Podcast owner = owners.get(index).getPodcast();
+
+            if (owner == episode.getPodcast())
+                return;
+            else if (position == owners.size() && ranks.get(owner) > rank)
+                position = index;
+        }
+
+        // First one wins, as with a scan of all podcasts
+        owners.add(position, episode);
+        episodes.put(url, owners.get(0));
+    }
+
+    private void dropEpisodes(Podcast podcast) {
+        final String[] urls = episodeUrls.remove(podcast);
+
+        if (urls != null)
+            for (String url : urls)
+                if (url != null) {
+                    final List<Episode> owners = sharedEpisodes.get(url);
+
+                    if (owners == null) {
+                        final Episode present = episodes.get(url);
+
+                        if (present != null && present.getPodcast() == podcast)
+                            episodes.remove(url);
+                    } else if (removeOwner(owners, podcast)) {
+                        // The next podcast using the URL takes over
+                        episodes.put(url, owners.get(0));
+                        if (owners.size() == 1)
+                            sharedEpisodes.remove(url);
+                    }
+                }
+    }
+
+    private static boolean removeOwner(List<Episode> owners, Podcast podcast) {
+        for (int index = 0; index < owners.size(); index++)
+            if (owners.get(index).getPodcast() == podcast) {
+                owners.remove(index);
+                return true;
+            }
+
+        return false;
+    }
+}
@@ -0,0 +1,378 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import android.support.annotation.Nullable;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns URL strings into their canonical form (see
+ * http://en.wikipedia.org/wiki/URL_normalization for details). Parsing URLs is
+ * expensive, so results are memoized in a bounded cache shared by all threads.
+ * The canonical strings returned are interned, i.e. equal canonical URLs are
+ * usually the very same string instance and comparing them via
+ * {@link String#equals(Object)} returns on the reference check.
+ * <p>
+ * There are three flavours: {@link #canonicalize(String)} applies the general
+ * rules, {@link #canonicalizeFeedUrl(String)} adds the rules for podcast feeds
+ * (e.g. "feed://" schemes) and {@link #canonicalizeMediaUrl(String)} the ones
+ * for episode media files.
+ * </p>
+ */
+public class UrlCanonicalizer {
+
+    /**
+     * The number of entries each cache generation holds, the caches keep up
+     * to two generations
+     */
+    public static final int CAPACITY = 2048;
+
+    /**
+     * The estimated memory used by a string object, not counting its characters (bytes)
+     */
+    private static final int STRING_OVERHEAD = 40;
+    /**
+     * The estimated memory used by a cache entry, not counting key and value (bytes)
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    /**
+     * The single instance
+     */
+    private static final UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+
+    /**
+     * Canonical URLs by spec, general rules
+     */
+    private final Memo general = new Memo();
+    /**
+     * Canonical URLs by spec, podcast feed rules
+     */
+    private final Memo feeds = new Memo();
+    /**
+     * Canonical URLs by spec, media file rules
+     */
+    private final Memo media = new Memo();
+    /**
+     * The canonical URLs known, mapped to themselves
+     */
+    private final Memo pool = new Memo();
+
+    /**
+     * The number of cache hits
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * The number of cache misses
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A bounded concurrent map. New entries go into the young generation,
+     * once that is full, it becomes the old generation and the previous old
+     * generation is dropped. Hits in the old generation are moved back to
+     * the young one, so entries in use survive.
+     */
+    private static class Memo {
+
+        private volatile Map<String, String> young = new ConcurrentHashMap<>();
+        private volatile Map<String, String> old = new ConcurrentHashMap<>();
+
+        private String get(String key) {
+            String value = young.get(key);
+
+            if (value == null) {
+                value = old.get(key);
+                if (value != null)
+                    put(key, value);
+            }
+
+            return value;
+        }
+
+        private void put(String key, String value) {
+            young.put(key, value);
+
+            if (young.size() >= CAPACITY)
+                rotate();
+        }
+
+        private synchronized void rotate() {
+            if (young.size() >= CAPACITY) {
+                old = young;
+                young = new ConcurrentHashMap<>();
+            }
+        }
+
+        private synchronized void clear() {
+            young = new ConcurrentHashMap<>();
+            old = new ConcurrentHashMap<>();
+        }
+
+        private int size() {
+            return young.size() + old.size();
+        }
+
+        private long footprint() {
+            return footprint(young) + footprint(old);
+        }
+
+        private static long footprint(Map<String, String> generation) {
+            long bytes = 0;
+            for (String key : generation.keySet())
+                bytes += ENTRY_OVERHEAD + STRING_OVERHEAD + 2 * key.length();
+
+            return bytes;
+        }
+    }
+
+    private UrlCanonicalizer() {
+        // Use getInstance()
+    }
+
+    /**
+     * @return The single instance.
+     */
+    public static UrlCanonicalizer getInstance() {
+        return canonicalizer;
+    }
+
+    /**
+     * Canonicalize the given URL string using the general rules: White space
+     * is trimmed, the path is normalized to be at least "/" and has no trailing
+     * slash, scheme and host are lower case and default ports are dropped.
+     *
+     * @param spec The URL string to canonicalize.
+     * @return The same URL string with unchanged semantics, but canonical
+     * syntax. When not a valid URL or <code>null</code>, the string
+     * given is returned unaltered.
+     */
+    @Nullable
+    public String canonicalize(@Nullable String spec) {
+        if (spec == null)
+            return null;
+
+        String result = general.get(spec);
+        if (result == null) {
+            misses.incrementAndGet();
+
+            result = intern(normalize(spec));
+            general.put(spec, result);
+        } else
+            hits.incrementAndGet();
+
+        return result;
+    }
+
+    /**
+     * Canonicalize the given podcast feed URL string. On top of the general
+     * rules, this rewrites "feed://", "itpc://", "itms://" and "fb:" URLs to
+     * http and normalizes Feedburner URLs.
+     *
+     * @param spec The URL string to canonicalize.
+     * @return The canonical feed URL, when not a valid URL or <code>null</code>,
+     * the string given is returned unaltered (besides the scheme rewrite).
+     * @see #canonicalize(String)
+     */
+    @Nullable
+    public String canonicalizeFeedUrl(@Nullable String spec) {
+        if (spec == null)
+            return null;
+
+        String result = feeds.get(spec);
+        if (result == null) {
+            misses.incrementAndGet();
+
+            result = intern(normalizeFeedUrl(spec));
+            feeds.put(spec, result);
+        } else
+            hits.incrementAndGet();
+
+        return result;
+    }
+
+    /**
+     * Canonicalize the given episode media URL string. On top of the general
+     * rules, this tries to rescue URLs with bad or missing schemes by
+     * turning them into http URLs.
+     *
+     * @param spec The URL string to canonicalize.
+     * @return The canonical media URL.
+     * @see #canonicalize(String)
+     */
+    @Nullable
+    public String canonicalizeMediaUrl(@Nullable String spec) {
+        if (spec == null)
+            return null;
+
+        String result = media.get(spec);
+        if (result == null) {
+            misses.incrementAndGet();
+
+            result = intern(normalizeMediaUrl(spec));
+            media.put(spec, result);
+        } else
+            hits.incrementAndGet();
+
+        return result;
+    }
+
+    /**
+     * @return The share of lookups answered from the cache since the
+     * last {@link #clear()}, between 0 and 1.
+     */
+    public double getHitRate() {
+        final long hitCount = hits.get();
+        final long total = hitCount + misses.get();
+
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return The number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that needed to parse the URL.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of entries currently cached, including the
+     * canonical strings interned.
+     */
+    public int getSize() {
+        return general.size() + feeds.size() + media.size() + pool.size();
+    }
+
+    /**
+     * @return A rough estimate of the memory used by the cache (bytes). This
+     * counts the cached strings and the cache entries, but not the canonical
+     * strings held by feed entities anyway.
+     */
+    public long getEstimatedFootprint() {
+        return general.footprint() + feeds.footprint() + media.footprint() + pool.footprint();
+    }
+
+    /**
+     * Drop all cached URLs and reset the statistics.
+     */
+    public void clear() {
+        general.clear();
+        feeds.clear();
+        media.clear();
+        pool.clear();
+
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private String intern(String canonical) {
+        final String known = pool.get(canonical);
+        if (known != null)
+            return known;
+
+        pool.put(canonical, canonical);
+        return canonical;
+    }
+
+    private static String normalize(String spec) {
+        try {
+            // Trim white spaces, normalize path, throw exception if mal-formed
+            final URL url = new URI(spec.trim()).normalize().toURL();
+
+            // Make sure protocol and server are lower case
+            final String scheme = url.getProtocol().toLowerCase(Locale.US);
+            final String host = url.getHost().toLowerCase(Locale.US);
+
+            // Normalize path to be at least "/"
+            String path = url.getPath();
+            if (path == null || path.isEmpty())
+                path = "/";
+            else if (path.length() > 1 && path.endsWith("/") && url.getQuery() == null)
+                path = path.substring(0, path.length() - 1);
+
+            // Look at ports and only keep non-defaults
+            boolean needsPort = url.getPort() != -1;
+            if ((scheme.equals("http") && url.getPort() == 80) ||
+                    (scheme.equals("https") && url.getPort() == 443))
+                needsPort = false;
+
+            // Reconstruct the string
+            return scheme + "://" + host + (needsPort ? ":" + url.getPort() : "")
+                    + path + (url.getQuery() == null ? "" : "?" + url.getQuery());
+        } catch (MalformedURLException | NullPointerException | URISyntaxException
+                | IllegalArgumentException e) {
+            // We simply return the original string
+            return spec;
+        }
+    }
+
+    private static String normalizeFeedUrl(String spec) {
+        if (spec.regionMatches(true, 0, "feed://", 0, 7) ||
+                spec.regionMatches(true, 0, "itpc://", 0, 7) ||
+                spec.regionMatches(true, 0, "itms://", 0, 7))
+            spec = "http" + spec.substring(4);
+        if (spec.regionMatches(true, 0, "fb:", 0, 3))
+            spec = "http://feeds.feedburner.com/" + spec.substring(3);
+
+        spec = normalize(spec);
+
+        if (spec.startsWith("http://feeds2.feedburner.com"))
+            spec = "http://feeds" + spec.substring(13);
+        if (spec.startsWith("https://feeds2.feedburner.com"))
+            spec = "https://feeds" + spec.substring(14);
+        if (spec.contains("://feeds.feedburner.com") && spec.endsWith("?format=xml"))
+            spec = spec.replace("?format=xml", "");
+
+        return spec;
+    }
+
+    private static String normalizeMediaUrl(String spec) {
+        spec = normalize(spec);
+
+        // Try to rescue bad media file URLs
+        if (!spec.startsWith("http"))
+            try {
+                final URL url = new URL(spec);
+                final String scheme = url.getProtocol();
+
+                if (!scheme.equals("http") && !scheme.equals("https"))
+                    spec = new URL("http", url.getHost(), -1, url.getFile()).toExternalForm();
+            } catch (MalformedURLException mue) {
+                // we simply try returning the original string starting with http://
+                spec = "http://" + spec;
+            }
+
+        return spec;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Abstract writer for the XML files the app keeps its data in. Sub-classes
+ * write their document line by line via {@link #writeLine(int, String)}. The
+ * caller owns the underlying writer and has to close it.
+ */
+public abstract class XmlFileWriter {
+
+    /**
+     * The file encoding
+     */
+    public static final String FILE_ENCODING = "utf8";
+    /**
+     * The indent char
+     */
+    protected static final char INDENT = ' ';
+
+    /**
+     * The file writer
+     */
+    protected final BufferedWriter writer;
+
+    /**
+     * Create a new file writer.
+     *
+     * @param writer The writer to write the document to, the caller is
+     *               responsible for it using {@link #FILE_ENCODING}.
+     */
+    protected XmlFileWriter(@NonNull Writer writer) {
+        this.writer = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+    }
+
+    /**
+     * @param level Indent level to put in front of line.
+     * @param line  Actual text to write.
+     * @throws IOException If writing the line goes wrong.
+     */
+    protected void writeLine(int level, String line) throws IOException {
+        for (int i = 0; i < level * 2; i++)
+            writer.write(INDENT);
+
+        writer.write(line);
+        writer.newLine();
+    }
+
+    /**
+     * Escape the given text for use in XML element content and attribute
+     * values, same as <code>TextUtils.htmlEncode()</code> does.
+     *
+     * @param text The text to escape.
+     * @return The escaped text, the very string given if there is nothing to
+     * escape.
+     */
+    @NonNull
+    protected static String escape(@NonNull String text) {
+        StringBuilder builder = null;
+        for (int index = 0; index < text.length(); index++) {
+            final char c = text.charAt(index);
+            final String replacement;
+
+            switch (c) {
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '\'':
+                    replacement = "&#39;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                default:
+                    replacement = null;
+            }
+
+            // Only copy the text once there is something to replace
+            if (replacement != null && builder == null)
+                builder = new StringBuilder(text.length() + 16).append(text, 0, index);
+
+            if (replacement != null)
+                builder.append(replacement);
+            else if (builder != null)
+                builder.append(c);
+        }
+
+        return builder == null ? text : builder.toString();
+    }
+}
@@ -18,26 +18,32 @@
 
 package com.podcatcher.deluxe.model.types;
 
-import com.podcatcher.deluxe.BuildConfig;
+import com.podcatcher.deluxe.model.DateCodec;
+import com.podcatcher.deluxe.model.EpisodeBodyStore;
+import com.podcatcher.deluxe.model.FeedPlatform;
+import com.podcatcher.deluxe.model.FeedTags;
+import com.podcatcher.deluxe.model.HtmlDecoder;
 import com.podcatcher.deluxe.model.ParserUtils;
+import com.podcatcher.deluxe.model.UrlCanonicalizer;
 import com.podcatcher.deluxe.model.tags.RSS;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.Html;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import static com.podcatcher.deluxe.model.ParserUtils.unformatIsoDuration;
 import static com.podcatcher.deluxe.model.ParserUtils.unformatTime;
 
 /**
@@ -47,6 +53,15 @@ import static com.podcatcher.deluxe.model.ParserUtils.unformatTime;
  */
 public class Episode extends FeedEntity implements Comparable<Episode> {
 
+    /**
+     * The most media types shared between episodes
+     */
+    private static final int MAX_MEDIA_TYPES = 64;
+    /**
+     * The media types seen, so all episodes share the same few strings
+     */
+    private static final ConcurrentMap<String, String> mediaTypes = new ConcurrentHashMap<>();
+
     /**
      * The podcast this episode is part of
      */
@@ -66,9 +81,17 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      */
     protected String content;
     /**
-     * The episode's release date
+     * The handle of the description in the {@link EpisodeBodyStore}, if moved there
+     */
+    protected long descriptionHandle = EpisodeBodyStore.NONE;
+    /**
+     * The handle of the content in the {@link EpisodeBodyStore}, if moved there
+     */
+    protected long contentHandle = EpisodeBodyStore.NONE;
+    /**
+     * The episode's release date (millis), {@link DateCodec#INVALID} if not available
      */
-    protected Date pubDate;
+    protected long pubDate = DateCodec.INVALID;
     /**
      * The episode's duration (in seconds)
      */
@@ -82,11 +105,16 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      */
     protected String mediaType;
     /**
-     * The chapters for this episode as of http://podlove.org/simple-chapters/
-     * Since this will be empty for a lot of episodes that do not carry this information,
-     * we only create a map if some chapters are actually found.
+     * The start times (millis) of the chapters for this episode as of
+     * http://podlove.org/simple-chapters/ in ascending order. Since this will be
+     * empty for a lot of episodes that do not carry this information, we only
+     * create the arrays if some chapters are actually found.
+     */
+    protected int[] chapterStarts;
+    /**
+     * The titles of the chapters, in the order of {@link #chapterStarts}
      */
-    protected SortedMap<Integer, String> chapters;
+    protected String[] chapterTitles;
 
     /**
      * Create a new episode.
@@ -122,10 +150,40 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
         this.name = name;
         this.mediaUrl = normalizeUrl(mediaUrl);
         this.description = description;
-        this.mediaType = mediaType;
+        this.mediaType = internMediaType(mediaType);
         // Publication date might not be present
         if (pubDate != null)
-            this.pubDate = new Date(pubDate.getTime());
+            this.pubDate = pubDate.getTime();
+    }
+
+    /**
+     * Create a copy of the given episode at another position in its podcast's
+     * feed, used when episodes are added to the top of a feed parsed
+     * incrementally. The episode given is not changed, since its position
+     * is part of its sort order.
+     *
+     * @param episode The episode to copy.
+     * @param index   The new index of the episode in the podcast's feed.
+     */
+    Episode(@NonNull Episode episode, int index) {
+        this(episode.podcast, index);
+
+        this.name = episode.name;
+        this.url = episode.url;
+        this.description = episode.description;
+        this.explicit = episode.explicit;
+        this.fileSize = episode.fileSize;
+
+        this.guid = episode.guid;
+        this.content = episode.content;
+        this.descriptionHandle = episode.descriptionHandle;
+        this.contentHandle = episode.contentHandle;
+        this.pubDate = episode.pubDate;
+        this.duration = episode.duration;
+        this.mediaUrl = episode.mediaUrl;
+        this.mediaType = episode.mediaType;
+        this.chapterStarts = episode.chapterStarts;
+        this.chapterTitles = episode.chapterTitles;
     }
 
     /**
@@ -161,14 +219,24 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      */
     @Nullable
     public Date getPubDate() {
-        return pubDate == null ? null : new Date(pubDate.getTime());
+        return pubDate == DateCodec.INVALID ? null : new Date(pubDate);
+    }
+
+    /**
+     * @return The publication date for this episode (millis) or
+     * {@link DateCodec#INVALID} if not present. This is {@link Long#MAX_VALUE}
+     * for live streams. Use this to avoid creating date objects.
+     * @see #getPubDate()
+     */
+    public long getPubTime() {
+        return pubDate;
     }
 
     /**
      * @return Whether this episode represents a live stream.
      */
     public boolean isLive() {
-        return pubDate != null && pubDate.getTime() == Long.MAX_VALUE;
+        return pubDate == Long.MAX_VALUE;
     }
 
     /**
@@ -214,7 +282,13 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      */
     @Nullable
     public String getLongDescription() {
-        return content;
+        return contentHandle == EpisodeBodyStore.NONE ? content : readBody(contentHandle, true);
+    }
+
+    @Override
+    @Nullable
+    public String getDescription() {
+        return descriptionHandle == EpisodeBodyStore.NONE ? description : readBody(descriptionHandle, false);
     }
 
     /**
@@ -235,7 +309,14 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      */
     @Nullable
     public SortedMap<Integer, String> getChapters() {
-        return chapters == null ? null : new TreeMap<>(chapters);
+        if (chapterStarts == null)
+            return null;
+
+        final SortedMap<Integer, String> chapters = new TreeMap<>();
+        for (int index = 0; index < chapterStarts.length; index++)
+            chapters.put(chapterStarts[index], chapterTitles[index]);
+
+        return chapters;
     }
 
     @Override
@@ -266,7 +347,8 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
      * @return <code>true</code> iff matches
      */
     public boolean equalByUrl(String aUrl) {
-        return aUrl != null && mediaUrl != null && mediaUrl.equals(normalizeUrl(aUrl));
+        return aUrl != null && mediaUrl != null &&
+                mediaUrl.equals(UrlCanonicalizer.getInstance().canonicalizeMediaUrl(aUrl));
     }
 
     @Override
@@ -286,11 +368,13 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
         // We mainly compare by the publication date of the episodes. If these
         // are not available or are equal, we check for their position in the
         // podcast. As a last resort we simply return something <> 0.
-        if (this.pubDate != null && another.pubDate != null)
-            result = another.pubDate.compareTo(pubDate);
-        else if (this.pubDate == null && another.pubDate != null)
+        final boolean hasPubDate = pubDate != DateCodec.INVALID;
+        final boolean anotherHasPubDate = another.pubDate != DateCodec.INVALID;
+        if (hasPubDate && anotherHasPubDate)
+            result = another.pubDate < pubDate ? -1 : (another.pubDate == pubDate ? 0 : 1);
+        else if (!hasPubDate && anotherHasPubDate)
             result = -1;
-        else if (this.pubDate != null) // Always true: && another.pubDate == null)
+        else if (hasPubDate) // Always true: && !anotherHasPubDate)
             result = 1;
 
         // This should never be zero unless the episodes are equal, since a
@@ -327,38 +411,114 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
 
         // Look at all start tags of this item
         while (parser.nextTag() == XmlPullParser.START_TAG) {
-            final String tagName = parser.getName().toLowerCase(Locale.US);
-
-            if (tagName.equals(RSS.TITLE))
-                name = Html.fromHtml(parser.nextText().trim()).toString();
-            else if (tagName.equals(RSS.GUID))
-                guid = parser.nextText();
-            else if (tagName.equals(RSS.LINK))
-                url = parser.nextText();
-            else if (tagName.equals(RSS.EXPLICIT))
-                explicit = parseExplicit(parser.nextText());
-            else if (tagName.equals(RSS.DATE) && pubDate == null)
-                pubDate = parseDate(parser.nextText());
-            else if (tagName.equals(RSS.PUBDATE))
-                pubDate = parseDate(parser.nextText());
-            else if (tagName.equals(RSS.DURATION))
-                duration = parseDuration(parser.nextText());
-            else if (tagName.equals(RSS.DESCRIPTION) || tagName.equals(RSS.SUMMARY))
-                description = parseDescription(parser.nextText());
-            else if (isContentEncodedTag(parser))
-                content = parser.nextText();
-            else if (tagName.equals(RSS.ENCLOSURE))
-                parseEnclosure(parser);
-            else if (tagName.equals(RSS.CHAPTERS))
-                parseChapters(parser);
-            else
-                ParserUtils.skipSubTree(parser);
+            switch (FeedTags.lookup(parser)) {
+                case FeedTags.TITLE:
+                    name = HtmlDecoder.decode(parser.nextText());
+                    break;
+                case FeedTags.GUID:
+                    guid = parser.nextText();
+                    break;
+                case FeedTags.LINK:
+                    url = parser.nextText();
+                    break;
+                case FeedTags.EXPLICIT:
+                    explicit = parseExplicit(parser.nextText());
+                    break;
+                case FeedTags.DATE:
+                    if (pubDate == DateCodec.INVALID)
+                        pubDate = parsePubTime(parser.nextText());
+                    else
+                        ParserUtils.skipSubTree(parser);
+                    break;
+                case FeedTags.PUBDATE:
+                    pubDate = parsePubTime(parser.nextText());
+                    break;
+                case FeedTags.DURATION:
+                    duration = parseDuration(parser.nextText());
+                    break;
+                case FeedTags.DESCRIPTION:
+                case FeedTags.SUMMARY:
+                    description = parseDescription(parser.nextText());
+                    break;
+                case FeedTags.CONTENT_ENCODED:
+                    content = parser.nextText();
+                    break;
+                case FeedTags.ENCLOSURE:
+                    parseEnclosure(parser);
+                    break;
+                case FeedTags.CHAPTERS:
+                    parseChapters(parser);
+                    break;
+                default:
+                    ParserUtils.skipSubTree(parser);
+            }
         }
 
         // Make sure we end at item tag
         parser.require(XmlPullParser.END_TAG, "", RSS.ITEM);
     }
 
+    /**
+     * Move the description and content texts out of the heap. Texts not
+     * written (too short, store problems) simply stay in memory.
+     *
+     * @param writer The writer to use.
+     */
+    void storeBodies(@NonNull EpisodeBodyStore.Writer writer) {
+        descriptionHandle = writer.write(description);
+        if (descriptionHandle != EpisodeBodyStore.NONE)
+            description = null;
+
+        contentHandle = writer.write(content);
+        if (contentHandle != EpisodeBodyStore.NONE)
+            content = null;
+    }
+
+    /**
+     * Create a copy of this episode with its texts written by the given
+     * writer, so the segments the texts are in now can be retired.
+     *
+     * @param writer The writer to use.
+     * @return The copy, or this episode if none of its texts are stored
+     * outside the writer's segment.
+     */
+    @NonNull
+    Episode moveBodies(@NonNull EpisodeBodyStore.Writer writer) {
+        if ((descriptionHandle == EpisodeBodyStore.NONE || writer.owns(descriptionHandle)) &&
+                (contentHandle == EpisodeBodyStore.NONE || writer.owns(contentHandle)))
+            return this;
+
+        final Episode moved = new Episode(this, index);
+        moved.description = getDescription();
+        moved.content = getLongDescription();
+        moved.descriptionHandle = EpisodeBodyStore.NONE;
+        moved.contentHandle = EpisodeBodyStore.NONE;
+        moved.storeBodies(writer);
+
+        return moved;
+    }
+
+    private String readBody(long handle, boolean isContent) {
+        final String body = EpisodeBodyStore.getInstance().read(handle);
+        if (body != null)
+            return body;
+
+        // The text is gone because the podcast has been parsed again since
+        // this episode was created, use the text from the current episode.
+        // Only one step: If that text is gone as well, so is ours.
+        for (Episode episode : podcast.getEpisodes())
+            if (episode != this && equals(episode)) {
+                final long current = isContent ? episode.contentHandle : episode.descriptionHandle;
+
+                if (current == EpisodeBodyStore.NONE)
+                    return isContent ? episode.content : episode.description;
+                else
+                    return current == handle ? null : EpisodeBodyStore.getInstance().read(current);
+            }
+
+        return null;
+    }
+
     private String parseDescription(String candidate) {
         if (candidate != null)
             candidate = candidate.trim();
@@ -391,7 +551,23 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
 
     private String parseMediaType(String attributeValue) {
         return attributeValue != null && attributeValue.trim().length() > 0 ?
-                attributeValue.trim().toLowerCase(Locale.US) : null;
+                internMediaType(attributeValue.trim().toLowerCase(Locale.US)) : null;
+    }
+
+    private static String internMediaType(String mediaType) {
+        if (mediaType == null)
+            return null;
+
+        // Feeds only use a handful of media types, but do not let
+        // some broken feed fill the map with garbage
+        final String shared = mediaTypes.get(mediaType);
+        if (shared != null)
+            return shared;
+        else if (mediaTypes.size() < MAX_MEDIA_TYPES) {
+            final String previous = mediaTypes.putIfAbsent(mediaType, mediaType);
+            return previous == null ? mediaType : previous;
+        } else
+            return mediaType;
     }
 
     private int parseFileSize(String attributeValue) {
@@ -406,24 +582,32 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
     @Nullable
     @Override
     protected Date parseDate(@NonNull String dateString) {
+        final long millis = parsePubTime(dateString);
+
+        return millis == DateCodec.INVALID ? null : new Date(millis);
+    }
+
+    private long parsePubTime(@NonNull String dateString) {
         // For live streams set pubDate to the maximum value, see getPubDate()
         return RSS.DATE_NOW.equalsIgnoreCase(dateString) ?
-                new Date(Long.MAX_VALUE) : super.parseDate(dateString);
+                Long.MAX_VALUE : DateCodec.parse(dateString);
     }
 
     protected int parseDuration(@NonNull String durationString) {
         int result = -1;
 
         try {
-            // Duration simply given as number of seconds
-            result = Integer.parseInt(durationString);
-        } catch (NumberFormatException e) {
-            // The duration is given as something like "1:12:34" instead
-            try {
+            // The duration is given as ISO 8601 duration like "PT1H12M34S"
+            if (durationString.length() > 0 && durationString.charAt(0) == 'P')
+                result = unformatIsoDuration(durationString) / 1000;
+            // The duration is given as something like "1:12:34"
+            else if (durationString.indexOf(':') >= 0 || durationString.indexOf('.') >= 0)
                 result = unformatTime(durationString) / 1000;
-            } catch (ParseException pex) {
-                // Pass, duration not available or null
-            }
+            // Duration simply given as number of seconds
+            else
+                result = Integer.parseInt(durationString);
+        } catch (NumberFormatException | ParseException | NullPointerException e) {
+            // Pass, duration not available or null
         }
 
         // Never return zero as a duration since that does not make sense.
@@ -432,15 +616,13 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
 
     protected void parseChapters(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
         // Only the first chapters definition is used
-        if (chapters == null) {
+        if (chapterStarts == null) {
 
-            // Init chapter list
-            this.chapters = new TreeMap<>();
+            // Collect chapters sorted and without duplicate start times
+            final SortedMap<Integer, String> chapters = new TreeMap<>();
             // Parse feed and find all chapters
             while (parser.nextTag() == XmlPullParser.START_TAG) {
-                final String tagName = parser.getName().toLowerCase(Locale.US);
-
-                if (tagName.equals(RSS.CHAPTER)) {
+                if (FeedTags.lookup(parser.getName()) == FeedTags.CHAPTER) {
                     try {
                         final String title = parser.getAttributeValue("", RSS.CHAPTER_TITLE);
                         final int startsAt = unformatTime(parser.getAttributeValue("", RSS.CHAPTER_START));
@@ -456,22 +638,25 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
                     ParserUtils.skipSubTree(parser);
             }
 
-            // Reset chapters if empty
-            if (chapters.size() == 0)
-                chapters = null;
-        }
-    }
+            // Keep the chapters as plain arrays, if any
+            if (chapters.size() > 0) {
+                this.chapterStarts = new int[chapters.size()];
+                this.chapterTitles = new String[chapters.size()];
 
-    protected boolean isContentEncodedTag(@NonNull XmlPullParser parser) {
-        return RSS.CONTENT_ENCODED.equals(parser.getName()) &&
-                RSS.CONTENT_NAMESPACE.equals(parser.getNamespace(parser.getPrefix()));
+                int index = 0;
+                for (Map.Entry<Integer, String> chapter : chapters.entrySet()) {
+                    chapterStarts[index] = chapter.getKey();
+                    chapterTitles[index++] = chapter.getValue();
+                }
+            }
+        }
     }
 
     private boolean isBetterEnclosure(String type) {
         final boolean isMediaFile = type != null &&
                 (type.startsWith(RSS.MEDIA_TYPE_AUDIO) || type.startsWith(RSS.MEDIA_TYPE_VIDEO));
         final boolean alreadyHasMatchingMediaFile = mediaType != null &&
-                mediaType.startsWith(BuildConfig.FLAVOR_media);
+                mediaType.startsWith(FeedPlatform.getPreferredMediaType());
 
         return isMediaFile && !alreadyHasMatchingMediaFile;
     }
@@ -479,22 +664,6 @@ public class Episode extends FeedEntity implements Comparable<Episode> {
     @Override
     @Nullable
     protected String normalizeUrl(@Nullable String spec) {
-        spec = super.normalizeUrl(spec);
-
-        // Try to rescue bad media file URLs
-        if (spec != null && !spec.startsWith("http"))
-            try {
-                final URL url = new URL(spec);
-                final String scheme = url.getProtocol();
-
-                if (!scheme.equals("http") && !scheme.equals("https"))
-                    spec = new URL("http", url.getHost(), -1, url.getFile()).toExternalForm();
-            } catch (MalformedURLException mue) {
-                // we simply try returning the original string starting with http://
-                spec = "http://" + spec;
-            }
-
-
-        return spec;
+        return UrlCanonicalizer.getInstance().canonicalizeMediaUrl(spec);
     }
 }
@@ -18,8 +18,7 @@
 
 package com.podcatcher.deluxe.model.types;
 
-import com.podcatcher.deluxe.model.EpisodeManager;
-import com.podcatcher.deluxe.model.PodcastManager;
+import com.podcatcher.deluxe.model.PodcastDirectory;
 
 import android.support.annotation.NonNull;
 
@@ -29,7 +28,7 @@ import java.util.Date;
  * Instances of this type represent additional information on episodes that is not
  * necessarily derived from the podcast feed, but from the user's interaction with the
  * episode, such as downloaded files, resume times, old/new status. This should
- * not be used outside the model, use {@link EpisodeManager} instead.
+ * not be used outside the model, use the episode manager instead.
  */
 public class EpisodeMetadata {
 
@@ -126,18 +125,18 @@ public class EpisodeMetadata {
      * Create an actual episode object from the metadata.
      *
      * @param episodeUrl URL for the new episode to be identified by.
+     * @param directory  The podcasts loaded, used to find existing podcast
+     *                   and episode objects before creating new ones.
      * @return An episode object or <code>null</code> if something goes wrong.
      */
     @NonNull
-    public Episode marshalEpisode(String episodeUrl) {
-        PodcastManager manager = PodcastManager.getInstance();
-
+    public Episode marshalEpisode(String episodeUrl, @NonNull PodcastDirectory directory) {
         // Try to get episode from the podcast manager
-        Episode result = manager.findEpisodeForUrl(episodeUrl, podcastUrl);
+        Episode result = directory.findEpisodeForUrl(episodeUrl, podcastUrl);
         // No luck, create episode
         if (result == null) {
             // Try to get podcast from the podcast manager
-            Podcast podcast = manager.findPodcastForUrl(podcastUrl);
+            Podcast podcast = directory.findPodcastForUrl(podcastUrl);
             // No luck, create podcast
             if (podcast == null)
                 podcast = new Podcast(podcastName, podcastUrl);
@@ -18,17 +18,13 @@
 
 package com.podcatcher.deluxe.model.types;
 
+import com.podcatcher.deluxe.model.DateCodec;
+import com.podcatcher.deluxe.model.UrlCanonicalizer;
 import com.podcatcher.deluxe.model.tags.RSS;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
@@ -39,26 +35,6 @@ import java.util.Locale;
  */
 public abstract class FeedEntity {
 
-    /**
-     * The date format used by RSS feeds
-     */
-    private static final String DATE_FORMAT_TEMPLATE = "EEE, dd MMM yy HH:mm:ss zzz";
-    /**
-     * Our formatter used when reading the episode item's date string
-     */
-    private static final SimpleDateFormat DATE_FORMATTER =
-            new SimpleDateFormat(DATE_FORMAT_TEMPLATE, Locale.US);
-    /**
-     * The alternative date formats supported because they are used by some
-     * feeds, these are all tried in the given order if the default fails
-     */
-    private static final String[] DATE_FORMAT_TEMPLATE_ALTERNATIVES = {
-            "EEE, dd MMM yy",
-            "yy-MM-dd",
-            "dd MMM yy HH:mm:ss zzz",
-            "EEE,dd MMM yy HH:mm:ss zzz"
-    };
-
     /**
      * Name of the entity
      */
@@ -139,38 +115,11 @@ public abstract class FeedEntity {
      * @return The same URL string with unchanged semantics, but normalized
      * syntax. When not a valid URL or <code>null</code>, the string
      * given is returned unaltered.
+     * @see UrlCanonicalizer
      */
     @Nullable
     protected String normalizeUrl(final @Nullable String spec) {
-        try {
-            // Trim white spaces, normalize path, throw exception if mal-formed
-            final URL url = new URI(spec.trim()).normalize().toURL();
-
-            // Make sure protocol and server are lower case
-            final String scheme = url.getProtocol().toLowerCase(Locale.US);
-            final String host = url.getHost().toLowerCase(Locale.US);
-
-            // Normalize path to be at least "/"
-            String path = url.getPath();
-            if (path == null || path.isEmpty())
-                path = "/";
-            else if (path.length() > 1 && path.endsWith("/") && url.getQuery() == null)
-                path = path.substring(0, path.length() - 1);
-
-            // Look at ports and only keep non-defaults
-            boolean needsPort = url.getPort() != -1;
-            if ((scheme.equals("http") && url.getPort() == 80) ||
-                    (scheme.equals("https") && url.getPort() == 443))
-                needsPort = false;
-
-            // Reconstruct the string
-            return scheme + "://" + host + (needsPort ? ":" + url.getPort() : "")
-                    + path + (url.getQuery() == null ? "" : "?" + url.getQuery());
-        } catch (MalformedURLException | NullPointerException | URISyntaxException
-                | IllegalArgumentException e) {
-            // We simply return the original string
-            return spec;
-        }
+        return UrlCanonicalizer.getInstance().canonicalize(spec);
     }
 
     /**
@@ -188,32 +137,16 @@ public abstract class FeedEntity {
 
     /**
      * Parse a string into a date. Can be used for last feed updates or
-     * publication dates. The method will try to read different formats.
+     * publication dates. The method will read RFC 822 (with the usual
+     * deviations) and ISO 8601 dates, see {@link DateCodec}.
      *
      * @param dateString The string from the RSS/XML feed to parse.
      * @return The date or <code>null</code> if the string could not be parsed.
      */
     @Nullable
     protected Date parseDate(@NonNull String dateString) {
-        // Make sure to remove any whitespaces that might make parsing fail
-        dateString = dateString.trim();
-
-        try {
-            // SimpleDateFormat is not thread safe
-            synchronized (DATE_FORMATTER) {
-                return DATE_FORMATTER.parse(dateString);
-            }
-        } catch (ParseException e) {
-            // The default format is not available, try all the other formats we support...
-            for (String format : DATE_FORMAT_TEMPLATE_ALTERNATIVES)
-                try {
-                    return new SimpleDateFormat(format, Locale.US).parse(dateString);
-                } catch (ParseException e1) {
-                    // Does not fit the format, pass and try next
-                }
-        }
-
-        // None of the formats matched
-        return null;
+        final long millis = DateCodec.parse(dateString);
+
+        return millis == DateCodec.INVALID ? null : new Date(millis);
     }
 }
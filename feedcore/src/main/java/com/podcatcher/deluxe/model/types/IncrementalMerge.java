@@ -0,0 +1,196 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.types;
+
+import com.podcatcher.deluxe.model.DateCodec;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets {@link Podcast#parse(org.xmlpull.v1.XmlPullParser)} stop reading a
+ * feed sorted newest-first once it reaches the episodes it already has. The
+ * episodes parsed are offered one by one in feed order. Once
+ * {@link #KNOWN_IN_A_ROW} of them in a row turn out to be the top of the
+ * known episode list, the remaining feed can be skipped: The new episodes
+ * parsed so far go on top of the known episodes from that point on.
+ * <p>
+ * As soon as the feed does not look like that (episodes not sorted by date,
+ * known episodes in a different order or new episodes further down the
+ * feed), the merge gives up and the feed is parsed completely.
+ * </p>
+ */
+class IncrementalMerge {
+
+    /**
+     * The number of known episodes in a row needed to stop parsing
+     */
+    static final int KNOWN_IN_A_ROW = 3;
+
+    /**
+     * The episodes known from the last parse, in feed order
+     */
+    private final List<Episode> known;
+    /**
+     * The positions of the known episodes by guid
+     */
+    private final Map<String, Integer> positionByGuid;
+    /**
+     * The positions of the known episodes by media URL
+     */
+    private final Map<String, Integer> positionByUrl;
+
+    /**
+     * Flag indicating whether the feed still looks like it can be merged
+     */
+    private boolean possible = true;
+    /**
+     * The publication date of the episode offered last (millis)
+     */
+    private long lastPubDate = Long.MAX_VALUE;
+    /**
+     * The position in the known list of the first episode in the current run
+     */
+    private int runStart = -1;
+    /**
+     * The number of known episodes in a row seen
+     */
+    private int run = 0;
+
+    /**
+     * Create a merge for the given episodes.
+     *
+     * @param known The episodes from the last parse, in feed order. This list
+     *              is not copied and must not change while the merge is in use.
+     */
+    IncrementalMerge(@NonNull List<Episode> known) {
+        this.known = known;
+        this.positionByGuid = new HashMap<>(known.size() * 2);
+        this.positionByUrl = new HashMap<>(known.size() * 2);
+
+        for (int position = known.size() - 1; position >= 0; position--) {
+            final Episode episode = known.get(position);
+
+            if (episode.getGuid() != null)
+                positionByGuid.put(episode.getGuid(), position);
+            if (episode.getMediaUrl() != null)
+                positionByUrl.put(episode.getMediaUrl(), position);
+        }
+    }
+
+    /**
+     * Look at the next episode parsed from the feed.
+     *
+     * @param episode The episode, as parsed and added to the new episode list.
+     * @return <code>true</code> iff parsing can stop now and
+     * {@link #merge(List)} should be called.
+     */
+    boolean offer(@NonNull Episode episode) {
+        if (!possible)
+            return false;
+
+        // Only feeds sorted newest-first work, we cannot tell without dates
+        final long pubDate = episode.getPubTime();
+        if (pubDate == DateCodec.INVALID || pubDate > lastPubDate)
+            return giveUp();
+        lastPubDate = pubDate;
+
+        final int position = find(episode);
+        if (position < 0) {
+            // New episodes need to be on top of all known ones
+            if (run > 0)
+                giveUp();
+
+            return false;
+        } else if (run > 0 && position != runStart + run)
+            // Known episodes need to be in the same order as before
+            return giveUp();
+
+        if (run == 0)
+            runStart = position;
+
+        return ++run >= KNOWN_IN_A_ROW;
+    }
+
+    /**
+     * Create the merged episode list. Call this only after
+     * {@link #offer(Episode)} returned <code>true</code>.
+     *
+     * @param parsed The episodes parsed, in feed order. The last
+     *               {@link #KNOWN_IN_A_ROW} are the known ones offered last.
+     * @return The new episode list: The new episodes parsed followed by the
+     * known episodes from the first one found in the feed on. Known episodes
+     * that moved in the feed are replaced by copies at their new position.
+     */
+    @NonNull
+    List<Episode> merge(@NonNull List<Episode> parsed) {
+        final int head = parsed.size() - run;
+        final List<Episode> result = new ArrayList<>(head + known.size() - runStart);
+        result.addAll(parsed.subList(0, head));
+
+        final int shift = parsed.get(head).getPositionInPodcast() -
+                known.get(runStart).getPositionInPodcast();
+        for (Episode episode : known.subList(runStart, known.size())) {
+            final int index = episode.getPositionInPodcast();
+
+            result.add(shift == 0 || index < 0 ? episode :
+                    new Episode(episode, Math.max(0, index + shift)));
+        }
+
+        return result;
+    }
+
+    /**
+     * Check whether the given episodes are sorted newest-first.
+     *
+     * @param episodes The episodes in feed order.
+     * @return <code>true</code> iff all episodes have a publication date and
+     * no episode is newer than the one before it.
+     */
+    static boolean isSortedNewestFirst(@NonNull List<Episode> episodes) {
+        long lastPubDate = Long.MAX_VALUE;
+
+        for (Episode episode : episodes) {
+            final long pubDate = episode.getPubTime();
+            if (pubDate == DateCodec.INVALID || pubDate > lastPubDate)
+                return false;
+
+            lastPubDate = pubDate;
+        }
+
+        return true;
+    }
+
+    private int find(Episode episode) {
+        Integer position = episode.getGuid() == null ? null : positionByGuid.get(episode.getGuid());
+        if (position == null && episode.getMediaUrl() != null)
+            position = positionByUrl.get(episode.getMediaUrl());
+
+        return position == null ? -1 : position;
+    }
+
+    private boolean giveUp() {
+        possible = false;
+        return false;
+    }
+}
@@ -18,14 +18,16 @@
 
 package com.podcatcher.deluxe.model.types;
 
+import com.podcatcher.deluxe.model.EpisodeBodyStore;
+import com.podcatcher.deluxe.model.FeedTags;
+import com.podcatcher.deluxe.model.HtmlDecoder;
+import com.podcatcher.deluxe.model.ListSnapshot;
 import com.podcatcher.deluxe.model.ParserUtils;
+import com.podcatcher.deluxe.model.UrlCanonicalizer;
 import com.podcatcher.deluxe.model.tags.RSS;
 
-import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.Html;
-import android.util.Base64;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -35,10 +37,10 @@ import java.nio.charset.Charset;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The podcast type. This represents the most important type in the podcatcher
@@ -70,6 +72,18 @@ import java.util.Set;
  */
 public class Podcast extends FeedEntity implements Comparable<Podcast> {
 
+    /**
+     * The time after which the feed is parsed completely again, even if it
+     * could be parsed incrementally (millis). Episodes removed from the end
+     * of the feed only disappear on a complete parse.
+     */
+    public static final long FULL_PARSE_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    /**
+     * The number of body store segments the episode texts can be spread over,
+     * before an incremental parse moves them all into its own segment
+     */
+    private static final int MAX_BODY_SEGMENTS = 8;
+
     /**
      * Broadcast language(s)
      */
@@ -125,9 +139,44 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      */
     protected Date lastLoaded;
     /**
-     * The podcasts list of episodes
+     * The entity tag the server returned for the feed when last loaded
+     */
+    protected String eTag;
+    /**
+     * The last modified date (millis) the server returned for the feed
+     * when last loaded, -1 if not available
+     */
+    protected long lastModified = -1;
+    /**
+     * The hash over the feed content when last parsed, zero if not available
+     */
+    protected long contentHash = 0;
+    /**
+     * The podcasts list of episodes, replaced on each change
+     */
+    protected volatile ListSnapshot<Episode> episodes = ListSnapshot.empty();
+    /**
+     * Flag indicating whether the episode list is just what the last parse
+     * found on the feed, i.e. no pages were added and no episodes removed since
+     */
+    protected boolean episodesMatchFeed = false;
+    /**
+     * Flag indicating whether the last complete parse found the feed sorted newest-first
      */
-    protected List<Episode> episodes = new ArrayList<>();
+    protected boolean feedSortedNewestFirst = false;
+    /**
+     * The point in time the feed was last parsed completely (millis)
+     */
+    protected long lastFullParse = 0;
+    /**
+     * The ids of the body store segments holding the texts of our episodes
+     */
+    protected List<Integer> bodySegments = new ArrayList<>();
+    /**
+     * The body store writer for the episode texts while parsing,
+     * <code>null</code> otherwise or if the store is not available
+     */
+    private EpisodeBodyStore.Writer bodyWriter;
 
     /**
      * The count of failed load attempts
@@ -245,7 +294,7 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
             final String userpass = username + ":" + password;
             final byte[] authBytes = userpass.getBytes(Charset.forName("UTF-8"));
 
-            result = "Basic " + Base64.encodeToString(authBytes, Base64.NO_WRAP);
+            result = "Basic " + ParserUtils.encodeBase64(authBytes);
         }
 
         return result;
@@ -256,14 +305,18 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      * <code>null</code> but an empty list when encountering problems. Set and
      * parse the RSS file before expecting any results.
      *
+     * <p>
+     * The list returned is an immutable snapshot, changes to the podcast's
+     * episodes publish a new one. Hold on to its version to find out
+     * whether the episodes changed since.
+     * </p>
+     *
      * @return The list of episodes as listed in the feed.
      * @see #parse(XmlPullParser)
      */
     @NonNull
-    public List<Episode> getEpisodes() {
-        // Need to return a copy, so nobody can change this on us and changes
-        // made in the model do not make problems in the UI
-        return new ArrayList<>(episodes);
+    public ListSnapshot<Episode> getEpisodes() {
+        return episodes;
     }
 
     /**
@@ -274,13 +327,15 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      * @return The number of clean episodes left.
      */
     public int removeExplicitEpisodes() {
-        Iterator<Episode> episodeIterator = episodes.iterator();
+        final List<Episode> cleanEpisodes = new ArrayList<>(episodes.size());
 
-        while (episodeIterator.hasNext()) {
-            final Episode episode = episodeIterator.next();
+        for (Episode episode : episodes)
+            if (!episode.isExplicit())
+                cleanEpisodes.add(episode);
 
-            if (episode.isExplicit())
-                episodeIterator.remove();
+        if (cleanEpisodes.size() < episodes.size()) {
+            this.episodes = episodes.next(cleanEpisodes);
+            this.episodesMatchFeed = false;
         }
 
         return episodes.size();
@@ -378,6 +433,81 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
         return lastLoaded == null ? null : new Date(lastLoaded.getTime());
     }
 
+    /**
+     * Mark the podcast as loaded without parsing its feed. Use this if the
+     * feed is known to be unchanged since the last call to
+     * {@link #parse(XmlPullParser)}, i.e. the server replied "not modified".
+     * This will not do anything if the podcast has never been parsed.
+     */
+    public void refreshLastLoaded() {
+        if (lastLoaded != null)
+            this.lastLoaded = new Date();
+    }
+
+    /**
+     * @return The entity tag the server sent for the podcast's feed
+     * when last loaded, might be <code>null</code>.
+     */
+    @Nullable
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return The last modified date (millis) the server sent for the
+     * podcast's feed when last loaded, -1 if not available.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Set the validators used to make conditional requests for the
+     * podcast's feed.
+     *
+     * @param eTag         The entity tag, give <code>null</code> to reset.
+     * @param lastModified The last modified date in millis, give values
+     *                     below or equal zero to reset.
+     * @return <code>true</code> iff this changed any of the validators.
+     */
+    public boolean setValidators(@Nullable String eTag, long lastModified) {
+        final long newLastModified = lastModified > 0 ? lastModified : -1;
+        final boolean changed = newLastModified != this.lastModified ||
+                (eTag == null ? this.eTag != null : !eTag.equals(this.eTag));
+
+        this.eTag = eTag;
+        this.lastModified = newLastModified;
+
+        return changed;
+    }
+
+    /**
+     * @return Whether the podcast has any validators to make conditional
+     * requests with.
+     * @see #setValidators(String, long)
+     */
+    public boolean hasValidators() {
+        return eTag != null || lastModified > 0;
+    }
+
+    /**
+     * @return The hash over the feed file content as set by
+     * {@link #setContentHash(long)}, zero if not available.
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Set the hash over the feed file content last parsed. This can be used
+     * to detect unchanged feeds and to skip parsing them.
+     *
+     * @param contentHash The hash value, give zero to reset.
+     */
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
     /**
      * Reset the failed count to zero.
      */
@@ -428,7 +558,8 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      * @return <code>true</code> iff matches
      */
     public boolean equalByUrl(String aUrl) {
-        return aUrl != null && this.url != null && this.url.equals(normalizeUrl(aUrl));
+        return aUrl != null && this.url != null &&
+                this.url.equals(UrlCanonicalizer.getInstance().canonicalizeFeedUrl(aUrl));
     }
 
     @Override
@@ -502,18 +633,21 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
         String result = relativeUrl;
 
         // Rewrite logo url to be absolute
-        if (url != null && relativeUrl != null && !relativeUrl.isEmpty() &&
-                Uri.parse(relativeUrl).isRelative()) {
-            final Uri podcastUrl = Uri.parse(url);
-            final String prefix = podcastUrl.getScheme() + "://" + podcastUrl.getAuthority();
+        final int authorityStart = url == null ? -1 : url.indexOf("://");
+        if (authorityStart > 0 && relativeUrl != null && !relativeUrl.isEmpty() &&
+                !hasScheme(relativeUrl)) {
+            final int pathStart = indexOfAny(url, "/?#", authorityStart + 3);
+            final String prefix = pathStart < 0 ? url : url.substring(0, pathStart);
 
             if (relativeUrl.startsWith("/"))
                 result = prefix + relativeUrl;
             else {
-                final String path = podcastUrl.getPath();
+                // Replace the last path segment of the podcast URL
+                final int pathEnd = pathStart < 0 ? -1 : indexOfAny(url, "?#", pathStart);
+                final String path = pathStart < 0 || pathStart == pathEnd ? "/" :
+                        url.substring(pathStart, pathEnd < 0 ? url.length() : pathEnd);
 
-                result = prefix + path.substring(0, path.length()
-                        - podcastUrl.getLastPathSegment().length()) + relativeUrl;
+                result = prefix + path.substring(0, path.lastIndexOf('/') + 1) + relativeUrl;
             }
         }
 
@@ -528,6 +662,14 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      * data is preserved and will only change if the feed has actually changed.
      * However, episode information <em>is</em> preserved if parsing fails. In
      * this case the episode list will not be altered.
+     * <p>
+     * If the feed was parsed before, is sorted newest-first (all of it when
+     * last parsed completely) and only has new episodes on top, parsing stops once it reaches the episodes already
+     * known. The new episodes then go on top of the known ones, see
+     * {@link IncrementalMerge}. Channel information following the episodes
+     * is not read in this case. The feed is parsed completely if that does not
+     * work out and at least every {@link #FULL_PARSE_INTERVAL}.
+     * </p>
      *
      * @param parser Parser used to read the RSS/XML file.
      * @return The value of the new-feed-url tag given on the feed, if any.
@@ -536,9 +678,13 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      */
     @Nullable
     public String parse(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
-        final List<Episode> newEpisodes = new ArrayList<>();
+        final ArrayList<Episode> newEpisodes = new ArrayList<>();
+        final IncrementalMerge merge = canParseIncrementally() ? new IncrementalMerge(episodes) : null;
+        boolean reachedKnownEpisodes = false;
+        boolean parsed = false;
         String result = null;
         this.nextPage = null;
+        this.bodyWriter = EpisodeBodyStore.getInstance().newWriter();
 
         try {
             // Start parsing
@@ -546,53 +692,71 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
             int eventType = parser.next();
             int episodeIndex = 0;
 
-            // Read complete document
-            while (eventType != XmlPullParser.END_DOCUMENT) {
+            // Read complete document, unless we reach the episodes known
+            while (eventType != XmlPullParser.END_DOCUMENT && !reachedKnownEpisodes) {
                 // We only need start tags here
                 if (eventType == XmlPullParser.START_TAG) {
-                    final String tagName = parser.getName().toLowerCase(Locale.US);
+                    final int tag = FeedTags.lookup(parser);
 
-                    switch (tagName) {
-                        case RSS.TITLE:
+                    switch (tag) {
+                        case FeedTags.TITLE:
                             if (name == null || name.trim().isEmpty())
-                                name = Html.fromHtml(parser.nextText().trim()).toString();
+                                name = HtmlDecoder.decode(parser.nextText());
                             break;
-                        case RSS.LINK:
+                        case FeedTags.LINK:
                             parseLink(parser);
                             break;
-                        case RSS.EXPLICIT:
+                        case FeedTags.EXPLICIT:
                             explicit = parseExplicit(parser.nextText());
                             break;
-                        case RSS.NEW_URL:
+                        case FeedTags.NEW_URL:
                             result = normalizeUrl(parser.nextText());
                             // Make sure this is a good URL to move to
                             if (result == null || equalByUrl(result) || !result.startsWith("http"))
                                 result = null;
 
                             break;
-                        case RSS.IMAGE:
+                        case FeedTags.IMAGE:
                             parseLogo(parser);
                             break;
-                        case RSS.THUMBNAIL:
+                        case FeedTags.THUMBNAIL:
                             if (!hasLogoUrl())
                                 logoUrl = parser.getAttributeValue("", RSS.URL);
                             break;
-                        case RSS.ITEM:
+                        case FeedTags.ITEM:
+                            final int episodeCount = newEpisodes.size();
                             parseAndAddEpisode(parser, newEpisodes, episodeIndex++);
+
+                            reachedKnownEpisodes = merge != null && newEpisodes.size() > episodeCount &&
+                                    merge.offer(newEpisodes.get(episodeCount));
                             break;
                         default:
-                            parse(parser, tagName);
+                            parse(parser, FeedTags.toLowerCase(parser.getName(), tag));
                     }
                 }
 
                 // Done, get next parsing event
-                eventType = parser.next();
+                if (!reachedKnownEpisodes)
+                    eventType = parser.next();
             }
 
             // Parsing completed without errors, mark as updated
-            this.episodes = newEpisodes;
+            if (reachedKnownEpisodes)
+                this.episodes = episodes.next(compactBodies(merge.merge(newEpisodes)));
+            else {
+                this.episodes = episodes.next(newEpisodes);
+                this.feedSortedNewestFirst = IncrementalMerge.isSortedNewestFirst(newEpisodes);
+                this.lastFullParse = System.currentTimeMillis();
+                // None of the old episode texts are needed anymore
+                EpisodeBodyStore.getInstance().retire(bodySegments);
+                bodySegments.clear();
+            }
+            this.episodesMatchFeed = true;
             this.lastLoaded = new Date();
+            parsed = true;
         } finally {
+            closeBodyWriter(parsed);
+
             // Make sure name is not empty
             if (name == null || name.trim().isEmpty())
                 name = url;
@@ -616,30 +780,51 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
      */
     public void parseEpisodes(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
         this.nextPage = null;
+        this.episodesMatchFeed = false;
+
+        this.bodyWriter = EpisodeBodyStore.getInstance().newWriter();
 
-        int episodeIndex = episodes.size();
-        int eventType = parser.next();
-
-        // Read complete document
-        while (eventType != XmlPullParser.END_DOCUMENT) {
-            // We only need start tags here
-            if (eventType == XmlPullParser.START_TAG) {
-                final String tagName = parser.getName().toLowerCase(Locale.US);
-
-                switch (tagName) {
-                    case RSS.LINK:
-                        parseLink(parser);
-                    case RSS.ITEM:
-                        parseAndAddEpisode(parser, episodes, episodeIndex++);
-                        break;
+        final List<Episode> pageEpisodes = new ArrayList<>(episodes);
+        int episodeIndex = pageEpisodes.size();
+
+        try {
+            int eventType = parser.next();
+
+            // Read complete document
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                // We only need start tags here
+                if (eventType == XmlPullParser.START_TAG) {
+                    switch (FeedTags.lookup(parser)) {
+                        case FeedTags.LINK:
+                            parseLink(parser);
+                            break;
+                        case FeedTags.ITEM:
+                            parseAndAddEpisode(parser, pageEpisodes, episodeIndex++);
+                            break;
+                    }
                 }
-            }
 
-            // Done, get next parsing event
-            eventType = parser.next();
+                // Done, get next parsing event
+                eventType = parser.next();
+            }
+        } finally {
+            // Episodes added before any problems stay, so do their texts
+            closeBodyWriter(true);
+            if (pageEpisodes.size() > episodes.size())
+                this.episodes = episodes.next(pageEpisodes);
         }
     }
 
+    /**
+     * @return Whether the next {@link #parse(XmlPullParser)} may stop once it
+     * reaches the episodes already known.
+     */
+    protected boolean canParseIncrementally() {
+        return episodesMatchFeed && feedSortedNewestFirst && !expanded &&
+                episodes.size() >= IncrementalMerge.KNOWN_IN_A_ROW &&
+                System.currentTimeMillis() - lastFullParse < FULL_PARSE_INTERVAL;
+    }
+
     /**
      * Called for tags not consumed by the podcast parsing. Use this in sub-classes,
      * if you need to get more data from the podcast feed. This will <em>not</em> be
@@ -677,7 +862,7 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
                 // Look at all start tags of this image
                 while (parser.nextTag() == XmlPullParser.START_TAG) {
                     // URL tag found
-                    if (parser.getName().equalsIgnoreCase(RSS.URL))
+                    if (FeedTags.lookup(parser.getName()) == FeedTags.URL)
                         logoUrl = toAbsoluteUrl(parser.nextText());
                         // Unneeded node, skip...
                     else
@@ -704,28 +889,57 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
             // Only add if there is a title and some actual content to play
             final String title = newEpisode.getName();
             if (title != null && !title.trim().isEmpty() &&
-                    newEpisode.getMediaUrl() != null)
+                    newEpisode.getMediaUrl() != null) {
+                if (bodyWriter != null)
+                    newEpisode.storeBodies(bodyWriter);
+
                 list.add(newEpisode);
+            }
         } catch (XmlPullParserException | IOException e) {
             // pass, episode will not be added
         }
     }
 
+    /**
+     * Each incremental parse adds a body store segment, while the texts of
+     * the known episodes stay where they are. Once there are too many
+     * segments, move all texts to the current one and retire the others.
+     *
+     * @param merged The episodes as merged.
+     * @return The episodes to use, moved ones are replaced by copies.
+     */
+    private List<Episode> compactBodies(List<Episode> merged) {
+        if (bodyWriter == null || bodySegments.size() < MAX_BODY_SEGMENTS)
+            return merged;
+
+        final List<Episode> compacted = new ArrayList<>(merged.size());
+        for (Episode episode : merged)
+            compacted.add(episode.moveBodies(bodyWriter));
+
+        EpisodeBodyStore.getInstance().retire(bodySegments);
+        bodySegments.clear();
+
+        return compacted;
+    }
+
+    private void closeBodyWriter(boolean keep) {
+        if (bodyWriter != null) {
+            if (keep) {
+                bodyWriter.close();
+                bodySegments.add(bodyWriter.getSegmentId());
+            } else
+                bodyWriter.discard();
+
+            bodyWriter = null;
+        }
+    }
+
     @Override
     @Nullable
     protected String normalizeUrl(@Nullable String spec) {
-        // We put some extra bit in here to that only apply to podcast URLs and
-        // then call the base class method.
-        if (spec != null) {
-            if (spec.toLowerCase(Locale.US).startsWith("feed://") ||
-                    spec.toLowerCase(Locale.US).startsWith("itpc://") ||
-                    spec.toLowerCase(Locale.US).startsWith("itms://"))
-                spec = "http" + spec.substring(4);
-            if (spec.toLowerCase(Locale.US).startsWith("fb:"))
-                spec = "http://feeds.feedburner.com/" + spec.substring(3);
-
-            // Try to get username and password if present
-            final String userInfo = Uri.parse(spec).getUserInfo();
+        // Try to get username and password if present, the canonical URL drops them
+        if (spec != null && spec.indexOf('@') >= 0) {
+            final String userInfo = getUserInfo(spec);
             if (userInfo != null && userInfo.length() > 0) {
                 final String[] parts = userInfo.split(":");
 
@@ -734,17 +948,57 @@ public class Podcast extends FeedEntity implements Comparable<Podcast> {
             }
         }
 
-        spec = super.normalizeUrl(spec);
+        return UrlCanonicalizer.getInstance().canonicalizeFeedUrl(spec);
+    }
+
+    private static String getUserInfo(String url) {
+        final int authorityStart = url.indexOf("://");
+        if (authorityStart < 0)
+            return null;
+
+        // The user info is the part of the authority before the '@'
+        int authorityEnd = indexOfAny(url, "/?#", authorityStart + 3);
+        authorityEnd = authorityEnd < 0 ? url.length() : authorityEnd;
+        final int at = url.lastIndexOf('@', authorityEnd - 1);
+
+        return at > authorityStart ? decodePercent(url.substring(authorityStart + 3, at)) : null;
+    }
+
+    private static boolean hasScheme(String url) {
+        // A scheme is followed by a colon before any path, query or fragment starts
+        final int colon = url.indexOf(':');
+
+        return colon > 0 && indexOfAny(url.substring(0, colon), "/?#", 0) < 0;
+    }
+
+    private static int indexOfAny(String text, String chars, int from) {
+        for (int index = from; index < text.length(); index++)
+            if (chars.indexOf(text.charAt(index)) >= 0)
+                return index;
+
+        return -1;
+    }
+
+    private static String decodePercent(String text) {
+        if (text.indexOf('%') < 0)
+            return text;
+
+        final byte[] bytes = new byte[text.length() * 4];
+        int length = 0;
+
+        for (int index = 0; index < text.length(); index++) {
+            final char c = text.charAt(index);
 
-        if (spec != null) {
-            if (spec.startsWith("http://feeds2.feedburner.com"))
-                spec = spec.replaceFirst("feeds2", "feeds");
-            if (spec.startsWith("https://feeds2.feedburner.com"))
-                spec = spec.replaceFirst("feeds2", "feeds");
-            if (spec.contains("://feeds.feedburner.com") && spec.endsWith("?format=xml"))
-                spec = spec.replace("?format=xml", "");
+            if (c == '%' && index + 2 < text.length() &&
+                    Character.digit(text.charAt(index + 1), 16) >= 0 &&
+                    Character.digit(text.charAt(index + 2), 16) >= 0) {
+                bytes[length++] = (byte) Integer.parseInt(text.substring(index + 1, index + 3), 16);
+                index += 2;
+            } else
+                for (byte b : String.valueOf(c).getBytes(Charset.forName("UTF-8")))
+                    bytes[length++] = b;
         }
 
-        return spec;
+        return new String(bytes, 0, length, Charset.forName("UTF-8"));
     }
 }
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.DateCodec;
+
+import junit.framework.TestCase;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static com.podcatcher.deluxe.model.DateCodec.INVALID;
+
+@SuppressWarnings("javadoc")
+public class DateCodecTest extends TestCase {
+
+    /**
+     * Date strings as found in real feeds with an explicit zone and their value
+     */
+    private static final Object[][] ZONED_CORPUS = {
+            // RFC 822 as it should be
+            {"Sun, 17 Nov 2013 00:00:00 -0600", 1384668000000L},
+            {"Sun, 3 Nov 2013 00:00:00 -0500", 1383454800000L},
+            {"Sun, 17 Nov 2013 06:00:00 GMT", 1384668000000L},
+            {"Sun, 17 Nov 2013 06:00:00 UT", 1384668000000L},
+            {"Sun, 17 Nov 2013 06:00:00 Z", 1384668000000L},
+            {"Sun, 17 Nov 2013 06:00:00 +0000", 1384668000000L},
+            {"Sun, 17 Nov 2013 01:00:00 EST", 1384668000000L},
+            {"Sun, 17 Nov 2013 02:00:00 EDT", 1384668000000L},
+            {"Sat, 16 Nov 2013 22:00:00 PST", 1384668000000L},
+            {"Sat, 16 Nov 2013 23:00:00 PDT", 1384668000000L},
+            {"Sun, 17 Nov 2013 11:30:00 +0530", 1384668000000L},
+            // Missing seconds
+            {"Sun, 17 Nov 2013 06:00 GMT", 1384668000000L},
+            {"Sat, 16 Nov 2013 22:00 PST", 1384668000000L},
+            // Two-digit and three-digit years
+            {"Sun, 17 Nov 13 06:00:00 GMT", 1384668000000L},
+            {"Sun, 17 Nov 113 06:00:00 GMT", 1384668000000L},
+            {"Wed, 31 Dec 99 23:59:59 GMT", 946684799000L},
+            // Deviations seen in the wild
+            {"Sun,17 Nov 2013 06:00:00 GMT", 1384668000000L},
+            {"Sun 17 Nov 2013 06:00:00 GMT", 1384668000000L},
+            {"17 Nov 2013 06:00:00 GMT", 1384668000000L},
+            {"Sunday, 17 November 2013 06:00:00 GMT", 1384668000000L},
+            {"SUN, 17 NOV 2013 06:00:00 gmt", 1384668000000L},
+            {"Sun, 17 Nov 2013 06:00:00 GMT+00:00", 1384668000000L},
+            {"Sun, 17 Nov 2013 07:00:00 GMT+0100", 1384668000000L},
+            {"Sun, 17 Nov 2013 07:00:00 +01:00", 1384668000000L},
+            {"Sun, 17 Nov 2013 07:00:00 CET", 1384668000000L},
+            {"Sun, 17 Nov 2013 06:00:00 BST", 1384664400000L},
+            {"Sun, 17 Nov 2013 17:00:00 AEDT", 1384668000000L},
+            {"Sun, 17 Nov 2013 06:00:00 +0000 (UTC)", 1384668000000L},
+            {"Sun, 17 Nov 2013 06:00:00 XYZ", 1384668000000L},
+            {"17-Nov-2013 06:00:00 GMT", 1384668000000L},
+            {"Nov 17, 2013 06:00:00 GMT", 1384668000000L},
+            {"Sun, Nov 17 2013 06:00:00 GMT", 1384668000000L},
+            {"Sun, 17 Sept. 2013 06:00:00 GMT", 1379397600000L},
+            {"  Sun, 17 Nov 2013 06:00:00 GMT\n", 1384668000000L},
+            {"Thu, 29 Feb 2024 23:59:59 GMT", 1709251199000L},
+            {"Wed, 31 Dec 1969 23:59:59 GMT", -1000L},
+            // ISO 8601 / RFC 3339
+            {"2013-11-17T06:00:00Z", 1384668000000L},
+            {"2013-11-17T06:00:00.123Z", 1384668000123L},
+            {"2013-11-17T06:00:00.1234567Z", 1384668000123L},
+            {"2013-11-17T07:00:00+01:00", 1384668000000L},
+            {"2013-11-17T07:00:00+0100", 1384668000000L},
+            {"2013-11-17T07:00:00+01", 1384668000000L},
+            {"2013-11-17T00:00:00-06:00", 1384668000000L},
+            {"2013-11-17T06:00Z", 1384668000000L},
+            {"2013-11-17 06:00:00Z", 1384668000000L},
+            {"2013-11-17t06:00:00z", 1384668000000L}
+    };
+
+    /**
+     * Date strings without zone, these are in local time
+     */
+    private static final String[][] LOCAL_CORPUS = {
+            {"Sun, 17 Nov 2013", "EEE, dd MMM yyyy"},
+            {"Sun, 17 Nov 13", "EEE, dd MMM yy"},
+            {"Sun, 17 Nov 2013 06:00:00", "EEE, dd MMM yyyy HH:mm:ss"},
+            {"2013-11-17", "yyyy-MM-dd"},
+            {"13-11-17", "yy-MM-dd"},
+            {"2013-07-01T12:00:00", "yyyy-MM-dd'T'HH:mm:ss"}
+    };
+
+    /**
+     * Strings that are not dates
+     */
+    private static final String[] INVALID_CORPUS = {
+            "", "   ", "now", "garbage", "Sun,", "Sun, 17", "Sun, 17 Foo 2013",
+            "Sun, 17 Nov", "Sun, 123 Nov 2013", "Sun, 17 Nov 2013 6",
+            "Sun, 17 Nov 2013 06:0 GMT", "Sun, 17 Nov 2013 25:00:00 GMT",
+            "2013-13-01", "2013-11-32", "2013-11", "2013-11-17T", "12:00"
+    };
+
+    public final void testZonedCorpus() {
+        for (Object[] entry : ZONED_CORPUS)
+            assertEquals((String) entry[0], entry[1], DateCodec.parse((String) entry[0]));
+    }
+
+    public final void testLocalCorpus() throws ParseException {
+        for (String[] entry : LOCAL_CORPUS)
+            assertEquals(entry[0], new SimpleDateFormat(entry[1], Locale.US).parse(entry[0]).getTime(),
+                    DateCodec.parse(entry[0]));
+    }
+
+    public final void testInvalidCorpus() {
+        for (String entry : INVALID_CORPUS)
+            assertEquals(entry, INVALID, DateCodec.parse(entry));
+    }
+
+    public final void testFormatHttpDate() {
+        final SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+        assertEquals("Sun, 17 Nov 2013 06:00:00 GMT", DateCodec.formatHttpDate(1384668000000L));
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", DateCodec.formatHttpDate(0));
+
+        // Formatting and parsing should round-trip
+        for (long millis = -1000L * 3600 * 24 * 365 * 30; millis < 1000L * 3600 * 24 * 365 * 70;
+             millis += 1000L * 3600 * 24 * 7 + 37 * 1000) {
+            final String formatted = DateCodec.formatHttpDate(millis);
+
+            assertEquals(httpDate.format(new Date(millis)), formatted);
+            assertEquals(millis, DateCodec.parse(formatted));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.EpisodeBodyStore;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+@SuppressWarnings("javadoc")
+public class EpisodeBodyStoreTest extends TestCase {
+
+    /**
+     * The number of episodes in the feed used to check the heap saved
+     */
+    private static final int EPISODES = 2000;
+
+    private EpisodeBodyStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        store = EpisodeBodyStore.getInstance();
+        store.open(new File(System.getProperty("java.io.tmpdir"), "bodies"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.close();
+
+        super.tearDown();
+    }
+
+    public final void testWriteAndRead() {
+        final String text = createText("Grüße aus Köln, 東京 and everywhere else. ", 50);
+        final String other = createText("Something else. ", 200);
+
+        final EpisodeBodyStore.Writer writer = store.newWriter();
+        assertNotNull(writer);
+        assertEquals(EpisodeBodyStore.NONE, writer.write(null));
+        assertEquals(EpisodeBodyStore.NONE, writer.write("Too short to store"));
+
+        final long handle = writer.write(text);
+        final long otherHandle = writer.write(other);
+        assertFalse(handle == EpisodeBodyStore.NONE);
+        assertFalse(otherHandle == EpisodeBodyStore.NONE);
+
+        // Texts need to be readable while the segment is still written
+        assertEquals(text, store.read(handle));
+        writer.close();
+        assertEquals(other, store.read(otherHandle));
+        assertEquals(text, store.read(handle));
+        assertEquals(2, store.getTextCount());
+
+        // Nothing is written after close
+        assertEquals(EpisodeBodyStore.NONE, writer.write(text));
+    }
+
+    public final void testDiscard() {
+        final EpisodeBodyStore.Writer writer = store.newWriter();
+        assertNotNull(writer);
+
+        final long handle = writer.write(createText("Discarded text. ", 20));
+        writer.discard();
+
+        assertNull(store.read(handle));
+        assertEquals(0, store.getTextCount());
+        assertEquals(0, store.getDiskUsage());
+    }
+
+    public final void testClosed() {
+        store.close();
+
+        assertFalse(store.isOpen());
+        assertNull(store.newWriter());
+    }
+
+    public final void testParse() throws XmlPullParserException, IOException {
+        final String feed = SyntheticFeed.generate(100, 42);
+
+        store.close();
+        final Podcast plain = parse(feed);
+        assertEquals(0, store.getTextCount());
+
+        store.open(new File(System.getProperty("java.io.tmpdir"), "bodies"));
+        final Podcast stored = parse(feed);
+        assertTrue(store.getTextCount() > 0);
+
+        assertSameTexts(plain.getEpisodes(), stored.getEpisodes());
+    }
+
+    public final void testReparse() throws XmlPullParserException, IOException {
+        final Podcast podcast = parse(SyntheticFeed.generate(10, 42));
+        final Episode old = podcast.getEpisodes().get(0);
+        final String content = old.getLongDescription();
+        assertNotNull(content);
+
+        // Oldest-first makes this a complete parse, retiring the old texts
+        final int[] numbers = new int[11];
+        for (int index = 0; index < numbers.length; index++)
+            numbers[index] = index + 1;
+        podcast.parse(createParser(SyntheticFeed.generate(numbers, 42)));
+
+        // The old episode object still works
+        assertEquals(content, old.getLongDescription());
+        assertEquals(11, store.getTextCount());
+    }
+
+    public final void testCompaction() throws XmlPullParserException, IOException {
+        final Podcast podcast = parse(SyntheticFeed.generate(10, 42));
+        final Episode old = podcast.getEpisodes().get(0);
+        final String content = old.getLongDescription();
+
+        // Each incremental parse adds a segment, the texts in use are moved now and then
+        int maxTextCount = 0;
+        for (int newest = 11; newest <= 60; newest++) {
+            podcast.parse(createParser(SyntheticFeed.generate(newest, 42)));
+            maxTextCount = Math.max(maxTextCount, store.getTextCount());
+        }
+
+        assertEquals(60, podcast.getEpisodeCount());
+        assertSameTexts(parse(SyntheticFeed.generate(60, 42)).getEpisodes(), podcast.getEpisodes());
+        assertTrue(maxTextCount < 2 * 60);
+        // The old episode object still works, its segment is retired, but not deleted
+        assertEquals(content, old.getLongDescription());
+    }
+
+    public final void testHeapSaved() throws XmlPullParserException, IOException {
+        final String feed = SyntheticFeed.generate(EPISODES, 1);
+
+        store.close();
+        final Podcast plain = parse(feed);
+
+        store.open(new File(System.getProperty("java.io.tmpdir"), "bodies"));
+        final Podcast stored = parse(feed);
+
+        assertSameTexts(plain.getEpisodes(), stored.getEpisodes());
+        assertTrue(store.getTextCount() >= EPISODES);
+        assertTrue(store.getEstimatedHeapSaved() > store.getTextCount() * (long) EpisodeBodyStore.MIN_LENGTH);
+    }
+
+    private void assertSameTexts(List<Episode> expected, List<Episode> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int index = 0; index < expected.size(); index++) {
+            assertEquals(expected.get(index).getDescription(), actual.get(index).getDescription());
+            assertEquals(expected.get(index).getLongDescription(), actual.get(index).getLongDescription());
+        }
+    }
+
+    private Podcast parse(String feed) throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        podcast.parse(createParser(feed));
+
+        return podcast;
+    }
+
+    private XmlPullParser createParser(String feed) throws XmlPullParserException {
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        final XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(feed));
+
+        return parser;
+    }
+
+    private String createText(String sentence, int count) {
+        final StringBuilder text = new StringBuilder(sentence.length() * count);
+        for (int index = 0; index < count; index++)
+            text.append(sentence);
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.EpisodeCounter;
+import com.podcatcher.deluxe.model.EpisodeTimeline;
+import com.podcatcher.deluxe.model.EpisodeTimeline.StateSource;
+import com.podcatcher.deluxe.model.FeedPlatform;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+@SuppressWarnings("javadoc")
+public class EpisodeCounterTest extends TestCase {
+
+    /**
+     * The number of podcasts to count
+     */
+    private static final int PODCAST_COUNT = 12;
+    /**
+     * The number of episodes per podcast
+     */
+    private static final int EPISODE_COUNT = 40;
+
+    /**
+     * The episodes' states for the tests
+     */
+    private final Map<Episode, Integer> states = new HashMap<>();
+    /**
+     * Gives the states from the map
+     */
+    private final StateSource stateSource = new StateSource() {
+
+        @Override
+        public int getStates(Episode episode) {
+            final Integer result = states.get(episode);
+
+            return result == null ? 0 : result;
+        }
+    };
+
+    public final void testCounts() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT, 0);
+        final EpisodeCounter counter = new EpisodeCounter(stateSource);
+        final Random random = new Random(42);
+
+        for (Podcast podcast : podcasts)
+            assertCounts(counter, podcast);
+
+        // Podcasts overlap, so changes need to show in all of them
+        for (int run = 0; run < 2000; run++) {
+            final Podcast podcast = podcasts.get(random.nextInt(podcasts.size()));
+            final Episode episode = podcast.getEpisodes().get(random.nextInt(podcast.getEpisodeCount()));
+
+            states.put(episode, random.nextInt(8));
+            counter.update(episode);
+
+            if (run % 100 == 0) {
+                counter.checkInvariants();
+                for (Podcast other : podcasts)
+                    assertCounts(counter, other);
+            }
+        }
+
+        // Unknown episodes are ignored
+        final Podcast unknown = createPodcasts(1, EPISODE_COUNT, 1000).get(0);
+        states.put(unknown.getEpisodes().get(0), EpisodeTimeline.OLD);
+        counter.update(unknown.getEpisodes().get(0));
+        counter.checkInvariants();
+    }
+
+    public final void testReload() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT, 0);
+        final EpisodeCounter counter = new EpisodeCounter(stateSource);
+        for (Podcast podcast : podcasts) {
+            for (Episode episode : podcast.getEpisodes())
+                states.put(episode, episode.hashCode() & 7);
+
+            counter.update(podcast);
+        }
+        counter.checkInvariants();
+
+        // Reload one podcast with a different set of episodes
+        final Podcast reloaded = podcasts.get(3);
+        final int[] numbers = new int[EPISODE_COUNT / 2];
+        for (int index = 0; index < numbers.length; index++)
+            numbers[index] = 5000 - index;
+        reloaded.parse(createParser(SyntheticFeed.generate(numbers, 3)));
+        for (Episode episode : reloaded.getEpisodes())
+            states.put(episode, EpisodeTimeline.DOWNLOADED);
+
+        assertCounts(counter, reloaded);
+        assertEquals(numbers.length, counter.getNewCount(reloaded));
+        assertEquals(numbers.length, counter.getDownloadedCount(reloaded));
+        // Changes to episodes no longer in the podcast do not count for it
+        final Episode dropped = podcasts.get(2).getEpisodes().get(0);
+        states.put(dropped, EpisodeTimeline.IN_PLAYLIST);
+        counter.update(dropped);
+        counter.checkInvariants();
+        assertCounts(counter, reloaded);
+
+        // Removed podcasts are dropped
+        counter.remove(reloaded);
+        counter.remove(podcasts.get(4));
+        counter.checkInvariants();
+        for (Podcast podcast : podcasts)
+            assertCounts(counter, podcast);
+
+        counter.clear();
+        counter.checkInvariants();
+        assertCounts(counter, podcasts.get(0));
+    }
+
+    public final void testInvariants() throws XmlPullParserException, IOException {
+        final Podcast podcast = createPodcasts(1, EPISODE_COUNT, 0).get(0);
+        final EpisodeCounter counter = new EpisodeCounter(stateSource);
+        counter.update(podcast);
+
+        // A state change the counter was not told about
+        states.put(podcast.getEpisodes().get(5), EpisodeTimeline.OLD);
+        try {
+            counter.checkInvariants();
+            fail("Missed state change");
+        } catch (IllegalStateException ise) {
+            // pass
+        }
+
+        counter.update(podcast.getEpisodes().get(5));
+        counter.checkInvariants();
+    }
+
+    private void assertCounts(EpisodeCounter counter, Podcast podcast) {
+        int newCount = 0, downloadedCount = 0, playlistCount = 0;
+        for (Episode episode : podcast.getEpisodes()) {
+            final int flags = stateSource.getStates(episode);
+
+            newCount += (flags & EpisodeTimeline.OLD) == 0 ? 1 : 0;
+            downloadedCount += (flags & EpisodeTimeline.DOWNLOADED) != 0 ? 1 : 0;
+            playlistCount += (flags & EpisodeTimeline.IN_PLAYLIST) != 0 ? 1 : 0;
+        }
+
+        assertEquals(podcast.getUrl(), newCount, counter.getNewCount(podcast));
+        assertEquals(podcast.getUrl(), downloadedCount, counter.getDownloadedCount(podcast));
+        assertEquals(podcast.getUrl(), playlistCount, counter.getPlaylistCount(podcast));
+    }
+
+    private static List<Podcast> createPodcasts(int count, int episodeCount, int firstNumber)
+            throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = new ArrayList<>(count);
+
+        for (int number = firstNumber; number < firstNumber + count; number++) {
+            final Podcast podcast = new Podcast("Podcast " + number, "http://www.example.com/podcast" + number);
+            // Podcasts overlap (same media URLs), an episode counts for each
+            final int[] numbers = new int[episodeCount];
+            for (int index = 0; index < episodeCount; index++)
+                numbers[index] = (number + 1) * episodeCount / 2 - index;
+
+            podcast.parse(createParser(SyntheticFeed.generate(numbers, number)));
+            podcasts.add(podcast);
+        }
+
+        return podcasts;
+    }
+
+    private static XmlPullParser createParser(String feed) throws XmlPullParserException {
+        final XmlPullParser parser = FeedPlatform.newParser();
+        parser.setInput(new StringReader(feed));
+
+        return parser;
+    }
+}
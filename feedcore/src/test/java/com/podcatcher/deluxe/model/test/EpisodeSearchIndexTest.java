@@ -0,0 +1,240 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.EpisodeSearchIndex;
+import com.podcatcher.deluxe.model.EpisodeSearchIndex.Hit;
+import com.podcatcher.deluxe.model.FeedPlatform;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+@SuppressWarnings("javadoc")
+public class EpisodeSearchIndexTest extends TestCase {
+
+    /**
+     * The number of podcasts to index
+     */
+    private static final int PODCAST_COUNT = 6;
+    /**
+     * The number of episodes per podcast
+     */
+    private static final int EPISODE_COUNT = 120;
+
+    /**
+     * The queries to compare with a plain scan
+     */
+    private static final String[] QUERIES = {"friends", "Episode 17", "17", "1", "things", "talk episode 2",
+            "podcast", "podcast 3", "EPISODE", "fri", "p", "b", "amp", "zzz", "", " & ", null};
+
+    public final void testSearch() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT);
+        final EpisodeSearchIndex index = new EpisodeSearchIndex();
+        for (Podcast podcast : podcasts)
+            index.update(podcast);
+
+        assertEquals(PODCAST_COUNT * EPISODE_COUNT, index.size());
+        assertSearch(index, podcasts);
+
+        // Results are limited and come newest first
+        final List<Hit> hits = index.search("episode", 25);
+        assertEquals(25, hits.size());
+        for (int position = 1; position < hits.size(); position++)
+            assertTrue(hits.get(position - 1).getPubTime() >= hits.get(position).getPubTime());
+        assertEquals(scan(podcasts, "episode").size(), index.search("episode", Integer.MAX_VALUE).size());
+        assertTrue(index.search("episode", 0).isEmpty());
+        assertEquals("Podcast 5", index.search("episode", 1).get(0).getPodcastName());
+    }
+
+    public final void testUpdate() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT);
+        final EpisodeSearchIndex index = new EpisodeSearchIndex();
+        for (Podcast podcast : podcasts)
+            index.update(podcast);
+
+        // Same again, nothing changes
+        index.update(podcasts.get(2));
+        assertEquals(PODCAST_COUNT * EPISODE_COUNT, index.size());
+
+        // Reload a podcast with other episodes
+        podcasts.get(0).parse(createParser(SyntheticFeed.generate(range(5000, EPISODE_COUNT / 2), 0)));
+        index.update(podcasts.get(0));
+        assertEquals((PODCAST_COUNT - 1) * EPISODE_COUNT + EPISODE_COUNT / 2, index.size());
+        assertSearch(index, podcasts);
+        assertFalse(index.search("5010", 10).isEmpty());
+
+        index.remove(podcasts.remove(1).getUrl());
+        index.remove("http://www.example.com/unknown");
+        assertEquals((PODCAST_COUNT - 2) * EPISODE_COUNT + EPISODE_COUNT / 2, index.size());
+        assertSearch(index, podcasts);
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.search("episode", 10).isEmpty());
+    }
+
+    public final void testCompaction() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(1, 700);
+        final EpisodeSearchIndex index = new EpisodeSearchIndex();
+        index.update(podcasts.get(0));
+
+        // Each reload replaces all episodes, the index compacts on the way
+        for (int reload = 1; reload <= 4; reload++) {
+            podcasts.get(0).parse(createParser(SyntheticFeed.generate(range(reload * 10000, 700), 0)));
+            index.update(podcasts.get(0));
+
+            assertEquals(700, index.size());
+            assertSearch(index, podcasts);
+        }
+    }
+
+    public final void testStore() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT);
+        final EpisodeSearchIndex index = new EpisodeSearchIndex();
+        for (Podcast podcast : podcasts)
+            index.update(podcast);
+        // Leave some removed episodes in the index
+        podcasts.get(3).parse(createParser(SyntheticFeed.generate(range(5000, 10), 3)));
+        index.update(podcasts.get(3));
+
+        final byte[] stored = store(index);
+        final EpisodeSearchIndex loaded = new EpisodeSearchIndex();
+        loaded.load(new ByteArrayInputStream(stored));
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.getTermCount(), loaded.getTermCount());
+        assertSearch(loaded, podcasts);
+
+        // Podcasts loaded again do not change the index
+        for (Podcast podcast : podcasts)
+            loaded.update(podcast);
+        assertTrue(Arrays.equals(stored, store(loaded)));
+
+        // Broken files are refused and leave the index alone
+        for (int length : new int[]{0, 7, stored.length / 2, stored.length - 1})
+            try {
+                loaded.load(new ByteArrayInputStream(Arrays.copyOf(stored, length)));
+                fail("Loaded broken index");
+            } catch (IOException ioe) {
+                // pass
+            }
+        assertEquals(index.size(), loaded.size());
+        assertSearch(loaded, podcasts);
+    }
+
+    private static void assertSearch(EpisodeSearchIndex index, List<Podcast> podcasts) {
+        for (String query : QUERIES) {
+            final Set<String> found = new HashSet<>();
+            for (Hit hit : index.search(query, Integer.MAX_VALUE))
+                assertTrue(query, found.add(hit.getPodcastUrl() + " " + hit.getMediaUrl()));
+
+            assertEquals(query, scan(podcasts, query), found);
+        }
+    }
+
+    /**
+     * Find the episodes matching a query the slow way.
+     */
+    private static Set<String> scan(List<Podcast> podcasts, String query) {
+        final Set<String> matches = new HashSet<>();
+        final List<String> words = query == null ? new ArrayList<String>() : words(query);
+
+        if (!words.isEmpty())
+            for (Podcast podcast : podcasts)
+                for (Episode episode : podcast.getEpisodes()) {
+                    final String description = episode.getDescription() == null ? "" : episode.getDescription()
+                            .replaceAll("<[a-zA-Z/!][^>]*>", " ").replaceAll("&[a-zA-Z0-9#]+;", " ");
+                    final List<String> text = words(podcast.getName() + " " + episode.getName() + " " + description);
+
+                    boolean all = true;
+                    for (String word : words) {
+                        boolean any = false;
+                        for (String token : text)
+                            any |= word.length() < EpisodeSearchIndex.MIN_PREFIX_LENGTH ?
+                                    token.equals(word) : token.startsWith(word);
+                        all &= any;
+                    }
+
+                    if (all)
+                        matches.add(podcast.getUrl() + " " + episode.getMediaUrl());
+                }
+
+        return matches;
+    }
+
+    private static List<String> words(String text) {
+        final List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+            if (!word.isEmpty())
+                words.add(word);
+
+        return words;
+    }
+
+    private static byte[] store(EpisodeSearchIndex index) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.store(out);
+
+        return out.toByteArray();
+    }
+
+    private static List<Podcast> createPodcasts(int count, int episodeCount)
+            throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = new ArrayList<>(count);
+
+        for (int number = 0; number < count; number++) {
+            final Podcast podcast = new Podcast("Podcast " + number, "http://www.example.com/podcast" + number);
+            // Podcasts overlap (same media URLs), each podcast has its own result
+            podcast.parse(createParser(SyntheticFeed.generate(range((number + 1) * episodeCount / 2, episodeCount),
+                    number)));
+            podcasts.add(podcast);
+        }
+
+        return podcasts;
+    }
+
+    private static int[] range(int first, int count) {
+        final int[] numbers = new int[count];
+        for (int index = 0; index < count; index++)
+            numbers[index] = first + count - index;
+
+        return numbers;
+    }
+
+    private static XmlPullParser createParser(String feed) throws XmlPullParserException {
+        final XmlPullParser parser = FeedPlatform.newParser();
+        parser.setInput(new StringReader(feed));
+
+        return parser;
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.EpisodeTimeline;
+import com.podcatcher.deluxe.model.EpisodeTimeline.StateSource;
+import com.podcatcher.deluxe.model.FeedPlatform;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+@SuppressWarnings("javadoc")
+public class EpisodeTimelineTest extends TestCase {
+
+    /**
+     * The number of podcasts to merge
+     */
+    private static final int PODCAST_COUNT = 12;
+    /**
+     * The number of episodes per podcast
+     */
+    private static final int EPISODE_COUNT = 40;
+
+    /**
+     * The episodes' states for the tests
+     */
+    private final Map<Episode, Integer> states = new HashMap<>();
+    /**
+     * Gives the states from the map
+     */
+    private final StateSource stateSource = new StateSource() {
+
+        @Override
+        public int getStates(Episode episode) {
+            final Integer result = states.get(episode);
+
+            return result == null ? 0 : result;
+        }
+    };
+
+    public final void testMerge() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT);
+        final SortedSet<Episode> expected = new TreeSet<>();
+        final EpisodeTimeline incremental = new EpisodeTimeline(stateSource);
+
+        // Podcasts come in one by one, some twice (e.g. after a page loaded)
+        for (Podcast podcast : podcasts) {
+            expected.addAll(podcast.getEpisodes());
+            incremental.add(podcast.getEpisodes());
+            incremental.add(podcast.getEpisodes().subList(0, EPISODE_COUNT / 2));
+            assertEquals(new ArrayList<>(expected), incremental.select(0, false));
+        }
+
+        final List<List<Episode>> runs = new ArrayList<>();
+        for (Podcast podcast : podcasts)
+            runs.add(podcast.getEpisodes());
+        final EpisodeTimeline all = new EpisodeTimeline(stateSource);
+        all.merge(runs);
+        assertEquals(new ArrayList<>(expected), all.select(0, false));
+        assertEquals(expected.size(), all.size());
+        assertTrue(all.contains(podcasts.get(3).getEpisodes().get(7)));
+        assertFalse(all.contains(null));
+
+        // Unsorted sources work as well
+        final List<Episode> shuffled = new ArrayList<>(expected);
+        Collections.shuffle(shuffled, new Random(42));
+        final EpisodeTimeline unsorted = new EpisodeTimeline(stateSource);
+        unsorted.add(shuffled.subList(0, shuffled.size() / 2));
+        unsorted.add(shuffled);
+        assertEquals(new ArrayList<>(expected), unsorted.select(0, false));
+
+        all.clear();
+        assertTrue(all.isEmpty());
+        assertTrue(all.select(0, true).isEmpty());
+    }
+
+    public final void testOrder() throws XmlPullParserException, IOException {
+        final List<Episode> episodes = new ArrayList<>(createPodcasts(1, EPISODE_COUNT).get(0).getEpisodes());
+        final Comparator<Episode> byName = new Comparator<Episode>() {
+
+            @Override
+            public int compare(Episode one, Episode another) {
+                return one.getName().compareTo(another.getName());
+            }
+        };
+
+        final EpisodeTimeline timeline = new EpisodeTimeline(stateSource, byName);
+        timeline.add(episodes.subList(10, 20));
+        timeline.add(episodes);
+
+        Collections.sort(episodes, byName);
+        assertEquals(episodes, timeline.select(0, false));
+    }
+
+    public final void testFilter() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT);
+        final Random random = new Random(42);
+        final EpisodeTimeline timeline = new EpisodeTimeline(stateSource);
+
+        // Podcasts share episodes, so all states need to be set before merging
+        for (Podcast podcast : podcasts)
+            for (Episode episode : podcast.getEpisodes())
+                states.put(episode, random.nextInt(8));
+        for (Podcast podcast : podcasts)
+            timeline.add(podcast.getEpisodes());
+        assertFiltered(timeline);
+
+        // States change, the timeline is told
+        final List<Episode> changed = podcasts.get(2).getEpisodes();
+        for (Episode episode : changed) {
+            states.put(episode, EpisodeTimeline.OLD);
+            timeline.updateStates(episode);
+        }
+        assertFiltered(timeline);
+
+        // States change, the timeline is not told
+        for (Episode episode : podcasts.get(5).getEpisodes())
+            states.put(episode, EpisodeTimeline.DOWNLOADED);
+        timeline.updateStates();
+        assertFiltered(timeline);
+
+        // States stay with the episodes when others are merged in
+        final EpisodeTimeline grown = new EpisodeTimeline(stateSource);
+        grown.add(changed);
+        assertEquals(0, grown.count(EpisodeTimeline.OLD));
+        states.clear();
+        grown.add(podcasts.get(3).getEpisodes());
+        assertEquals(changed.size(), grown.size() - grown.count(EpisodeTimeline.OLD));
+        assertEquals(grown.count(EpisodeTimeline.OLD), grown.count(EpisodeTimeline.DOWNLOADED | EpisodeTimeline.OLD));
+    }
+
+    public final void testBatches() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, EPISODE_COUNT);
+        final SortedSet<Episode> expected = new TreeSet<>();
+        final EpisodeTimeline timeline = new EpisodeTimeline(stateSource);
+
+        // Sources added without reading the timeline in between
+        for (Podcast podcast : podcasts.subList(0, PODCAST_COUNT / 2)) {
+            expected.addAll(podcast.getEpisodes());
+            timeline.add(podcast.getEpisodes());
+            assertEquals(expected.size(), timeline.size());
+            assertTrue(timeline.contains(podcast.getEpisodes().get(0)));
+        }
+
+        // States changing before the merge are picked up
+        final Episode changed = podcasts.get(1).getEpisodes().get(3);
+        states.put(changed, EpisodeTimeline.OLD);
+        assertEquals(expected.size() - 1, timeline.count(EpisodeTimeline.OLD));
+        assertFalse(timeline.select(EpisodeTimeline.OLD, false).contains(changed));
+
+        for (Podcast podcast : podcasts.subList(PODCAST_COUNT / 2, PODCAST_COUNT)) {
+            expected.addAll(podcast.getEpisodes());
+            timeline.add(podcast.getEpisodes());
+        }
+        states.remove(changed);
+        timeline.updateStates(changed);
+        assertEquals(new ArrayList<>(expected), timeline.select(0, false));
+        assertEquals(expected.size(), timeline.count(EpisodeTimeline.OLD));
+    }
+
+    private void assertFiltered(EpisodeTimeline timeline) {
+        final List<Episode> all = timeline.select(0, false);
+
+        for (int excluded = 0; excluded < 8; excluded++) {
+            final List<Episode> expected = new ArrayList<>();
+            for (Episode episode : all)
+                if ((stateSource.getStates(episode) & excluded) == 0)
+                    expected.add(episode);
+            final List<Episode> reversed = new ArrayList<>(expected);
+            Collections.reverse(reversed);
+
+            assertEquals(expected.size(), timeline.count(excluded));
+            assertEquals(expected, timeline.select(excluded, false));
+            assertEquals(reversed, timeline.select(excluded, true));
+
+            for (int offset : new int[]{0, 1, 17, expected.size() - 5, expected.size(), expected.size() + 3}) {
+                final int from = Math.max(0, Math.min(offset, expected.size()));
+                final int to = Math.min(expected.size(), from + 25);
+
+                assertEquals(expected.subList(from, to), timeline.select(excluded, false, offset, 25));
+                assertEquals(reversed.subList(from, to), timeline.select(excluded, true, offset, 25));
+            }
+        }
+    }
+
+    private static List<Podcast> createPodcasts(int count, int episodeCount)
+            throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = new ArrayList<>(count);
+
+        for (int number = 0; number < count; number++) {
+            final Podcast podcast = new Podcast("Podcast " + number, "http://www.example.com/podcast" + number);
+            // Podcasts overlap (same media URLs and dates), these are duplicates
+            final int[] numbers = new int[episodeCount];
+            for (int index = 0; index < episodeCount; index++)
+                numbers[index] = (number + 1) * episodeCount / 2 - index;
+
+            podcast.parse(createParser(SyntheticFeed.generate(numbers, number)));
+            podcasts.add(podcast);
+        }
+
+        return podcasts;
+    }
+
+    private static XmlPullParser createParser(String feed) throws XmlPullParserException {
+        final XmlPullParser parser = FeedPlatform.newParser();
+        parser.setInput(new StringReader(feed));
+
+        return parser;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.FeedTags;
+import com.podcatcher.deluxe.model.tags.RSS;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+
+@SuppressWarnings("javadoc")
+public class FeedTagsTest extends TestCase {
+
+    public final void testLookup() {
+        assertEquals(FeedTags.ITEM, FeedTags.lookup("item"));
+        assertEquals(FeedTags.ITEM, FeedTags.lookup("ITEM"));
+        assertEquals(FeedTags.PUBDATE, FeedTags.lookup("pubDate"));
+        assertEquals(FeedTags.NEW_URL, FeedTags.lookup("new-feed-url"));
+        assertEquals(FeedTags.CONTENT_ENCODED, FeedTags.lookup("encoded"));
+        assertEquals(FeedTags.CHAPTER, FeedTags.lookup("Chapter"));
+        assertEquals(FeedTags.CHAPTERS, FeedTags.lookup("chapters"));
+
+        for (String unknown : new String[]{null, "", "i", "items", "ite", "pubdat", "channel", "rss",
+                "owner", "new_feed_url", "tİtle", "tıtle", "Keywords"})
+            assertEquals(String.valueOf(unknown), FeedTags.UNKNOWN, FeedTags.lookup(unknown));
+    }
+
+    public final void testSameAsLegacy() {
+        final String[] names = {RSS.ITEM, RSS.GUID, RSS.IMAGE, RSS.TITLE, RSS.SUBTITLE, RSS.EXPLICIT,
+                RSS.ENCLOSURE, RSS.URL, RSS.NEW_URL, RSS.LINK, RSS.CATEGORY, RSS.LANGUAGE, RSS.KEYWORDS,
+                RSS.DATE, RSS.PUBDATE, RSS.DURATION, RSS.THUMBNAIL, RSS.DESCRIPTION, RSS.SUMMARY,
+                RSS.CONTENT_ENCODED, RSS.CHAPTERS, RSS.CHAPTER, "owner", "author", "channel", "guide"};
+
+        for (String name : names)
+            for (String variant : new String[]{name, name.toUpperCase(Locale.US), capitalize(name)}) {
+                final int id = FeedTags.lookup(variant);
+
+                assertEquals(variant, variant.toLowerCase(Locale.US), FeedTags.toLowerCase(variant, id));
+                if (id != FeedTags.UNKNOWN)
+                    assertEquals(variant, name, FeedTags.toLowerCase(variant, id));
+            }
+
+        assertSame(RSS.TITLE, FeedTags.toLowerCase("TITLE", FeedTags.TITLE));
+        final String lowerCase = "author";
+        assertSame(lowerCase, FeedTags.toLowerCase(lowerCase, FeedTags.lookup(lowerCase)));
+    }
+
+    public final void testParseSyntheticFeed() throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        podcast.parse(createParser(SyntheticFeed.generate(100, 42)));
+
+        assertEquals("Synthetic Podcast 42", podcast.getName());
+        assertEquals("http://www.example.com/logo.jpg", podcast.getLogoUrl());
+        assertEquals(100, podcast.getEpisodeCount());
+        assertEquals("Episode 100 & friends", podcast.getEpisodes().get(0).getName());
+        assertNotNull(podcast.getEpisodes().get(0).getPubDate());
+        assertNotNull(podcast.getEpisodes().get(0).getLongDescription());
+        assertEquals("http://media.example.com/episode100.mp3", podcast.getEpisodes().get(0).getMediaUrl());
+    }
+
+    private XmlPullParser createParser(String feed) throws XmlPullParserException {
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        final XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(feed));
+
+        return parser;
+    }
+
+    private String capitalize(String name) {
+        return name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the heap used by object graphs like JOL does, but without any
+ * VM support: Fields are found by reflection and sizes follow the layout of a
+ * 64-bit VM with compressed references (12 byte object headers, 16 byte array
+ * headers, 4 byte references, 8 byte alignment). Every object is only counted
+ * the first time it is reached by an instance of this class, so objects shared
+ * by several roots (interned strings, common maps) are not counted again.
+ * <p>
+ * Instances of the classes given as boundaries are not counted and not
+ * walked into, neither are classes, enums and objects whose fields are not
+ * accessible (those are counted by their shallow size only).
+ * </p>
+ */
+@SuppressWarnings("javadoc")
+public class ObjectSizes {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    /**
+     * The objects counted already
+     */
+    private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    /**
+     * The classes not to count or walk into
+     */
+    private final Class<?>[] boundaries;
+    /**
+     * The instance fields by class, including inherited ones
+     */
+    private final Map<Class<?>, List<Field>> fields = new HashMap<>();
+
+    public ObjectSizes(Class<?>... boundaries) {
+        this.boundaries = boundaries;
+    }
+
+    /**
+     * Measure an object graph.
+     *
+     * @param root The object to start at.
+     * @return The bytes used by all objects reachable from the root that were
+     * not counted before.
+     */
+    public long measure(Object root) {
+        final Deque<Object> pending = new ArrayDeque<>();
+        long total = 0;
+
+        if (root != null)
+            pending.push(root);
+
+        while (!pending.isEmpty()) {
+            final Object object = pending.pop();
+            final Class<?> type = object.getClass();
+
+            if (isBoundary(type) || !seen.add(object))
+                continue;
+
+            if (type.isArray()) {
+                final int length = Array.getLength(object);
+                final Class<?> component = type.getComponentType();
+                total += align(ARRAY_HEADER + (long) length * sizeOf(component));
+
+                if (!component.isPrimitive())
+                    for (int index = 0; index < length; index++)
+                        push(pending, Array.get(object, index));
+            } else {
+                long size = OBJECT_HEADER;
+                boolean walk = true;
+
+                for (Field field : fieldsOf(type)) {
+                    size += sizeOf(field.getType());
+
+                    if (walk && !field.getType().isPrimitive())
+                        try {
+                            push(pending, field.get(object));
+                        } catch (IllegalAccessException | RuntimeException e) {
+                            // Not accessible on this VM, shallow size only
+                            walk = false;
+                        }
+                }
+
+                total += align(size);
+            }
+        }
+
+        return total;
+    }
+
+    private void push(Deque<Object> pending, Object object) {
+        if (object != null && !seen.contains(object))
+            pending.push(object);
+    }
+
+    private boolean isBoundary(Class<?> type) {
+        if (type == Class.class || type.isEnum() ||
+                (type.getSuperclass() != null && type.getSuperclass().isEnum()))
+            return true;
+
+        for (Class<?> boundary : boundaries)
+            if (boundary.isAssignableFrom(type))
+                return true;
+
+        return false;
+    }
+
+    private List<Field> fieldsOf(Class<?> type) {
+        List<Field> result = fields.get(type);
+
+        if (result == null) {
+            result = new ArrayList<>();
+
+            for (Class<?> current = type; current != null; current = current.getSuperclass())
+                for (Field field : current.getDeclaredFields())
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        try {
+                            field.setAccessible(true);
+                        } catch (RuntimeException e) {
+                            // Counted, but cannot be walked
+                        }
+                        result.add(field);
+                    }
+
+            fields.put(type, result);
+        }
+
+        return result;
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class)
+            return 8;
+        else if (type == int.class || type == float.class)
+            return 4;
+        else if (type == short.class || type == char.class)
+            return 2;
+        else if (type == byte.class || type == boolean.class)
+            return 1;
+        else
+            return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.EpisodeMetadataParser;
+import com.podcatcher.deluxe.model.EpisodeMetadataWriter;
+import com.podcatcher.deluxe.model.FeedPlatform;
+import com.podcatcher.deluxe.model.OpmlParser;
+import com.podcatcher.deluxe.model.OpmlWriter;
+import com.podcatcher.deluxe.model.ParserUtils;
+import com.podcatcher.deluxe.model.types.EpisodeMetadata;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@SuppressWarnings("javadoc")
+public class OpmlParserTest extends TestCase {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String OPML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<opml version=\"2.0\" xmlns:pcd=\"http://www.podcatcher-deluxe.com/opml-ext\">" +
+            "<head><title>Podcatcher Deluxe podcast file</title></head><body>" +
+            "<outline text=\"This American Life\" type=\"rss\" " +
+            "xmlUrl=\"http://feeds.thisamericanlife.org/talpodcast\" " +
+            "pcd:logo=\"http://www.example.com/logo.png\" pcd:feedLabel=\"Radio\"/>" +
+            "<outline text=\"Q &amp; A\" type=\"rss\" xmlUrl=\"http://www.example.com/feed\" " +
+            "pcd:user=\"" + ParserUtils.encodeBase64("kevin".getBytes(UTF8)) + "\" " +
+            "pcd:pass=\"" + ParserUtils.encodeBase64("mönkey".getBytes(UTF8)) + "\"/>" +
+            "<outline text=\"Broken\" type=\"rss\" xmlUrl=\"http://www.example.com/broken\" " +
+            "pcd:user=\"a\" pcd:pass=\"*\"/>" +
+            "</body></opml>";
+
+    private static final String METADATA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><xml>" +
+            "<metadata episodeUrl=\"http://www.example.com/1.mp3\">" +
+            "<episodeName>One</episodeName><episodeDate>1000</episodeDate>" +
+            "<episodeDuration>3600</episodeDuration><podcastUrl>http://www.example.com/feed</podcastUrl>" +
+            "<resumeAt>42</resumeAt><isOld>true</isOld><playlistPosition>2</playlistPosition></metadata>" +
+            "<metadata episodeUrl=\"http://www.example.com/2.mp3\"><downloadId>7</downloadId>" +
+            "<localFilePath>/sdcard/2.mp3</localFilePath></metadata></xml>";
+
+    public final void testParseOpml() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = OpmlParser.parse(createParser(OPML));
+        assertEquals(3, podcasts.size());
+
+        final Podcast tal = podcasts.get(0);
+        assertEquals("This American Life", tal.getName());
+        assertEquals("http://feeds.thisamericanlife.org/talpodcast", tal.getUrl());
+        assertEquals("http://www.example.com/logo.png", tal.getLogoUrl());
+        assertEquals("Radio", tal.getFeedLabel());
+        assertNull(tal.getUsername());
+
+        final Podcast qa = podcasts.get(1);
+        assertEquals("Q & A", qa.getName());
+        assertEquals("kevin", qa.getUsername());
+        assertEquals("mönkey", qa.getPassword());
+
+        // Bad credentials are dropped, the podcast is kept
+        assertEquals("http://www.example.com/broken", podcasts.get(2).getUrl());
+        assertNull(podcasts.get(2).getUsername());
+        assertNull(podcasts.get(2).getPassword());
+    }
+
+    public final void testParseMetadata() throws XmlPullParserException, IOException {
+        final Map<String, EpisodeMetadata> metadata = new HashMap<>();
+        EpisodeMetadataParser.parse(createParser(METADATA), metadata);
+        assertEquals(2, metadata.size());
+
+        final EpisodeMetadata one = metadata.get("http://www.example.com/1.mp3");
+        assertEquals("One", one.episodeName);
+        assertEquals(1000, one.episodePubDate.getTime());
+        assertEquals(3600, one.episodeDuration.intValue());
+        assertEquals("http://www.example.com/feed", one.podcastUrl);
+        assertEquals(42, one.resumeAt.intValue());
+        assertTrue(one.isOld);
+        assertEquals(2, one.playlistPosition.intValue());
+
+        final EpisodeMetadata two = metadata.get("http://www.example.com/2.mp3");
+        assertEquals(7, two.downloadId.longValue());
+        assertEquals("/sdcard/2.mp3", two.filePath);
+        assertNull(two.resumeAt);
+    }
+
+    public final void testWriteOpml() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = OpmlParser.parse(createParser(OPML));
+        podcasts.add(new Podcast(null, "http://www.example.com/unnamed"));
+        podcasts.get(0).setValidators("\"abc\"", 1234);
+
+        final StringWriter document = new StringWriter();
+        final OpmlWriter writer = new OpmlWriter(document);
+        writer.setWriteAuthorization(true);
+        writer.write("Test <file>", podcasts);
+
+        // The podcast without a name is dropped, everything else survives
+        final List<Podcast> stored = OpmlParser.parse(createParser(document.toString()));
+        assertEquals(3, stored.size());
+        for (int index = 0; index < stored.size(); index++) {
+            assertEquals(podcasts.get(index).getName(), stored.get(index).getName());
+            assertEquals(podcasts.get(index).getUrl(), stored.get(index).getUrl());
+            assertEquals(podcasts.get(index).getLogoUrl(), stored.get(index).getLogoUrl());
+            assertEquals(podcasts.get(index).getUsername(), stored.get(index).getUsername());
+            assertEquals(podcasts.get(index).getPassword(), stored.get(index).getPassword());
+        }
+
+        // Validators only live as long as the content they were sent with
+        assertNull(stored.get(0).getETag());
+        assertEquals(-1, stored.get(0).getLastModified());
+
+        // Credentials are only written if asked for
+        final StringWriter plain = new StringWriter();
+        new OpmlWriter(plain).write("Test", podcasts);
+        final Podcast qa = OpmlParser.parse(createParser(plain.toString())).get(1);
+        assertNull(qa.getUsername());
+    }
+
+    public final void testWriteMetadata() throws XmlPullParserException, IOException {
+        final Map<String, EpisodeMetadata> metadata = new HashMap<>();
+        EpisodeMetadataParser.parse(createParser(METADATA), metadata);
+        metadata.get("http://www.example.com/1.mp3").episodeDescription = "<p>Tom & Jerry's \"show\"</p>";
+
+        final StringWriter document = new StringWriter();
+        new EpisodeMetadataWriter(document).write(metadata);
+
+        final Map<String, EpisodeMetadata> stored = new HashMap<>();
+        EpisodeMetadataParser.parse(createParser(document.toString()), stored);
+        assertEquals(metadata.keySet(), stored.keySet());
+
+        final EpisodeMetadata one = stored.get("http://www.example.com/1.mp3");
+        assertEquals("One", one.episodeName);
+        assertEquals(1000, one.episodePubDate.getTime());
+        assertEquals("<p>Tom & Jerry's \"show\"</p>", one.episodeDescription);
+        assertTrue(one.isOld);
+        assertEquals(7, stored.get("http://www.example.com/2.mp3").downloadId.longValue());
+    }
+
+    private XmlPullParser createParser(String document) throws XmlPullParserException {
+        final XmlPullParser parser = FeedPlatform.newParser();
+        parser.setInput(new StringReader(document));
+
+        return parser;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.ParserUtils;
+
+import junit.framework.TestCase;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+@SuppressWarnings("javadoc")
+public class ParserUtilsTest extends TestCase {
+
+    /**
+     * Time strings as found in feeds and chapter marks, plus the odd ones
+     */
+    private static final String[] TIME_CORPUS = {
+            "0", "1", "59", "60", "3600", "86399", "2147483", "2147484", "2147483647", "2147483648",
+            "-1", "+1", "-", "+", "", " ", " 1", "1 ", "1.5", "1.50", "1.500", "1.5000", "1.+12",
+            "1.-12", "1.abc", "1.ab", "1.", "1..", ".", "..", ".5", ".500", "1.2.3", "1.500.",
+            "0:0", "0:00", "0:0.000", "00:00:00.000", "01.000", "1:01:01", "1:01:01.001",
+            "12:59:33", "1:2:", "1:2::", "1::", "1::2", "::", ":", ":1", "1:", "1:2:3:",
+            "1:2:3::", "1:2:3:4", "1:2.3:45", "1.2:34", "1.2:3", "-1:30", "1:-30", "99:99:99",
+            "1:2147483647", "2147483647:1", "35791394:0:0", "٣:٤٥", "１２:３４", "PT1H", "Bla"
+    };
+
+    /**
+     * The alphabet used to generate random time strings
+     */
+    private static final String FUZZ_ALPHABET = "0123456789::..+- aP٣";
+    /**
+     * The number of random strings to try
+     */
+    private static final int FUZZ_SIZE = 200000;
+
+    public final void testUnformatTimeCorpus() {
+        for (String time : TIME_CORPUS)
+            assertSameUnformat(time);
+
+        assertSameUnformat(null);
+    }
+
+    public final void testUnformatTimeFuzz() {
+        final Random random = new Random(42);
+        final StringBuilder builder = new StringBuilder();
+
+        for (int run = 0; run < FUZZ_SIZE; run++) {
+            builder.setLength(0);
+
+            final int length = random.nextInt(14);
+            for (int index = 0; index < length; index++)
+                builder.append(FUZZ_ALPHABET.charAt(random.nextInt(FUZZ_ALPHABET.length())));
+
+            assertSameUnformat(builder.toString());
+        }
+    }
+
+    public final void testFormatTime() {
+        final Locale before = Locale.getDefault();
+
+        try {
+            for (Locale locale : new Locale[]{Locale.US, Locale.GERMANY, new Locale("ar", "EG"), new Locale("fa")}) {
+                Locale.setDefault(locale);
+
+                for (int time = -4000; time < 4 * 3600; time += 7)
+                    assertEquals(LegacyParserUtils.formatTime(time), ParserUtils.formatTime(time));
+                for (int time : new int[]{359999, 360000, 3599999, Integer.MAX_VALUE, Integer.MIN_VALUE})
+                    assertEquals(LegacyParserUtils.formatTime(time), ParserUtils.formatTime(time));
+            }
+        } finally {
+            Locale.setDefault(before);
+        }
+    }
+
+    public final void testFormatFileSize() {
+        final long[] sizes = {0, 1, 1023, 1024, 1025, 1024 * 1024 - 1, 1024 * 1024, 123456789,
+                Integer.MAX_VALUE, Integer.MAX_VALUE + 1L, 5L * 1024 * 1024 * 1024, -1, -1024 * 1024 * 2};
+
+        for (long size : sizes)
+            assertEquals(LegacyParserUtils.formatFileSize(size), ParserUtils.formatFileSize(size));
+    }
+
+    public final void testUnformatIsoDuration() throws ParseException {
+        assertEquals(3600 * 1000, ParserUtils.unformatIsoDuration("PT1H"));
+        assertEquals((3600 + 12 * 60 + 34) * 1000, ParserUtils.unformatIsoDuration("PT1H12M34S"));
+        assertEquals(34500, ParserUtils.unformatIsoDuration("PT34.5S"));
+        assertEquals(34500, ParserUtils.unformatIsoDuration("pt34,5s"));
+        assertEquals(90 * 60 * 1000, ParserUtils.unformatIsoDuration("PT90M"));
+        assertEquals((24 * 3600 + 60) * 1000, ParserUtils.unformatIsoDuration("P1DT1M"));
+        assertEquals(7 * 24 * 3600 * 1000, ParserUtils.unformatIsoDuration("P1W"));
+
+        for (String bad : new String[]{null, "", "P", "PT", "PT1", "PTH", "P1H", "PT1D", "P1Y", "P1M",
+                "PT1X", "1H", "PT99999999999H"})
+            try {
+                ParserUtils.unformatIsoDuration(bad);
+                fail("Parsed " + bad);
+            } catch (ParseException pex) {
+                // pass
+            }
+    }
+
+    public final void testBase64() {
+        // Test vectors from RFC 4648
+        final String[] plain = {"", "f", "fo", "foo", "foob", "fooba", "foobar"};
+        final String[] encoded = {"", "Zg==", "Zm8=", "Zm9v", "Zm9vYg==", "Zm9vYmE=", "Zm9vYmFy"};
+
+        for (int index = 0; index < plain.length; index++) {
+            assertEquals(encoded[index], ParserUtils.encodeBase64(plain[index].getBytes()));
+            assertEquals(plain[index], new String(ParserUtils.decodeBase64(encoded[index])));
+        }
+
+        final byte[] bytes = new byte[256];
+        for (int index = 0; index < bytes.length; index++)
+            bytes[index] = (byte) index;
+        assertTrue(Arrays.equals(bytes, ParserUtils.decodeBase64(ParserUtils.encodeBase64(bytes))));
+        assertEquals("foobar", new String(ParserUtils.decodeBase64("Zm9v\nYmFy\n")));
+
+        try {
+            ParserUtils.decodeBase64("Zm9*");
+            fail("Decoded bad input");
+        } catch (IllegalArgumentException iae) {
+            // pass
+        }
+    }
+
+    private void assertSameUnformat(String time) {
+        Object expected;
+        try {
+            expected = LegacyParserUtils.unformatTime(time);
+        } catch (ParseException pex) {
+            expected = ParseException.class;
+        }
+
+        Object actual;
+        try {
+            actual = ParserUtils.unformatTime(time);
+        } catch (ParseException pex) {
+            actual = ParseException.class;
+        }
+
+        assertEquals("\"" + time + "\"", expected, actual);
+    }
+
+    /**
+     * The implementation used before, kept for comparison
+     */
+    private static class LegacyParserUtils {
+
+        private static final String SHORT_DURATION = "%2$d:%3$02d";
+        private static final String LONG_DURATION = "%d:%02d:%02d";
+
+        private static String formatTime(int time) {
+            final int hours = time / 3600;
+
+            return String.format(hours > 0 ? LONG_DURATION : SHORT_DURATION,
+                    hours, (time / 60) - 60 * hours, time % 60);
+        }
+
+        private static int unformatTime(String timeString) throws ParseException {
+            try {
+                final String[] all = timeString.split("\\.");
+                final int millis = all.length == 2 && all[1].length() == 3 ? Integer.parseInt(all[1]) : 0;
+                final String[] nonFraction = all.length == 2 ? all[0].split(":") : timeString.split(":");
+
+                int result;
+                switch (nonFraction.length) {
+                    case 1:
+                        result = Integer.parseInt(all.length == 2 ? all[0] : timeString);
+                        break;
+                    case 2:
+                        result = Integer.parseInt(nonFraction[1]) + Integer.parseInt(nonFraction[0]) * 60;
+                        break;
+                    case 3:
+                        result = Integer.parseInt(nonFraction[2]) + Integer.parseInt(nonFraction[1]) * 60
+                                + Integer.parseInt(nonFraction[0]) * 3600;
+                        break;
+                    default:
+                        throw new ParseException("Invalid time string " + timeString, 0);
+                }
+
+                return result * 1000 + millis;
+            } catch (NumberFormatException | NullPointerException ne) {
+                throw new ParseException("Invalid time string " + timeString, 0);
+            }
+        }
+
+        private static String formatFileSize(long bytes) {
+            final int megaBytes = (int) bytes / (1024 * 1024);
+            return megaBytes > 0 ? megaBytes + "MB" : bytes / 1024 + "KB";
+        }
+    }
+}
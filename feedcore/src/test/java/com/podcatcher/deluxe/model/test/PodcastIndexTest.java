@@ -0,0 +1,198 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.FeedPlatform;
+import com.podcatcher.deluxe.model.PodcastIndex;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+@SuppressWarnings("javadoc")
+public class PodcastIndexTest extends TestCase {
+
+    /**
+     * The number of podcasts to index
+     */
+    private static final int PODCAST_COUNT = 20;
+    /**
+     * The number of episodes per podcast
+     */
+    private static final int EPISODE_COUNT = 30;
+
+    public final void testLookup() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(PODCAST_COUNT, false);
+        final PodcastIndex index = new PodcastIndex();
+        index.reset(podcasts);
+        assertEquals(PODCAST_COUNT, index.size());
+
+        for (Podcast podcast : podcasts) {
+            final String url = podcast.getUrl();
+            for (String variant : new String[]{url, url.replace("http://", "feed://"),
+                    url.replace("www.example.com", "WWW.Example.COM"), url + "#top"})
+                assertSame(variant, findPodcast(podcasts, variant), index.findPodcastForUrl(variant));
+
+            for (Episode episode : podcast.getEpisodes()) {
+                final String mediaUrl = episode.getMediaUrl();
+                for (String variant : new String[]{mediaUrl, mediaUrl.replace("media.example.com", "MEDIA.example.com")}) {
+                    assertSame(variant, episode, index.findEpisodeForUrl(variant));
+                    assertSame(variant, findEpisode(podcasts, variant), index.findEpisodeForUrl(variant));
+                    assertSame(variant, episode, index.findEpisodeForUrl(variant, url));
+                    assertSame(variant, episode, index.findEpisodeForUrl(variant, null));
+                }
+            }
+        }
+
+        final String otherUrl = podcasts.get(1).getUrl();
+        final String mediaUrl = podcasts.get(0).getEpisodes().get(0).getMediaUrl();
+        assertNull(index.findEpisodeForUrl(mediaUrl, otherUrl));
+        assertNull(index.findEpisodeForUrl(mediaUrl, "http://www.example.com/unknown"));
+        assertNull(index.findEpisodeForUrl("http://media.example.com/unknown.mp3"));
+        assertNull(index.findEpisodeForUrl(null));
+        assertNull(index.findEpisodeForUrl(null, otherUrl));
+        assertNull(index.findPodcastForUrl("http://www.example.com/unknown"));
+        assertNull(index.findPodcastForUrl(null));
+    }
+
+    public final void testChanges() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(3, false);
+        final PodcastIndex index = new PodcastIndex();
+        index.reset(new ArrayList<Podcast>());
+
+        // Podcasts are added before they are loaded
+        final Podcast added = new Podcast(null, podcasts.get(0).getUrl());
+        index.add(added);
+        assertSame(added, index.findPodcastForUrl(added.getUrl()));
+        added.parse(createParser(SyntheticFeed.generate(range(1, EPISODE_COUNT), 0)));
+        final String mediaUrl = added.getEpisodes().get(0).getMediaUrl();
+        assertNull(index.findEpisodeForUrl(mediaUrl));
+        index.update(added);
+        assertSame(added.getEpisodes().get(0), index.findEpisodeForUrl(mediaUrl));
+
+        // Only the instance indexed counts
+        index.add(podcasts.get(0));
+        index.update(podcasts.get(0));
+        index.remove(podcasts.get(0));
+        assertSame(added, index.findPodcastForUrl(added.getUrl()));
+        assertSame(added.getEpisodes().get(0), index.findEpisodeForUrl(mediaUrl));
+
+        index.add(podcasts.get(1));
+        assertEquals(2, index.size());
+        index.remove(added);
+        assertEquals(1, index.size());
+        assertNull(index.findPodcastForUrl(added.getUrl()));
+        assertNull(index.findEpisodeForUrl(mediaUrl));
+        assertNotNull(index.findEpisodeForUrl(podcasts.get(1).getEpisodes().get(0).getMediaUrl()));
+
+        // Episodes dropped from the feed go away
+        podcasts.get(1).parse(createParser(SyntheticFeed.generate(new int[]{}, 1)));
+        index.update(podcasts.get(1));
+        assertEquals(0, podcasts.get(1).getEpisodeCount());
+        assertNull(index.findEpisodeForUrl(mediaUrl));
+    }
+
+    public final void testSharedEpisodes() throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = createPodcasts(3, true);
+        final PodcastIndex index = new PodcastIndex();
+        index.reset(podcasts);
+
+        for (Episode episode : podcasts.get(1).getEpisodes()) {
+            final String mediaUrl = episode.getMediaUrl();
+
+            // Without a podcast, we find the same episode the scan of all podcasts finds
+            assertSame(findEpisode(podcasts, mediaUrl), index.findEpisodeForUrl(mediaUrl));
+            assertSame(podcasts.get(0), index.findEpisodeForUrl(mediaUrl).getPodcast());
+            // With a podcast, we find the episode in there
+            assertSame(episode, index.findEpisodeForUrl(mediaUrl, podcasts.get(1).getUrl()));
+        }
+
+        // Re-indexing the first podcast does not hand its episodes to the others
+        index.update(podcasts.get(0));
+        index.update(podcasts.get(2));
+        for (Episode episode : podcasts.get(0).getEpisodes()) {
+            assertSame(episode, index.findEpisodeForUrl(episode.getMediaUrl()));
+            assertSame(findEpisode(podcasts.subList(2, 3), episode.getMediaUrl()),
+                    index.findEpisodeForUrl(episode.getMediaUrl(), podcasts.get(2).getUrl()));
+        }
+
+        // Once the first podcast is gone, the others take over its episodes
+        index.remove(podcasts.remove(0));
+        for (Episode episode : podcasts.get(0).getEpisodes())
+            assertSame(episode, index.findEpisodeForUrl(episode.getMediaUrl()));
+
+        index.remove(podcasts.remove(0));
+        for (Episode episode : podcasts.get(0).getEpisodes())
+            assertSame(episode, index.findEpisodeForUrl(episode.getMediaUrl()));
+    }
+
+    private List<Podcast> createPodcasts(int count, boolean shared) throws XmlPullParserException, IOException {
+        final List<Podcast> podcasts = new ArrayList<>(count);
+
+        for (int number = 0; number < count; number++) {
+            final Podcast podcast = new Podcast("Podcast " + number, "http://www.example.com/podcast" + number);
+            // The media URL only depends on the item number
+            final int first = shared ? 1 : number * EPISODE_COUNT + 1;
+            podcast.parse(createParser(SyntheticFeed.generate(range(first, EPISODE_COUNT), number)));
+            podcasts.add(podcast);
+        }
+
+        return podcasts;
+    }
+
+    private static Podcast findPodcast(List<Podcast> podcasts, String url) {
+        for (Podcast podcast : podcasts)
+            if (podcast.equalByUrl(url))
+                return podcast;
+
+        return null;
+    }
+
+    private static Episode findEpisode(List<Podcast> podcasts, String url) {
+        for (Podcast podcast : podcasts)
+            for (Episode episode : podcast.getEpisodes())
+                if (episode.equalByUrl(url))
+                    return episode;
+
+        return null;
+    }
+
+    private static int[] range(int first, int count) {
+        final int[] numbers = new int[count];
+        for (int index = 0; index < count; index++)
+            numbers[index] = first + count - 1 - index;
+
+        return numbers;
+    }
+
+    private static XmlPullParser createParser(String feed) throws XmlPullParserException {
+        final XmlPullParser parser = FeedPlatform.newParser();
+        parser.setInput(new StringReader(feed));
+
+        return parser;
+    }
+}
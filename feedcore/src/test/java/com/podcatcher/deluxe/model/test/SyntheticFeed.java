@@ -0,0 +1,132 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.test;
+
+import com.podcatcher.deluxe.model.DateCodec;
+
+import java.util.Random;
+
+/**
+ * Generates RSS feeds that look like the ones found in the wild: iTunes and
+ * content namespaces, mixed case element names, HTML in descriptions and
+ * element sub-trees the parser does not care about.
+ */
+@SuppressWarnings("javadoc")
+public class SyntheticFeed {
+
+    /**
+     * The publication date of episode number zero (millis)
+     */
+    private static final long FIRST_PUB_DATE = 946684800000L;
+    /**
+     * The time between two episodes (millis)
+     */
+    private static final long PUB_INTERVAL = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Create a feed document with items numbered from the given count down to one,
+     * sorted newest-first like most feeds are.
+     *
+     * @param items The number of items (episodes) in the feed.
+     * @param seed  The random seed, the same seed gives the same feed.
+     * @return The feed as a string.
+     */
+    public static String generate(int items, long seed) {
+        final int[] numbers = new int[items];
+        for (int index = 0; index < items; index++)
+            numbers[index] = items - index;
+
+        return generate(numbers, seed);
+    }
+
+    /**
+     * Create a feed document with the given items. Each item only depends on
+     * its number and the seed, so feeds can be created that share episodes.
+     * Higher numbers are newer episodes.
+     *
+     * @param numbers The item numbers, in feed order.
+     * @param seed    The random seed.
+     * @return The feed as a string.
+     */
+    public static String generate(int[] numbers, long seed) {
+        final StringBuilder feed = new StringBuilder(numbers.length * 1500);
+
+        feed.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<rss version=\"2.0\" xmlns:itunes=\"http://www.itunes.com/dtds/podcast-1.0.dtd\" ")
+                .append("xmlns:content=\"http://purl.org/rss/1.0/modules/content/\" ")
+                .append("xmlns:atom=\"http://www.w3.org/2005/Atom\" ")
+                .append("xmlns:psc=\"http://podlove.org/simple-chapters\" ")
+                .append("xmlns:media=\"http://search.yahoo.com/mrss/\">\n<channel>\n")
+                .append("<title>Synthetic Podcast ").append(seed).append("</title>\n")
+                .append("<link>http://www.example.com/</link>\n")
+                .append("<atom:link rel=\"self\" href=\"http://www.example.com/feed\" />\n")
+                .append("<language>en-us</language>\n")
+                .append("<itunes:explicit>no</itunes:explicit>\n")
+                .append("<itunes:image href=\"http://www.example.com/logo.jpg\" />\n")
+                .append("<itunes:owner><itunes:name>Owner</itunes:name>")
+                .append("<itunes:email>owner@example.com</itunes:email></itunes:owner>\n")
+                .append("<itunes:category text=\"Technology\"><itunes:category text=\"Podcasting\"/>")
+                .append("</itunes:category>\n");
+
+        for (int number : numbers)
+            appendItem(feed, new Random(seed * 31 + number), number);
+
+        return feed.append("</channel>\n</rss>\n").toString();
+    }
+
+    private static void appendItem(StringBuilder feed, Random random, int number) {
+        final int duration = 300 + random.nextInt(7200);
+        final boolean upperCase = random.nextBoolean();
+
+        feed.append("<item>\n<title>Episode ").append(number).append(" &amp; friends</title>\n")
+                .append("<link>http://www.example.com/episodes/").append(number).append("</link>\n")
+                .append("<guid isPermaLink=\"false\">").append(Long.toHexString(random.nextLong()))
+                .append("</guid>\n")
+                .append(upperCase ? "<PUBDATE>" : "<pubDate>")
+                .append(DateCodec.formatHttpDate(FIRST_PUB_DATE + number * PUB_INTERVAL))
+                .append(upperCase ? "</PUBDATE>\n" : "</pubDate>\n")
+                .append("<itunes:duration>").append(duration / 3600).append(':')
+                .append(duration / 60 % 60).append(':').append(duration % 60).append("</itunes:duration>\n")
+                .append("<itunes:explicit>").append(random.nextInt(10) == 0 ? "yes" : "no")
+                .append("</itunes:explicit>\n")
+                .append("<itunes:summary>A summary of episode ").append(number).append("</itunes:summary>\n")
+                .append("<description><![CDATA[<p>In episode ").append(number)
+                .append(" we talk about <b>things</b>.</p>]]></description>\n")
+                .append("<content:encoded><![CDATA[<p>Show notes for episode ").append(number).append(":</p><ul>");
+        // Show notes are the bulk of most feeds, a few hundred bytes to some KB per item
+        for (int link = random.nextInt(16); link >= 0; link--)
+            feed.append("<li><a href=\"http://www.example.com/links/").append(Long.toHexString(random.nextLong()))
+                    .append("\">Link ").append(link).append("</a> about something mentioned</li>");
+        feed.append("</ul>]]></content:encoded>\n");
+        // Some episodes come with chapter marks
+        if (random.nextInt(4) == 0) {
+            feed.append("<psc:chapters version=\"1.2\">");
+            for (int chapter = 0; chapter < 8; chapter++)
+                feed.append("<psc:chapter start=\"00:").append(chapter < 2 ? "0" : "").append(chapter * 5)
+                        .append(":00.000\" title=\"Chapter ").append(chapter + 1).append("\"/>");
+            feed.append("</psc:chapters>\n");
+        }
+        feed.append("<enclosure url=\"http://media.example.com/episode").append(number)
+                .append(".mp3\" length=\"").append(duration * 16000).append("\" type=\"audio/mpeg\"/>\n")
+                .append("<media:group><media:content url=\"http://media.example.com/episode").append(number)
+                .append(".m4a\"><media:title>Alternative</media:title></media:content></media:group>\n")
+                .append("<itunes:keywords>tech, podcast, synthetic</itunes:keywords>\n")
+                .append("</item>\n");
+    }
+}
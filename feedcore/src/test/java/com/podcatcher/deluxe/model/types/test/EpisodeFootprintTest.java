@@ -0,0 +1,157 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.types.test;
+
+import com.podcatcher.deluxe.model.EpisodeBodyStore;
+import com.podcatcher.deluxe.model.test.ObjectSizes;
+import com.podcatcher.deluxe.model.test.SyntheticFeed;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SortedMap;
+
+@SuppressWarnings("javadoc")
+public class EpisodeFootprintTest extends TestCase {
+
+    /**
+     * The number of episodes in the feed measured
+     */
+    private static final int EPISODES = 1000;
+
+    /**
+     * The most bytes an episode may take without its texts
+     */
+    private static final int MAX_BYTES_PER_EPISODE = 1024;
+
+    /**
+     * The least bytes the compact layout has to save per episode, the boxed
+     * date and the media type string alone take about that much
+     */
+    private static final int MIN_SAVING_PER_EPISODE = 64;
+
+    public final void testCompactLayout() throws XmlPullParserException, IOException {
+        final EpisodeBodyStore store = EpisodeBodyStore.getInstance();
+        store.close();
+
+        final List<Episode> episodes = parse(SyntheticFeed.generate(EPISODES, 7)).getEpisodes();
+        final List<LegacyEpisode> legacy = new ArrayList<>(episodes.size());
+        for (Episode episode : episodes)
+            legacy.add(new LegacyEpisode(episode));
+
+        final long compact = bytesPerEpisode(episodes);
+        final long old = bytesPerEpisode(legacy);
+
+        assertTrue("Compact layout takes " + compact + " bytes, old layout " + old,
+                old - compact >= MIN_SAVING_PER_EPISODE);
+    }
+
+    public final void testFootprint() throws XmlPullParserException, IOException {
+        final EpisodeBodyStore store = EpisodeBodyStore.getInstance();
+        final String feed = SyntheticFeed.generate(EPISODES, 7);
+
+        try {
+            store.close();
+            final long withTexts = bytesPerEpisode(parse(feed).getEpisodes());
+
+            store.open(new File(System.getProperty("java.io.tmpdir"), "bodies"));
+            final long withoutTexts = bytesPerEpisode(parse(feed).getEpisodes());
+
+            assertTrue(withoutTexts + " not below " + withTexts, withoutTexts < withTexts);
+            assertTrue("Episode takes " + withoutTexts + " bytes", withoutTexts < MAX_BYTES_PER_EPISODE);
+        } finally {
+            store.close();
+        }
+    }
+
+    private long bytesPerEpisode(List<?> episodes) {
+        // Podcast and store are shared by all episodes, do not count those
+        final ObjectSizes sizes = new ObjectSizes(Podcast.class, EpisodeBodyStore.class);
+
+        long total = 0;
+        for (Object episode : episodes)
+            total += sizes.measure(episode);
+
+        return total / episodes.size();
+    }
+
+    private Podcast parse(String feed) throws XmlPullParserException, IOException {
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        final XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(feed));
+
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        podcast.parse(parser);
+
+        return podcast;
+    }
+
+    /**
+     * Copy of the episode's field layout before it was compacted: boxed date,
+     * own media type string per instance and chapters in a tree map
+     */
+    @SuppressWarnings("unused")
+    private static class LegacyEpisode {
+
+        private final String name;
+        private final String url;
+        private final String description;
+        private final boolean explicit;
+        private final long fileSize;
+        private final Podcast podcast;
+        private final int index;
+        private final String guid;
+        private final String content;
+        private final Date pubDate;
+        private final int duration;
+        private final String mediaUrl;
+        private final String mediaType;
+        private final SortedMap<Integer, String> chapters;
+
+        private LegacyEpisode(Episode episode) {
+            this.name = episode.getName();
+            this.url = episode.getUrl();
+            this.description = episode.getDescription();
+            this.explicit = episode.isExplicit();
+            this.fileSize = episode.getFileSize();
+            this.podcast = episode.getPodcast();
+            this.index = episode.getPositionInPodcast();
+            this.guid = episode.getGuid();
+            this.content = episode.getLongDescription();
+            this.pubDate = episode.getPubDate();
+            this.duration = episode.getDuration();
+            this.mediaUrl = episode.getMediaUrl();
+            this.mediaType = episode.getMediaType() == null ? null : new String(episode.getMediaType());
+            this.chapters = episode.getChapters();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.podcatcher.deluxe.model.types.test;
+
+import com.podcatcher.deluxe.model.ListSnapshot;
+import com.podcatcher.deluxe.model.test.SyntheticFeed;
+import com.podcatcher.deluxe.model.types.Episode;
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+@SuppressWarnings("javadoc")
+public class PodcastParseTest extends TestCase {
+
+    public final void testIncrementalParse() throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        podcast.parse(createParser(SyntheticFeed.generate(100, 1)));
+        final Episode latest = podcast.getEpisodes().get(0);
+
+        // Two new episodes on top
+        podcast.parse(createParser(SyntheticFeed.generate(102, 1)));
+        assertSameEpisodes(SyntheticFeed.generate(102, 1), podcast.getEpisodes());
+        final Episode moved = podcast.getEpisodes().get(2);
+        assertEquals(latest, moved);
+        assertEquals(2, moved.getPositionInPodcast());
+        // Episodes handed out before do not change their position (and sort order)
+        assertEquals(0, latest.getPositionInPodcast());
+
+        // Nothing new, the oldest episode dropped from the feed is only removed on full parse
+        podcast.parse(createParser(SyntheticFeed.generate(range(102, 2), 1)));
+        assertEquals(102, podcast.getEpisodeCount());
+        assertSame(moved, podcast.getEpisodes().get(2));
+    }
+
+    public final void testEpisodeSnapshots() throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        final ListSnapshot<Episode> empty = podcast.getEpisodes();
+        assertTrue(empty.isEmpty());
+
+        podcast.parse(createParser(SyntheticFeed.generate(100, 1)));
+        final ListSnapshot<Episode> first = podcast.getEpisodes();
+        assertSame(first, podcast.getEpisodes());
+        assertTrue(first.getVersion() > empty.getVersion());
+        assertTrue(empty.isEmpty());
+
+        // Snapshots do not change, later parses publish a new one
+        podcast.parse(createParser(SyntheticFeed.generate(102, 1)));
+        final ListSnapshot<Episode> second = podcast.getEpisodes();
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals(100, first.size());
+        assertEquals(102, second.size());
+        assertEquals(first.get(0), second.get(2));
+        assertEquals(0, first.get(0).getPositionInPodcast());
+
+        try {
+            second.remove(0);
+            fail("Snapshot changed");
+        } catch (UnsupportedOperationException uoe) {
+            // pass
+        }
+
+        // The feed has explicit episodes, removing them publishes a new version
+        final int cleanCount = podcast.removeExplicitEpisodes();
+        final ListSnapshot<Episode> third = podcast.getEpisodes();
+        assertTrue(cleanCount < second.size());
+        assertEquals(cleanCount, third.size());
+        assertTrue(third.getVersion() > second.getVersion());
+        assertEquals(102, second.size());
+
+        // No explicit episodes left to remove, nothing changes
+        assertEquals(cleanCount, podcast.removeExplicitEpisodes());
+        assertSame(third, podcast.getEpisodes());
+    }
+
+    public final void testIncrementalParseFallback() throws XmlPullParserException, IOException {
+        // Known episodes in a different order
+        final int[] reordered = range(102, 1);
+        reordered[3] = 98;
+        reordered[4] = 99;
+        assertFullParse(SyntheticFeed.generate(100, 1), SyntheticFeed.generate(reordered, 1), false);
+
+        // Feed that has not been sorted newest-first before
+        final int[] unsorted = range(100, 1);
+        unsorted[50] = 150;
+        final int[] grown = new int[unsorted.length + 1];
+        grown[0] = 151;
+        System.arraycopy(unsorted, 0, grown, 1, unsorted.length);
+        assertFullParse(SyntheticFeed.generate(unsorted, 1), SyntheticFeed.generate(grown, 1), false);
+
+        // Podcast with explicit episodes removed
+        assertFullParse(SyntheticFeed.generate(100, 1), SyntheticFeed.generate(101, 1), true);
+    }
+
+    private void assertFullParse(String before, String after, boolean removeExplicit)
+            throws XmlPullParserException, IOException {
+        final Podcast podcast = new Podcast(null, "http://www.example.com/feed");
+        podcast.parse(createParser(before));
+        final int episodeCount = podcast.getEpisodeCount();
+        if (removeExplicit)
+            assertTrue(podcast.removeExplicitEpisodes() < episodeCount);
+        final Episode known = podcast.getEpisodes().get(0);
+
+        podcast.parse(createParser(after));
+        assertSameEpisodes(after, podcast.getEpisodes());
+        assertNotSame(known, podcast.getEpisodes().get(podcast.getEpisodes().indexOf(known)));
+    }
+
+    private void assertSameEpisodes(String feed, List<Episode> episodes)
+            throws XmlPullParserException, IOException {
+        final Podcast fullParse = new Podcast(null, "http://www.example.com/feed");
+        fullParse.parse(createParser(feed));
+
+        assertEquals(fullParse.getEpisodeCount(), episodes.size());
+        for (int index = 0; index < episodes.size(); index++) {
+            final Episode expected = fullParse.getEpisodes().get(index);
+
+            assertEquals(expected, episodes.get(index));
+            assertEquals(expected.getPositionInPodcast(), episodes.get(index).getPositionInPodcast());
+        }
+    }
+
+    private int[] range(int newest, int oldest) {
+        final int[] numbers = new int[newest - oldest + 1];
+        for (int index = 0; index < numbers.length; index++)
+            numbers[index] = newest - index;
+
+        return numbers;
+    }
+
+    private XmlPullParser createParser(String feed) throws XmlPullParserException {
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        final XmlPullParser parser = factory.newPullParser();
+        parser.setInput(new StringReader(feed));
+
+        return parser;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2012-2016 Kevin Hausmann
+ *
+ * This file is part of Podcatcher Deluxe.
+ *
+ * Podcatcher Deluxe is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Podcatcher Deluxe is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Podcatcher Deluxe. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.podcatcher.deluxe.model.types.test;
+
+import com.podcatcher.deluxe.model.types.Podcast;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class PodcastTest extends TestCase {
+
+    public final void testSetValidators() {
+        Podcast podcast = new Podcast(null, null);
+        assertFalse(podcast.hasValidators());
+        assertFalse(podcast.setValidators(null, -1));
+
+        assertTrue(podcast.setValidators("\"abc\"", -1));
+        assertTrue(podcast.hasValidators());
+        assertFalse(podcast.setValidators("\"abc\"", 0));
+        assertTrue(podcast.setValidators("\"abc\"", 1000));
+        assertFalse(podcast.setValidators(new String("\"abc\""), 1000));
+        assertTrue(podcast.setValidators("\"def\"", 1000));
+        assertTrue(podcast.setValidators(null, 1000));
+        assertTrue(podcast.setValidators(null, -5));
+        assertFalse(podcast.hasValidators());
+    }
+}
@@ -22,10 +22,10 @@ import com.podcatcher.deluxe.model.types.Genre;
 import com.podcatcher.deluxe.model.types.Language;
 import com.podcatcher.deluxe.model.types.MediaType;
 
-import android.test.InstrumentationTestCase;
+import junit.framework.TestCase;
 
 @SuppressWarnings("javadoc")
-public class TaxonomyTermTest extends InstrumentationTestCase {
+public class TaxonomyTermTest extends TestCase {
 
     public final void testGenreForLabel() {
         assertEquals(Genre.MUSIC, Genre.forLabel("Music"));